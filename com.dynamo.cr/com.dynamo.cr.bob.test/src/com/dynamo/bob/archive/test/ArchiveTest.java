@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -41,6 +42,9 @@ import com.dynamo.bob.pipeline.ResourceNode;
 import com.dynamo.liveupdate.proto.Manifest.HashAlgorithm;
 import com.dynamo.liveupdate.proto.Manifest.ResourceEntryFlag;
 
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
 public class ArchiveTest {
 
     private String contentRoot;
@@ -142,6 +146,98 @@ public class ArchiveTest {
         ar.close();
     }
 
+    @Test
+    public void testReaderContent() throws IOException
+    {
+        // Create, uncompressed so the stored data is the file content
+        ArchiveBuilder ab = new ArchiveBuilder(contentRoot, manifestBuilder);
+        List<String> contents = new ArrayList<String>();
+        for (int i = 0; i < 10; ++i) {
+            String content = "content" + i;
+            contents.add(content);
+            ab.add(createDummyFile(contentRoot, "file" + i + ".txt", content.getBytes()));
+        }
+
+        // Write
+        RandomAccessFile outFileIndex = new RandomAccessFile(outputIndex, "rw");
+        RandomAccessFile outFileData = new RandomAccessFile(outputData, "rw");
+        outFileIndex.setLength(0);
+        outFileData.setLength(0);
+        ab.write(outFileIndex, outFileData, resourcePackDir, new ArrayList<String>());
+        outFileIndex.close();
+        outFileData.close();
+
+        // Read
+        ArchiveReader ar = new ArchiveReader(outputIndex.getAbsolutePath(), outputData.getAbsolutePath(), null);
+        ar.read();
+        assertEquals(contents.size(), ar.getEntryCount());
+        int count = 0;
+        for (ArchiveEntry entry : ar) {
+            String content = new String(ar.getEntryContent(entry));
+            assertTrue(contents.remove(content));
+
+            ByteBuffer buffer = ar.getEntryContentBuffer(entry);
+            assertEquals(entry.size, buffer.remaining());
+            byte[] bufferContent = new byte[buffer.remaining()];
+            buffer.get(bufferContent);
+            assertEquals(content, new String(bufferContent));
+            ++count;
+        }
+        assertEquals(10, count);
+        assertTrue(contents.isEmpty());
+        assertEquals(10, ar.getEntries().size());
+        ar.close();
+    }
+
+    @Test
+    public void testReaderCompressedContent() throws IOException
+    {
+        // Create, with content that compresses well
+        ArchiveBuilder ab = new ArchiveBuilder(contentRoot, manifestBuilder);
+        List<String> contents = new ArrayList<String>();
+        for (int i = 0; i < 10; ++i) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < 100; ++j) {
+                sb.append("content" + i);
+            }
+            contents.add(sb.toString());
+            ab.add(createDummyFile(contentRoot, "file" + i + ".txt", sb.toString().getBytes()), true);
+        }
+
+        // Write
+        RandomAccessFile outFileIndex = new RandomAccessFile(outputIndex, "rw");
+        RandomAccessFile outFileData = new RandomAccessFile(outputData, "rw");
+        outFileIndex.setLength(0);
+        outFileData.setLength(0);
+        ab.write(outFileIndex, outFileData, resourcePackDir, new ArrayList<String>());
+        outFileIndex.close();
+        outFileData.close();
+
+        // Read, the stored data of each entry is its compressed content
+        LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+        ArchiveReader ar = new ArchiveReader(outputIndex.getAbsolutePath(), outputData.getAbsolutePath(), null);
+        ar.read();
+        ArchiveEntry last = null;
+        for (ArchiveEntry entry : ar) {
+            assertTrue(entry.compressedSize != ArchiveEntry.FLAG_UNCOMPRESSED);
+            byte[] stored = ar.getEntryContent(entry);
+            assertEquals(entry.compressedSize, stored.length);
+            assertTrue(contents.remove(new String(decompressor.decompress(stored, entry.size))));
+
+            ByteBuffer buffer = ar.getEntryContentBuffer(entry);
+            assertEquals(entry.compressedSize, buffer.remaining());
+            if (last == null || entry.resourceOffset > last.resourceOffset) {
+                last = entry;
+            }
+        }
+        assertTrue(contents.isEmpty());
+
+        // The last entry ends at the end of the archive data
+        assertEquals(outputData.length(), last.resourceOffset + last.compressedSize);
+        assertEquals(last.compressedSize, ar.getEntryContent(last).length);
+        ar.close();
+    }
+
     @Test
     public void testEntriesOrder() throws IOException {
 
@@ -181,7 +277,105 @@ public class ArchiveTest {
 
         ar.close();
     }
-    
+
+    private List<String> createTestFiles() throws IOException {
+        List<String> files = new ArrayList<String>();
+        for (int i = 0; i < 100; ++i) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < i * 10; ++j) {
+                sb.append(j % (i + 1));
+            }
+            files.add(createDummyFile(contentRoot, "dir" + (i % 7) + "/file" + i + ".txt", sb.toString().getBytes()));
+        }
+        files.add(createDummyFile(contentRoot, "script.luac", "print(\"encrypted\")".getBytes()));
+        return files;
+    }
+
+    private ArchiveBuilder createArchiveBuilder(int threadCount, List<String> files) throws IOException {
+        ArchiveBuilder ab = new ArchiveBuilder(FilenameUtils.separatorsToSystem(contentRoot), manifestBuilder, threadCount);
+        for (String file : files) {
+            ab.add(file, true);
+        }
+        return ab;
+    }
+
+    private void writeArchive(ArchiveBuilder ab, File index, File data) throws IOException {
+        RandomAccessFile outFileIndex = new RandomAccessFile(index, "rw");
+        RandomAccessFile outFileData = new RandomAccessFile(data, "rw");
+        outFileIndex.setLength(0);
+        outFileData.setLength(0);
+        ab.write(outFileIndex, outFileData, resourcePackDir, new ArrayList<String>());
+        outFileIndex.close();
+        outFileData.close();
+    }
+
+    private void writeArchive(int threadCount, File index, File data) throws IOException {
+        writeArchive(createArchiveBuilder(threadCount, createTestFiles()), index, data);
+    }
+
+    @Test
+    public void testParallelWriteIsDeterministic() throws IOException {
+        File parallelIndex = Files.createTempFile("tmp.defold", "arci").toFile();
+        File parallelData = Files.createTempFile("tmp.defold", "arcd").toFile();
+        try {
+            writeArchive(1, outputIndex, outputData);
+            writeArchive(8, parallelIndex, parallelData);
+
+            assertArrayEquals(Files.readAllBytes(outputIndex.toPath()), Files.readAllBytes(parallelIndex.toPath()));
+            assertArrayEquals(Files.readAllBytes(outputData.toPath()), Files.readAllBytes(parallelData.toPath()));
+        } finally {
+            FileUtils.deleteQuietly(parallelIndex);
+            FileUtils.deleteQuietly(parallelData);
+        }
+    }
+
+    @Test
+    public void testIncrementalWrite() throws IOException {
+        File archiveData = Files.createTempFile("tmp.defold", "arcd").toFile();
+        File entriesFile = new File(archiveData.getAbsolutePath() + ".entries");
+        File incrementalIndex = Files.createTempFile("tmp.defold", "arci").toFile();
+        File incrementalData = Files.createTempFile("tmp.defold", "arcd").toFile();
+        try {
+            // First build, there is no previous archive to copy entries from
+            List<String> files = createTestFiles();
+            ArchiveBuilder ab = createArchiveBuilder(4, files);
+            ab.setIncremental(archiveData, entriesFile);
+            writeArchive(ab, incrementalIndex, incrementalData);
+            assertEquals(0, ab.getReusedEntryCount());
+            FileUtils.copyFile(incrementalData, archiveData);
+            ab.writeEntries();
+            assertTrue(entriesFile.exists());
+
+            // Change one entry, all other entries are copied from the previous archive
+            createDummyFile(contentRoot, "dir3/file10.txt", "changed".getBytes());
+            ab = createArchiveBuilder(4, files);
+            ab.setIncremental(archiveData, entriesFile);
+            assertFalse(entriesFile.exists());
+            writeArchive(ab, incrementalIndex, incrementalData);
+            assertEquals(files.size() - 1, ab.getReusedEntryCount());
+
+            // Same output as a full write
+            writeArchive(createArchiveBuilder(4, files), outputIndex, outputData);
+            assertArrayEquals(Files.readAllBytes(outputIndex.toPath()), Files.readAllBytes(incrementalIndex.toPath()));
+            assertArrayEquals(Files.readAllBytes(outputData.toPath()), Files.readAllBytes(incrementalData.toPath()));
+
+            // Entries are not reused if the archive data doesn't match the entries file
+            FileUtils.copyFile(incrementalData, archiveData);
+            ab.writeEntries();
+            FileUtils.writeByteArrayToFile(archiveData, new byte[16], true);
+            ab = createArchiveBuilder(4, files);
+            ab.setIncremental(archiveData, entriesFile);
+            writeArchive(ab, incrementalIndex, incrementalData);
+            assertEquals(0, ab.getReusedEntryCount());
+            assertArrayEquals(Files.readAllBytes(outputData.toPath()), Files.readAllBytes(incrementalData.toPath()));
+        } finally {
+            FileUtils.deleteQuietly(archiveData);
+            FileUtils.deleteQuietly(entriesFile);
+            FileUtils.deleteQuietly(incrementalIndex);
+            FileUtils.deleteQuietly(incrementalData);
+        }
+    }
+
     @Test
     public void testArchiveIndexAlignment() throws IOException {
     	ArchiveBuilder instance = new ArchiveBuilder(FilenameUtils.separatorsToSystem(contentRoot), manifestBuilder);
@@ -539,4 +539,33 @@ public class ManifestTest {
         assertEquals("/main/main.collectionc",          parents.get(0).get(0));
     }
 
+    @Test
+    public void testGetParentCollectionsNested() throws IOException {
+        // An occurrence nested below another occurrence of the same resource is not counted
+        ResourceNode root = new ResourceNode("<Anonymous Root>", "<Anonymous Root>");
+        ResourceNode collectionc = new ResourceNode("/main/main.collectionc", "test/main/main.collectionc");
+        ResourceNode outer = new ResourceNode("/main/nested.goc", "test/main/nested.goc");
+        ResourceNode inner = new ResourceNode("/main/nested.goc", "test/main/nested.goc");
+        root.addChild(collectionc);
+        collectionc.addChild(outer);
+        outer.addChild(inner);
+        inner.addChild(new ResourceNode("/main/nested.scriptc", "test/main/nested.scriptc"));
+
+        ManifestBuilder manifestBuilder = new ManifestBuilder();
+        manifestBuilder.setDependencies(root);
+
+        List<ArrayList<String>> parents = manifestBuilder.getParentCollections("/main/nested.goc");
+        assertEquals(1, parents.size());
+        assertEquals(1, parents.get(0).size());
+        assertEquals("/main/main.collectionc", parents.get(0).get(0));
+
+        List<String> dependants = manifestBuilder.getDependants("/main/nested.goc");
+        assertEquals(2, dependants.size());
+        assertEquals("/main/nested.goc", dependants.get(0));
+        assertEquals("/main/nested.scriptc", dependants.get(1));
+
+        assertEquals(0, manifestBuilder.getParentCollections("/main/missing.goc").size());
+        assertEquals(0, manifestBuilder.getDependants("/main/missing.goc").size());
+    }
+
 }
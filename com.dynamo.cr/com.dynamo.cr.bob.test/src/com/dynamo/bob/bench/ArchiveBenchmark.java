@@ -0,0 +1,106 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+import com.dynamo.bob.archive.ArchiveBuilder;
+import com.dynamo.bob.archive.ManifestBuilder;
+import com.dynamo.liveupdate.proto.Manifest.HashAlgorithm;
+
+/**
+ * Writes an archive of N entries between 256 bytes and 16 kB, half of them
+ * compressible, with one thread.
+ */
+public class ArchiveBenchmark extends Benchmark {
+
+    private File contentRoot;
+    private File outputIndex;
+    private File outputData;
+    private List<String> files;
+
+    @Override
+    public String getName() {
+        return "archive";
+    }
+
+    @Override
+    public String getSizeUnit() {
+        return "entries";
+    }
+
+    @Override
+    public int[] getDefaultSizes() {
+        return new int[] { 100, 1000, 10000 };
+    }
+
+    @Override
+    public void setUp(int size) throws Exception {
+        Random random = new Random(size);
+        contentRoot = Files.createTempDirectory("archive_benchmark").toFile();
+        outputIndex = new File(contentRoot, "game.arci");
+        outputData = new File(contentRoot, "game.arcd");
+        files = new ArrayList<String>(size);
+        for (int i = 0; i < size; ++i) {
+            byte[] content = new byte[256 + random.nextInt(16 * 1024 - 256)];
+            if (i % 2 == 0) {
+                random.nextBytes(content);
+            } else {
+                for (int j = 0; j < content.length; ++j) {
+                    content[j] = (byte) ('a' + (j / 16 + i) % 26);
+                }
+            }
+            File file = new File(contentRoot, String.format("content/dir%d/file%d.bin", i % 32, i));
+            FileUtils.writeByteArrayToFile(file, content);
+            files.add(file.getAbsolutePath());
+        }
+    }
+
+    @Override
+    public Object run() throws Exception {
+        ManifestBuilder manifestBuilder = new ManifestBuilder();
+        manifestBuilder.setResourceHashAlgorithm(HashAlgorithm.HASH_SHA1);
+        ArchiveBuilder archiveBuilder = new ArchiveBuilder(new File(contentRoot, "content").getAbsolutePath(), manifestBuilder, 1);
+        for (String file : files) {
+            archiveBuilder.add(file, true);
+        }
+
+        File resourcePackDir = new File(contentRoot, "resourcepack");
+        resourcePackDir.mkdirs();
+        RandomAccessFile index = new RandomAccessFile(outputIndex, "rw");
+        RandomAccessFile data = new RandomAccessFile(outputData, "rw");
+        try {
+            index.setLength(0);
+            data.setLength(0);
+            archiveBuilder.write(index, data, resourcePackDir.toPath(), new ArrayList<String>());
+            return data.length();
+        } finally {
+            index.close();
+            data.close();
+        }
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(contentRoot);
+        files = null;
+    }
+}
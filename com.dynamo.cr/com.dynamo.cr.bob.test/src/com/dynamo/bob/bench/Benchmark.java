@@ -0,0 +1,56 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+/**
+ * A benchmark of one part of the content pipeline, run by BenchmarkRunner on
+ * synthetic fixtures of increasing size. The fixture is created in setUp and
+ * is not part of the measurement. Benchmarks should run single threaded, so
+ * that the time and allocation per op can be compared between machines.
+ */
+public abstract class Benchmark {
+
+    /**
+     * @return name used in the results and to select the benchmark
+     */
+    public abstract String getName();
+
+    /**
+     * @return description of what the size parameter counts, e.g. "sprites"
+     */
+    public abstract String getSizeUnit();
+
+    /**
+     * @return fixture sizes run when none are given on the command line
+     */
+    public abstract int[] getDefaultSizes();
+
+    /**
+     * Create the fixture for a size
+     * @param size fixture size
+     */
+    public abstract void setUp(int size) throws Exception;
+
+    /**
+     * Run one op on the fixture
+     * @return result of the op, so that the work can't be optimized away
+     */
+    public abstract Object run() throws Exception;
+
+    /**
+     * Release the fixture created by setUp
+     */
+    public void tearDown() throws Exception {
+    }
+}
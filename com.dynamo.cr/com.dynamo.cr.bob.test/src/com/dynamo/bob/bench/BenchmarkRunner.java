@@ -0,0 +1,349 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+/**
+ * Runs the content pipeline benchmarks and writes the results as JSON, in the
+ * same format as JMH, so that they can be compared between versions with the
+ * usual JMH tools. Each benchmark is run for every fixture size with a number
+ * of warmup iterations followed by measured iterations. An iteration runs the
+ * op until the iteration time has passed. The time per op, and the bytes
+ * allocated per op by the benchmark thread, are reported.
+ *
+ * Not part of the unit tests, run with "ant benchmark" or:
+ *
+ *   java -cp <classpath> com.dynamo.bob.bench.BenchmarkRunner [options]
+ */
+public class BenchmarkRunner {
+
+    // Student's t quantiles for a 99.9% confidence interval, by degrees of freedom
+    private static final double[] T_QUANTILES = {
+        636.62, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+        4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+        3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646 };
+    private static final double T_QUANTILE_LIMIT = 3.291;
+
+    private static List<Benchmark> createBenchmarks() {
+        return Arrays.<Benchmark>asList(
+                new TextureSetBenchmark(),
+                new MaxRectsLayoutBenchmark(),
+                new FontBenchmark(),
+                new ColladaBenchmark(),
+                new CollectionBenchmark(),
+                new ManifestBenchmark(),
+                new ManifestParentsBenchmark(),
+                new ArchiveBenchmark(),
+                new LuaScannerBenchmark());
+    }
+
+    /**
+     * Measurements of one benchmark at one fixture size
+     */
+    static class Result {
+        final Benchmark benchmark;
+        final int size;
+        final int warmupIterations;
+        final List<Double> msPerOp = new ArrayList<Double>();
+        final List<Double> bytesPerOp = new ArrayList<Double>();
+
+        Result(Benchmark benchmark, int size, int warmupIterations) {
+            this.benchmark = benchmark;
+            this.size = size;
+            this.warmupIterations = warmupIterations;
+        }
+    }
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationTime;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final boolean allocationSupported;
+
+    /**
+     * @param warmupIterations number of iterations run before measuring
+     * @param iterations number of measured iterations
+     * @param iterationTime min time of an iteration, in ms
+     */
+    public BenchmarkRunner(int warmupIterations, int iterations, long iterationTime) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = Math.max(1, iterations);
+        this.iterationTime = iterationTime;
+
+        boolean supported = false;
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+            if (bean.isThreadAllocatedMemorySupported()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+                supported = bean.isThreadAllocatedMemoryEnabled();
+            }
+        }
+        this.allocationSupported = supported;
+    }
+
+    private long getAllocatedBytes() {
+        if (!allocationSupported) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // Runs the op until the iteration time has passed, and stores the time and allocation per op
+    private void runIteration(Benchmark benchmark, Result result) throws Exception {
+        long deadline = iterationTime * 1000000L;
+        long ops = 0;
+        long allocated = getAllocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+        Object sink = null;
+        do {
+            sink = benchmark.run();
+            ++ops;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < deadline);
+        allocated = getAllocatedBytes() - allocated;
+
+        if (sink == null) {
+            throw new IllegalStateException(String.format("Benchmark '%s' returned no result", benchmark.getName()));
+        }
+        if (result != null) {
+            result.msPerOp.add(elapsed / 1000000.0 / ops);
+            result.bytesPerOp.add((double) allocated / ops);
+        }
+    }
+
+    /**
+     * Run a benchmark at one fixture size
+     * @param benchmark benchmark
+     * @param size fixture size
+     * @return measurements
+     */
+    public Result run(Benchmark benchmark, int size) throws Exception {
+        Result result = new Result(benchmark, size, warmupIterations);
+        benchmark.setUp(size);
+        try {
+            for (int i = 0; i < warmupIterations; ++i) {
+                runIteration(benchmark, null);
+            }
+            for (int i = 0; i < iterations; ++i) {
+                runIteration(benchmark, result);
+            }
+        } finally {
+            benchmark.tearDown();
+        }
+        return result;
+    }
+
+    static double mean(List<Double> values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.size();
+    }
+
+    // Half width of the 99.9% confidence interval of the mean
+    static double error(List<Double> values) {
+        int n = values.size();
+        if (n < 2) {
+            return Double.NaN;
+        }
+        double mean = mean(values);
+        double variance = 0;
+        for (double value : values) {
+            variance += (value - mean) * (value - mean);
+        }
+        variance /= n - 1;
+        double t = n - 1 <= T_QUANTILES.length ? T_QUANTILES[n - 2] : T_QUANTILE_LIMIT;
+        return t * Math.sqrt(variance / n);
+    }
+
+    private static void writeNumber(JsonGenerator generator, double value) throws IOException {
+        if (Double.isNaN(value)) {
+            generator.writeString("NaN");
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private static void writeMetric(JsonGenerator generator, List<Double> values, String unit) throws IOException {
+        double mean = mean(values);
+        double error = error(values);
+        generator.writeStartObject();
+        generator.writeFieldName("score");
+        writeNumber(generator, mean);
+        generator.writeFieldName("scoreError");
+        writeNumber(generator, error);
+        generator.writeFieldName("scoreConfidence");
+        generator.writeStartArray();
+        writeNumber(generator, mean - error);
+        writeNumber(generator, mean + error);
+        generator.writeEndArray();
+        generator.writeFieldName("scoreUnit");
+        generator.writeString(unit);
+        generator.writeFieldName("rawData");
+        generator.writeStartArray();
+        generator.writeStartArray();
+        for (double value : values) {
+            generator.writeNumber(value);
+        }
+        generator.writeEndArray();
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write results in the JMH JSON format
+     * @param results results
+     * @param writer output
+     */
+    public void writeJSON(List<Result> results, Writer writer) throws IOException {
+        JsonGenerator generator = new JsonFactory().createJsonGenerator(writer);
+        generator.useDefaultPrettyPrinter();
+        generator.writeStartArray();
+        for (Result result : results) {
+            generator.writeStartObject();
+            generator.writeStringField("benchmark", result.benchmark.getClass().getName() + "." + result.benchmark.getName());
+            generator.writeStringField("mode", "avgt");
+            generator.writeNumberField("threads", 1);
+            generator.writeNumberField("forks", 1);
+            generator.writeStringField("jdkVersion", System.getProperty("java.version"));
+            generator.writeStringField("vmName", System.getProperty("java.vm.name"));
+            generator.writeStringField("vmVersion", System.getProperty("java.vm.version"));
+            generator.writeNumberField("warmupIterations", result.warmupIterations);
+            generator.writeStringField("warmupTime", iterationTime + " ms");
+            generator.writeNumberField("measurementIterations", result.msPerOp.size());
+            generator.writeStringField("measurementTime", iterationTime + " ms");
+
+            generator.writeFieldName("params");
+            generator.writeStartObject();
+            generator.writeStringField("size", Integer.toString(result.size));
+            generator.writeStringField("unit", result.benchmark.getSizeUnit());
+            generator.writeEndObject();
+
+            generator.writeFieldName("primaryMetric");
+            writeMetric(generator, result.msPerOp, "ms/op");
+
+            generator.writeFieldName("secondaryMetrics");
+            generator.writeStartObject();
+            if (allocationSupported) {
+                generator.writeFieldName("gc.alloc.rate.norm");
+                writeMetric(generator, result.bytesPerOp, "B/op");
+            }
+            generator.writeEndObject();
+
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.close();
+    }
+
+    private static int[] parseSizes(String value) {
+        String[] parts = value.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; ++i) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        options.addOption("b", "benchmark", true, "Regular expression matching the names of the benchmarks to run");
+        options.addOption("s", "sizes", true, "Comma separated fixture sizes, instead of the defaults of each benchmark");
+        options.addOption("w", "warmup", true, "Warmup iterations (default 3)");
+        options.addOption("i", "iterations", true, "Measured iterations (default 5)");
+        options.addOption("t", "time", true, "Min time of an iteration in ms (default 1000)");
+        options.addOption("o", "output", true, "JSON file to write the results to");
+        options.addOption("l", "list", false, "List the benchmarks");
+        options.addOption("h", "help", false, "This help message");
+
+        CommandLineParser parser = new PosixParser();
+        CommandLine cmd;
+        try {
+            cmd = parser.parse(options, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (cmd.hasOption("h")) {
+            new HelpFormatter().printHelp("BenchmarkRunner [options]", options);
+            return;
+        }
+
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        Pattern filter = cmd.hasOption("b") ? Pattern.compile(cmd.getOptionValue("b")) : null;
+        for (Benchmark benchmark : createBenchmarks()) {
+            if (filter == null || filter.matcher(benchmark.getName()).find()) {
+                benchmarks.add(benchmark);
+            }
+        }
+        if (cmd.hasOption("l")) {
+            for (Benchmark benchmark : benchmarks) {
+                System.out.printf("%-12s %s %s%n", benchmark.getName(), Arrays.toString(benchmark.getDefaultSizes()), benchmark.getSizeUnit());
+            }
+            return;
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner(
+                Integer.parseInt(cmd.getOptionValue("w", "3")),
+                Integer.parseInt(cmd.getOptionValue("i", "5")),
+                Long.parseLong(cmd.getOptionValue("t", "1000")));
+
+        List<Result> results = new ArrayList<Result>();
+        for (Benchmark benchmark : benchmarks) {
+            int[] sizes = cmd.hasOption("s") ? parseSizes(cmd.getOptionValue("s")) : benchmark.getDefaultSizes();
+            for (int size : sizes) {
+                Result result = runner.run(benchmark, size);
+                results.add(result);
+                System.out.printf("%-12s %8d %-10s %12.3f +- %8.3f ms/op %14.0f B/op%n", benchmark.getName(), size, benchmark.getSizeUnit(),
+                        mean(result.msPerOp), error(result.msPerOp), mean(result.bytesPerOp));
+            }
+        }
+
+        if (cmd.hasOption("o")) {
+            File file = new File(cmd.getOptionValue("o"));
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            Writer writer = new FileWriter(file);
+            try {
+                runner.writeJSON(results, writer);
+            } finally {
+                writer.close();
+            }
+            System.out.println("Results written to " + file.getPath());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.io.ByteArrayInputStream;
+
+import com.dynamo.bob.pipeline.ColladaUtil;
+import com.dynamo.rig.proto.Rig;
+
+/**
+ * Loads and optimizes a COLLADA mesh of N triangles, a grid of quads with
+ * positions, normals and texture coordinates.
+ */
+public class ColladaBenchmark extends Benchmark {
+
+    private byte[] dae;
+
+    @Override
+    public String getName() {
+        return "collada";
+    }
+
+    @Override
+    public String getSizeUnit() {
+        return "triangles";
+    }
+
+    @Override
+    public int[] getDefaultSizes() {
+        return new int[] { 2000, 20000, 200000 };
+    }
+
+    private static void appendSource(StringBuilder dae, String id, float[] values, String... params) {
+        int stride = params.length;
+        dae.append("<source id=\"").append(id).append("\">\n");
+        dae.append("<float_array id=\"").append(id).append("-array\" count=\"").append(values.length).append("\">");
+        for (float value : values) {
+            dae.append(value).append(' ');
+        }
+        dae.append("</float_array>\n");
+        dae.append("<technique_common><accessor source=\"#").append(id).append("-array\" count=\"").append(values.length / stride).append("\" stride=\"").append(stride).append("\">");
+        for (String param : params) {
+            dae.append("<param name=\"").append(param).append("\" type=\"float\"/>");
+        }
+        dae.append("</accessor></technique_common>\n");
+        dae.append("</source>\n");
+    }
+
+    @Override
+    public void setUp(int size) throws Exception {
+        int quads = Math.max(1, size / 2);
+        int columns = (int) Math.ceil(Math.sqrt(quads));
+        int rows = (quads + columns - 1) / columns;
+
+        float[] positions = new float[(columns + 1) * (rows + 1) * 3];
+        float[] texcoords = new float[(columns + 1) * (rows + 1) * 2];
+        for (int y = 0; y <= rows; ++y) {
+            for (int x = 0; x <= columns; ++x) {
+                int i = y * (columns + 1) + x;
+                positions[i * 3 + 0] = x;
+                positions[i * 3 + 1] = y;
+                positions[i * 3 + 2] = (float) Math.sin(x * 0.1) * (float) Math.cos(y * 0.1);
+                texcoords[i * 2 + 0] = x / (float) columns;
+                texcoords[i * 2 + 1] = y / (float) rows;
+            }
+        }
+
+        StringBuilder dae = new StringBuilder();
+        dae.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+        dae.append("<COLLADA xmlns=\"http://www.collada.org/2005/11/COLLADASchema\" version=\"1.4.1\">\n");
+        dae.append("<asset><unit name=\"meter\" meter=\"1\"/><up_axis>Y_UP</up_axis></asset>\n");
+        dae.append("<library_geometries><geometry id=\"grid-mesh\" name=\"grid\"><mesh>\n");
+        appendSource(dae, "grid-positions", positions, "X", "Y", "Z");
+        appendSource(dae, "grid-normals", new float[] { 0, 0, 1 }, "X", "Y", "Z");
+        appendSource(dae, "grid-texcoords", texcoords, "S", "T");
+        dae.append("<vertices id=\"grid-vertices\"><input semantic=\"POSITION\" source=\"#grid-positions\"/></vertices>\n");
+        dae.append("<polylist count=\"").append(quads * 2).append("\">\n");
+        dae.append("<input semantic=\"VERTEX\" source=\"#grid-vertices\" offset=\"0\"/>\n");
+        dae.append("<input semantic=\"NORMAL\" source=\"#grid-normals\" offset=\"1\"/>\n");
+        dae.append("<input semantic=\"TEXCOORD\" source=\"#grid-texcoords\" offset=\"2\" set=\"0\"/>\n");
+        dae.append("<vcount>");
+        for (int i = 0; i < quads * 2; ++i) {
+            dae.append("3 ");
+        }
+        dae.append("</vcount>\n<p>");
+        for (int q = 0; q < quads; ++q) {
+            int x = q % columns;
+            int y = q / columns;
+            int i0 = y * (columns + 1) + x;
+            int i1 = i0 + 1;
+            int i2 = i0 + columns + 1;
+            int i3 = i2 + 1;
+            for (int i : new int[] { i0, i1, i3, i0, i3, i2 }) {
+                dae.append(i).append(" 0 ").append(i).append(' ');
+            }
+        }
+        dae.append("</p>\n</polylist>\n");
+        dae.append("</mesh></geometry></library_geometries>\n");
+        dae.append("<library_visual_scenes><visual_scene id=\"Scene\" name=\"Scene\">\n");
+        dae.append("<node id=\"grid\" name=\"grid\" type=\"NODE\"><matrix sid=\"transform\">1 0 0 0 0 1 0 0 0 0 1 0 0 0 0 1</matrix><instance_geometry url=\"#grid-mesh\"/></node>\n");
+        dae.append("</visual_scene></library_visual_scenes>\n");
+        dae.append("<scene><instance_visual_scene url=\"#Scene\"/></scene>\n");
+        dae.append("</COLLADA>\n");
+        this.dae = dae.toString().getBytes("UTF-8");
+    }
+
+    @Override
+    public Object run() throws Exception {
+        Rig.MeshSet.Builder meshSet = Rig.MeshSet.newBuilder();
+        ColladaUtil.loadMesh(new ByteArrayInputStream(dae), meshSet, true);
+        return meshSet.build();
+    }
+
+    @Override
+    public void tearDown() {
+        dae = null;
+    }
+}
@@ -0,0 +1,131 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import com.dynamo.bob.ClassLoaderScanner;
+import com.dynamo.bob.CompileExceptionError;
+import com.dynamo.bob.NullProgress;
+import com.dynamo.bob.Project;
+import com.dynamo.bob.TaskResult;
+import com.dynamo.bob.test.util.MockFileSystem;
+
+/**
+ * Cleans and builds a project with a tree of collections of N game object and
+ * collection instances in total, through Project.build, so that task creation
+ * and scheduling are measured together with the builders.
+ */
+public class CollectionBenchmark extends Benchmark {
+
+    private static final int INSTANCES_PER_COLLECTION = 8;
+    private static final int COLLECTIONS_PER_COLLECTION = 3;
+    private static final int GAME_OBJECT_COUNT = 64;
+
+    private Project project;
+
+    @Override
+    public String getName() {
+        return "collection";
+    }
+
+    @Override
+    public String getSizeUnit() {
+        return "nodes";
+    }
+
+    @Override
+    public int[] getDefaultSizes() {
+        return new int[] { 100, 1000, 10000 };
+    }
+
+    private static void addInstance(StringBuilder src, String id, String prototype, int index) {
+        src.append("instances {\n");
+        src.append("  id: \"").append(id).append("\"\n");
+        src.append("  prototype: \"").append(prototype).append("\"\n");
+        src.append("  position: { x: ").append(index).append(" y: 0 z: 0 }\n");
+        src.append("}\n");
+    }
+
+    private static void addCollectionInstance(StringBuilder src, String id, String collection) {
+        src.append("collection_instances {\n");
+        src.append("  id: \"").append(id).append("\"\n");
+        src.append("  collection: \"").append(collection).append("\"\n");
+        src.append("}\n");
+    }
+
+    @Override
+    public void setUp(int size) throws Exception {
+        MockFileSystem fileSystem = new MockFileSystem();
+        fileSystem.setBuildDirectory("");
+        project = new Project(fileSystem);
+        project.setOption("max-cpu-threads", "1");
+        ClassLoaderScanner scanner = new ClassLoaderScanner();
+        project.scan(scanner, "com.dynamo.bob");
+        project.scan(scanner, "com.dynamo.bob.pipeline");
+
+        List<String> inputs = new ArrayList<String>();
+        for (int i = 0; i < GAME_OBJECT_COUNT; ++i) {
+            String path = String.format("/go/go%d.go", i);
+            fileSystem.addFile(path, new byte[0]);
+            inputs.add(path);
+        }
+
+        // Collections are created breadth first, until there are enough nodes
+        Deque<StringBuilder> pending = new ArrayDeque<StringBuilder>();
+        List<StringBuilder> collections = new ArrayList<StringBuilder>();
+        StringBuilder root = new StringBuilder("name: \"main\"\n");
+        pending.add(root);
+        collections.add(root);
+        int nodes = 0;
+        while (nodes < size && !pending.isEmpty()) {
+            StringBuilder src = pending.remove();
+            for (int i = 0; i < INSTANCES_PER_COLLECTION && nodes < size; ++i, ++nodes) {
+                addInstance(src, String.format("go%d", i), String.format("/go/go%d.go", nodes % GAME_OBJECT_COUNT), i);
+            }
+            for (int i = 0; i < COLLECTIONS_PER_COLLECTION && nodes < size; ++i, ++nodes) {
+                StringBuilder child = new StringBuilder(String.format("name: \"collection%d\"\n", collections.size()));
+                addCollectionInstance(src, String.format("collection%d", i), String.format("/collections/collection%d.collection", collections.size()));
+                pending.add(child);
+                collections.add(child);
+            }
+        }
+        for (int i = 0; i < collections.size(); ++i) {
+            String path = i == 0 ? "/main.collection" : String.format("/collections/collection%d.collection", i);
+            fileSystem.addFile(path, collections.get(i).toString().getBytes());
+            inputs.add(path);
+        }
+        project.setInputs(inputs);
+    }
+
+    @Override
+    public Object run() throws Exception {
+        List<TaskResult> results = project.build(new NullProgress(), "clean", "build");
+        for (TaskResult result : results) {
+            if (!result.isOk()) {
+                throw new CompileExceptionError(result.getTask().getInputs().get(0), result.getLineNumber(), result.getMessage());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void tearDown() {
+        project.dispose();
+        project = null;
+    }
+}
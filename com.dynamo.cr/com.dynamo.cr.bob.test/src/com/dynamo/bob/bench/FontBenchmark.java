@@ -0,0 +1,100 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.awt.Font;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import com.dynamo.bob.font.Fontc;
+import com.dynamo.bob.font.Fontc.FontResourceResolver;
+import com.dynamo.render.proto.Font.FontDesc;
+
+/**
+ * Compiles a TTF font with N glyphs, picked from the glyphs of DroidSansJapanese.ttf,
+ * with an outline and a shadow.
+ */
+public class FontBenchmark extends Benchmark {
+
+    private static final String FONT = "/com/dynamo/bob/test/util/DroidSansJapanese.ttf";
+
+    private byte[] fontData;
+    private FontDesc fontDesc;
+
+    @Override
+    public String getName() {
+        return "font";
+    }
+
+    @Override
+    public String getSizeUnit() {
+        return "glyphs";
+    }
+
+    @Override
+    public int[] getDefaultSizes() {
+        return new int[] { 128, 1024, 4096 };
+    }
+
+    @Override
+    public void setUp(int size) throws Exception {
+        InputStream is = getClass().getResourceAsStream(FONT);
+        try {
+            fontData = IOUtils.toByteArray(is);
+        } finally {
+            is.close();
+        }
+
+        // The default characters are always included, the rest are extra characters
+        Font font = Font.createFont(Font.TRUETYPE_FONT, new ByteArrayInputStream(fontData));
+        StringBuilder extraCharacters = new StringBuilder();
+        int count = 127 - 32;
+        for (int c = 0xa0; count < size && c < 0xffff; ++c) {
+            if (font.canDisplay(c)) {
+                extraCharacters.appendCodePoint(c);
+                ++count;
+            }
+        }
+
+        fontDesc = FontDesc.newBuilder()
+            .setFont("DroidSansJapanese.ttf")
+            .setMaterial("font.material")
+            .setSize(32)
+            .setOutlineWidth(2)
+            .setShadowAlpha(1)
+            .setShadowBlur(2)
+            .setExtraCharacters(extraCharacters.toString())
+            .build();
+    }
+
+    @Override
+    public Object run() throws Exception {
+        Fontc fontc = new Fontc();
+        fontc.compile(new ByteArrayInputStream(fontData), fontDesc, false, new FontResourceResolver() {
+            @Override
+            public InputStream getResource(String resourceName) throws FileNotFoundException {
+                throw new FileNotFoundException(resourceName);
+            }
+        });
+        return fontc.getFontMap();
+    }
+
+    @Override
+    public void tearDown() {
+        fontData = null;
+    }
+}
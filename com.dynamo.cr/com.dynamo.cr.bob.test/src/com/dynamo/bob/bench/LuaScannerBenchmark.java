@@ -0,0 +1,75 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.util.List;
+
+import com.dynamo.bob.pipeline.LuaScanner;
+
+/**
+ * Scans a generated Lua data table of N entries, about 75 bytes each, for
+ * requires and properties, and strips the properties. The time should grow
+ * linearly with the size of the source.
+ */
+public class LuaScannerBenchmark extends Benchmark {
+
+    private String source;
+
+    @Override
+    public String getName() {
+        return "lua_scanner";
+    }
+
+    @Override
+    public String getSizeUnit() {
+        return "table entries";
+    }
+
+    @Override
+    public int[] getDefaultSizes() {
+        return new int[] { 1000, 10000, 100000 };
+    }
+
+    @Override
+    public void setUp(int size) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("local util = require \"shared.util\"\n");
+        sb.append("go.property(\"speed\", 1)\n");
+        sb.append("\n");
+        sb.append("--[[\n");
+        sb.append("    Generated data, do not edit\n");
+        sb.append("--]]\n");
+        sb.append("local data = {\n");
+        for (int i = 0; i < size; ++i) {
+            sb.append(String.format("    { id = %d, name = \"item_%d\", pos = { %d.5, 2.5, 0 } }, -- entry\n", i, i, i));
+        }
+        sb.append("}\n");
+        sb.append("\n");
+        sb.append("return data\n");
+        source = sb.toString();
+    }
+
+    @Override
+    public Object run() throws Exception {
+        List<String> modules = LuaScanner.scan(source);
+        List<LuaScanner.Property> properties = LuaScanner.scanProperties(source);
+        String stripped = LuaScanner.stripProperties(source);
+        return modules.size() + properties.size() + stripped.length();
+    }
+
+    @Override
+    public void tearDown() {
+        source = null;
+    }
+}
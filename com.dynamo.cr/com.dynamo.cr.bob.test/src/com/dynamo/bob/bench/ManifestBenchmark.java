@@ -0,0 +1,122 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import com.dynamo.bob.archive.ManifestBuilder;
+import com.dynamo.bob.pipeline.ResourceNode;
+import com.dynamo.liveupdate.proto.Manifest.HashAlgorithm;
+import com.dynamo.liveupdate.proto.Manifest.ResourceEntryFlag;
+
+/**
+ * Builds the manifest of a resource tree of N nodes, including the parent
+ * collections of each entry.
+ */
+public class ManifestBenchmark extends Benchmark {
+
+    private ResourceNode root;
+    private Set<String> paths;
+
+    // Builds a tree of collections containing game objects, scripts shared
+    // between game objects and collection proxies to sub collections.
+    static ResourceNode createTree(int nodeCount, Set<String> paths) {
+        Random random = new Random(nodeCount);
+        ResourceNode root = new ResourceNode("<Anonymous Root>", "<Anonymous Root>");
+        Deque<ResourceNode> collections = new ArrayDeque<ResourceNode>();
+        ResourceNode main = new ResourceNode("/main/main.collectionc", "");
+        root.addChild(main);
+        collections.add(main);
+        int count = 2;
+        int collectionIndex = 0;
+        int goIndex = 0;
+        while (count < nodeCount && !collections.isEmpty()) {
+            ResourceNode collection = collections.remove();
+            int goCount = 4 + random.nextInt(12);
+            for (int i = 0; i < goCount && count < nodeCount; ++i) {
+                ResourceNode go = new ResourceNode(String.format("/go/go%d.goc", goIndex++), "");
+                collection.addChild(go);
+                go.addChild(new ResourceNode(String.format("/scripts/script%d.scriptc", random.nextInt(1 + nodeCount / 50)), ""));
+                go.addChild(new ResourceNode(String.format("/textures/texture%d.texturec", random.nextInt(1 + nodeCount / 20)), ""));
+                count += 3;
+                if (random.nextInt(4) == 0) {
+                    String name = String.format("/levels/level%d", ++collectionIndex);
+                    ResourceNode proxy = new ResourceNode(name + ".collectionproxyc", "");
+                    ResourceNode subCollection = new ResourceNode(name + ".collectionc", "");
+                    go.addChild(proxy);
+                    proxy.addChild(subCollection);
+                    collections.add(subCollection);
+                    count += 2;
+                }
+            }
+            if (collections.isEmpty()) {
+                collections.add(collection);
+            }
+        }
+
+        Deque<ResourceNode> queue = new ArrayDeque<ResourceNode>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            ResourceNode current = queue.remove();
+            if (current != root) {
+                paths.add(current.relativeFilepath);
+            }
+            queue.addAll(current.getChildren());
+        }
+        return root;
+    }
+
+    @Override
+    public String getName() {
+        return "manifest";
+    }
+
+    @Override
+    public String getSizeUnit() {
+        return "nodes";
+    }
+
+    @Override
+    public int[] getDefaultSizes() {
+        return new int[] { 1000, 10000, 100000 };
+    }
+
+    @Override
+    public void setUp(int size) throws Exception {
+        paths = new LinkedHashSet<String>();
+        root = createTree(size, paths);
+    }
+
+    @Override
+    public Object run() throws Exception {
+        ManifestBuilder manifestBuilder = new ManifestBuilder();
+        manifestBuilder.setResourceHashAlgorithm(HashAlgorithm.HASH_SHA1);
+        manifestBuilder.setProjectIdentifier("benchmark");
+        manifestBuilder.setDependencies(root);
+        for (String path : paths) {
+            manifestBuilder.addResourceEntry(path, path.getBytes(), ResourceEntryFlag.BUNDLED.getNumber());
+        }
+        return manifestBuilder.buildManifestData();
+    }
+
+    @Override
+    public void tearDown() {
+        root = null;
+        paths = null;
+    }
+}
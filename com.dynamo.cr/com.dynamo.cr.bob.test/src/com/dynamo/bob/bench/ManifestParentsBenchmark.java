@@ -0,0 +1,75 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.dynamo.bob.archive.ManifestBuilder;
+import com.dynamo.bob.pipeline.ResourceNode;
+import com.dynamo.liveupdate.proto.Manifest.HashAlgorithm;
+import com.dynamo.liveupdate.proto.Manifest.ResourceEntryFlag;
+
+/**
+ * Looks up the parent collections of every resource in the tree of
+ * ManifestBenchmark, with N nodes.
+ */
+public class ManifestParentsBenchmark extends Benchmark {
+
+    private Set<String> paths;
+    private ManifestBuilder manifestBuilder;
+
+    @Override
+    public String getName() {
+        return "manifest-parents";
+    }
+
+    @Override
+    public String getSizeUnit() {
+        return "nodes";
+    }
+
+    @Override
+    public int[] getDefaultSizes() {
+        return new int[] { 10000, 50000, 200000 };
+    }
+
+    @Override
+    public void setUp(int size) throws Exception {
+        paths = new LinkedHashSet<String>();
+        ResourceNode root = ManifestBenchmark.createTree(size, paths);
+        manifestBuilder = new ManifestBuilder();
+        manifestBuilder.setResourceHashAlgorithm(HashAlgorithm.HASH_SHA1);
+        manifestBuilder.setProjectIdentifier("benchmark");
+        manifestBuilder.setDependencies(root);
+        for (String path : paths) {
+            manifestBuilder.addResourceEntry(path, path.getBytes(), ResourceEntryFlag.BUNDLED.getNumber());
+        }
+    }
+
+    @Override
+    public Object run() throws Exception {
+        int chainCount = 0;
+        for (String path : paths) {
+            chainCount += manifestBuilder.getParentCollections(path).size();
+        }
+        return chainCount;
+    }
+
+    @Override
+    public void tearDown() {
+        paths = null;
+        manifestBuilder = null;
+    }
+}
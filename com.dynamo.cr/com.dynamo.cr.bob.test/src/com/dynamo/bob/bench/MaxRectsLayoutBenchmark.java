@@ -0,0 +1,82 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.dynamo.bob.textureset.MaxRectsLayoutStrategy;
+import com.dynamo.bob.textureset.TextureSetLayout.Rect;
+
+/**
+ * Packs N rects of random sizes with MaxRectsLayoutStrategy, with padding and
+ * rotation, on the calling thread.
+ */
+public class MaxRectsLayoutBenchmark extends Benchmark {
+
+    private List<Rect> rects;
+    private MaxRectsLayoutStrategy.Settings settings;
+
+    @Override
+    public String getName() {
+        return "maxrects";
+    }
+
+    @Override
+    public String getSizeUnit() {
+        return "rects";
+    }
+
+    @Override
+    public int[] getDefaultSizes() {
+        return new int[] { 64, 512, 2000 };
+    }
+
+    @Override
+    public void setUp(int size) throws Exception {
+        Random random = new Random(size);
+        rects = new ArrayList<Rect>(size);
+        int area = 0;
+        int maxLength = 0;
+        for (int i = 0; i < size; ++i) {
+            Rect rect = new Rect(String.format("%d", i), i, 1 + random.nextInt(64), 1 + random.nextInt(64));
+            area += rect.area();
+            maxLength = Math.max(maxLength, Math.max(rect.width, rect.height));
+            rects.add(rect);
+        }
+        int maxPageSize = Integer.highestOneBit(Math.max((int) Math.sqrt(area), maxLength) - 1) << 1;
+
+        settings = new MaxRectsLayoutStrategy.Settings();
+        settings.maxPageWidth = maxPageSize;
+        settings.maxPageHeight = maxPageSize;
+        settings.minPageWidth = 16;
+        settings.minPageHeight = 16;
+        settings.paddingX = 2;
+        settings.paddingY = 2;
+        settings.rotation = true;
+        settings.square = false;
+        settings.threadCount = 1;
+    }
+
+    @Override
+    public Object run() throws Exception {
+        return new MaxRectsLayoutStrategy(settings).createLayout(rects);
+    }
+
+    @Override
+    public void tearDown() {
+        rects = null;
+    }
+}
@@ -0,0 +1,96 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.dynamo.bob.textureset.TextureSetGenerator;
+import com.dynamo.bob.textureset.TextureSetGenerator.AnimIterator;
+import com.dynamo.bob.textureset.TextureSetGenerator.TextureSetResult;
+import com.dynamo.bob.textureset.test.TextureSetGeneratorTest.MappedAnimDesc;
+import com.dynamo.bob.textureset.test.TextureSetGeneratorTest.MappedAnimIterator;
+import com.dynamo.tile.proto.Tile.Playback;
+
+/**
+ * Generates an atlas of N sprites of random sizes, with trimmed sprites, padding
+ * and extruded borders, and one animation per 8 sprites. The layout runs on the
+ * calling thread, so that its allocations are measured.
+ */
+public class TextureSetBenchmark extends Benchmark {
+
+    private List<BufferedImage> images;
+    private List<Integer> hullSizes;
+    private List<String> ids;
+    private List<MappedAnimDesc> animations;
+
+    @Override
+    public String getName() {
+        return "textureset";
+    }
+
+    @Override
+    public String getSizeUnit() {
+        return "sprites";
+    }
+
+    @Override
+    public int[] getDefaultSizes() {
+        return new int[] { 16, 128, 512 };
+    }
+
+    @Override
+    public void setUp(int size) throws Exception {
+        Random random = new Random(size);
+        images = new ArrayList<BufferedImage>(size);
+        hullSizes = new ArrayList<Integer>(size);
+        ids = new ArrayList<String>(size);
+        animations = new ArrayList<MappedAnimDesc>();
+        for (int i = 0; i < size; ++i) {
+            int width = 8 + random.nextInt(56);
+            int height = 8 + random.nextInt(56);
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+            // An opaque ellipse, so that the hull differs from the rect
+            for (int y = 0; y < height; ++y) {
+                for (int x = 0; x < width; ++x) {
+                    double dx = (x - width / 2.0) / (width / 2.0);
+                    double dy = (y - height / 2.0) / (height / 2.0);
+                    if (dx * dx + dy * dy <= 1.0) {
+                        image.setRGB(x, y, 0xff000000 | random.nextInt(0xffffff));
+                    }
+                }
+            }
+            images.add(image);
+            hullSizes.add(i % 2 == 0 ? 8 : 0);
+            ids.add(String.format("sprite%d", i));
+        }
+        for (int i = 0; i < size; i += 8) {
+            animations.add(new MappedAnimDesc(String.format("anim%d", i / 8), ids.subList(i, Math.min(size, i + 8)), Playback.PLAYBACK_LOOP_FORWARD, 30, false, false));
+        }
+    }
+
+    @Override
+    public Object run() throws Exception {
+        AnimIterator iterator = new MappedAnimIterator(animations, ids);
+        TextureSetResult result = TextureSetGenerator.generate(images, hullSizes, ids, iterator, 2, 1, 1, true, false, null);
+        return result.image;
+    }
+
+    @Override
+    public void tearDown() {
+        images = null;
+    }
+}
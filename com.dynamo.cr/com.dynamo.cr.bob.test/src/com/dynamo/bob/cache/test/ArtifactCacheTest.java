@@ -0,0 +1,130 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.cache.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dynamo.bob.cache.ArtifactCache;
+import com.dynamo.bob.cache.ArtifactCache.Artifact;
+
+public class ArtifactCacheTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("artifact-cache").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private static String key(String name) {
+        return ArtifactCache.createKey("1.0", name.getBytes(), Arrays.asList("/" + name + ".out"));
+    }
+
+    private static List<Artifact> artifacts(String name, int size) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) name.charAt(0));
+        return Arrays.asList(new Artifact("/" + name + ".out", 1, content), new Artifact("/" + name + ".extra", 0, new byte[0]));
+    }
+
+    @Test
+    public void testKey() throws Exception {
+        byte[] signature = new byte[] { 1, 2, 3 };
+        String key = ArtifactCache.createKey("1.0", signature, Arrays.asList("/a.out"));
+        assertEquals(key, ArtifactCache.createKey("1.0", signature, Arrays.asList("/a.out")));
+        assertFalse(key.equals(ArtifactCache.createKey("1.1", signature, Arrays.asList("/a.out"))));
+        assertFalse(key.equals(ArtifactCache.createKey("1.0", signature, Arrays.asList("/b.out"))));
+        assertFalse(key.equals(ArtifactCache.createKey("1.0", new byte[] { 1, 2 }, Arrays.asList("/a.out"))));
+    }
+
+    @Test
+    public void testPutGet() throws Exception {
+        ArtifactCache cache = new ArtifactCache(directory, ArtifactCache.DEFAULT_MAX_SIZE);
+        assertNull(cache.get(key("a")));
+        cache.put(key("a"), artifacts("a", 100));
+
+        // A new instance shares the entries on disk
+        cache = new ArtifactCache(directory, ArtifactCache.DEFAULT_MAX_SIZE);
+        List<Artifact> artifacts = cache.get(key("a"));
+        assertNotNull(artifacts);
+        assertEquals(2, artifacts.size());
+        assertEquals("/a.out", artifacts.get(0).getPath());
+        assertEquals(1, artifacts.get(0).getFlags());
+        assertArrayEquals(artifacts("a", 100).get(0).getContent(), artifacts.get(0).getContent());
+        assertEquals("/a.extra", artifacts.get(1).getPath());
+        assertEquals(0, artifacts.get(1).getContent().length);
+
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        assertEquals(1, cache.getEntryCount());
+
+        // Replace
+        cache.put(key("a"), artifacts("a", 50));
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(50, cache.get(key("a")).get(0).getContent().length);
+    }
+
+    @Test
+    public void testCorruptEntry() throws Exception {
+        ArtifactCache cache = new ArtifactCache(directory, ArtifactCache.DEFAULT_MAX_SIZE);
+        cache.put(key("a"), artifacts("a", 100));
+        String key = key("a");
+        File file = new File(new File(directory, key.substring(0, 2)), key);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() / 2);
+        raf.close();
+
+        assertNull(cache.get(key));
+        assertEquals(1, cache.getMisses());
+        assertFalse(file.exists());
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ArtifactCache cache = new ArtifactCache(directory, 3000);
+        cache.put(key("a"), artifacts("a", 1000));
+        cache.put(key("b"), artifacts("b", 1000));
+        // Make "a" the most recently used entry
+        new File(new File(directory, key("a").substring(0, 2)), key("a")).setLastModified(System.currentTimeMillis() + 10000);
+        cache.put(key("c"), artifacts("c", 1000));
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getEntryCount());
+        assertTrue(cache.getSize() <= 3000);
+        assertNotNull(cache.get(key("a")));
+        assertNull(cache.get(key("b")));
+        assertNotNull(cache.get(key("c")));
+        assertEquals(3, cache.getPuts());
+    }
+}
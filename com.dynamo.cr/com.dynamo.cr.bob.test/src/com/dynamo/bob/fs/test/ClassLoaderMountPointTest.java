@@ -12,10 +12,12 @@
 
 package com.dynamo.bob.fs.test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -50,6 +52,13 @@ public class ClassLoaderMountPointTest {
         assertEquals("Unexpected resource contents", "include", new String(resource.getContent()));
     }
 
+    @Test
+    public void testSha1() throws Exception {
+        IResource resource = this.mp.get("com/dynamo/bob/fs/test/included_resource.txt");
+        MessageDigest sha1 = MessageDigest.getInstance("SHA1");
+        assertArrayEquals(sha1.digest("include".getBytes()), resource.sha1());
+    }
+
     @Test
     public void testExclusion() throws Exception {
         assertFalse(mp.get("com/dynamo/bob/fs/test/excluded_resource.txt") != null);
@@ -12,13 +12,19 @@
 
 package com.dynamo.bob.fs.test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -28,6 +34,8 @@ import org.junit.Test;
 import com.dynamo.bob.fs.DefaultFileSystem;
 import com.dynamo.bob.fs.FileSystemWalker;
 import com.dynamo.bob.fs.IFileSystem.IWalker;
+import com.dynamo.bob.fs.IResource;
+import com.dynamo.bob.fs.ZipMountPoint;
 import com.dynamo.bob.test.TestLibrariesRule;
 
 public class FileSystemTest {
@@ -60,6 +68,53 @@ public class FileSystemTest {
         assertTrue(results.contains("test_lib4.zip"));
     }
 
+    @Test
+    public void testSha1() throws Exception {
+        File root = Files.createTempDirectory(null).toFile();
+        try {
+            DefaultFileSystem fileSystem = new DefaultFileSystem();
+            fileSystem.setRootDirectory(root.getAbsolutePath());
+            fileSystem.setBuildDirectory("build");
+            fileSystem.loadCache();
+
+            File file = new File(root, "a.txt");
+            FileUtils.writeStringToFile(file, "abc");
+            IResource resource = fileSystem.get("a.txt");
+            assertArrayEquals(DigestUtils.sha1("abc"), resource.sha1());
+
+            // A change of size is detected even if the modification time is the same
+            long lastModified = file.lastModified();
+            FileUtils.writeStringToFile(file, "abcd");
+            file.setLastModified(lastModified);
+            assertArrayEquals(DigestUtils.sha1("abcd"), resource.sha1());
+
+            // The cache is valid after saving and loading
+            fileSystem.saveCache();
+            DefaultFileSystem loaded = new DefaultFileSystem();
+            loaded.setRootDirectory(root.getAbsolutePath());
+            loaded.setBuildDirectory("build");
+            loaded.loadCache();
+            assertArrayEquals(DigestUtils.sha1("abcd"), loaded.get("a.txt").sha1());
+        } finally {
+            FileUtils.deleteDirectory(root);
+        }
+    }
+
+    @Test
+    public void testZipEntrySha1() throws Exception {
+        ZipMountPoint mp = new ZipMountPoint(this.fileSystem, FilenameUtils.concat(testLibs.getServerLocation(), "test_lib1.zip"));
+        mp.mount();
+        try {
+            IResource resource = mp.get("test_lib1/file1.in");
+            assertNotNull(resource);
+            assertArrayEquals(DigestUtils.sha1(resource.getContent()), resource.sha1());
+            // Cached by crc and size
+            assertArrayEquals(DigestUtils.sha1(resource.getContent()), resource.sha1());
+        } finally {
+            mp.unmount();
+        }
+    }
+
     private static class ZipWalker extends FileSystemWalker {
         @Override
         public void handleFile(String path, Collection<String> results) {
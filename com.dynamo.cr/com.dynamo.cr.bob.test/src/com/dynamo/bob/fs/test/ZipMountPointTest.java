@@ -13,10 +13,15 @@
 package com.dynamo.bob.fs.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.After;
 import org.junit.Before;
@@ -72,6 +77,61 @@ public class ZipMountPointTest {
         assertTrue(results.contains("test_lib1/file1.in"));
     }
 
+    @Test
+    public void testWalkerScoped() throws Exception {
+        FileSystemWalker walker = new FileSystemWalker();
+        Collection<String> results = new ArrayList<String>();
+        this.mp.walk("test_lib1", walker, results);
+        assertEquals(1, results.size());
+        assertTrue(results.contains("test_lib1/file1.in"));
+
+        results.clear();
+        this.mp.walk("test_lib2", walker, results);
+        assertEquals(0, results.size());
+    }
+
+    @Test
+    public void testWalkerNonProject() throws Exception {
+        // Archives that aren't projects, e.g. the test jar, store their entries without a leading slash
+        File jar = File.createTempFile("test_walker", ".jar");
+        jar.deleteOnExit();
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar));
+        for (String name : new String[] {"test/", "test/a.txt", "test/sub/b.txt", "testextension/c.txt", "other/d.txt"}) {
+            zos.putNextEntry(new ZipEntry(name));
+            zos.closeEntry();
+        }
+        zos.close();
+
+        ZipMountPoint mp = new ZipMountPoint(null, jar.getAbsolutePath(), false);
+        mp.mount();
+        FileSystemWalker walker = new FileSystemWalker();
+        Collection<String> results = new ArrayList<String>();
+        mp.walk("/test", walker, results);
+        assertTrue(results.contains("test/a.txt"));
+        assertTrue(results.contains("test/sub/b.txt"));
+        assertFalse(results.contains("other/d.txt"));
+
+        results.clear();
+        mp.walk("/testextension", walker, results);
+        assertEquals(1, results.size());
+        assertTrue(results.contains("testextension/c.txt"));
+
+        results.clear();
+        mp.walk(".", walker, results);
+        assertEquals(4, results.size());
+        mp.unmount();
+    }
+
+    @Test
+    public void testPaths() throws Exception {
+        Collection<String> paths = this.mp.getPaths();
+        assertTrue(paths.contains("test_lib1/file1.in"));
+        assertFalse(paths.contains("game.project"));
+        for (String path : paths) {
+            assertTrue(this.mp.get(path) != null);
+        }
+    }
+
     @Test
     public void testWalkerWithSubdir() throws Exception {
     	
@@ -26,6 +26,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
+import javax.vecmath.AxisAngle4d;
 import javax.vecmath.Point4i;
 import javax.vecmath.Quat4d;
 import javax.vecmath.Tuple3d;
@@ -37,6 +38,7 @@ import javax.vecmath.Vector4f;
 
 import org.junit.Test;
 
+import com.dynamo.bob.util.KeyframeReduction;
 import com.dynamo.bob.util.MathUtil;
 import com.dynamo.bob.util.MurmurHash;
 
@@ -906,6 +908,98 @@ public class ColladaUtilTest {
         }
     }
 
+    private static double[] sampleStride(List<Float> data, int components, int stride, int i) {
+        int m = i / stride;
+        double t = (i - m * stride) / (double) stride;
+        double[] v = new double[components];
+        for (int c = 0; c < components; ++c) {
+            double a = data.get(m * components + c);
+            double b = data.get((m + 1) * components + c);
+            v[c] = a + (b - a) * t;
+        }
+        return v;
+    }
+
+    private static void assertReducedVectors(List<Float> expected, List<Float> actual, int stride, double tolerance) {
+        assertTrue(actual.size() <= expected.size());
+        for (int i = 0; i < expected.size() / 3 - 1; ++i) {
+            double[] v = sampleStride(actual, 3, stride, i);
+            double dx = v[0] - expected.get(i * 3);
+            double dy = v[1] - expected.get(i * 3 + 1);
+            double dz = v[2] - expected.get(i * 3 + 2);
+            assertTrue(Math.sqrt(dx * dx + dy * dy + dz * dz) <= tolerance + EPSILON);
+        }
+    }
+
+    private static void assertReducedRotations(List<Float> expected, List<Float> actual, int stride, double tolerance) {
+        assertTrue(actual.size() <= expected.size());
+        for (int i = 0; i < expected.size() / 4 - 1; ++i) {
+            int m = i / stride;
+            Quat4d q = new Quat4d();
+            q.interpolate(new Quat4d(actual.get(m * 4), actual.get(m * 4 + 1), actual.get(m * 4 + 2), actual.get(m * 4 + 3)),
+                    new Quat4d(actual.get(m * 4 + 4), actual.get(m * 4 + 5), actual.get(m * 4 + 6), actual.get(m * 4 + 7)),
+                    (i - m * stride) / (double) stride);
+            double dot = Math.abs(q.x * expected.get(i * 4) + q.y * expected.get(i * 4 + 1) + q.z * expected.get(i * 4 + 2) + q.w * expected.get(i * 4 + 3));
+            assertTrue(Math.toDegrees(2.0 * Math.acos(Math.min(1.0, dot))) <= tolerance + 0.01);
+        }
+    }
+
+    /*
+     * Test that reduced tracks reproduce the sampled tracks within the tolerances.
+     */
+    @Test
+    public void testKeyframeReduction() throws Exception {
+        Rig.AnimationSet.Builder animSetBuilder = Rig.AnimationSet.newBuilder();
+        ColladaUtil.loadAnimations(load("rotating_box.dae"), animSetBuilder, "", new ArrayList<String>());
+        Rig.AnimationSet.Builder reducedAnimSetBuilder = Rig.AnimationSet.newBuilder();
+        KeyframeReduction reduction = new KeyframeReduction(0.001, 0.1, 0.001);
+        ColladaUtil.loadAnimations(load("rotating_box.dae"), reducedAnimSetBuilder, "", new ArrayList<String>(), reduction);
+
+        RigAnimation animation = animSetBuilder.getAnimations(0);
+        RigAnimation reducedAnimation = reducedAnimSetBuilder.getAnimations(0);
+        assertEquals(animation.getTracksCount(), reducedAnimation.getTracksCount());
+        for (int i = 0; i < animation.getTracksCount(); ++i) {
+            Rig.AnimationTrack track = animation.getTracks(i);
+            Rig.AnimationTrack reducedTrack = reducedAnimation.getTracks(i);
+            assertEquals(track.getBoneIndex(), reducedTrack.getBoneIndex());
+            assertReducedVectors(track.getPositionsList(), reducedTrack.getPositionsList(), reducedTrack.getPositionStride(), 0.001);
+            assertReducedRotations(track.getRotationsList(), reducedTrack.getRotationsList(), reducedTrack.getRotationStride(), 0.1);
+            assertReducedVectors(track.getScaleList(), reducedTrack.getScaleList(), reducedTrack.getScaleStride(), 0.001);
+        }
+        assertTrue(reduction.getOutputSize() < reduction.getInputSize());
+    }
+
+    /*
+     * Test that constant and linear tracks are reduced to their end points.
+     */
+    @Test
+    public void testKeyframeReductionLinear() throws Exception {
+        Rig.AnimationTrack.Builder track = Rig.AnimationTrack.newBuilder();
+        track.setBoneIndex(0);
+        // 11 samples, followed by a duplicate of the last
+        for (int i = 0; i <= 11; ++i) {
+            int s = Math.min(i, 10);
+            track.addPositions(s * 0.5f).addPositions(1.0f).addPositions(-s * 0.25f);
+            track.addScale(1.0f).addScale(1.0f).addScale(1.0f);
+        }
+        // Not reconstructible by interpolation
+        for (int i = 0; i <= 11; ++i) {
+            Quat4d q = new Quat4d();
+            q.set(new AxisAngle4d(0, 0, 1, (i % 2) * Math.PI / 2.0));
+            track.addRotations((float) q.x).addRotations((float) q.y).addRotations((float) q.z).addRotations((float) q.w);
+        }
+
+        new KeyframeReduction(0.0, 0.0, 0.0).reduce(track);
+        assertEquals(10, track.getPositionStride());
+        assertEquals(9, track.getPositionsCount());
+        assertEquals(5.0f, track.getPositions(3), EPSILON);
+        assertEquals(5.0f, track.getPositions(6), EPSILON);
+        assertEquals(10, track.getScaleStride());
+        assertEquals(9, track.getScaleCount());
+        assertEquals(1, track.getRotationStride());
+        assertEquals(48, track.getRotationsCount());
+    }
+
     /*
      * Test collada file with scale applied on its skeleton.
      */
@@ -1052,6 +1146,34 @@ public class ColladaUtilTest {
         assertEquals(3, indices.get(5));
     }
 
+    private List<MeshVertexIndices> expandTriangles(Rig.Mesh mesh) {
+        ShortBuffer indices = mesh.getIndices().asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        List<MeshVertexIndices> result = new ArrayList<MeshVertexIndices>(indices.remaining());
+        while (indices.hasRemaining()) {
+            result.add(mesh.getVertices(indices.get() & 0xffff));
+        }
+        return result;
+    }
+
+    /*
+     * Tests that the optimized mesh describes the same triangles as the unoptimized mesh, with shared vertices
+     */
+    @Test
+    public void testOptimizedVertexList() throws Exception {
+        Rig.MeshSet.Builder meshSet = Rig.MeshSet.newBuilder();
+        ColladaUtil.loadMesh(load("chest_model.dae"), meshSet, false);
+        Rig.MeshSet.Builder optimizedMeshSet = Rig.MeshSet.newBuilder();
+        ColladaUtil.loadMesh(load("chest_model.dae"), optimizedMeshSet, true);
+
+        Rig.Mesh mesh = meshSet.getMeshAttachments(0);
+        Rig.Mesh optimizedMesh = optimizedMeshSet.getMeshAttachments(0);
+        assertEquals(mesh.getPositionIndicesCount(), mesh.getVerticesCount());
+        assertTrue(optimizedMesh.getVerticesCount() < mesh.getVerticesCount());
+        assertEquals(mesh.getPositionsList(), optimizedMesh.getPositionsList());
+        assertEquals(mesh.getWeightsList(), optimizedMesh.getWeightsList());
+        assertEquals(expandTriangles(mesh), expandTriangles(optimizedMesh));
+    }
+
     /*
      * TODO
      * Future tests:
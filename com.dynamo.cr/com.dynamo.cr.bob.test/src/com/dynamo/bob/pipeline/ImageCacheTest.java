@@ -0,0 +1,187 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.pipeline;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dynamo.bob.CompileExceptionError;
+import com.dynamo.bob.Project;
+import com.dynamo.bob.fs.IResource;
+import com.dynamo.bob.test.util.MockFileSystem;
+import com.dynamo.bob.textureset.TextureSetGenerator.PreparedImage;
+
+public class ImageCacheTest {
+
+    private MockFileSystem fileSystem;
+    private Project project;
+
+    @Before
+    public void setUp() throws Exception {
+        fileSystem = new MockFileSystem();
+        fileSystem.setBuildDirectory("");
+        project = new Project(fileSystem);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        project.dispose();
+    }
+
+    private static byte[] createPng(int width, int height, int seed) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                // Transparent border so that the hulls are not the full rect
+                int alpha = (x == 0 || y == 0) ? 0 : 255;
+                image.setRGB(x, y, (alpha << 24) | ((x * seed) & 0xff) << 16 | ((y * seed) & 0xff) << 8 | seed);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static int[] getPixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    @Test
+    public void testPrepareImages() throws Exception {
+        List<IResource> resources = new ArrayList<IResource>();
+        List<Integer> hullSizes = new ArrayList<Integer>();
+        for (int i = 0; i < 8; ++i) {
+            String path = String.format("/image%d.png", i);
+            fileSystem.addFile(path, createPng(8 + i * 3, 12 + i, i + 1));
+            resources.add(project.getResource(path));
+            hullSizes.add(i % 2 == 0 ? 8 : 0);
+        }
+
+        List<PreparedImage> sequential = AtlasUtil.prepareImages(resources, hullSizes, 2, 1, null, null);
+        ImageCache cache = new ImageCache();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<PreparedImage> parallel;
+        try {
+            parallel = AtlasUtil.prepareImages(resources, hullSizes, 2, 1, cache, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); ++i) {
+            PreparedImage expected = sequential.get(i);
+            PreparedImage actual = parallel.get(i);
+            assertEquals(expected.width, actual.width);
+            assertEquals(expected.height, actual.height);
+            assertEquals(expected.hullSize, actual.hullSize);
+            assertEquals(expected.hull, actual.hull);
+            assertArrayEquals(getPixels(expected.image), getPixels(actual.image));
+        }
+        assertEquals(8, cache.getEntryCount());
+        assertEquals(8, cache.getMisses());
+
+        // Decoded images are reused
+        AtlasUtil.prepareImages(resources, hullSizes, 0, 0, cache, null);
+        assertEquals(8, cache.getHits());
+    }
+
+    // Atlases prepared at the same time share the project workers
+    @Test
+    public void testPrepareImagesWorkerExecutor() throws Exception {
+        final List<IResource> resources = new ArrayList<IResource>();
+        final List<Integer> hullSizes = new ArrayList<Integer>();
+        for (int i = 0; i < 8; ++i) {
+            String path = String.format("/worker%d.png", i);
+            fileSystem.addFile(path, createPng(16, 16, i + 1));
+            resources.add(project.getResource(path));
+            hullSizes.add(0);
+        }
+
+        final ExecutorService workers = project.getWorkerExecutor();
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<List<PreparedImage>>> results = new ArrayList<Future<List<PreparedImage>>>();
+            for (int i = 0; i < 2; ++i) {
+                results.add(callers.submit(new Callable<List<PreparedImage>>() {
+                    @Override
+                    public List<PreparedImage> call() throws Exception {
+                        return AtlasUtil.prepareImages(resources, hullSizes, 0, 0, null, workers);
+                    }
+                }));
+            }
+            for (Future<List<PreparedImage>> result : results) {
+                assertEquals(8, result.get().size());
+            }
+        } finally {
+            callers.shutdown();
+        }
+        assertSame(workers, project.getWorkerExecutor());
+        assertFalse(workers.isShutdown());
+    }
+
+    @Test(expected = CompileExceptionError.class)
+    public void testInvalidImage() throws Exception {
+        fileSystem.addFile("/invalid.png", "not an image".getBytes());
+        List<IResource> resources = new ArrayList<IResource>();
+        List<Integer> hullSizes = new ArrayList<Integer>();
+        resources.add(project.getResource("/invalid.png"));
+        hullSizes.add(0);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            AtlasUtil.prepareImages(resources, hullSizes, 0, 0, project.getImageCache(), executor);
+        } finally {
+            executor.shutdown();
+            assertEquals(0, project.getImageCache().getEntryCount());
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        // Room for two 4x4 images
+        ImageCache cache = new ImageCache(128);
+        cache.put("a", new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB));
+        cache.put("b", new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB));
+        assertNotNull(cache.get("a"));
+        cache.put("c", new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB));
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(128, cache.getSize());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+
+        // Too large to be cached at all
+        cache.put("d", new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB));
+        assertNull(cache.get("d"));
+        assertEquals(2, cache.getEntryCount());
+    }
+}
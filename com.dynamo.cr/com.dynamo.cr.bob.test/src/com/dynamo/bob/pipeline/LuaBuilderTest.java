@@ -12,9 +12,21 @@
 
 package com.dynamo.bob.pipeline;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
 import com.dynamo.bob.CompileExceptionError;
@@ -91,4 +103,68 @@ public class LuaBuilderTest extends AbstractProtoBuilderTest {
             assertEquals(2, e.getLineNumber());
         }
     }
+
+    @Test
+    public void testSyntaxError() throws Exception {
+        StringBuilder src = new StringBuilder();
+        src.append("local a = 1\n");
+        src.append("\n");
+        src.append("function(\n");
+        try {
+            build("/test.script", src.toString());
+            assertTrue(false);
+        } catch (CompileExceptionError e) {
+            assertEquals(3, e.getLineNumber());
+        }
+    }
+
+    @Test
+    public void testCompileBatch() throws Exception {
+        LuaJITCompiler compiler = LuaJITCompiler.get("luajit-64", 1);
+        assertNotNull(compiler);
+        List<String> chunkNames = Arrays.asList("=/a.lua", "=/b.lua", "=/c.lua");
+        List<byte[]> sources = Arrays.asList("return 1".getBytes(), "function(".getBytes(), "local a = {}\nreturn a".getBytes());
+        List<LuaJITCompiler.Result> results = compiler.compile(chunkNames, sources);
+        assertEquals(3, results.size());
+        for (int i = 0; i < results.size(); ++i) {
+            LuaJITCompiler.Result single = compiler.compile(chunkNames.get(i), sources.get(i));
+            assertArrayEquals(single.getBytecode(), results.get(i).getBytecode());
+            assertEquals(single.getError(), results.get(i).getError());
+        }
+        assertNull(results.get(1).getBytecode());
+        assertTrue(results.get(1).getError().startsWith("luajit: /b.lua:1:"));
+    }
+
+    // Scripts compiled at the same time run on separate processes, up to the max
+    @Test
+    public void testCompileConcurrent() throws Exception {
+        final LuaJITCompiler compiler = LuaJITCompiler.get("luajit-64", 3);
+        assertNotNull(compiler);
+        final int count = 32;
+        List<byte[]> expected = new ArrayList<byte[]>(count);
+        for (int i = 0; i < count; ++i) {
+            expected.add(compiler.compile(String.format("=/s%d.lua", i), String.format("return %d", i).getBytes()).getBytecode());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> results = new ArrayList<Future<byte[]>>(count);
+            for (int i = 0; i < count; ++i) {
+                final int index = i;
+                results.add(executor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        return compiler.compile(String.format("=/s%d.lua", index), String.format("return %d", index).getBytes()).getBytecode();
+                    }
+                }));
+            }
+            for (int i = 0; i < count; ++i) {
+                assertArrayEquals(expected.get(i), results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(compiler.getProcessCount() <= 3);
+        assertFalse(compiler.hasFailed());
+    }
 }
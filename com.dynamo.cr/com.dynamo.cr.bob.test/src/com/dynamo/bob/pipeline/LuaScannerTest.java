@@ -93,6 +93,40 @@ public class LuaScannerTest {
         assertValidRequire("require ('foo.bar') --[[ some comment]]--", "foo.bar");
     }
 
+    @Test
+    public void testScannerLexer() throws Exception {
+        // Requires in strings and comments anywhere on a line are ignored
+        assertEquals(0, LuaScanner.scan("local a = 1 -- require \"foo\"").size());
+        assertEquals(0, LuaScanner.scan("local s = [[\nrequire \"foo\"\n]]").size());
+        assertEquals(0, LuaScanner.scan("--[==[\nrequire \"foo\"\n]==]").size());
+        assertEquals(0, LuaScanner.scan("local a = b.require(\"foo\")").size());
+        assertEquals(0, LuaScanner.scan("local a = require(\"foo\" .. b)").size());
+
+        // Also found when followed by more statements on the same line
+        assertValidRequire("local a = require \"foo\"; local b = 1", "foo");
+        assertValidRequire("local a = require(\"foo\"):new()", "foo");
+        assertValidRequire("#!/usr/bin/lua\nrequire\"foo\"", "foo");
+    }
+
+    @Test
+    public void testPropsLexer() throws Exception {
+        String source = "local a = 1 --[[ comment\n]] go.property(\"prop1\", 1)\n"
+                + "go.property(\"prop2\",\n    2)\n"
+                + "go.property(\"no_prop\", 3) local b = 1\n"
+                + "local s = [[\ngo.property(\"no_prop\", 4)\n]]\n";
+        List<Property> properties = LuaScanner.scanProperties(source);
+        assertEquals(2, properties.size());
+        assertProperty(properties, "prop1", new Double(1), 1);
+        assertProperty(properties, "prop2", new Double(2), 2);
+
+        // Properties and comments are stripped without changing the lines of the source
+        String stripped = LuaScanner.stripProperties(source);
+        assertEquals(source.split("\n", -1).length, stripped.split("\n", -1).length);
+        assertTrue(stripped.startsWith("local a = 1 \n"));
+        assertEquals(0, LuaScanner.scanProperties(stripped).size());
+        assertTrue(stripped.contains("go.property(\"no_prop\", 3) local b = 1"));
+    }
+
     private Property findProperty(List<Property> properties, String name) {
         for (Property p : properties) {
             if (p.name != null && p.name.equals(name)) {
@@ -0,0 +1,108 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dynamo.bob.CompileExceptionError;
+import com.dynamo.bob.Project;
+import com.dynamo.bob.fs.IResource;
+import com.dynamo.bob.test.util.MockFileSystem;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+
+public class ProtoCacheTest {
+
+    private MockFileSystem fileSystem;
+    private Project project;
+
+    @Before
+    public void setUp() throws Exception {
+        fileSystem = new MockFileSystem();
+        fileSystem.setBuildDirectory("");
+        project = new Project(fileSystem);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        project.dispose();
+    }
+
+    private FileDescriptorProto.Builder merge(String path) throws Exception {
+        FileDescriptorProto.Builder builder = FileDescriptorProto.newBuilder();
+        ProtoUtil.merge(project, project.getResource(path), builder);
+        return builder;
+    }
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        fileSystem.addFile("/test.proto_text", "name: \"a\" dependency: \"b\"".getBytes());
+        ProtoCache cache = project.getProtoCache();
+
+        FileDescriptorProto.Builder first = merge("/test.proto_text");
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        FileDescriptorProto.Builder second = merge("/test.proto_text");
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(first.build(), second.build());
+
+        // Modifying a merged builder does not affect the cached message
+        second.addDependency("c");
+        assertEquals(1, merge("/test.proto_text").getDependencyCount());
+
+        // New content is parsed again
+        IResource resource = project.getResource("/test.proto_text");
+        resource.setContent("name: \"changed\"".getBytes());
+        assertEquals("changed", merge("/test.proto_text").getName());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test(expected = CompileExceptionError.class)
+    public void testParseError() throws Exception {
+        fileSystem.addFile("/error.proto_text", "name: \"a".getBytes());
+        try {
+            merge("/error.proto_text");
+        } finally {
+            assertEquals(0, project.getProtoCache().getEntryCount());
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ProtoCache cache = new ProtoCache(100);
+        FileDescriptorProto message = FileDescriptorProto.newBuilder().setName("a").build();
+        cache.put("a", message, 60);
+        cache.put("b", message, 30);
+        // Touch "a" so that "b" is the least recently used entry
+        assertNotNull(cache.get("a"));
+        cache.put("c", message, 30);
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(90, cache.getSize());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+
+        // Too large to be cached at all
+        cache.put("d", message, 101);
+        assertNull(cache.get("d"));
+        assertEquals(2, cache.getEntryCount());
+    }
+}
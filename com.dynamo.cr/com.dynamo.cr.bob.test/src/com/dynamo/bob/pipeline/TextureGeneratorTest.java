@@ -743,4 +743,37 @@ public class TextureGeneratorTest {
     }
     */
 
+
+    @Test
+    public void testTextureCache() throws TextureGeneratorException, IOException {
+        // Two platforms asking for the same alternative, and one with a different max size
+        TextureProfile.Builder textureProfile = TextureProfile.newBuilder();
+        for (int maxTextureSize : new int[] { 0, 0, 64 }) {
+            PlatformProfile.Builder platformProfile = PlatformProfile.newBuilder();
+            TextureFormatAlternative.Builder textureFormatAlt1 = TextureFormatAlternative.newBuilder();
+            textureFormatAlt1.setFormat(TextureFormat.TEXTURE_FORMAT_RGBA);
+            textureFormatAlt1.setCompressionLevel(CompressionLevel.FAST);
+            platformProfile.setOs(PlatformProfile.OS.OS_ID_GENERIC);
+            platformProfile.addFormats(textureFormatAlt1.build());
+            platformProfile.setMipmaps(true);
+            platformProfile.setMaxTextureSize(maxTextureSize);
+            textureProfile.addPlatforms(platformProfile.build());
+        }
+        textureProfile.setName("Test Profile");
+
+        TextureCache cache = new TextureCache();
+        TextureImage texture = TextureGenerator.generate(getClass().getResourceAsStream("128_64_rgba.png"), textureProfile.build(), true, EnumSet.of(FlipAxis.FLIP_AXIS_Y), cache);
+        assertEquals(3, texture.getAlternativesCount());
+        assertEquals(texture.getAlternatives(0), texture.getAlternatives(1));
+        assertEquals(64, texture.getAlternatives(2).getWidth());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        // Same result as without a cache, and nothing is generated again
+        TextureImage uncached = TextureGenerator.generate(getClass().getResourceAsStream("128_64_rgba.png"), textureProfile.build(), true);
+        TextureImage cached = TextureGenerator.generate(getClass().getResourceAsStream("128_64_rgba.png"), textureProfile.build(), true, EnumSet.of(FlipAxis.FLIP_AXIS_Y), cache);
+        assertEquals(uncached, cached);
+        assertEquals(4, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
 }
@@ -270,6 +270,30 @@ public class JBobTest {
         assertThat(new String(arcOut.getContent()), is("AB"));
     }
 
+    @Test
+    public void testTaskOutputAsInputParallel() throws Exception {
+        project.setOption("max-cpu-threads", "4");
+        List<String> inputs = new ArrayList<String>();
+        StringBuilder expected = new StringBuilder();
+        fileSystem.addFile("test.proj", "".getBytes());
+        inputs.add("test.proj");
+        for (int i = 0; i < 64; ++i) {
+            String name = String.format("test%d.in", i);
+            fileSystem.addFile(name, Integer.toString(i).getBytes());
+            inputs.add(name);
+            expected.append(i);
+        }
+        project.setInputs(inputs);
+        List<TaskResult> result = build();
+        assertThat(result.size(), is(65));
+        IResource arcOut = fileSystem.get("test.arc").output();
+        assertThat(new String(arcOut.getContent()), is(expected.toString()));
+
+        // rebuild with same input
+        result = build();
+        assertThat(result.size(), is(0));
+    }
+
     @Test
     public void testTaskOutputAsInputFailing() throws Exception {
         fileSystem.addFile("test.proj", "".getBytes());
@@ -280,6 +304,20 @@ public class JBobTest {
         assertThat(result.get(0).isOk(), is(false));
     }
 
+    @Test
+    public void testFailingTaskStopsBuild() throws Exception {
+        // Single thread, the failing task completes before the dynamic task
+        project.setOption("max-cpu-threads", "1");
+        fileSystem.addFile("test1.in_err", "A".getBytes());
+        fileSystem.addFile("test.dynamic", "1\n2\n".getBytes());
+        project.setInputs(Arrays.asList("test1.in_err", "test.dynamic"));
+        List<TaskResult> result = build();
+        // The number tasks depending on the dynamic task are never started
+        assertThat(result.size(), is(2));
+        assertThat(result.get(0).isOk(), is(false));
+        assertThat(result.get(1).isOk(), is(true));
+    }
+
     @Test
     public void testAbsPath() throws Exception {
         fileSystem.addFile("/root/test.in", "test data".getBytes());
@@ -22,6 +22,7 @@ import java.text.ParseException;
 import java.util.HashSet;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 
@@ -42,8 +43,11 @@ import com.dynamo.bob.Project;
 import com.dynamo.bob.TaskResult;
 import com.dynamo.bob.archive.publisher.NullPublisher;
 import com.dynamo.bob.archive.publisher.PublisherSettings;
+import com.dynamo.bob.Platform;
+import com.dynamo.bob.cache.ArtifactCache;
 import com.dynamo.bob.fs.DefaultFileSystem;
 import com.dynamo.bob.util.BobProjectProperties;
+import com.dynamo.bob.util.BuildTrace;
 
 public class ProjectBuildTest {
 
@@ -65,9 +69,30 @@ public class ProjectBuildTest {
         FileUtils.deleteDirectory(new File(contentRoot));
     }
 
-    void build() throws IOException, CompileExceptionError, MultipleCompileException {
+    Project build() throws IOException, CompileExceptionError, MultipleCompileException {
+        return build(null);
+    }
+
+    Project build(File artifactCache) throws IOException, CompileExceptionError, MultipleCompileException {
+        return build(artifactCache, null);
+    }
+
+    Project build(File artifactCache, File buildTrace) throws IOException, CompileExceptionError, MultipleCompileException {
+        return build(artifactCache, buildTrace, null);
+    }
+
+    Project build(File artifactCache, File buildTrace, String platform) throws IOException, CompileExceptionError, MultipleCompileException {
         Project project = new Project(new DefaultFileSystem(), contentRoot, "build");
         project.setPublisher(new NullPublisher(new PublisherSettings()));
+        if (platform != null) {
+            project.setOption("platform", platform);
+        }
+        if (artifactCache != null) {
+            project.setOption("artifact-cache", artifactCache.getAbsolutePath());
+        }
+        if (buildTrace != null) {
+            project.setOption("build-trace", buildTrace.getAbsolutePath());
+        }
 
         ClassLoaderScanner scanner = new ClassLoaderScanner();
         project.scan(scanner, "com.dynamo.bob");
@@ -79,6 +104,7 @@ public class ProjectBuildTest {
         for (TaskResult taskResult : result) {
             assertTrue(taskResult.toString(), taskResult.isOk());
         }
+        return project;
     }
 
     // Returns the number of files that will be put into the DARC file
@@ -109,6 +135,79 @@ public class ProjectBuildTest {
         build();
     }
 
+    @Test
+    public void testArtifactCache() throws IOException, CompileExceptionError, MultipleCompileException {
+        createDefaultFiles();
+        File cacheDirectory = Files.createTempDirectory(null).toFile();
+        try {
+            ArtifactCache cache = build(cacheDirectory).getArtifactCache();
+            long puts = cache.getPuts();
+            assertTrue(puts > 0);
+            assertEquals(0, cache.getHits());
+            File collection = new File(contentRoot, "build/logic/main.collectionc");
+            byte[] content = Files.readAllBytes(collection.toPath());
+
+            // The outputs removed by "clean" are restored from the cache
+            cache = build(cacheDirectory).getArtifactCache();
+            assertEquals(puts, cache.getHits());
+            assertEquals(0, cache.getPuts());
+            assertArrayEquals(content, Files.readAllBytes(collection.toPath()));
+        } finally {
+            FileUtils.deleteDirectory(cacheDirectory);
+        }
+    }
+
+    @Test
+    public void testArtifactCachePlatform() throws IOException, CompileExceptionError, MultipleCompileException {
+        createDefaultFiles();
+        File cacheDirectory = Files.createTempDirectory(null).toFile();
+        try {
+            String hostPlatform = Platform.getHostPlatform().getPair();
+            String otherPlatform = Platform.getHostPlatform() == Platform.JsWeb ? Platform.X86_64Linux.getPair() : Platform.JsWeb.getPair();
+            ArtifactCache cache = build(cacheDirectory, null, hostPlatform).getArtifactCache();
+            long puts = cache.getPuts();
+            assertTrue(puts > 0);
+
+            // Outputs built for another platform are not restored
+            cache = build(cacheDirectory, null, otherPlatform).getArtifactCache();
+            assertEquals(0, cache.getHits());
+            assertEquals(puts, cache.getPuts());
+
+            // The host platform is the default
+            cache = build(cacheDirectory).getArtifactCache();
+            assertEquals(puts, cache.getHits());
+        } finally {
+            FileUtils.deleteDirectory(cacheDirectory);
+        }
+    }
+
+    @Test
+    public void testBuildTrace() throws IOException, CompileExceptionError, MultipleCompileException {
+        createDefaultFiles();
+        File traceDirectory = Files.createTempDirectory(null).toFile();
+        try {
+            File trace = new File(traceDirectory, "trace.json");
+            Project project = build(null, trace);
+
+            List<BuildTrace.BuilderSummary> summary = project.getBuildTrace().getSummary();
+            assertTrue(summary.size() > 0);
+            int built = 0;
+            for (BuildTrace.BuilderSummary builder : summary) {
+                assertEquals(builder.taskCount, builder.builtCount + builder.cachedCount + builder.upToDateCount + builder.failedCount);
+                built += builder.builtCount;
+            }
+            assertTrue(built > 0);
+
+            String json = new String(Files.readAllBytes(trace.toPath()), "UTF-8");
+            assertTrue(json.contains("\"traceEvents\""));
+            assertTrue(json.contains("\"runTasks\""));
+            assertTrue(json.contains("main.collection"));
+            assertTrue(new File(traceDirectory, "trace_summary.txt").exists());
+        } finally {
+            FileUtils.deleteDirectory(traceDirectory);
+        }
+    }
+
     static private void checkProjectSetting(BobProjectProperties properties, String category, String key, String expectedValue)
     {
         assertEquals(expectedValue, properties.getStringValue(category, key));
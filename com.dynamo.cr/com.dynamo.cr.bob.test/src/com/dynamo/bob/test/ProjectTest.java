@@ -68,6 +68,7 @@ public class ProjectTest {
     private ArrayList<URL> libraryUrls = new ArrayList<URL>();
 
     private AtomicInteger _304Count = new AtomicInteger();
+    private AtomicInteger failCount = new AtomicInteger();
 
     @Rule
     public TestLibrariesRule testLibs = new TestLibrariesRule();
@@ -176,6 +177,20 @@ public class ProjectTest {
         System.out.printf("testResolve end");
     }
 
+    @Test
+    public void testResolveRetry() throws Exception {
+        File libDir = new File(project.getLibPath());
+        if (libDir.exists()) {
+            FileUtils.cleanDirectory(libDir);
+        }
+
+        // The first requests fail with a server error, and are retried
+        failCount.set(2);
+        project.setOption("max-download-threads", "1");
+        project.resolveLibUrls(new NullProgress());
+        assertEquals(libraryUrls.size(), libDir.listFiles(File::isFile).length);
+    }
+
     @Test
     public void testMountPoints() throws Exception {
         System.out.printf("testMountPoints start");
@@ -265,6 +280,12 @@ public class ProjectTest {
     private class FileHandler extends ResourceHandler {
         public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException ,javax.servlet.ServletException {
 
+            if (failCount.getAndDecrement() > 0) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                baseRequest.setHandled(true);
+                return;
+            }
+
             // Verify auth
             boolean authenticated = false;
             if (request.getHeader("Authorization") != null) {
@@ -16,7 +16,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 
+import java.awt.Font;
 import java.awt.FontFormatException;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
@@ -32,6 +39,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
@@ -41,11 +50,13 @@ import com.dynamo.bob.font.BMFont;
 import com.dynamo.bob.font.BMFont.BMFontFormatException;
 import com.dynamo.bob.font.BMFont.ChannelData;
 import com.dynamo.bob.font.BMFont.Char;
+import com.dynamo.bob.font.DistanceFieldGenerator;
 import com.dynamo.bob.font.Fontc;
 import com.dynamo.bob.font.Fontc.FontResourceResolver;
 import com.dynamo.render.proto.Font.FontDesc;
 import com.dynamo.render.proto.Font.FontMap;
 import com.dynamo.render.proto.Font.FontMap.Glyph;
+import com.dynamo.render.proto.Font.FontTextureFormat;
 
 public class FontTest {
 
@@ -457,4 +468,121 @@ public class FontTest {
         int expectedCharCount = 96; // Taken from bmfont.fnt
         assertEquals(expectedCharCount, fontMap.getGlyphsCount());
     }
+
+    private static DistanceFieldGenerator createDistanceFieldGenerator(Shape shape) {
+        DistanceFieldGenerator df = new DistanceFieldGenerator();
+        PathIterator pi = new FlatteningPathIterator(shape.getPathIterator(new AffineTransform()), 0.1);
+        double[] c = new double[6];
+        double x = 0, y = 0, moveX = 0, moveY = 0;
+        while (!pi.isDone()) {
+            switch (pi.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                    x = moveX = c[0];
+                    y = moveY = c[1];
+                    break;
+                case PathIterator.SEG_LINETO:
+                    df.addLine(x, y, c[0], c[1]);
+                    x = c[0];
+                    y = c[1];
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    df.addLine(x, y, moveX, moveY);
+                    x = moveX;
+                    y = moveY;
+                    break;
+                default:
+                    break;
+            }
+            pi.next();
+        }
+        return df;
+    }
+
+    private void assertDistanceFieldMatchesReference(String fontName, float size, int glyphCount) throws Exception {
+        InputStream fontStream = getClass().getResourceAsStream(fontName);
+        Font font = Font.createFont(Font.TRUETYPE_FONT, fontStream).deriveFont(size);
+        fontStream.close();
+        FontRenderContext frc = new FontRenderContext(new AffineTransform(), true, true);
+
+        int tested = 0;
+        for (int codePoint = 33; codePoint < 0x10000 && tested < glyphCount; codePoint += codePoint < 128 ? 1 : 101) {
+            if (!font.canDisplay(codePoint)) {
+                continue;
+            }
+            ++tested;
+            Shape shape = font.createGlyphVector(frc, new String(Character.toChars(codePoint))).getGlyphOutline(0);
+            DistanceFieldGenerator df = createDistanceFieldGenerator(shape);
+
+            // Render with some padding around the glyph, as done by Fontc
+            Rectangle2D bounds = shape.getBounds2D();
+            int width = (int)bounds.getWidth() + 8;
+            int height = (int)bounds.getHeight() + 8;
+            double u0 = bounds.getX() - 4;
+            double v0 = bounds.getY() - 4;
+            double u1 = u0 + width;
+            double v1 = v0 + height;
+            double[] output = new double[width * height];
+            df.render(output, u0, v0, u1, v1, width, height);
+
+            // Compare with testing every line segment for every pixel
+            int ofs = 0;
+            double dx = (u1 - u0) / (double)width;
+            for (int y = 0; y < height; y++) {
+                double py = v0 + y * (v1 - v0) / (double)height;
+                double px = u0;
+                for (int x = 0; x < width; x++) {
+                    assertEquals(Math.sqrt(df.distSqr(px, py)), output[ofs++], EPSILON);
+                    px += dx;
+                }
+            }
+        }
+        assertTrue(tested > 0);
+    }
+
+    @Test
+    public void testDistanceFieldMatchesReference() throws Exception {
+        assertDistanceFieldMatchesReference("Tuffy.ttf", 48.0f, 200);
+        assertDistanceFieldMatchesReference("DroidSansJapanese.ttf", 64.0f, 100);
+    }
+
+    private FontMap compileDistanceField(ExecutorService executor) throws Exception {
+        FontDesc fontDesc = FontDesc.newBuilder()
+            .setFont("Tuffy.ttf")
+            .setMaterial("font.material")
+            .setSize(24)
+            .setOutputFormat(FontTextureFormat.TYPE_DISTANCE_FIELD)
+            .setOutlineWidth(2.0f)
+            .setShadowBlur(2)
+            .setShadowAlpha(1.0f)
+            .build();
+
+        Fontc fontc = new Fontc();
+        fontc.setExecutor(executor);
+        InputStream fontInputStream = getClass().getResourceAsStream(fontDesc.getFont());
+        final String searchPath = FilenameUtils.getBaseName(fontDesc.getFont());
+        fontc.compile(fontInputStream, fontDesc, false, new FontResourceResolver() {
+                @Override
+                public InputStream getResource(String resourceName)
+                        throws FileNotFoundException {
+                    return new FileInputStream(Paths.get(searchPath, resourceName).toString());
+                }
+            });
+        fontInputStream.close();
+        return fontc.getFontMap();
+    }
+
+    @Test
+    public void testDistanceFieldParallel() throws Exception {
+        FontMap serial = compileDistanceField(null);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        FontMap parallel;
+        try {
+            parallel = compileDistanceField(executor);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(serial.getGlyphsCount(), parallel.getGlyphsCount());
+        assertEquals(serial.getGlyphData(), parallel.getGlyphData());
+        assertEquals(serial, parallel);
+    }
 }
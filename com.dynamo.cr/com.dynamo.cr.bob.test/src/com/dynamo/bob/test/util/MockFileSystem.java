@@ -33,7 +33,7 @@ public class MockFileSystem extends AbstractFileSystem<MockFileSystem, MockResou
     // To easier handle walking we want the resources to be sorted by their key.
     protected Map<String, MockResource> resources = new TreeMap<String, MockResource>();
 
-    public void addFile(String path, byte[] content, long lastModified) {
+    public synchronized void addFile(String path, byte[] content, long lastModified) {
         path = FilenameUtils.normalize(path, true);
         // Paths are always root relative.
         if (path.startsWith("/"))
@@ -45,7 +45,7 @@ public class MockFileSystem extends AbstractFileSystem<MockFileSystem, MockResou
         addFile(path, content, System.currentTimeMillis());
     }
 
-    public void addDirectory(String path) {
+    public synchronized void addDirectory(String path) {
         path = FilenameUtils.normalize(path, true);
         // Paths are always root relative.
         if (path.startsWith("/"))
@@ -54,7 +54,7 @@ public class MockFileSystem extends AbstractFileSystem<MockFileSystem, MockResou
     }
 
     @Override
-    public IResource get(String path) {
+    public synchronized IResource get(String path) {
         path = FilenameUtils.normalize(path, true);
         // Paths are always root relative.
         if (path.startsWith("/"))
@@ -85,7 +85,7 @@ public class MockFileSystem extends AbstractFileSystem<MockFileSystem, MockResou
         }
     }
 
-    private List<String> getResourcePaths() {
+    private synchronized List<String> getResourcePaths() {
         List<String> paths = new ArrayList<String>();
         Iterator<Map.Entry<String, MockResource>> it = resources.entrySet().iterator();
         while (it.hasNext()) {
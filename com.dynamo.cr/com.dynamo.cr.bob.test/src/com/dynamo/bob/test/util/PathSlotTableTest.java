@@ -0,0 +1,190 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.test.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dynamo.bob.util.PathSlotTable;
+
+public class PathSlotTableTest {
+
+    private static final int MAGIC = 0x54455354;
+    private static final int SLOT_SIZE = 4;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("path-slot-table", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    private static PathSlotTable newTable() {
+        return new PathSlotTable(MAGIC, 1, SLOT_SIZE);
+    }
+
+    private static byte[] slot(int value) {
+        return new byte[] { (byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24) };
+    }
+
+    @Test
+    public void testInMemory() throws Exception {
+        PathSlotTable table = newTable();
+        table.put("a/b.script", slot(1));
+        table.put("c.go", slot(2));
+
+        PathSlotTable loaded = newTable();
+        assertTrue(loaded.load(table.toByteArray()));
+        assertArrayEquals(slot(1), loaded.get("a/b.script"));
+        assertArrayEquals(slot(2), loaded.get("c.go"));
+        assertNull(loaded.get("missing"));
+        assertEquals(2, loaded.getPaths().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSlotSize() throws Exception {
+        newTable().put("a", new byte[SLOT_SIZE + 1]);
+    }
+
+    @Test
+    public void testVersionMismatch() throws Exception {
+        PathSlotTable table = newTable();
+        table.put("a", slot(1));
+        table.save(file);
+
+        assertFalse(new PathSlotTable(MAGIC, 2, SLOT_SIZE).load(file));
+        assertFalse(new PathSlotTable(MAGIC + 1, 1, SLOT_SIZE).load(file));
+        assertTrue(newTable().load(file));
+    }
+
+    @Test
+    public void testIncrementalSave() throws Exception {
+        PathSlotTable table = newTable();
+        for (int i = 0; i < 10; ++i) {
+            table.put("path" + i, slot(i));
+        }
+        table.save(file);
+        long size = file.length();
+
+        // Update in place
+        table = newTable();
+        assertTrue(table.load(file));
+        table.put("path3", slot(33));
+        table.save(file);
+        assertEquals(size, file.length());
+
+        // Append new path
+        table = newTable();
+        assertTrue(table.load(file));
+        assertArrayEquals(slot(33), table.get("path3"));
+        table.put("path10", slot(10));
+        table.put("path4", slot(44));
+        table.save(file);
+        assertTrue(file.length() > size);
+
+        table = newTable();
+        assertTrue(table.load(file));
+        assertEquals(11, table.getPaths().size());
+        for (int i = 0; i < 11; ++i) {
+            int expected = i == 3 ? 33 : (i == 4 ? 44 : i);
+            assertArrayEquals(slot(expected), table.get("path" + i));
+        }
+
+        // Saving twice in one session updates the appended entry
+        table.put("path11", slot(11));
+        table.save(file);
+        table.put("path11", slot(111));
+        table.save(file);
+        table = newTable();
+        assertTrue(table.load(file));
+        assertEquals(12, table.getPaths().size());
+        assertArrayEquals(slot(111), table.get("path11"));
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        PathSlotTable table = newTable();
+        table.put("first", slot(0));
+        table.save(file);
+
+        table = newTable();
+        assertTrue(table.load(file));
+        for (int i = 0; i < 2000; ++i) {
+            table.put("path" + i, slot(i));
+        }
+        table.save(file);
+
+        table = newTable();
+        assertTrue(table.load(file));
+        assertEquals(2001, table.getPaths().size());
+        assertArrayEquals(slot(0), table.get("first"));
+        assertArrayEquals(slot(1999), table.get("path1999"));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        PathSlotTable table = newTable();
+        table.put("a", slot(1));
+        table.put("b", slot(2));
+        table.save(file);
+
+        table = newTable();
+        assertTrue(table.load(file));
+        table.put("b", slot(22));
+        table.close();
+        assertTrue(file.delete());
+
+        // Slots are kept in memory when the mapping is released
+        assertArrayEquals(slot(1), table.get("a"));
+        assertArrayEquals(slot(22), table.get("b"));
+        table.save(file);
+
+        table = newTable();
+        assertTrue(table.load(file));
+        assertEquals(2, table.getPaths().size());
+        assertArrayEquals(slot(1), table.get("a"));
+        assertArrayEquals(slot(22), table.get("b"));
+        table.close();
+    }
+
+    @Test
+    public void testUncleanFile() throws Exception {
+        PathSlotTable table = newTable();
+        table.put("a", slot(1));
+        table.save(file);
+
+        // Clear the clean flag, as if the process died while saving
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(8);
+        raf.writeInt(0);
+        raf.close();
+
+        assertFalse(newTable().load(file));
+    }
+}
@@ -410,6 +410,44 @@ public class SpineSceneTest {
         assertPoint3dEquals(expectedEndPos, posBuilder.GetPositions(expectedNumPosSamples - 3), EPSILON);
     }
 
+    private static void assertSampleFloatTrack(AnimationTrack track, double duration) {
+        double sampleRate = 30.0;
+        double spf = 1.0/sampleRate;
+        Rig.AnimationTrack.Builder expected = Rig.AnimationTrack.newBuilder();
+        Rig.AnimationTrack.Builder actual = Rig.AnimationTrack.newBuilder();
+        switch (track.property) {
+        case POSITION:
+            RigUtil.sampleTrack(track, new RigUtil.PositionBuilder(expected), new Point3d(0.0, 0.0, 0.0), 0.0, duration, sampleRate, spf, true);
+            RigUtil.sampleFloatTrack(track, new RigUtil.PositionBuilder(actual), new double[] {0.0, 0.0, 0.0}, 0.0, duration, sampleRate, spf, true);
+            break;
+        case ROTATION:
+            RigUtil.sampleTrack(track, new RigUtil.RotationBuilder(expected), new Quat4d(0.0, 0.0, 0.0, 1.0), 0.0, duration, sampleRate, spf, true);
+            RigUtil.sampleFloatTrack(track, new RigUtil.RotationBuilder(actual), new double[] {0.0, 0.0, 0.0, 1.0}, 0.0, duration, sampleRate, spf, true);
+            break;
+        case SCALE:
+            RigUtil.sampleTrack(track, new RigUtil.ScaleBuilder(expected), new Vector3d(1.0, 1.0, 1.0), 0.0, duration, sampleRate, spf, true);
+            RigUtil.sampleFloatTrack(track, new RigUtil.ScaleBuilder(actual), new double[] {1.0, 1.0, 1.0}, 0.0, duration, sampleRate, spf, true);
+            break;
+        }
+        // The samples must be identical, not only within epsilon
+        assertEquals(expected.getPositionsList(), actual.getPositionsList());
+        assertEquals(expected.getRotationsList(), actual.getRotationsList());
+        assertEquals(expected.getScaleList(), actual.getScaleList());
+    }
+
+    @Test
+    public void testSampleFloatTrack() throws Exception {
+        String[] files = new String[] {"skeleton.json", "simple_spine.json", "curve_skeleton.json", "step_skeleton.json"};
+        for (String file : files) {
+            SpineSceneUtil scene = load(file);
+            for (Animation anim : scene.animations.values()) {
+                for (AnimationTrack track : anim.tracks) {
+                    assertSampleFloatTrack(track, anim.duration);
+                }
+            }
+        }
+    }
+
     @Test
     public void testSamplePosSteppedAnim() throws Exception {
         SpineSceneUtil scene = load("step_skeleton.json");
@@ -686,4 +724,33 @@ public class SpineSceneTest {
             }
         }
     }
+
+    @Test
+    public void testSectionOrder() throws Exception {
+        // Sections before the sections they refer to, in reverse order of a spine export
+        StringBuilder src = new StringBuilder();
+        src.append("{\"animations\": {\"anim\": {");
+        src.append("  \"events\": [{\"time\": 0.5, \"name\": \"event\"}],");
+        src.append("  \"slots\": {\"slot\": {\"attachment\": [{\"time\": 1.0, \"name\": \"region\"}]}},");
+        src.append("  \"bones\": {\"root\": {\"translate\": [{\"time\": 0.0, \"x\": 1.0, \"y\": 2.0}]}}}},");
+        src.append(" \"events\": {\"event\": {\"int\": 3, \"float\": 0.5, \"string\": \"payload\"}},");
+        src.append(" \"skins\": {\"default\": {\"slot\": {\"region\": {\"width\": 10, \"height\": 10}}}},");
+        src.append(" \"slots\": [{\"name\": \"slot\", \"bone\": \"root\"}],");
+        src.append(" \"bones\": [{\"name\": \"root\"}],");
+        src.append(" \"skeleton\": {\"spine\": \"3.5.0\"}}");
+        SpineSceneUtil scene = SpineSceneUtil.loadJson(new ByteArrayInputStream(src.toString().getBytes("UTF-8")), new TestUVTProvider());
+        assertEquals(1, scene.bones.size());
+        assertEquals(1, scene.attachments.size());
+        assertFalse(scene.localBoneScaling);
+
+        Animation anim = scene.getAnimation("anim");
+        assertEquals(1.0, anim.duration, EPSILON);
+        assertEquals(scene.getBone("root"), anim.tracks.get(0).bone);
+        assertEquals(0, anim.slotTracks.get(0).keys.get(0).attachment);
+        EventTrack eventTrack = anim.eventTracks.get(0);
+        assertEquals("event", eventTrack.name);
+        assertEquals(3, eventTrack.keys.get(0).intPayload);
+        assertEquals(0.5f, eventTrack.keys.get(0).floatPayload, EPSILON);
+        assertEquals("payload", eventTrack.keys.get(0).stringPayload);
+    }
 }
@@ -21,9 +21,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 
+import com.dynamo.bob.textureset.MaxRectsLayoutStrategy;
 import com.dynamo.bob.textureset.TextureSetLayout;
 import com.dynamo.bob.textureset.TextureSetLayout.Layout;
 import com.dynamo.bob.textureset.TextureSetLayout.Rect;
@@ -304,4 +308,77 @@ public class TextureSetLayoutTest {
         assertEquals(layout.getWidth(), 2048);
         assertEquals(layout.getHeight(), 1024);
     }
+
+    private static List<Layout> maxRectsLayout(List<Rect> rectangles, boolean square, int threadCount) {
+        return maxRectsLayout(rectangles, square, null, threadCount);
+    }
+
+    private static List<Layout> maxRectsLayout(List<Rect> rectangles, boolean square, ExecutorService executor, int threadCount) {
+        MaxRectsLayoutStrategy.Settings settings = new MaxRectsLayoutStrategy.Settings();
+        settings.maxPageWidth = 512;
+        settings.maxPageHeight = 512;
+        settings.minPageWidth = 16;
+        settings.minPageHeight = 16;
+        settings.paddingX = 1;
+        settings.paddingY = 1;
+        settings.rotation = true;
+        settings.square = square;
+        settings.executor = executor;
+        settings.threadCount = threadCount;
+        return new MaxRectsLayoutStrategy(settings).createLayout(rectangles);
+    }
+
+    private static void assertSameLayouts(List<Layout> expected, List<Layout> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).getWidth(), actual.get(i).getWidth());
+            assertEquals(expected.get(i).getHeight(), actual.get(i).getHeight());
+            List<Rect> expectedRects = expected.get(i).getRectangles();
+            List<Rect> actualRects = actual.get(i).getRectangles();
+            assertEquals(expectedRects.size(), actualRects.size());
+            for (int j = 0; j < expectedRects.size(); ++j) {
+                Rect e = expectedRects.get(j);
+                Rect a = actualRects.get(j);
+                assertEquals(e.id, a.id);
+                assertEquals(e.x, a.x);
+                assertEquals(e.y, a.y);
+                assertEquals(e.width, a.width);
+                assertEquals(e.height, a.height);
+                assertEquals(e.rotated, a.rotated);
+            }
+        }
+    }
+
+    // Heuristics and page sizes are searched concurrently, the result must not depend on the thread count
+    @Test
+    public void testParallelSameAsSequential() {
+        Random random = new Random(0);
+        List<Rect> rectangles = new ArrayList<Rect>(createSampleRectangles(2));
+        for (int i = 0; i < 300; ++i) {
+            rectangles.add(rect(String.format("r%d", i), rectangles.size(), 1 + random.nextInt(40), 1 + random.nextInt(40)));
+        }
+
+        for (boolean square : new boolean[] { false, true }) {
+            List<Layout> expected = maxRectsLayout(rectangles, square, 1);
+            assertSameLayouts(expected, maxRectsLayout(rectangles, square, 4));
+            assertSameLayouts(expected, maxRectsLayout(rectangles, square, 16));
+        }
+    }
+
+    // A shared executor is used as is, and left running for the next layout
+    @Test
+    public void testSharedExecutor() {
+        List<Rect> rectangles = createSampleRectangles(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (boolean square : new boolean[] { false, true }) {
+                List<Layout> expected = maxRectsLayout(rectangles, square, 1);
+                assertSameLayouts(expected, maxRectsLayout(rectangles, square, executor, 2));
+                assertSameLayouts(expected, maxRectsLayout(rectangles, square, executor, 8));
+            }
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -363,6 +363,7 @@ public class Bob {
         options.addOption("v", "verbose", false, "Verbose output");
         options.addOption("h", "help", false, "This help message");
         options.addOption("a", "archive", false, "Build archive");
+        options.addOption(null, "archive-incremental", false, "Copy the entries that are unchanged since the previous build from the previous archive, instead of compressing and encrypting them again");
         options.addOption("e", "email", true, "User email");
         options.addOption("u", "auth", true, "User auth token");
 
@@ -391,6 +392,7 @@ public class Bob {
 
         options.addOption("br", "build-report", true, "Filepath where to save a build report as JSON");
         options.addOption("brhtml", "build-report-html", true, "Filepath where to save a build report as HTML");
+        options.addOption(null, "build-trace", true, "Filepath where to save a trace of the build in the Chrome trace event format, and a summary per builder next to it");
 
         options.addOption(null, "build-server", true, "The build server (when using native extensions)");
         options.addOption(null, "defoldsdk", true, "What version of the defold sdk (sha1) to use");
@@ -406,6 +408,16 @@ public class Bob {
 
         options.addOption(null, "version", false, "Prints the version number to the output");
 
+        options.addOption(null, "max-cpu-threads", true, "Max number of threads used to build resources. Default is the number of available processors");
+        options.addOption(null, "max-download-threads", true, "Max number of libraries downloaded at the same time when resolving. Default is 8");
+
+        options.addOption(null, "artifact-cache", true, "Directory where built resources are cached and shared between builds");
+        options.addOption(null, "artifact-cache-max-size", true, "Max size of the artifact cache in megabytes. Default is 1024");
+
+        options.addOption(null, "rig-position-tolerance", true, "Max position error when reducing the keyframes of rig animations. Keyframe reduction is enabled by any of the rig tolerance options");
+        options.addOption(null, "rig-rotation-tolerance", true, "Max rotation error, in degrees, when reducing the keyframes of rig animations");
+        options.addOption(null, "rig-scale-tolerance", true, "Max scale error when reducing the keyframes of rig animations");
+
         // debug options
         options.addOption(null, "debug-ne-upload", false, "Outputs the files sent to build server as upload.zip");
 
@@ -527,6 +539,11 @@ public class Bob {
         }
         project.loadProjectFile();
 
+        // Options are otherwise set after the libraries are resolved
+        if (cmd.hasOption("max-download-threads")) {
+            project.setOption("max-download-threads", cmd.getOptionValue("max-download-threads"));
+        }
+
         // resolves libraries and finds all sources
         setupProject(project, shouldResolveLibs, sourceDirectory);
 
@@ -52,4 +52,12 @@ public @interface BuilderParams {
      * @return create order
      */
     int createOrder() default 0;
+
+    /**
+     * If the task outputs can be stored in and restored from the artifact
+     * cache. Builders with side effects other than writing the task outputs
+     * should not be cached.
+     * @return true if the task outputs can be cached
+     */
+    boolean cacheable() default true;
 }
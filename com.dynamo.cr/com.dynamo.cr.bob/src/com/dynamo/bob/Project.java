@@ -23,9 +23,11 @@ import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.net.ConnectException;
 import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
@@ -40,15 +42,22 @@ import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
@@ -76,13 +85,19 @@ import com.dynamo.bob.bundle.LinuxBundler;
 import com.dynamo.bob.bundle.OSXBundler;
 import com.dynamo.bob.bundle.Win32Bundler;
 import com.dynamo.bob.bundle.Win64Bundler;
+import com.dynamo.bob.cache.ArtifactCache;
 import com.dynamo.bob.fs.ClassLoaderMountPoint;
 import com.dynamo.bob.fs.FileSystemWalker;
 import com.dynamo.bob.fs.IFileSystem;
 import com.dynamo.bob.fs.IResource;
 import com.dynamo.bob.fs.ZipMountPoint;
 import com.dynamo.bob.pipeline.ExtenderUtil;
+import com.dynamo.bob.pipeline.ImageCache;
+import com.dynamo.bob.pipeline.ProtoCache;
+import com.dynamo.bob.pipeline.TextureCache;
 import com.dynamo.bob.util.BobProjectProperties;
+import com.dynamo.bob.util.BuildTrace;
+import com.dynamo.bob.util.KeyframeReduction;
 import com.dynamo.bob.util.LibraryUtil;
 import com.dynamo.bob.util.ReportGenerator;
 import com.dynamo.graphics.proto.Graphics.TextureProfiles;
@@ -97,6 +112,10 @@ public class Project {
     public final static String LIB_DIR = ".internal/lib";
     public final static String CACHE_DIR = ".internal/cache";
 
+    private final static int DEFAULT_MAX_DOWNLOAD_THREADS = 8;
+    private final static int LIB_DOWNLOAD_ATTEMPTS = 3;
+    private final static long LIB_DOWNLOAD_RETRY_DELAY = 500; // ms, doubled for each retry
+
     public enum OutputFlags {
         NONE,
         UNCOMPRESSED
@@ -107,6 +126,8 @@ public class Project {
     private List<String> inputs = new ArrayList<String>();
     private HashMap<String, EnumSet<OutputFlags>> outputs = new HashMap<String, EnumSet<OutputFlags>>();
     private ArrayList<Task<?>> newTasks;
+    // Builders may create new tasks from worker threads while building
+    private final Object newTasksLock = new Object();
     private State state;
     private String rootDirectory = ".";
     private String buildDirectory = "build";
@@ -120,6 +141,14 @@ public class Project {
 
     private TextureProfiles textureProfiles;
 
+    private ProtoCache protoCache = new ProtoCache();
+    private ImageCache imageCache = new ImageCache();
+    private ArtifactCache artifactCache;
+    private BuildTrace buildTrace;
+    private TextureCache textureCache;
+    private KeyframeReduction keyframeReduction;
+    private ExecutorService workerExecutor;
+
     public Project(IFileSystem fileSystem) {
         this.fileSystem = fileSystem;
         this.fileSystem.setRootDirectory(rootDirectory);
@@ -137,6 +166,10 @@ public class Project {
     }
 
     public void dispose() {
+        shutdownWorkerExecutor();
+        if (state != null) {
+            state.close();
+        }
         this.fileSystem.close();
     }
 
@@ -285,7 +318,9 @@ public class Project {
 
         Task<?> task = doCreateTask(input.getPath(), builderClass);
         if (task != null) {
-            newTasks.add(task);
+            synchronized (newTasksLock) {
+                newTasks.add(task);
+            }
         }
         return task;
     }
@@ -300,7 +335,9 @@ public class Project {
     public Task<?> buildResource(IResource input, Class<? extends Builder<?>> builderClass) throws CompileExceptionError {
         Task<?> task = doCreateTask(input.getPath(), builderClass);
         if (task != null) {
-            newTasks.add(task);
+            synchronized (newTasksLock) {
+                newTasks.add(task);
+            }
         }
         return task;
     }
@@ -772,12 +809,61 @@ public class Project {
         m.done();
     }
 
+    private long traceBegin() {
+        return buildTrace != null ? buildTrace.begin() : 0;
+    }
+
+    private void traceEnd(String phase, long start) {
+        if (buildTrace != null) {
+            buildTrace.addPhase(phase, start);
+        }
+    }
+
+    private void writeBuildTrace() {
+        String tracePath = option("build-trace", "trace.json");
+        String summaryPath = FilenameUtils.removeExtension(tracePath) + "_summary.txt";
+        try (FileWriter traceWriter = new FileWriter(tracePath); FileWriter summaryWriter = new FileWriter(summaryPath)) {
+            buildTrace.writeChromeTrace(traceWriter);
+            buildTrace.writeSummary(summaryWriter);
+        } catch (IOException e) {
+            logWarning("Failed to write build trace to '%s': %s", tracePath, e.getMessage());
+        }
+    }
+
+    /**
+     * Get the trace of the current or last build
+     * @return build trace, or null if the build is not traced
+     */
+    public BuildTrace getBuildTrace() {
+        return buildTrace;
+    }
+
     private List<TaskResult> doBuild(IProgress monitor, String... commands) throws IOException, CompileExceptionError, MultipleCompileException {
+        // The trace is written even if the build fails, to see what happened up to the failure
+        buildTrace = hasOption("build-trace") ? new BuildTrace() : null;
+        try {
+            return doTracedBuild(monitor, commands);
+        } finally {
+            if (buildTrace != null) {
+                writeBuildTrace();
+            }
+        }
+    }
+
+    private List<TaskResult> doTracedBuild(IProgress monitor, String... commands) throws IOException, CompileExceptionError, MultipleCompileException {
+        long traceStart = traceBegin();
         fileSystem.loadCache();
         IResource stateResource = fileSystem.get(FilenameUtils.concat(buildDirectory, "state"));
+        if (state != null) {
+            state.close();
+        }
         state = State.load(stateResource);
+        traceEnd("loadState", traceStart);
+
+        traceStart = traceBegin();
         createTasks();
         validateBuildResourceMapping();
+        traceEnd("createTasks", traceStart);
         List<TaskResult> result = new ArrayList<TaskResult>();
 
         BundleHelper.throwIfCanceled(monitor);
@@ -810,7 +896,9 @@ public class Project {
                     IProgress m = monitor.subProgress(99);
                     BundleHelper.throwIfCanceled(monitor);
                     m.beginTask("Building...", newTasks.size());
+                    traceStart = traceBegin();
                     result = runTasks(m);
+                    traceEnd("runTasks", traceStart);
                     m.done();
                     if (anyFailing(result)) {
                         break loop;
@@ -839,7 +927,9 @@ public class Project {
                             architectures = customArchitectures.split(",");
                         }
 
+                        traceStart = traceBegin();
                         buildEngine(monitor, architectures, appmanifestOptions);
+                        traceEnd("buildEngine", traceStart);
                     } else {
                         // Remove the remote built executables in the build folder, they're still in the cache
                         cleanEngines(monitor, platforms);
@@ -851,6 +941,7 @@ public class Project {
                     if (generateReport) {
                         IProgress mrep = monitor.subProgress(1);
                         mrep.beginTask("Generating report...", 1);
+                        traceStart = traceBegin();
                         ReportGenerator rg = new ReportGenerator(this);
                         String reportJSON = rg.generateJSON();
 
@@ -866,12 +957,14 @@ public class Project {
                             fileHTMLWriter.write(reportHTML);
                             fileHTMLWriter.close();
                         }
+                        traceEnd("report", traceStart);
                         mrep.done();
                     }
 
                     break;
                 }
                 case "clean": {
+                    traceStart = traceBegin();
                     IProgress m = monitor.subProgress(1);
                     m.beginTask("Cleaning...", newTasks.size());
                     for (Task<?> t : newTasks) {
@@ -883,19 +976,24 @@ public class Project {
                         }
                     }
                     m.done();
+                    traceEnd("clean", traceStart);
                     break;
                 }
                 case "distclean": {
+                    traceStart = traceBegin();
                     IProgress m = monitor.subProgress(1);
                     m.beginTask("Cleaning...", newTasks.size());
                     BundleHelper.throwIfCanceled(monitor);
                     FileUtils.deleteDirectory(new File(FilenameUtils.concat(rootDirectory, buildDirectory)));
                     m.worked(1);
                     m.done();
+                    traceEnd("distclean", traceStart);
                     break;
                 }
                 case "bundle": {
+                    traceStart = traceBegin();
                     bundle(monitor);
+                    traceEnd("bundle", traceStart);
                     break;
                 }
                 default: break;
@@ -903,163 +1001,475 @@ public class Project {
         }
 
         monitor.done();
+        traceStart = traceBegin();
         state.save(stateResource);
         fileSystem.saveCache();
+        traceEnd("saveState", traceStart);
         return result;
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
-    private List<TaskResult> runTasks(IProgress monitor) throws IOException {
+    /**
+     * Get the max number of threads to use when running tasks. Set by the
+     * "max-cpu-threads" option and defaults to the number of available processors.
+     * @return thread count, at least one
+     */
+    public int getMaxCpuThreads() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String value = option("max-cpu-threads", null);
+        if (value != null) {
+            try {
+                threads = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                logWarning("Invalid value '%s' for max-cpu-threads, using %d threads", value, threads);
+            }
+        }
+        return Math.max(1, threads);
+    }
+
+    /**
+     * Get the executor shared by the builders for work split up within a task, such
+     * as glyphs or animations. Bounded by the "max-cpu-threads" option and shut down
+     * when the tasks have been run. Work run on it must not wait for other work
+     * submitted to it.
+     * @return worker executor
+     */
+    public synchronized ExecutorService getWorkerExecutor() {
+        if (workerExecutor == null) {
+            workerExecutor = Executors.newFixedThreadPool(getMaxCpuThreads());
+        }
+        return workerExecutor;
+    }
 
-        // set of all completed tasks. The set includes both task run
-        // in this session and task already completed (output already exists with correct signatures, see below)
-        // the set also contains failed tasks
-        Set<Task> completedTasks = new HashSet<>();
+    private synchronized void shutdownWorkerExecutor() {
+        if (workerExecutor != null) {
+            workerExecutor.shutdownNow();
+            workerExecutor = null;
+        }
+    }
 
-        // the set of all output files generated
-        // in this or previous session
-        Set<IResource> completedOutputs = new HashSet<>();
+    /**
+     * Get the cache of parsed text format resources shared by the builders
+     * @return proto cache
+     */
+    public ProtoCache getProtoCache() {
+        return protoCache;
+    }
 
-        List<TaskResult> result = new ArrayList<>();
+    /**
+     * Get the cache of decoded images shared by the atlas builders
+     * @return image cache
+     */
+    public ImageCache getImageCache() {
+        return imageCache;
+    }
 
-        List<Task<?>> tasks = new ArrayList<>(newTasks);
-        // set of *all* possible output files
-        Set<IResource> allOutputs = new HashSet<>();
-        for (Task<?> task : newTasks) {
-            allOutputs.addAll(task.getOutputs());
+    /**
+     * Get the cache of task outputs shared between builds. Enabled by the
+     * "artifact-cache" option, which is the cache directory. The max size of
+     * the cache, in megabytes, is set by the "artifact-cache-max-size" option.
+     * @return artifact cache or null if not enabled
+     */
+    public synchronized ArtifactCache getArtifactCache() {
+        String directory = option("artifact-cache", null);
+        if (artifactCache == null && directory != null) {
+            long maxSize = ArtifactCache.DEFAULT_MAX_SIZE;
+            String value = option("artifact-cache-max-size", null);
+            if (value != null) {
+                try {
+                    maxSize = Long.parseLong(value) * 1024 * 1024;
+                } catch (NumberFormatException e) {
+                    logWarning("Invalid value '%s' for artifact-cache-max-size, using %d MB", value, maxSize / (1024 * 1024));
+                }
+            }
+            artifactCache = new ArtifactCache(new File(directory), maxSize);
         }
-        newTasks.clear();
+        return artifactCache;
+    }
 
-        // Keep track of the paths for all outputs
-        outputs = new HashMap<>(allOutputs.size());
-        for (IResource res : allOutputs) {
-            outputs.put(res.getAbsPath(), EnumSet.noneOf(OutputFlags.class));
-        }
-
-        // This flag is set to true as soon as one task has failed. This will
-        // break out of the outer loop after the remaining tasks has been tried once.
-        // NOTE The underlying problem is that if a task fails and has dependent
-        // tasks, the dependent tasks will be tried forever. It should be solved
-        // by marking all dependent tasks as failed instead of this flag.
-        boolean taskFailed = false;
-run:
-        while (completedTasks.size() < tasks.size()) {
-            for (Task<?> task : tasks) {
-                BundleHelper.throwIfCanceled(monitor);
-                // deps are the task input files generated by another task not yet completed,
-                // i.e. "solve" the dependency graph
-                Set<IResource> deps = new HashSet<>(task.getInputs());
-                deps.retainAll(allOutputs);
-                deps.removeAll(completedOutputs);
-                if (deps.size() > 0) {
-                    // postpone task. dependent input not yet generated
-                    continue;
+    /**
+     * Get the cache of generated texture alternatives shared by the builders.
+     * Entries are also stored in the artifact cache, if enabled.
+     * @return texture cache
+     */
+    public synchronized TextureCache getTextureCache() {
+        if (textureCache == null) {
+            textureCache = new TextureCache(TextureCache.DEFAULT_MAX_SIZE, getArtifactCache(), EngineVersion.sha1);
+        }
+        return textureCache;
+    }
+
+    private double getToleranceOption(String name) {
+        String value = option(name, null);
+        if (value != null) {
+            try {
+                double tolerance = Double.parseDouble(value);
+                if (tolerance >= 0.0) {
+                    return tolerance;
                 }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            logWarning("Invalid value '%s' for %s, using %s", value, name, KeyframeReduction.MIN_TOLERANCE);
+        }
+        return KeyframeReduction.MIN_TOLERANCE;
+    }
 
-                monitor.worked(1);
+    /**
+     * Get the keyframe reduction of sampled rig animations. Enabled by any of
+     * the "rig-position-tolerance", "rig-rotation-tolerance" (in degrees) and
+     * "rig-scale-tolerance" options.
+     * @return keyframe reduction or null if not enabled
+     */
+    public synchronized KeyframeReduction getKeyframeReduction() {
+        if (keyframeReduction == null && (hasOption("rig-position-tolerance") || hasOption("rig-rotation-tolerance") || hasOption("rig-scale-tolerance"))) {
+            keyframeReduction = new KeyframeReduction(getToleranceOption("rig-position-tolerance"), getToleranceOption("rig-rotation-tolerance"), getToleranceOption("rig-scale-tolerance"));
+        }
+        return keyframeReduction;
+    }
 
-                byte[] taskSignature = task.calculateSignature(this);
+    private static boolean isCacheable(Task<?> task) {
+        BuilderParams params = task.getBuilder().getClass().getAnnotation(BuilderParams.class);
+        return params != null && params.cacheable() && !task.getOutputs().isEmpty();
+    }
 
-                // do all output files exist?
-                boolean allOutputExists = true;
-                for (IResource r : task.getOutputs()) {
-                    if (!r.exists()) {
-                        allOutputExists = false;
-                        break;
+    // Options that change the outputs of builders without being part of the task signatures.
+    // The artifact cache is shared between projects and machines, so they are part of the cache keys.
+    private static final String[] ARTIFACT_CACHE_OPTIONS = {"architectures", "variant", "debug", "texture-compression", "use-vanilla-lua"};
+
+    private List<String> getArtifactCacheOptions() {
+        List<String> options = new ArrayList<String>();
+        // Resources are built for the host platform unless another platform is given
+        options.add("platform=" + option("platform", Platform.getHostPlatform().getPair()));
+        for (String name : ARTIFACT_CACHE_OPTIONS) {
+            options.add(name + "=" + option(name, ""));
+        }
+        return options;
+    }
+
+    private String getArtifactCacheKey(Task<?> task, byte[] taskSignature) {
+        List<String> paths = new ArrayList<String>();
+        for (IResource r : task.getOutputs()) {
+            paths.add(r.getPath());
+        }
+        return ArtifactCache.createKey(EngineVersion.sha1, taskSignature, getArtifactCacheOptions(), paths);
+    }
+
+    // Write the cached outputs of a task to the build directory
+    private boolean restoreOutputs(ArtifactCache cache, String key, Task<?> task) throws IOException {
+        List<ArtifactCache.Artifact> artifacts = cache.get(key);
+        if (artifacts == null) {
+            return false;
+        }
+        List<IResource> taskOutputs = task.getOutputs();
+        if (artifacts.size() != taskOutputs.size()) {
+            return false;
+        }
+        for (int i = 0; i < artifacts.size(); ++i) {
+            if (!artifacts.get(i).getPath().equals(taskOutputs.get(i).getPath())) {
+                return false;
+            }
+        }
+        for (int i = 0; i < artifacts.size(); ++i) {
+            ArtifactCache.Artifact artifact = artifacts.get(i);
+            IResource r = taskOutputs.get(i);
+            r.setContent(artifact.getContent());
+            for (OutputFlags flag : OutputFlags.values()) {
+                if ((artifact.getFlags() & (1 << flag.ordinal())) != 0) {
+                    addOutputFlags(r.getAbsPath(), flag);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void storeOutputs(ArtifactCache cache, String key, Task<?> task) {
+        try {
+            List<ArtifactCache.Artifact> artifacts = new ArrayList<ArtifactCache.Artifact>();
+            for (IResource r : task.getOutputs()) {
+                int flags = 0;
+                synchronized (outputs) {
+                    EnumSet<OutputFlags> outputFlags = outputs.get(r.getAbsPath());
+                    if (outputFlags != null) {
+                        for (OutputFlags flag : outputFlags) {
+                            flags |= 1 << flag.ordinal();
+                        }
                     }
                 }
+                artifacts.add(new ArtifactCache.Artifact(r.getPath(), flags, r.getContent()));
+            }
+            cache.put(key, artifacts);
+        } catch (IOException e) {
+            logWarning("Unable to store the outputs of '%s' in the artifact cache: %s", task, e.getMessage());
+        }
+    }
 
-                // compare all task signature. current task signature between previous
-                // signature from state on disk
-                List<byte[]> outputSigs = new ArrayList<byte[]>();
-                for (IResource r : task.getOutputs()) {
-                    byte[] s = state.getSignature(r.getAbsPath());
-                    outputSigs.add(s);
+    /**
+     * Outcome of running a single task on a worker thread
+     */
+    private static class TaskOutcome {
+        Task<?> task;
+        // null when the outputs were already up to date
+        TaskResult result;
+        // true when the outputs were restored from the artifact cache
+        boolean cached;
+
+        TaskOutcome(Task<?> task, TaskResult result) {
+            this.task = task;
+            this.result = result;
+        }
+    }
+
+    private List<Task<?>> takeNewTasks() {
+        synchronized (newTasksLock) {
+            List<Task<?>> tasks = new ArrayList<Task<?>>(newTasks);
+            newTasks.clear();
+            return tasks;
+        }
+    }
+
+    private TaskOutcome runTask(Task<?> task, ArtifactCache cache) throws IOException {
+        BuildTrace trace = buildTrace;
+        if (trace == null) {
+            return doRunTask(task, cache, null);
+        }
+
+        long start = trace.begin();
+        TaskOutcome outcome = null;
+        try {
+            outcome = doRunTask(task, cache, trace);
+            return outcome;
+        } finally {
+            long end = trace.begin();
+            String status = BuildTrace.STATUS_FAILED;
+            if (outcome != null) {
+                if (outcome.result == null) {
+                    status = BuildTrace.STATUS_UP_TO_DATE;
+                } else if (!outcome.result.isOk()) {
+                    status = BuildTrace.STATUS_FAILED;
+                } else if (outcome.cached) {
+                    status = BuildTrace.STATUS_CACHED;
+                } else {
+                    status = BuildTrace.STATUS_BUILT;
                 }
-                boolean allSigsEquals = true;
-                for (byte[] sig : outputSigs) {
-                    if (!Arrays.equals(sig, taskSignature)) {
-                        allSigsEquals = false;
-                        break;
-                    }
+            }
+            List<IResource> inputs = task.getInputs();
+            String name = inputs.isEmpty() ? task.toString() : inputs.get(0).getPath();
+            trace.addTask(name, task.getBuilder().getClass().getSimpleName(), start, end, status, getInputSize(task), task.getOutputs().size());
+        }
+    }
+
+    // Total size of the inputs of a task, for the build trace. Only the size of
+    // the files is read, and inputs in library archives aren't counted.
+    private static long getInputSize(Task<?> task) {
+        long size = 0;
+        for (IResource r : task.getInputs()) {
+            size += new File(r.getAbsPath()).length();
+        }
+        return size;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private TaskOutcome doRunTask(Task<?> task, ArtifactCache cache, BuildTrace trace) throws IOException {
+        long traceStart = trace != null ? trace.begin() : 0;
+        byte[] taskSignature = task.calculateSignature(this);
+        if (trace != null) {
+            trace.addStep("signature", traceStart);
+        }
+
+        // do all output files exist?
+        boolean allOutputExists = true;
+        for (IResource r : task.getOutputs()) {
+            if (!r.exists()) {
+                allOutputExists = false;
+                break;
+            }
+        }
+
+        // compare all task signature. current task signature between previous
+        // signature from state on disk
+        boolean allSigsEquals = true;
+        for (IResource r : task.getOutputs()) {
+            byte[] sig = state.getSignature(r.getAbsPath());
+            if (!Arrays.equals(sig, taskSignature)) {
+                allSigsEquals = false;
+                break;
+            }
+        }
+
+        if (allOutputExists && allSigsEquals) {
+            // Task is successfully completed in a previous build
+            return new TaskOutcome(task, null);
+        }
+
+        // Outputs built by a previous build with the same inputs
+        String cacheKey = null;
+        if (cache != null && isCacheable(task)) {
+            cacheKey = getArtifactCacheKey(task, taskSignature);
+            traceStart = trace != null ? trace.begin() : 0;
+            boolean restored = restoreOutputs(cache, cacheKey, task);
+            if (trace != null) {
+                trace.addStep("restoreOutputs", traceStart);
+            }
+            if (restored) {
+                for (IResource r : task.getOutputs()) {
+                    state.putSignature(r.getAbsPath(), taskSignature);
                 }
+                TaskOutcome outcome = new TaskOutcome(task, new TaskResult(task));
+                outcome.cached = true;
+                return outcome;
+            }
+        }
 
-                boolean shouldRun = (!allOutputExists || !allSigsEquals) && !completedTasks.contains(task);
+        TaskResult taskResult = new TaskResult(task);
+        Builder builder = task.getBuilder();
+        boolean ok = true;
+        int lineNumber = 0;
+        String message = null;
+        Throwable exception = null;
+        traceStart = trace != null ? trace.begin() : 0;
+        try {
+            builder.build(task);
+            for (IResource r : task.getOutputs()) {
+                state.putSignature(r.getAbsPath(), taskSignature);
+            }
 
-                if (!shouldRun) {
-                    if (allOutputExists && allSigsEquals)
-                    {
-                        // Task is successfully completed now or in a previous build.
-                        // Only if the conditions in the if-statements are true add the task to the completed set and the
-                        // output files to the completed output set
-                        completedTasks.add(task);
-                        completedOutputs.addAll(task.getOutputs());
-                    }
-                    continue;
+            for (IResource r : task.getOutputs()) {
+                if (!r.exists()) {
+                    message = String.format("Output '%s' not found", r.getAbsPath());
+                    ok = false;
+                    break;
                 }
+            }
+        } catch (CompileExceptionError e) {
+            ok = false;
+            lineNumber = e.getLineNumber();
+            message = e.getMessage();
+        } catch (Throwable e) {
+            ok = false;
+            message = e.getMessage();
+            exception = e;
+
+            // to fix the issue it's easier to see the actual callstack
+            exception.printStackTrace(new java.io.PrintStream(System.out));
+        }
+        if (trace != null) {
+            trace.addStep("build", traceStart);
+        }
+        if (!ok) {
+            taskResult.setOk(ok);
+            taskResult.setLineNumber(lineNumber);
+            taskResult.setMessage(message);
+            taskResult.setException(exception);
+            // Clear sigs for all outputs when a task fails
+            for (IResource r : task.getOutputs()) {
+                state.putSignature(r.getAbsPath(), new byte[0]);
+            }
+        } else if (cacheKey != null) {
+            traceStart = trace != null ? trace.begin() : 0;
+            storeOutputs(cache, cacheKey, task);
+            if (trace != null) {
+                trace.addStep("storeOutputs", traceStart);
+            }
+        }
+        return new TaskOutcome(task, taskResult);
+    }
 
-                completedTasks.add(task);
+    private List<TaskResult> runTasks(IProgress monitor) throws IOException {
+        List<TaskResult> result = new ArrayList<>();
 
-                TaskResult taskResult = new TaskResult(task);
-                result.add(taskResult);
-                Builder builder = task.getBuilder();
-                boolean ok = true;
-                int lineNumber = 0;
-                String message = null;
-                Throwable exception = null;
-                boolean abort = false;
-                try {
-                    builder.build(task);
-                    for (IResource r : task.getOutputs()) {
-                        state.putSignature(r.getAbsPath(), taskSignature);
+        List<Task<?>> tasks = takeNewTasks();
+
+        // Keep track of the paths for all outputs
+        outputs = new HashMap<>();
+        for (Task<?> task : tasks) {
+            for (IResource res : task.getOutputs()) {
+                outputs.put(res.getAbsPath(), EnumSet.noneOf(OutputFlags.class));
+            }
+        }
+
+        // Tasks are dispatched to the worker pool as soon as all inputs generated by
+        // other tasks are completed. As before, the build stops when a task fails: no
+        // new tasks are dispatched, but tasks already running are allowed to finish.
+        final ArtifactCache cache = getArtifactCache();
+        TaskGraph graph = new TaskGraph();
+        ExecutorService executor = Executors.newFixedThreadPool(getMaxCpuThreads());
+        CompletionService<TaskOutcome> completionService = new ExecutorCompletionService<TaskOutcome>(executor);
+        int running = 0;
+        boolean abort = false;
+        try {
+            List<Task<?>> ready = graph.add(tasks);
+            while (true) {
+                if (!abort) {
+                    for (final Task<?> task : ready) {
+                        completionService.submit(new Callable<TaskOutcome>() {
+                            @Override
+                            public TaskOutcome call() throws Exception {
+                                return runTask(task, cache);
+                            }
+                        });
+                        ++running;
                     }
+                }
+                if (running == 0) {
+                    break;
+                }
 
-                    for (IResource r : task.getOutputs()) {
-                        if (!r.exists()) {
-                            message = String.format("Output '%s' not found", r.getAbsPath());
-                            ok = false;
-                            break;
-                        }
+                TaskOutcome outcome;
+                try {
+                    outcome = completionService.take().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while running tasks", e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
                     }
-                    completedOutputs.addAll(task.getOutputs());
+                    throw new RuntimeException(cause);
+                }
+                --running;
+                monitor.worked(1);
 
-                } catch (CompileExceptionError e) {
-                    ok = false;
-                    lineNumber = e.getLineNumber();
-                    message = e.getMessage();
-                } catch (Throwable e) {
-                    ok = false;
-                    message = e.getMessage();
-                    exception = e;
+                ready = new ArrayList<Task<?>>();
+                TaskResult taskResult = outcome.result;
+                if (taskResult != null) {
+                    result.add(taskResult);
+                }
+                if (taskResult == null || taskResult.isOk()) {
+                    ready.addAll(graph.complete(outcome.task));
+                } else {
                     abort = true;
-
-                    // to fix the issue it's easier to see the actual callstack
-                    exception.printStackTrace(new java.io.PrintStream(System.out));
                 }
-                if (!ok) {
-                    taskFailed = true;
-                    taskResult.setOk(ok);
-                    taskResult.setLineNumber(lineNumber);
-                    taskResult.setMessage(message);
-                    taskResult.setException(exception);
-                    // Clear sigs for all outputs when a task fails
-                    for (IResource r : task.getOutputs()) {
-                        state.putSignature(r.getAbsPath(), new byte[0]);
-                    }
-                    if (abort) {
-                        break run;
+
+                // Tasks created by builders while building
+                List<Task<?>> created = takeNewTasks();
+                if (!created.isEmpty()) {
+                    synchronized (outputs) {
+                        for (Task<?> task : created) {
+                            for (IResource res : task.getOutputs()) {
+                                outputs.put(res.getAbsPath(), EnumSet.noneOf(OutputFlags.class));
+                            }
+                        }
                     }
+                    ready.addAll(graph.add(created));
+                }
+
+                if (!abort) {
+                    BundleHelper.throwIfCanceled(monitor);
                 }
             }
-            if (taskFailed) {
-                break;
-            }
-            // set of *all* possible output files
-            for (Task<?> task : newTasks) {
-                allOutputs.addAll(task.getOutputs());
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            tasks.addAll(newTasks);
-            newTasks.clear();
+            shutdownWorkerExecutor();
         }
         return result;
     }
@@ -1082,13 +1492,15 @@ run:
      * @param flag OutputFlag to add
      */
     public boolean addOutputFlags(String resourcePath, OutputFlags flag) {
-        EnumSet<OutputFlags> currentFlags = outputs.get(resourcePath);
-        if(currentFlags == null) {
-            return false;
+        synchronized (outputs) {
+            EnumSet<OutputFlags> currentFlags = outputs.get(resourcePath);
+            if(currentFlags == null) {
+                return false;
+            }
+            currentFlags.add(flag);
+            outputs.replace(resourcePath, currentFlags);
+            return true;
         }
-        currentFlags.add(flag);
-        outputs.replace(resourcePath, currentFlags);
-        return true;
     }
 
     /**
@@ -1101,13 +1513,32 @@ run:
     }
 
     /**
-     * Resolve (i.e. download from server) the stored lib URLs.
+     * Get the max number of libraries to download at the same time. Set by the
+     * "max-download-threads" option and defaults to 8.
+     * @return thread count, at least one
+     */
+    public int getMaxDownloadThreads() {
+        int threads = DEFAULT_MAX_DOWNLOAD_THREADS;
+        String value = option("max-download-threads", null);
+        if (value != null) {
+            try {
+                threads = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                logWarning("Invalid value '%s' for max-download-threads, using %d threads", value, threads);
+            }
+        }
+        return Math.max(1, threads);
+    }
+
+    /**
+     * Resolve (i.e. download from server) the stored lib URLs. The libraries are
+     * downloaded concurrently, see getMaxDownloadThreads.
      * @throws IOException
      */
     public void resolveLibUrls(IProgress progress) throws IOException, LibraryException {
         try {
             String libPath = getLibPath();
-            File libDir = new File(libPath);
+            final File libDir = new File(libPath);
             // Clean lib dir first
             //FileUtils.deleteQuietly(libDir);
             FileUtils.forceMkdir(libDir);
@@ -1117,100 +1548,47 @@ run:
             IProgress subProgress = progress.subProgress(count);
             subProgress.beginTask("Download archive(s)", count);
             logInfo("Downloading %d archive(s)", count);
-            for (int i = 0; i < count; ++i) {
-                BundleHelper.throwIfCanceled(progress);
-                URL url = libUrls.get(i);
-                File f = libFiles.get(url.toString());
-
-                logInfo("%2d: Downloading %s", i, url);
-
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-                String etag = null;
-                if (f != null) {
-                    String etagB64 = LibraryUtil.getETagFromName(LibraryUtil.getHashedUrl(url), f.getName());
-                    if (etagB64 != null) {
-                        etag = new String(new Base64().decode(etagB64.getBytes())).replace("\"", ""); // actually includes the quotation marks
-                        etag = String.format("\"%s\"", etag); // fixing broken etag
-                        connection.addRequestProperty("If-None-Match", etag);
-                    }
-                }
-
-                // Check if URL contains basic auth credentials
-                String basicAuthData = null;
-                try {
-                    URI uri = new URI(url.toString());
-                    basicAuthData = uri.getUserInfo();
-                } catch (URISyntaxException e1) {
-                    // Ignored, could not get URI and basic auth data from URL.
-                }
-
-                // Pass correct headers along to server depending on auth alternative.
-                if (basicAuthData != null) {
-                    String basicAuth = "Basic " + new String(new Base64().encode(basicAuthData.getBytes()));
-                    connection.setRequestProperty("Authorization", basicAuth);
-                } else {
-                    connection.addRequestProperty("X-Email", this.options.get("email"));
-                    connection.addRequestProperty("X-Auth", this.options.get("auth"));
-                }
-
-                InputStream input = null;
-                try {
-                    connection.connect();
-                    int code = connection.getResponseCode();
-
-                    if (code == 304) {
-                        logInfo("%2d: Status %d: Already cached", i, code);
-                    } else if (code >= 400) {
-                        logWarning("%2d: Status %d: Failed to download %s", i, code, url);
-                        throw new LibraryException(String.format("Status %d: Failed to download %s", code, url), new Exception());
-                    } else {
-
-                        String serverETag = connection.getHeaderField("ETag");
-                        if (serverETag == null) {
-                            serverETag = connection.getHeaderField("Etag");
-                        }
 
-                        if (serverETag == null) {
-                            throw new ConnectException(String.format("The URL %s didn't provide an ETag", url));
-                        }
-
-                        if (etag != null && !etag.equals(serverETag)) {
-                            logInfo("%2d: Status %d: ETag mismatch %s != %s. Deleting old file %s", i, code, etag!=null?etag:"", serverETag!=null?serverETag:"", f);
-                            f.delete();
-                            f = null;
-                        }
-
-                        // if(!serverETagMatch) {
-                        input = new BufferedInputStream(connection.getInputStream());
-
-                        if (f == null) {
-                            f = new File(libPath, LibraryUtil.getFileName(url, serverETag));
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(count, getMaxDownloadThreads())));
+            try {
+                List<Future<Void>> futures = new ArrayList<Future<Void>>(count);
+                for (int i = 0; i < count; ++i) {
+                    final int index = i;
+                    final URL url = libUrls.get(i);
+                    final File f = libFiles.get(url.toString());
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            resolveLibUrl(index, url, f, libDir);
+                            return null;
                         }
-                        FileUtils.copyInputStreamToFile(input, f);
+                    }));
+                }
 
+                // Failures are reported in the order of the lib URLs
+                for (Future<Void> future : futures) {
+                    while (true) {
+                        BundleHelper.throwIfCanceled(progress);
                         try {
-                            ZipFile zip = new ZipFile(f);
-                            zip.close();
-                        } catch (ZipException e) {
-                            f.delete();
-                            throw new LibraryException(String.format("The file obtained from %s is not a valid zip file", url.toString()), e);
+                            future.get(100, TimeUnit.MILLISECONDS);
+                            break;
+                        } catch (TimeoutException e) {
+                            // Check if canceled and wait again
+                        } catch (ExecutionException e) {
+                            Throwable cause = e.getCause();
+                            if (cause instanceof LibraryException) {
+                                throw (LibraryException) cause;
+                            } else if (cause instanceof IOException) {
+                                throw (IOException) cause;
+                            }
+                            throw new LibraryException(cause.getMessage(), cause);
                         }
-                        logInfo("%2d: Status %d: Stored %s", i, code, f);
-                    }
-                    connection.disconnect();
-                } catch (ConnectException e) {
-                    throw new LibraryException(String.format("Connection refused by the server at %s", url.toString()), e);
-                } catch (FileNotFoundException e) {
-                    throw new LibraryException(String.format("The URL %s points to a resource which doesn't exist", url.toString()), e);
-                } finally {
-                    if(input != null) {
-                        IOUtils.closeQuietly(input);
                     }
                     subProgress.worked(1);
                 }
-
-                BundleHelper.throwIfCanceled(subProgress);
+            } finally {
+                // Downloads still running are left to finish, and remove their temporary files
+                executor.shutdownNow();
             }
         }
         catch(IOException ioe) {
@@ -1222,7 +1600,119 @@ run:
         catch(Exception e) {
             throw new LibraryException(e.getMessage(), e);
         }
-   }
+    }
+
+    private void resolveLibUrl(int i, URL url, File f, File libDir) throws IOException, LibraryException, InterruptedException {
+        long delay = LIB_DOWNLOAD_RETRY_DELAY;
+        for (int attempt = 1; ; ++attempt) {
+            try {
+                downloadLibUrl(i, url, f, libDir);
+                return;
+            } catch (FileNotFoundException e) {
+                throw new LibraryException(String.format("The URL %s points to a resource which doesn't exist", url.toString()), e);
+            } catch (ZipException e) {
+                throw new LibraryException(String.format("The file obtained from %s is not a valid zip file", url.toString()), e);
+            } catch (IOException e) {
+                // Connection failures, server errors and interrupted transfers are retried
+                if (attempt >= LIB_DOWNLOAD_ATTEMPTS) {
+                    if (e instanceof ConnectException) {
+                        throw new LibraryException(String.format("Connection refused by the server at %s", url.toString()), e);
+                    }
+                    throw e;
+                }
+                logWarning("%2d: %s, retrying in %d ms", i, e.getMessage(), delay);
+                Thread.sleep(delay);
+                delay *= 2;
+            }
+        }
+    }
+
+    private void downloadLibUrl(int i, URL url, File f, File libDir) throws IOException, LibraryException {
+        logInfo("%2d: Downloading %s", i, url);
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+        String etag = null;
+        if (f != null) {
+            String etagB64 = LibraryUtil.getETagFromName(LibraryUtil.getHashedUrl(url), f.getName());
+            if (etagB64 != null) {
+                etag = new String(new Base64().decode(etagB64.getBytes())).replace("\"", ""); // actually includes the quotation marks
+                etag = String.format("\"%s\"", etag); // fixing broken etag
+                connection.addRequestProperty("If-None-Match", etag);
+            }
+        }
+
+        // Check if URL contains basic auth credentials
+        String basicAuthData = null;
+        try {
+            URI uri = new URI(url.toString());
+            basicAuthData = uri.getUserInfo();
+        } catch (URISyntaxException e1) {
+            // Ignored, could not get URI and basic auth data from URL.
+        }
+
+        // Pass correct headers along to server depending on auth alternative.
+        if (basicAuthData != null) {
+            String basicAuth = "Basic " + new String(new Base64().encode(basicAuthData.getBytes()));
+            connection.setRequestProperty("Authorization", basicAuth);
+        } else {
+            connection.addRequestProperty("X-Email", this.options.get("email"));
+            connection.addRequestProperty("X-Auth", this.options.get("auth"));
+        }
+
+        // Responses are read to the end and closed, rather than disconnected, so
+        // that the connection can be reused for the next library from the same host
+        connection.connect();
+        int code = connection.getResponseCode();
+
+        if (code == 304) {
+            IOUtils.closeQuietly(connection.getInputStream());
+            logInfo("%2d: Status %d: Already cached", i, code);
+            return;
+        } else if (code >= 400) {
+            IOUtils.closeQuietly(connection.getErrorStream());
+            logWarning("%2d: Status %d: Failed to download %s", i, code, url);
+            if (code >= 500) {
+                throw new IOException(String.format("Status %d: Failed to download %s", code, url));
+            }
+            throw new LibraryException(String.format("Status %d: Failed to download %s", code, url), new Exception());
+        }
+
+        String serverETag = connection.getHeaderField("ETag");
+        if (serverETag == null) {
+            serverETag = connection.getHeaderField("Etag");
+        }
+
+        if (serverETag == null) {
+            IOUtils.closeQuietly(connection.getInputStream());
+            throw new LibraryException(String.format("Connection refused by the server at %s", url.toString()),
+                    new ConnectException(String.format("The URL %s didn't provide an ETag", url)));
+        }
+
+        // Downloaded to a temporary file, and moved in place once complete, so that
+        // an interrupted download never leaves a broken library behind
+        File target = new File(libDir, LibraryUtil.getFileName(url, serverETag));
+        File tmp = File.createTempFile(LibraryUtil.getHashedUrl(url) + "-", ".tmp", libDir);
+        InputStream input = null;
+        try {
+            input = new BufferedInputStream(connection.getInputStream());
+            LibraryUtil.writeArchive(input, tmp);
+            try {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            IOUtils.closeQuietly(input);
+            tmp.delete();
+        }
+
+        if (f != null && !f.equals(target)) {
+            logInfo("%2d: Status %d: ETag mismatch %s != %s. Deleting old file %s", i, code, etag!=null?etag:"", serverETag, f);
+            f.delete();
+        }
+        logInfo("%2d: Status %d: Stored %s", i, code, target);
+    }
 
     /**
      * Set option
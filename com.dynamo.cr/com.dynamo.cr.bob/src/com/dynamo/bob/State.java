@@ -13,25 +13,38 @@
 package com.dynamo.bob;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
 
+import com.dynamo.bob.fs.DefaultResource;
 import com.dynamo.bob.fs.IResource;
+import com.dynamo.bob.util.PathSlotTable;
 
 /**
  * Bob state abstraction for persistent sha1-checksums
+ *
+ * The state is stored as a {@link PathSlotTable} where each slot holds the signature
+ * length followed by the signature. State files on disk are memory mapped when loaded
+ * and only the signatures changed during the build are written when saved.
  * @author Christian Murray
  *
  */
 public class State implements Serializable {
 
     private static final long serialVersionUID = -275410118302470803L;
-    private Map<String, byte[]> signatures = new HashMap<String, byte[]>();
+
+    private static final int MAGIC = 0x42535441; // "BSTA"
+    private static final int VERSION = 1;
+    private static final int MAX_SIGNATURE_SIZE = 20;
+
+    // Only set when reading state saved with java serialization by older versions
+    private Map<String, byte[]> signatures;
+
+    private transient PathSlotTable table = new PathSlotTable(MAGIC, VERSION, 1 + MAX_SIGNATURE_SIZE);
 
     /**
      * Get signature for path
@@ -39,7 +52,11 @@ public class State implements Serializable {
      * @return signature or null of no mapping exists
      */
     public byte[] getSignature(String path) {
-        return signatures.get(path);
+        byte[] slot = table.get(path);
+        if (slot == null) {
+            return null;
+        }
+        return Arrays.copyOfRange(slot, 1, 1 + slot[0]);
     }
 
     /**
@@ -48,29 +65,71 @@ public class State implements Serializable {
      * @param signature signature to set
      */
     public void putSignature(String path, byte[] signature) {
-        signatures.put(path, signature);
+        if (signature.length > MAX_SIGNATURE_SIZE) {
+            throw new IllegalArgumentException(String.format("Signature for '%s' is larger than %d bytes", path, MAX_SIGNATURE_SIZE));
+        }
+        byte[] slot = new byte[1 + MAX_SIGNATURE_SIZE];
+        slot[0] = (byte) signature.length;
+        System.arraycopy(signature, 0, slot, 1, signature.length);
+        table.put(path, slot);
+    }
+
+    // State resources in the default file system are stored on disk and can be memory mapped
+    private static File getFile(IResource resource) {
+        if (resource instanceof DefaultResource) {
+            return new File(resource.getAbsPath());
+        }
+        return null;
+    }
+
+    private static boolean isSerialized(byte[] content) {
+        return content.length >= 2 && (content[0] & 0xff) == 0xac && (content[1] & 0xff) == 0xed;
+    }
+
+    private static State loadSerialized(byte[] content) throws IOException, ClassNotFoundException {
+        ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(content));
+        State serialized = (State) is.readObject();
+        State state = new State();
+        if (serialized.signatures != null) {
+            for (Map.Entry<String, byte[]> entry : serialized.signatures.entrySet()) {
+                state.putSignature(entry.getKey(), entry.getValue());
+            }
+        }
+        return state;
     }
 
     /**
-     * Load state from resource
+     * Load state from resource. State saved with java serialization by older
+     * versions is migrated and written in the current format on next save.
      * @param resource state resource
      * @return {@link State}
      * @throws IOException
      */
     public static State load(IResource resource) throws IOException {
-        byte[] content = resource.getContent();
-        if (content == null) {
-            return new State();
-        } else {
-            try {
-                ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(content));
-                State state = (State) is.readObject();
+        State state = new State();
+        File file = getFile(resource);
+        try {
+            if (file != null) {
+                if (!file.isFile() || state.table.load(file)) {
+                    return state;
+                }
+            }
+            byte[] content = resource.getContent();
+            if (content == null) {
                 return state;
-            } catch (Throwable e) {
-                System.err.println("Unable to load state");
-                e.printStackTrace();
-                return new State();
             }
+            if (isSerialized(content)) {
+                return loadSerialized(content);
+            }
+            if (file == null && state.table.load(content)) {
+                return state;
+            }
+            System.err.println("Unable to load state");
+            return new State();
+        } catch (Throwable e) {
+            System.err.println("Unable to load state");
+            e.printStackTrace();
+            return new State();
         }
     }
 
@@ -80,11 +139,19 @@ public class State implements Serializable {
      * @throws IOException
      */
     public void save(IResource resource) throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream(128 * 1024);
-        ObjectOutputStream os = new ObjectOutputStream(bos);
-        os.writeObject(this);
-        os.close();
-        resource.setContent(bos.toByteArray());
+        File file = getFile(resource);
+        if (file != null) {
+            table.save(file);
+        } else {
+            resource.setContent(table.toByteArray());
+        }
+    }
+
+    /**
+     * Release the state file mapped on load, see {@link PathSlotTable#close()}
+     */
+    public void close() {
+        table.close();
     }
 
 }
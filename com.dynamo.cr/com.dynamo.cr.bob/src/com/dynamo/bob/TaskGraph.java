@@ -0,0 +1,162 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.dynamo.bob.fs.IResource;
+
+/**
+ * Dependency graph between tasks. A task depends on another task when one of its
+ * inputs is an output of the other task. Producers and consumers are indexed once
+ * when tasks are added, so completing a task only visits the tasks consuming its outputs.
+ *
+ * Tasks can be added while the graph is being processed, i.e. tasks created by
+ * {@link Project#buildResource(IResource)} during a build.
+ */
+public class TaskGraph {
+
+    private static class Node {
+        Task<?> task;
+        // Inputs produced by other tasks that are not yet completed
+        Set<IResource> pendingInputs = new HashSet<IResource>();
+        boolean scheduled = false;
+        boolean completed = false;
+
+        Node(Task<?> task) {
+            this.task = task;
+        }
+    }
+
+    private Map<Task<?>, Node> nodes = new IdentityHashMap<Task<?>, Node>();
+    private Map<IResource, Node> producers = new HashMap<IResource, Node>();
+    private Map<IResource, List<Node>> consumers = new HashMap<IResource, List<Node>>();
+    private Set<IResource> completedOutputs = new HashSet<IResource>();
+    private int completedCount = 0;
+
+    /**
+     * Add tasks to the graph.
+     * @param tasks tasks to add. Tasks already part of the graph are ignored.
+     * @return tasks that are ready to run, i.e. have no inputs waiting to be generated by another task
+     */
+    public List<Task<?>> add(Collection<Task<?>> tasks) {
+        List<Node> added = new ArrayList<Node>(tasks.size());
+        for (Task<?> task : tasks) {
+            if (nodes.containsKey(task)) {
+                continue;
+            }
+            Node node = new Node(task);
+            nodes.put(task, node);
+            added.add(node);
+            for (IResource output : task.getOutputs()) {
+                producers.put(output, node);
+            }
+        }
+
+        for (Node node : added) {
+            for (IResource input : node.task.getInputs()) {
+                List<Node> inputConsumers = consumers.get(input);
+                if (inputConsumers == null) {
+                    inputConsumers = new ArrayList<Node>();
+                    consumers.put(input, inputConsumers);
+                }
+                inputConsumers.add(node);
+                if (producers.containsKey(input) && !completedOutputs.contains(input)) {
+                    node.pendingInputs.add(input);
+                }
+            }
+        }
+
+        // Tasks added earlier, but not yet scheduled, might consume outputs of
+        // the new producers and have to wait for them as well.
+        for (Node node : added) {
+            for (IResource output : node.task.getOutputs()) {
+                List<Node> outputConsumers = consumers.get(output);
+                if (outputConsumers == null) {
+                    continue;
+                }
+                for (Node consumer : outputConsumers) {
+                    if (!consumer.scheduled) {
+                        consumer.pendingInputs.add(output);
+                    }
+                }
+            }
+        }
+
+        List<Task<?>> ready = new ArrayList<Task<?>>();
+        for (Node node : added) {
+            if (node.pendingInputs.isEmpty()) {
+                node.scheduled = true;
+                ready.add(node.task);
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Mark a task as completed, either built in this session or already up to date.
+     * Failed tasks must not be completed, which leaves their dependants unscheduled.
+     * @param task completed task
+     * @return tasks that became ready to run as a result of the completion
+     */
+    public List<Task<?>> complete(Task<?> task) {
+        List<Task<?>> ready = new ArrayList<Task<?>>();
+        Node node = nodes.get(task);
+        if (node == null || node.completed) {
+            return ready;
+        }
+        node.completed = true;
+        ++completedCount;
+        for (IResource output : task.getOutputs()) {
+            completedOutputs.add(output);
+            List<Node> outputConsumers = consumers.get(output);
+            if (outputConsumers == null) {
+                continue;
+            }
+            for (Node consumer : outputConsumers) {
+                if (consumer.scheduled) {
+                    continue;
+                }
+                consumer.pendingInputs.remove(output);
+                if (consumer.pendingInputs.isEmpty()) {
+                    consumer.scheduled = true;
+                    ready.add(consumer.task);
+                }
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Get number of tasks in the graph
+     * @return task count
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Get number of completed tasks
+     * @return completed task count
+     */
+    public int getCompletedCount() {
+        return completedCount;
+    }
+}
@@ -12,18 +12,36 @@
 
 package com.dynamo.bob.archive;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -32,8 +50,10 @@ import org.apache.commons.io.IOUtils;
 import com.dynamo.bob.pipeline.ResourceNode;
 import com.dynamo.crypt.Crypt;
 import com.dynamo.liveupdate.proto.Manifest.HashAlgorithm;
+import com.dynamo.liveupdate.proto.Manifest.HashDigest;
 import com.dynamo.liveupdate.proto.Manifest.SignAlgorithm;
 import com.dynamo.liveupdate.proto.Manifest.ResourceEntryFlag;
+import com.google.protobuf.ByteString;
 
 import net.jpountz.lz4.LZ4Compressor;
 import net.jpountz.lz4.LZ4Factory;
@@ -49,41 +69,62 @@ public class ArchiveBuilder {
 
     private static final List<String> ENCRYPTED_EXTS = Arrays.asList("luac", "scriptc", "gui_scriptc", "render_scriptc");
 
+    // Max size of the source data of entries being processed ahead of the writer
+    private static final long MAX_IN_FLIGHT_BYTES = 256 * 1024 * 1024;
+
+    private static final int ENTRIES_FILE_MAGIC = 0x41524345; // "ARCE"
+    private static final int ENTRIES_FILE_VERSION = 1;
+
     private List<ArchiveEntry> entries = new ArrayList<ArchiveEntry>();
+    private Set<ArchiveEntry> entrySet = new HashSet<ArchiveEntry>();
     private String root;
     private ManifestBuilder manifestBuilder = null;
     private LZ4Compressor lz4Compressor;
     private byte[] archiveIndexMD5 = new byte[MD5_HASH_DIGEST_BYTE_LENGTH];
+    private int threadCount;
+
+    // Incremental writes, see setIncremental
+    private boolean incremental = false;
+    private File previousArchiveData;
+    private File entriesFile;
+    private Map<String, StoredEntry> previousEntries = new HashMap<String, StoredEntry>();
+    private List<StoredEntry> writtenEntries = new ArrayList<StoredEntry>();
+    private int reusedEntryCount = 0;
+    private long reusedSize = 0;
 
     public ArchiveBuilder(String root, ManifestBuilder manifestBuilder) {
+        this(root, manifestBuilder, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param root root directory of the entries
+     * @param manifestBuilder manifest to add the entries to
+     * @param threadCount number of threads used to read, compress, encrypt and hash entries
+     */
+    public ArchiveBuilder(String root, ManifestBuilder manifestBuilder, int threadCount) {
         this.root = new File(root).getAbsolutePath();
         this.manifestBuilder = manifestBuilder;
+        // LZ4 compressors are thread safe and shared by all workers
         this.lz4Compressor = LZ4Factory.fastestInstance().highCompressor();
+        this.threadCount = Math.max(1, threadCount);
     }
 
-    private void add(String fileName, boolean doCompress, boolean isLiveUpdate) throws IOException {
-        ArchiveEntry e = new ArchiveEntry(root, fileName, doCompress, isLiveUpdate);
-        if (!contains(e)) {
+    private void add(ArchiveEntry e) {
+        if (entrySet.add(e)) {
             entries.add(e);
         }
     }
 
-    public void add(String fileName, boolean doCompress) throws IOException {
-        ArchiveEntry e = new ArchiveEntry(root, fileName, doCompress);
-        if (!contains(e)) {
-            entries.add(e);
-        }
+    private void add(String fileName, boolean doCompress, boolean isLiveUpdate) throws IOException {
+        add(new ArchiveEntry(root, fileName, doCompress, isLiveUpdate));
     }
 
-    public void add(String fileName) throws IOException {
-        ArchiveEntry e = new ArchiveEntry(root, fileName, false);
-        if (!contains(e)) {
-            entries.add(e);
-        }
+    public void add(String fileName, boolean doCompress) throws IOException {
+        add(new ArchiveEntry(root, fileName, doCompress));
     }
 
-    private boolean contains(ArchiveEntry e) {
-        return entries.contains(e);
+    public void add(String fileName) throws IOException {
+        add(new ArchiveEntry(root, fileName, false));
     }
 
     public ArchiveEntry getArchiveEntry(int index) {
@@ -98,6 +139,135 @@ public class ArchiveBuilder {
         return this.archiveIndexMD5;
     }
 
+    /**
+     * Data of an entry in the archive data, stored in the entries file of an
+     * incremental archive. The key identifies the source data and all settings
+     * the entry data was created with.
+     */
+    private static class StoredEntry {
+        String key;
+        int offset;
+        int length;
+        int compressedSize;
+        int flags;
+        byte archiveEntryFlags;
+        byte[] hashDigest;
+    }
+
+    /**
+     * Enable incremental writes. Entries of the previous archive whose source
+     * data and settings are unchanged are copied from the previous archive data
+     * instead of being compressed and encrypted again. The previous entries are
+     * only used if the entries file was written for the current archive data, and
+     * the entries file is removed, so it is never used with a partially written
+     * archive. Call {@link #writeEntries()} once the new archive data has
+     * replaced the previous one.
+     * @param archiveData data file of the previous archive, and of the archive being written
+     * @param entriesFile file storing the entries of the archive data
+     * @throws IOException
+     */
+    public void setIncremental(File archiveData, File entriesFile) throws IOException {
+        this.incremental = true;
+        this.previousArchiveData = archiveData;
+        this.entriesFile = entriesFile;
+        this.previousEntries = readEntries(entriesFile, archiveData);
+        if (entriesFile.exists() && !entriesFile.delete()) {
+            throw new IOException("Unable to delete " + entriesFile.getAbsolutePath());
+        }
+    }
+
+    private String getHashAlgorithmName() {
+        return manifestBuilder.getResourceHashAlgorithm().name();
+    }
+
+    private Map<String, StoredEntry> readEntries(File entriesFile, File archiveData) {
+        Map<String, StoredEntry> storedEntries = new HashMap<String, StoredEntry>();
+        if (!entriesFile.isFile() || !archiveData.isFile()) {
+            return storedEntries;
+        }
+        DataInputStream is = null;
+        try {
+            is = new DataInputStream(new BufferedInputStream(new FileInputStream(entriesFile)));
+            if (is.readInt() != ENTRIES_FILE_MAGIC || is.readInt() != ENTRIES_FILE_VERSION || is.readInt() != VERSION
+                    || !is.readUTF().equals(getHashAlgorithmName())) {
+                return storedEntries;
+            }
+            long archiveDataLength = archiveData.length();
+            if (is.readLong() != archiveDataLength || is.readLong() != archiveData.lastModified()) {
+                return storedEntries;
+            }
+            int count = is.readInt();
+            for (int i = 0; i < count; ++i) {
+                StoredEntry e = new StoredEntry();
+                e.key = is.readUTF();
+                e.offset = is.readInt();
+                e.length = is.readInt();
+                e.compressedSize = is.readInt();
+                e.flags = is.readInt();
+                e.archiveEntryFlags = is.readByte();
+                e.hashDigest = new byte[is.readInt()];
+                is.readFully(e.hashDigest);
+                if (e.offset < 0 || e.length < 0 || (long) e.offset + e.length > archiveDataLength) {
+                    return new HashMap<String, StoredEntry>();
+                }
+                storedEntries.put(e.key, e);
+            }
+        } catch (IOException e) {
+            // A corrupt entries file is ignored, and all entries are written again
+            return new HashMap<String, StoredEntry>();
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+        return storedEntries;
+    }
+
+    /**
+     * Write the entries file of an incremental archive, once the archive data
+     * has been written to the file given to {@link #setIncremental(File, File)}
+     * @throws IOException
+     */
+    public void writeEntries() throws IOException {
+        if (!incremental) {
+            throw new IllegalStateException("Incremental writes are not enabled");
+        }
+        DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(entriesFile)));
+        try {
+            os.writeInt(ENTRIES_FILE_MAGIC);
+            os.writeInt(ENTRIES_FILE_VERSION);
+            os.writeInt(VERSION);
+            os.writeUTF(getHashAlgorithmName());
+            os.writeLong(previousArchiveData.length());
+            os.writeLong(previousArchiveData.lastModified());
+            os.writeInt(writtenEntries.size());
+            for (StoredEntry e : writtenEntries) {
+                os.writeUTF(e.key);
+                os.writeInt(e.offset);
+                os.writeInt(e.length);
+                os.writeInt(e.compressedSize);
+                os.writeInt(e.flags);
+                os.writeByte(e.archiveEntryFlags);
+                os.writeInt(e.hashDigest.length);
+                os.write(e.hashDigest);
+            }
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * @return number of entries copied from the previous archive by the last write
+     */
+    public int getReusedEntryCount() {
+        return reusedEntryCount;
+    }
+
+    /**
+     * @return size, in bytes, of the entry data copied from the previous archive by the last write
+     */
+    public long getReusedSize() {
+        return reusedSize;
+    }
+
     public byte[] loadResourceData(String filepath) throws IOException {
         File fhandle = new File(filepath);
         return FileUtils.readFileToByteArray(fhandle);
@@ -115,8 +285,14 @@ public class ArchiveBuilder {
         return ratio <= 0.95;
     }
 
+    /**
+     * Encrypt resource data in place
+     * @param buffer resource data, owned by the caller
+     * @return the encrypted buffer
+     */
     public byte[] encryptResourceData(byte[] buffer) {
-        return Crypt.encryptCTR(buffer, KEY);
+        Crypt.encryptCTRInPlace(buffer, KEY);
+        return buffer;
     }
 
     public void writeResourcePack(String filename, String directory, byte[] buffer, byte flags, int size) throws IOException {
@@ -165,6 +341,130 @@ public class ArchiveBuilder {
         return result;
     }
 
+    private static class ProcessedEntry {
+        byte[] buffer;
+        byte archiveEntryFlags;
+        byte[] hashDigest;
+        String hexDigest;
+        // Key of the entry in the entries file, when writing incrementally
+        String key;
+        // Entry of the previous archive that the data is copied from, or null
+        StoredEntry previous;
+    }
+
+    private String getEntryKey(ArchiveEntry entry, byte[] buffer, boolean encrypt) throws NoSuchAlgorithmException {
+        byte[] sourceDigest = ManifestBuilder.CryptographicOperations.hash(buffer, HashAlgorithm.HASH_SHA1);
+        boolean compress = entry.compressedSize != ArchiveEntry.FLAG_UNCOMPRESSED;
+        return String.format("%s:%d:%b:%b", ManifestBuilder.CryptographicOperations.hexdigest(sourceDigest), entry.flags, compress, encrypt);
+    }
+
+    // Read, compress, encrypt and hash the data of an entry, or find it in the
+    // previous archive. Called from worker threads.
+    private ProcessedEntry processEntry(ArchiveEntry entry) throws IOException {
+        byte[] buffer = this.loadResourceData(entry.fileName);
+        String extension = FilenameUtils.getExtension(entry.fileName);
+        boolean encrypt = ENCRYPTED_EXTS.indexOf(extension) != -1;
+        ProcessedEntry processed = new ProcessedEntry();
+        if (incremental) {
+            try {
+                processed.key = getEntryKey(entry, buffer, encrypt);
+            } catch (NoSuchAlgorithmException exception) {
+                throw new IOException("Unable to create a Resource Pack, the hashing algorithm is not supported!");
+            }
+            StoredEntry previous = previousEntries.get(processed.key);
+            if (previous != null) {
+                entry.compressedSize = previous.compressedSize;
+                entry.flags = previous.flags;
+                entry.hash = new byte[HASH_MAX_LENGTH];
+                System.arraycopy(previous.hashDigest, 0, entry.hash, 0, previous.hashDigest.length);
+                processed.previous = previous;
+                processed.archiveEntryFlags = previous.archiveEntryFlags;
+                processed.hashDigest = previous.hashDigest;
+                processed.hexDigest = ManifestBuilder.CryptographicOperations.hexdigest(previous.hashDigest);
+                return processed;
+            }
+        }
+
+        byte archiveEntryFlags = (byte) entry.flags;
+        if (entry.compressedSize != ArchiveEntry.FLAG_UNCOMPRESSED) {
+            // Compress data
+            byte[] compressed = this.compressResourceData(buffer);
+            if (this.shouldUseCompressedResourceData(buffer, compressed)) {
+                archiveEntryFlags = (byte)(archiveEntryFlags | ArchiveEntry.FLAG_COMPRESSED);
+                buffer = compressed;
+                entry.compressedSize = compressed.length;
+            } else {
+                entry.compressedSize = ArchiveEntry.FLAG_UNCOMPRESSED;
+            }
+        }
+
+        // Encrypt data
+        if (encrypt) {
+            archiveEntryFlags = (byte) (archiveEntryFlags | ArchiveEntry.FLAG_ENCRYPTED);
+            entry.flags = (entry.flags | ArchiveEntry.FLAG_ENCRYPTED);
+            buffer = this.encryptResourceData(buffer);
+        }
+
+        // Calculate hash digest values for resource
+        try {
+            byte[] hashDigest = ManifestBuilder.CryptographicOperations.hash(buffer, manifestBuilder.getResourceHashAlgorithm());
+            entry.hash = new byte[HASH_MAX_LENGTH];
+            System.arraycopy(hashDigest, 0, entry.hash, 0, hashDigest.length);
+            processed.hashDigest = hashDigest;
+            processed.hexDigest = ManifestBuilder.CryptographicOperations.hexdigest(hashDigest);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IOException("Unable to create a Resource Pack, the hashing algorithm is not supported!");
+        }
+        processed.buffer = buffer;
+        processed.archiveEntryFlags = archiveEntryFlags;
+        return processed;
+    }
+
+    private static ProcessedEntry waitFor(Future<ProcessedEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing archive", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static byte[] readPreviousData(FileChannel previousData, StoredEntry previous) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(previous.length);
+        long position = previous.offset;
+        while (buffer.hasRemaining()) {
+            int n = previousData.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of previous archive data");
+            }
+            position += n;
+        }
+        return buffer.array();
+    }
+
+    private static void copyPreviousData(FileChannel previousData, StoredEntry previous, RandomAccessFile archiveData) throws IOException {
+        // The channel shares its position with the file, which is advanced by the transfer
+        FileChannel target = archiveData.getChannel();
+        long position = previous.offset;
+        long remaining = previous.length;
+        while (remaining > 0) {
+            long n = previousData.transferTo(position, remaining, target);
+            if (n <= 0) {
+                throw new IOException("Unable to copy entry from previous archive data");
+            }
+            position += n;
+            remaining -= n;
+        }
+    }
+
     public void write(RandomAccessFile archiveIndex, RandomAccessFile archiveData, Path resourcePackDirectory, List<String> excludedResources) throws IOException {
         // INDEX
         archiveIndex.writeInt(VERSION); // Version
@@ -180,57 +480,80 @@ public class ArchiveBuilder {
 
         Collections.sort(entries); // Since it has no hash, it sorts on path
 
-        for (int i = entries.size() - 1; i >= 0; --i) {
-            ArchiveEntry entry = entries.get(i);
-            byte[] buffer = this.loadResourceData(entry.fileName);
-            byte archiveEntryFlags = (byte) entry.flags;
-            int resourceEntryFlags = ResourceEntryFlag.BUNDLED.getNumber();
-            if (entry.compressedSize != ArchiveEntry.FLAG_UNCOMPRESSED) {
-                // Compress data
-                byte[] compressed = this.compressResourceData(buffer);
-                if (this.shouldUseCompressedResourceData(buffer, compressed)) {
-                    archiveEntryFlags = (byte)(archiveEntryFlags | ArchiveEntry.FLAG_COMPRESSED);
-                    buffer = compressed;
-                    entry.compressedSize = compressed.length;
-                } else {
-                    entry.compressedSize = ArchiveEntry.FLAG_UNCOMPRESSED;
-                }
+        // Entries are read, compressed, encrypted and hashed by a pool of workers,
+        // while this thread writes them in order, so the output is the same as when
+        // processing one entry at a time.
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        Deque<Future<ProcessedEntry>> inFlight = new ArrayDeque<Future<ProcessedEntry>>();
+        long inFlightBytes = 0;
+        int next = entries.size() - 1;
+        writtenEntries = new ArrayList<StoredEntry>();
+        reusedEntryCount = 0;
+        reusedSize = 0;
+        FileChannel previousData = null;
+        try {
+            if (!previousEntries.isEmpty()) {
+                previousData = FileChannel.open(previousArchiveData.toPath(), StandardOpenOption.READ);
             }
+            for (int i = entries.size() - 1; i >= 0; --i) {
+                while (next >= 0 && (inFlight.isEmpty() || (inFlight.size() < threadCount * 4 && inFlightBytes < MAX_IN_FLIGHT_BYTES))) {
+                    final ArchiveEntry nextEntry = entries.get(next);
+                    inFlight.add(executor.submit(new Callable<ProcessedEntry>() {
+                        @Override
+                        public ProcessedEntry call() throws Exception {
+                            return processEntry(nextEntry);
+                        }
+                    }));
+                    inFlightBytes += nextEntry.size;
+                    --next;
+                }
 
-            // Encrypt data
-            String extension = FilenameUtils.getExtension(entry.fileName);
-            if (ENCRYPTED_EXTS.indexOf(extension) != -1) {
-                archiveEntryFlags = (byte) (archiveEntryFlags | ArchiveEntry.FLAG_ENCRYPTED);
-                entry.flags = (entry.flags | ArchiveEntry.FLAG_ENCRYPTED);
-                buffer = this.encryptResourceData(buffer);
-            }
+                ArchiveEntry entry = entries.get(i);
+                ProcessedEntry processed = waitFor(inFlight.poll());
+                inFlightBytes -= entry.size;
+                int resourceEntryFlags = ResourceEntryFlag.BUNDLED.getNumber();
 
-            // Add entry to manifest
-            String normalisedPath = FilenameUtils.separatorsToUnix(entry.relName);
+                // Add entry to manifest
+                String normalisedPath = FilenameUtils.separatorsToUnix(entry.relName);
 
-            // Calculate hash digest values for resource
-            String hexDigest = null;
-            try {
-                byte[] hashDigest = ManifestBuilder.CryptographicOperations.hash(buffer, manifestBuilder.getResourceHashAlgorithm());
-                entry.hash = new byte[HASH_MAX_LENGTH];
-                System.arraycopy(hashDigest, 0, entry.hash, 0, hashDigest.length);
-                hexDigest = ManifestBuilder.CryptographicOperations.hexdigest(hashDigest);
-            } catch (NoSuchAlgorithmException exception) {
-                throw new IOException("Unable to create a Resource Pack, the hashing algorithm is not supported!");
-            }
+                // Write resource to data archive
+                if (this.excludeResource(normalisedPath, excludedResources)) {
+                    resourceEntryFlags = ResourceEntryFlag.EXCLUDED.getNumber();
+                    byte[] buffer = processed.previous != null ? readPreviousData(previousData, processed.previous) : processed.buffer;
+                    this.writeResourcePack(processed.hexDigest, resourcePackDirectory.toString(), buffer, processed.archiveEntryFlags, entry.size);
+                    entries.remove(i);
+                } else {
+                    alignBuffer(archiveData, 4);
+                    entry.resourceOffset = (int) archiveData.getFilePointer();
+                    int length;
+                    if (processed.previous != null) {
+                        copyPreviousData(previousData, processed.previous, archiveData);
+                        length = processed.previous.length;
+                        ++reusedEntryCount;
+                        reusedSize += length;
+                    } else {
+                        archiveData.write(processed.buffer, 0, processed.buffer.length);
+                        length = processed.buffer.length;
+                    }
+                    if (processed.key != null) {
+                        StoredEntry written = new StoredEntry();
+                        written.key = processed.key;
+                        written.offset = entry.resourceOffset;
+                        written.length = length;
+                        written.compressedSize = entry.compressedSize;
+                        written.flags = entry.flags;
+                        written.archiveEntryFlags = processed.archiveEntryFlags;
+                        written.hashDigest = processed.hashDigest;
+                        writtenEntries.add(written);
+                    }
+                }
 
-            // Write resource to data archive
-            if (this.excludeResource(normalisedPath, excludedResources)) {
-                resourceEntryFlags = ResourceEntryFlag.EXCLUDED.getNumber();
-                this.writeResourcePack(hexDigest, resourcePackDirectory.toString(), buffer, archiveEntryFlags, entry.size);
-                entries.remove(i);
-            } else {
-                alignBuffer(archiveData, 4);
-                entry.resourceOffset = (int) archiveData.getFilePointer();
-                archiveData.write(buffer, 0, buffer.length);
+                HashDigest hash = HashDigest.newBuilder().setData(ByteString.copyFrom(processed.hashDigest)).build();
+                manifestBuilder.addResourceEntry(normalisedPath, hash, resourceEntryFlags);
             }
-
-            manifestBuilder.addResourceEntry(normalisedPath, buffer, resourceEntryFlags);
+        } finally {
+            executor.shutdownNow();
+            IOUtils.closeQuietly(previousData);
         }
 
         Collections.sort(entries); // Since it has a hash, it sorts on hash
@@ -18,16 +18,29 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
+import com.dynamo.bob.util.MappedBufferUtil;
 import com.dynamo.liveupdate.proto.Manifest.ManifestData;
 import com.dynamo.liveupdate.proto.Manifest.ManifestFile;
 import com.dynamo.liveupdate.proto.Manifest.ResourceEntry;
 
-public class ArchiveReader {
+/**
+ * Reader for archive index (.arci) and data (.arcd) files. Both files are
+ * memory mapped and entries are decoded from the index on demand.
+ */
+public class ArchiveReader implements Iterable<ArchiveEntry> {
     public static final int VERSION = 4;
     public static final int HASH_BUFFER_BYTESIZE = 64; // 512 bits
+    private static final int ENTRY_BYTESIZE = 4 * 4;
 
     private ArrayList<ArchiveEntry> entries = null;
 
@@ -41,7 +54,12 @@ public class ArchiveReader {
     private final String manifestFilepath;
     private RandomAccessFile archiveIndexFile = null;
     private RandomAccessFile archiveDataFile = null;
+    // Mapped files, unmapped on close so the next build can overwrite them
+    private MappedByteBuffer archiveIndex = null;
+    private MappedByteBuffer archiveData = null;
     private ManifestFile manifestFile = null;
+    // Resource url by (truncated) resource hash, from the manifest
+    private Map<ByteBuffer, String> urlsByHash = null;
 
     public ArchiveReader(String archiveIndexFilepath, String archiveDataFilepath, String manifestFilepath) {
         this.archiveIndexFilepath = archiveIndexFilepath;
@@ -49,116 +67,180 @@ public class ArchiveReader {
         this.manifestFilepath = manifestFilepath;
     }
 
+    private static MappedByteBuffer map(RandomAccessFile file) throws IOException {
+        FileChannel channel = file.getChannel();
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
     public void read() throws IOException {
-    	this.archiveIndexFile = new RandomAccessFile(this.archiveIndexFilepath, "r");
+        this.archiveIndexFile = new RandomAccessFile(this.archiveIndexFilepath, "r");
         this.archiveDataFile = new RandomAccessFile(this.archiveDataFilepath, "r");
-        
-        this.archiveIndexFile.seek(0);
-        this.archiveDataFile.seek(0);
-        
+        this.archiveIndex = map(this.archiveIndexFile);
+        this.archiveData = map(this.archiveDataFile);
+        this.entries = null;
+
         if (this.manifestFilepath != null) {
-	        InputStream manifestInputStream = new FileInputStream(this.manifestFilepath);
-	        this.manifestFile = ManifestFile.parseFrom(manifestInputStream);
-	        manifestInputStream.close();
+            InputStream manifestInputStream = new FileInputStream(this.manifestFilepath);
+            try {
+                this.manifestFile = ManifestFile.parseFrom(manifestInputStream);
+            } finally {
+                manifestInputStream.close();
+            }
         }
 
         // Version
-        int indexVersion = this.archiveIndexFile.readInt();
+        int indexVersion = this.archiveIndex.getInt(0);
         if (indexVersion == ArchiveReader.VERSION) {
             readArchiveData();
         } else {
             throw new IOException("Unsupported archive index version: " + indexVersion);
         }
     }
-    
-    private boolean matchHash(byte[] a, byte[] b, int hlen) {
-    	if (a.length < hlen || b.length < hlen) {
-    		return false;
-    	}
-    	
-    	for (int i = 0; i < hlen; ++i) {
-    		if (a[i] != b[i]) {
-    			return false;
-    		}
-    	}
-    	
-    	return true;
-    }
 
     private void readArchiveData() throws IOException {
         // INDEX
-        archiveIndexFile.readInt(); // Pad
-        archiveIndexFile.readLong(); // UserData, should be 0
-        entryCount = archiveIndexFile.readInt();
-        entryOffset = archiveIndexFile.readInt();
-        hashOffset = archiveIndexFile.readInt();
-        hashLength = archiveIndexFile.readInt();
-
-        entries = new ArrayList<ArchiveEntry>(entryCount);
-
-        // Hashes are stored linearly in memory instead of within each entry, so the hashes are read in a separate loop.
-        // Once the hashes are read, the rest of the entries are read.
-
-        archiveIndexFile.seek(hashOffset);
-        // Read entry hashes
-        for (int i = 0; i < entryCount; ++i) {
-            archiveIndexFile.seek(hashOffset + i * HASH_BUFFER_BYTESIZE);
-            ArchiveEntry e = new ArchiveEntry("");
-            e.hash = new byte[HASH_BUFFER_BYTESIZE];
-            archiveIndexFile.read(e.hash, 0, hashLength);
-
-            if (this.manifestFile != null) {
-                ManifestData manifestData = ManifestData.parseFrom(this.manifestFile.getData());
-                for (ResourceEntry resource : manifestData.getResourcesList()) {
-	            	if (matchHash(e.hash, resource.getHash().getData().toByteArray(), this.hashLength)) {
-	            		e.fileName = resource.getUrl();
-	            		e.relName = resource.getUrl();
-	            	}
-	            }
+        // Version (4), Pad (4), UserData (8), should be 0
+        entryCount = archiveIndex.getInt(16);
+        entryOffset = archiveIndex.getInt(20);
+        hashOffset = archiveIndex.getInt(24);
+        hashLength = archiveIndex.getInt(28);
+
+        if (hashLength < 0 || hashLength > HASH_BUFFER_BYTESIZE || entryCount < 0
+            || (long) hashOffset + (long) entryCount * HASH_BUFFER_BYTESIZE > archiveIndex.capacity()
+            || (long) entryOffset + (long) entryCount * ENTRY_BYTESIZE > archiveIndex.capacity()) {
+            throw new IOException("Corrupt archive index: " + this.archiveIndexFilepath);
+        }
+
+        // Parse the manifest once and index the resources by hash. The last
+        // resource with a matching hash wins.
+        urlsByHash = new HashMap<ByteBuffer, String>();
+        if (this.manifestFile != null) {
+            ManifestData manifestData = ManifestData.parseFrom(this.manifestFile.getData());
+            for (ResourceEntry resource : manifestData.getResourcesList()) {
+                byte[] hash = resource.getHash().getData().toByteArray();
+                if (hash.length >= this.hashLength) {
+                    urlsByHash.put(ByteBuffer.wrap(hash, 0, this.hashLength).slice(), resource.getUrl());
+                }
             }
-            
-            entries.add(e);
         }
+    }
 
-        // Read entries
-        archiveIndexFile.seek(entryOffset);
-        for (int i=0; i<entryCount; ++i) {
-            ArchiveEntry e = entries.get(i);
+    /**
+     * Get number of entries in the archive
+     * @return entry count
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
 
-            e.resourceOffset = archiveIndexFile.readInt();
-            e.size = archiveIndexFile.readInt();
-            e.compressedSize = archiveIndexFile.readInt();
-            e.flags = archiveIndexFile.readInt();
+    /**
+     * Decode an entry from the archive index
+     * @param index entry index, in archive order
+     * @return new entry
+     */
+    public ArchiveEntry getEntry(int index) throws IOException {
+        if (index < 0 || index >= entryCount) {
+            throw new IndexOutOfBoundsException("Entry index " + index + " out of range [0, " + entryCount + ")");
         }
+
+        // Hashes are stored linearly in memory instead of within each entry
+        ArchiveEntry e = new ArchiveEntry("");
+        e.hash = new byte[HASH_BUFFER_BYTESIZE];
+        ByteBuffer hashes = archiveIndex.duplicate();
+        hashes.position(hashOffset + index * HASH_BUFFER_BYTESIZE);
+        hashes.get(e.hash, 0, hashLength);
+
+        String url = urlsByHash.get(ByteBuffer.wrap(e.hash, 0, hashLength).slice());
+        if (url != null) {
+            e.fileName = url;
+            e.relName = url;
+        }
+
+        int offset = entryOffset + index * ENTRY_BYTESIZE;
+        e.resourceOffset = archiveIndex.getInt(offset);
+        e.size = archiveIndex.getInt(offset + 4);
+        e.compressedSize = archiveIndex.getInt(offset + 8);
+        e.flags = archiveIndex.getInt(offset + 12);
+        return e;
+    }
+
+    /**
+     * Iterate over the archive entries, decoding each entry when it is visited
+     */
+    @Override
+    public Iterator<ArchiveEntry> iterator() {
+        return new Iterator<ArchiveEntry>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < entryCount;
+            }
+
+            @Override
+            public ArchiveEntry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return getEntry(next++);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
     }
 
     public List<ArchiveEntry> getEntries() {
+        if (entries == null && archiveIndex != null) {
+            entries = new ArrayList<ArchiveEntry>(entryCount);
+            for (ArchiveEntry e : this) {
+                entries.add(e);
+            }
+        }
         return entries;
     }
 
-    public byte[] getEntryContent(ArchiveEntry entry) throws IOException {
-        byte[] buf = new byte[entry.size];
-        archiveDataFile.seek(entry.resourceOffset);
-        archiveDataFile.read(buf, 0, entry.size);
+    // Size of the data of an entry in the archive data, which is compressed unless flagged otherwise
+    private static int getStoredSize(ArchiveEntry entry) {
+        return entry.compressedSize == ArchiveEntry.FLAG_UNCOMPRESSED ? entry.size : entry.compressedSize;
+    }
+
+    /**
+     * Get the stored data of an entry, without copying it
+     * @param entry archive entry
+     * @return read only buffer with the data of the entry, compressed if the entry is compressed
+     */
+    public ByteBuffer getEntryContentBuffer(ArchiveEntry entry) throws IOException {
+        int storedSize = getStoredSize(entry);
+        if (entry.resourceOffset < 0 || storedSize < 0 || (long) entry.resourceOffset + storedSize > archiveData.capacity()) {
+            throw new IOException("Entry " + entry.relName + " is out of bounds of archive data " + this.archiveDataFilepath);
+        }
+        ByteBuffer buffer = archiveData.duplicate();
+        buffer.position(entry.resourceOffset);
+        buffer.limit(entry.resourceOffset + storedSize);
+        return buffer.slice();
+    }
 
+    public byte[] getEntryContent(ArchiveEntry entry) throws IOException {
+        byte[] buf = new byte[getStoredSize(entry)];
+        getEntryContentBuffer(entry).get(buf);
         return buf;
     }
 
     public void extractAll(String path) throws IOException {
 
-        int entryCount = entries.size();
-
         System.out.println("Extracting entries to " + path + ": ");
-        for (int i = 0; i < entryCount; i++) {
-            ArchiveEntry entry = entries.get(i);
+        for (ArchiveEntry entry : this) {
             String outdir = path + entry.fileName;
             System.out.println("> " + entry.fileName);
             int readSize = entry.compressedSize;
 
             // extract
             byte[] buf = new byte[entry.size];
-            archiveDataFile.seek(entry.resourceOffset);
-            archiveDataFile.read(buf, 0, readSize);
+            ByteBuffer data = archiveData.duplicate();
+            data.position(entry.resourceOffset);
+            data.get(buf, 0, readSize);
 
             File fo = new File(outdir);
             fo.getParentFile().mkdirs();
@@ -169,6 +251,12 @@ public class ArchiveReader {
     }
 
     public void close() throws IOException {
+        MappedBufferUtil.unmap(archiveIndex);
+        MappedBufferUtil.unmap(archiveData);
+        archiveIndex = null;
+        archiveData = null;
+        entryCount = 0;
+
         if (archiveIndexFile != null) {
             archiveIndexFile.close();
             archiveIndexFile = null;
@@ -29,12 +29,17 @@ import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -279,6 +284,11 @@ public class ManifestBuilder {
     private String publicKeyFilepath = null;
     private String projectIdentifier = null;
     private ResourceNode dependencies = null;
+    // Index of the dependency tree, built on first use after setDependencies.
+    // Nodes are listed in breadth first order.
+    private Map<String, List<ResourceNode>> nodesByPath = null;
+    // Collection paths from a node (inclusive) to the root, deepest first
+    private Map<ResourceNode, List<String>> collectionChains = null;
     private boolean outputManifestHash = false;
     private byte[] manifestDataHash = null;
     private byte[] archiveIdentifier = new byte[ArchiveBuilder.MD5_HASH_DIGEST_BYTE_LENGTH];
@@ -341,6 +351,80 @@ public class ManifestBuilder {
 
     public void setDependencies(ResourceNode dependencies) {
         this.dependencies = dependencies;
+        this.nodesByPath = null;
+        this.collectionChains = null;
+    }
+
+    private static boolean isCollection(ResourceNode node) {
+        return node.relativeFilepath.endsWith("collectionproxyc") || node.relativeFilepath.endsWith("collectionc");
+    }
+
+    private List<ResourceNode> getNodes(String filepath) {
+        if (this.nodesByPath == null) {
+            this.nodesByPath = new HashMap<String, List<ResourceNode>>();
+            this.collectionChains = new IdentityHashMap<ResourceNode, List<String>>();
+            if (this.dependencies != null) {
+                Deque<ResourceNode> queue = new ArrayDeque<ResourceNode>();
+                queue.add(this.dependencies);
+                while (!queue.isEmpty()) {
+                    ResourceNode current = queue.remove();
+                    List<ResourceNode> nodes = this.nodesByPath.get(current.relativeFilepath);
+                    if (nodes == null) {
+                        nodes = new ArrayList<ResourceNode>(1);
+                        this.nodesByPath.put(current.relativeFilepath, nodes);
+                    }
+                    nodes.add(current);
+                    queue.addAll(current.getChildren());
+                }
+            }
+        }
+        List<ResourceNode> nodes = this.nodesByPath.get(filepath);
+        return nodes != null ? nodes : Collections.<ResourceNode>emptyList();
+    }
+
+    private List<String> getCollectionChain(ResourceNode node) {
+        if (node == null) {
+            return Collections.<String>emptyList();
+        }
+        List<String> chain = this.collectionChains.get(node);
+        if (chain != null) {
+            return chain;
+        }
+        // Walk up to the closest node with a known chain, then fill in the chains on the way down
+        List<ResourceNode> path = new ArrayList<ResourceNode>();
+        List<String> parentChain = Collections.<String>emptyList();
+        for (ResourceNode current = node; current != null; current = current.getParent()) {
+            List<String> known = this.collectionChains.get(current);
+            if (known != null) {
+                parentChain = known;
+                break;
+            }
+            path.add(current);
+        }
+        for (int i = path.size() - 1; i >= 0; --i) {
+            ResourceNode current = path.get(i);
+            if (isCollection(current)) {
+                chain = new ArrayList<String>(parentChain.size() + 1);
+                chain.add(current.relativeFilepath);
+                chain.addAll(parentChain);
+            } else {
+                chain = parentChain;
+            }
+            this.collectionChains.put(current, chain);
+            parentChain = chain;
+        }
+        return parentChain;
+    }
+
+    // A node nested below another occurrence of the same resource is not
+    // counted as a separate occurrence
+    private static boolean hasAncestorWithPath(ResourceNode node, String filepath) {
+        for (ResourceNode current = node.getParent(); current != null; current = current.getParent()) {
+            if (current.relativeFilepath.equals(filepath)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public void setPrivateKeyFilepath(String filepath) {
@@ -386,62 +470,40 @@ public class ManifestBuilder {
 
     public void addResourceEntry(String url, byte[] data, int flags) throws IOException {
         try {
-            ResourceEntry.Builder builder = ResourceEntry.newBuilder();
-            builder.setUrl(url);
-            builder.setUrlHash(MurmurHash.hash64(url)); // sort on this
-            HashDigest hash = CryptographicOperations.createHashDigest(data, this.resourceHashAlgorithm);
-            builder.setHash(hash);
-            builder.setFlags(flags);
-            this.resourceEntries.add(builder.buildPartial());
+            addResourceEntry(url, CryptographicOperations.createHashDigest(data, this.resourceHashAlgorithm), flags);
         } catch (NoSuchAlgorithmException exception) {
             throw new IOException("Unable to create Manifest, hashing algorithm is not supported!");
         }
     }
 
+    /**
+     * Add a resource entry with a hash already calculated with the resource hash algorithm
+     */
+    public void addResourceEntry(String url, HashDigest hash, int flags) {
+        ResourceEntry.Builder builder = ResourceEntry.newBuilder();
+        builder.setUrl(url);
+        builder.setUrlHash(MurmurHash.hash64(url)); // sort on this
+        builder.setHash(hash);
+        builder.setFlags(flags);
+        this.resourceEntries.add(builder.buildPartial());
+    }
+
     // Calculate all parent collection paths (to the root) for a resource
     // Resource could occur multiple times in the tree (referenced from several collections) or several times within the same collection
     public List<ArrayList<String>> getParentCollections(String filepath) {
         List<ArrayList<String>> result = new ArrayList<ArrayList<String>>();
-        List<ResourceNode> candidates = new LinkedList<ResourceNode>();
-        List<ResourceNode> queue = new LinkedList<ResourceNode>();
-        queue.add(this.dependencies);
-        // Find occurences of resource in tree (may be referenced from several collections for example)
-        while (!queue.isEmpty()) {
-            ResourceNode current = queue.remove(0);
-
-            if (current != null) {
-                if (current.relativeFilepath.equals(filepath)) {
-                    if (!candidates.contains(current)) {
-                        candidates.add(current);
-                    }
-                } else {
-                    queue.addAll(current.getChildren());
-                }
-            }
-        }
-
-        int i = 0;
-        while (!candidates.isEmpty()) {
-            ResourceNode current = candidates.remove(0).getParent();
-            result.add(new ArrayList<String>());
-            while (current != null) {
-                if (current.relativeFilepath.endsWith("collectionproxyc") ||
-                    current.relativeFilepath.endsWith("collectionc")) {
-                    result.get(i).add(current.relativeFilepath);
-                }
-
-                current = current.getParent();
+        for (ResourceNode candidate : getNodes(filepath)) {
+            if (!hasAncestorWithPath(candidate, filepath)) {
+                result.add(new ArrayList<String>(getCollectionChain(candidate.getParent())));
             }
-            ++i;
         }
         return result;
     }
 
     public List<String> getDependants(String filepath) throws IOException {
-        /* This function first tries to find the correct resource in the
-           dependency tree. Since there is no index we have to iterate over
-           the structure and match the relative filepaths that identifies the
-           resource.
+        /* This function looks up the first occurrence (breadth first) of the
+           resource in the indexed dependency tree, identified by its relative
+           filepath.
 
            Once a candidate has been found the children, the children, and so
            on are added to the list of dependants. If a CollectionProxy is
@@ -454,26 +516,13 @@ public class ManifestBuilder {
            and thus create a partial archive that has to be updated (through
            LiveUpdate) before that CollectionProxy can be loaded.
         */
-        ResourceNode candidate = null;
-        List<ResourceNode> queue = new LinkedList<ResourceNode>();
-        queue.add(this.dependencies);
-        while (candidate == null && !queue.isEmpty()) {
-            ResourceNode current = queue.remove(0);
-            if (current.relativeFilepath.equals(filepath)) {
-                candidate = current;
-            } else {
-                for (ResourceNode child : current.getChildren()) {
-                    queue.add(child);
-                }
-            }
-        }
-
         List<String> dependants = new ArrayList<String>();
-        if (candidate != null) {
-            queue.clear();
-            queue.add(candidate);
+        List<ResourceNode> candidates = getNodes(filepath);
+        if (!candidates.isEmpty()) {
+            Deque<ResourceNode> queue = new ArrayDeque<ResourceNode>();
+            queue.add(candidates.get(0));
             while (!queue.isEmpty()) {
-                ResourceNode current = queue.remove(0);
+                ResourceNode current = queue.remove();
                 for (ResourceNode child : current.getChildren()) {
                     dependants.add(child.relativeFilepath);
                     if (!child.relativeFilepath.endsWith("collectionproxyc")) {
@@ -511,18 +560,25 @@ public class ManifestBuilder {
         builder.setHeader(manifestHeader);
 
         builder.addAllEngineVersions(this.supportedEngineVersions);
+        // Entries are unique by url hash, so each url should map to a single entry. If
+        // not, the dependants of the other entries would be missing from the manifest.
+        Map<String, ResourceEntry> entriesByUrl = new HashMap<String, ResourceEntry>();
+        for (ResourceEntry entry : this.resourceEntries) {
+            if (entriesByUrl.put(entry.getUrl(), entry) != null) {
+                throw new IOException(String.format("Unable to create ManifestData, duplicate resource entry for '%s'!", entry.getUrl()));
+            }
+        }
         for (ResourceEntry entry : this.resourceEntries) {
             ResourceEntry.Builder resourceEntryBuilder = entry.toBuilder();
 
             List<String> dependants = this.getDependants(entry.getUrl());
             for (String dependant : dependants) {
-                for (ResourceEntry dependantEntry : this.resourceEntries) {
-                    if (dependantEntry.getUrl().equals(dependant)) {
-                        if (dependantEntry.hasHash()) {
-                            resourceEntryBuilder.addDependants(dependantEntry.getHash());
-                        } else {
-                            throw new IOException("Unable to create ManifestData, an incomplete resource was found!");
-                        }
+                ResourceEntry dependantEntry = entriesByUrl.get(dependant);
+                if (dependantEntry != null) {
+                    if (dependantEntry.hasHash()) {
+                        resourceEntryBuilder.addDependants(dependantEntry.getHash());
+                    } else {
+                        throw new IOException("Unable to create ManifestData, an incomplete resource was found!");
                     }
                 }
             }
@@ -0,0 +1,343 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Content addressed store of task outputs, shared between builds and build
+ * directories. An entry holds all outputs of a task and is keyed by the task
+ * signature and the output paths. Entries are written to a temporary file and
+ * renamed into place, so a reader never sees a partial entry. The least recently
+ * used entries are removed when the total size exceeds the max size.
+ */
+public class ArtifactCache {
+
+    public static final long DEFAULT_MAX_SIZE = 1024L * 1024L * 1024L;
+
+    private static final int MAGIC = 0x42414331; // BAC1
+    private static final int VERSION = 1;
+
+    // Evict down to this fraction of the max size, so that eviction runs rarely
+    private static final double EVICTION_TARGET = 0.9;
+
+    /**
+     * A single task output
+     */
+    public static class Artifact {
+        private final String path;
+        private final int flags;
+        private final byte[] content;
+
+        public Artifact(String path, int flags, byte[] content) {
+            this.path = path;
+            this.flags = flags;
+            this.content = content;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public int getFlags() {
+            return flags;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+    }
+
+    private static class EntryFile {
+        File file;
+        long size;
+        long lastModified;
+
+        EntryFile(File file) {
+            this.file = file;
+            this.size = file.length();
+            this.lastModified = file.lastModified();
+        }
+    }
+
+    private final File directory;
+    private final long maxSize;
+
+    // Total size of the entries, computed when first needed
+    private long size = -1;
+    private int entryCount = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long puts = 0;
+    private long evictions = 0;
+
+    public ArtifactCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Create the key for the outputs of a task
+     * @param version version of the build pipeline that built the outputs
+     * @param taskSignature task signature
+     * @param outputPaths paths of the task outputs
+     * @return cache key
+     */
+    public static String createKey(String version, byte[] taskSignature, List<String> outputPaths) {
+        return createKey(version, taskSignature, Collections.<String>emptyList(), outputPaths);
+    }
+
+    /**
+     * Create the key for the outputs of a task
+     * @param version version of the build pipeline that built the outputs
+     * @param taskSignature task signature
+     * @param options build options the outputs depend on, that aren't part of the task signature
+     * @param outputPaths paths of the task outputs
+     * @return cache key
+     */
+    public static String createKey(String version, byte[] taskSignature, List<String> options, List<String> outputPaths) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        digest.update(version.getBytes());
+        digest.update(taskSignature);
+        for (String option : options) {
+            digest.update((byte) 1);
+            digest.update(option.getBytes());
+        }
+        for (String path : outputPaths) {
+            digest.update((byte) 0);
+            digest.update(path.getBytes());
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private File getEntryFile(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key);
+    }
+
+    /**
+     * Get the artifacts stored for a key
+     * @param key cache key
+     * @return artifacts, or null if the key is not cached
+     */
+    public List<Artifact> get(String key) {
+        File file = getEntryFile(key);
+        if (!file.isFile()) {
+            synchronized (this) {
+                ++misses;
+            }
+            return null;
+        }
+
+        List<Artifact> artifacts = null;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() == MAGIC && input.readInt() == VERSION) {
+                int count = input.readInt();
+                artifacts = new ArrayList<Artifact>(count);
+                for (int i = 0; i < count; ++i) {
+                    String path = input.readUTF();
+                    int flags = input.readInt();
+                    byte[] content = new byte[input.readInt()];
+                    input.readFully(content);
+                    artifacts.add(new Artifact(path, flags, content));
+                }
+            }
+        } catch (IOException e) {
+            // Removed by another process, or corrupt
+            artifacts = null;
+        }
+
+        synchronized (this) {
+            if (artifacts == null) {
+                ++misses;
+                long length = file.length();
+                if (file.delete() && size >= 0) {
+                    size -= length;
+                    --entryCount;
+                }
+                return null;
+            }
+            ++hits;
+        }
+        // Mark as recently used
+        file.setLastModified(System.currentTimeMillis());
+        return artifacts;
+    }
+
+    /**
+     * Store artifacts for a key, replacing any previous entry
+     * @param key cache key
+     * @param artifacts artifacts to store
+     * @throws IOException
+     */
+    public void put(String key, List<Artifact> artifacts) throws IOException {
+        File file = getEntryFile(key);
+        File parent = file.getParentFile();
+        parent.mkdirs();
+
+        File tmpFile = File.createTempFile(key, ".tmp", parent);
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(artifacts.size());
+                for (Artifact artifact : artifacts) {
+                    output.writeUTF(artifact.getPath());
+                    output.writeInt(artifact.getFlags());
+                    output.writeInt(artifact.getContent().length);
+                    output.write(artifact.getContent());
+                }
+            }
+
+            synchronized (this) {
+                scan();
+                long previousSize = file.isFile() ? file.length() : -1;
+                try {
+                    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                if (previousSize >= 0) {
+                    size -= previousSize;
+                } else {
+                    ++entryCount;
+                }
+                size += file.length();
+                ++puts;
+                if (size > maxSize) {
+                    evict();
+                }
+            }
+        } finally {
+            tmpFile.delete();
+        }
+    }
+
+    private List<EntryFile> listEntries() {
+        List<EntryFile> entries = new ArrayList<EntryFile>();
+        File[] dirs = directory.listFiles();
+        if (dirs == null) {
+            return entries;
+        }
+        for (File dir : dirs) {
+            File[] files = dir.isDirectory() ? dir.listFiles() : null;
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.isFile() && !file.getName().endsWith(".tmp")) {
+                    entries.add(new EntryFile(file));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void scan() {
+        if (size >= 0) {
+            return;
+        }
+        size = 0;
+        entryCount = 0;
+        for (EntryFile entry : listEntries()) {
+            size += entry.size;
+            ++entryCount;
+        }
+    }
+
+    // Entries may also be added or used by other processes sharing the directory,
+    // so the sizes and access times are read from disk
+    private void evict() {
+        List<EntryFile> entries = listEntries();
+        Collections.sort(entries, new Comparator<EntryFile>() {
+            @Override
+            public int compare(EntryFile a, EntryFile b) {
+                return Long.compare(a.lastModified, b.lastModified);
+            }
+        });
+
+        size = 0;
+        for (EntryFile entry : entries) {
+            size += entry.size;
+        }
+        entryCount = entries.size();
+
+        long target = (long) (maxSize * EVICTION_TARGET);
+        for (EntryFile entry : entries) {
+            if (size <= target) {
+                break;
+            }
+            if (entry.file.delete()) {
+                size -= entry.size;
+                --entryCount;
+                ++evictions;
+            }
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getSize() {
+        scan();
+        return size;
+    }
+
+    public synchronized int getEntryCount() {
+        scan();
+        return entryCount;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getPuts() {
+        return puts;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -38,40 +38,162 @@ public class DistanceFieldGenerator
         double distMin = 10000000;
         for (int i=0;i<lineSegmentsEnd;i+=5)
         {
-            double x0 = lineSegments[i];
-            double y0 = lineSegments[i+1];
-            double dx = lineSegments[i+2];
-            double dy = lineSegments[i+3];
-            double k = lineSegments[i+4];
+            double distSqr = segmentDistSqr(lineSegments, i, x, y);
+            if (distSqr < distMin)
+                distMin = distSqr;
+        }
+        return distMin;
+    }
 
-            double dx0 = x - x0;
-            double dy0 = y - y0;
-            double t = k * (dx * dx0 + dy * dy0);
+    // Uniform grid over the line segments, used to only test the segments
+    // close to a point. Cell i contains the segments cellItems[cellStart[i]..cellStart[i+1]).
+    private double gridX0, gridY0, cellSize;
+    private int gridWidth, gridHeight;
+    private int[] cellStart;
+    private int[] cellItems;
+
+    private int cellX(double x) {
+        return Math.max(0, Math.min(gridWidth - 1, (int)((x - gridX0) / cellSize)));
+    }
 
-            if (t < 0)
+    private int cellY(double y) {
+        return Math.max(0, Math.min(gridHeight - 1, (int)((y - gridY0) / cellSize)));
+    }
+
+    private void buildGrid(double x0, double y0, double x1, double y1)
+    {
+        int segmentCount = lineSegmentsEnd / 5;
+        double minX = Math.min(x0, x1), minY = Math.min(y0, y1);
+        double maxX = Math.max(x0, x1), maxY = Math.max(y0, y1);
+        for (int i=0;i<lineSegmentsEnd;i+=5)
+        {
+            minX = Math.min(minX, Math.min(lineSegments[i], lineSegments[i] + lineSegments[i+2]));
+            minY = Math.min(minY, Math.min(lineSegments[i+1], lineSegments[i+1] + lineSegments[i+3]));
+            maxX = Math.max(maxX, Math.max(lineSegments[i], lineSegments[i] + lineSegments[i+2]));
+            maxY = Math.max(maxY, Math.max(lineSegments[i+1], lineSegments[i+1] + lineSegments[i+3]));
+        }
+
+        // Aim for a few cells per segment
+        double extent = Math.max(maxX - minX, maxY - minY);
+        int cells = Math.max(1, Math.min(256, (int)(2 * Math.sqrt(segmentCount))));
+        cellSize = Math.max(extent / cells, 1e-6);
+        gridX0 = minX;
+        gridY0 = minY;
+        gridWidth = Math.max(1, Math.min(256, (int)Math.ceil((maxX - minX) / cellSize)));
+        gridHeight = Math.max(1, Math.min(256, (int)Math.ceil((maxY - minY) / cellSize)));
+        cellSize = Math.max(cellSize, Math.max((maxX - minX) / gridWidth, (maxY - minY) / gridHeight));
+
+        // Count, then fill the cells overlapped by the bounding box of each segment
+        cellStart = new int[gridWidth * gridHeight + 1];
+        for (int pass=0;pass<2;pass++)
+        {
+            int[] fill = null;
+            if (pass == 1)
             {
-                // Closest point is t=0 of the line
-                double distSqr = dx0 * dx0 + dy0 * dy0;
-                if (distSqr < distMin)
-                    distMin = distSqr;
+                for (int c=0;c<gridWidth * gridHeight;c++)
+                    cellStart[c+1] += cellStart[c];
+                cellItems = new int[cellStart[gridWidth * gridHeight]];
+                fill = new int[gridWidth * gridHeight];
             }
-            else if (t > 1)
+            for (int i=0;i<lineSegmentsEnd;i+=5)
             {
-                // Closest point is t=1 of the line
-                double xx = x - (x0 + dx);
-                double yy = y - (y0 + dy);
-                double distSqr = xx*xx + yy*yy;
-                if (distSqr < distMin)
-                    distMin = distSqr;
+                double sx0 = lineSegments[i], sy0 = lineSegments[i+1];
+                double sx1 = sx0 + lineSegments[i+2], sy1 = sy0 + lineSegments[i+3];
+                int cx0 = cellX(Math.min(sx0, sx1)), cx1 = cellX(Math.max(sx0, sx1));
+                int cy0 = cellY(Math.min(sy0, sy1)), cy1 = cellY(Math.max(sy0, sy1));
+                for (int cy=cy0;cy<=cy1;cy++)
+                {
+                    for (int cx=cx0;cx<=cx1;cx++)
+                    {
+                        int c = cy * gridWidth + cx;
+                        if (pass == 0)
+                            cellStart[c+1]++;
+                        else
+                            cellItems[cellStart[c] + fill[c]++] = i;
+                    }
+                }
             }
-            else
+        }
+    }
+
+    private static double segmentDistSqr(double[] segments, int i, double x, double y)
+    {
+        double x0 = segments[i];
+        double y0 = segments[i+1];
+        double dx = segments[i+2];
+        double dy = segments[i+3];
+        double k = segments[i+4];
+
+        double dx0 = x - x0;
+        double dy0 = y - y0;
+        double t = k * (dx * dx0 + dy * dy0);
+
+        if (t < 0)
+        {
+            // Closest point is t=0 of the line
+            return dx0 * dx0 + dy0 * dy0;
+        }
+        else if (t > 1)
+        {
+            // Closest point is t=1 of the line
+            double xx = x - (x0 + dx);
+            double yy = y - (y0 + dy);
+            return xx*xx + yy*yy;
+        }
+        // Case when the closest point is along the line, and t will be [0,1]
+        double px = x0 + t * dx - x;
+        double py = y0 + t * dy - y;
+        return px*px + py*py;
+    }
+
+    // Same result as distSqr, but only tests the segments in the grid cells
+    // around the point, in rings of increasing distance, until no closer
+    // segment can be found.
+    private double gridDistSqr(double x, double y)
+    {
+        double distMin = 10000000;
+        int cx = cellX(x);
+        int cy = cellY(y);
+        int maxRing = Math.max(Math.max(cx, gridWidth - 1 - cx), Math.max(cy, gridHeight - 1 - cy));
+        for (int r=0;r<=maxRing;r++)
+        {
+            // Distance to the closest side of ring r that is inside the grid.
+            // Segments in ring r or further out are at least this far away.
+            if (r > 0)
             {
-                // Case when the closest point is along the line, and t will be [0,1]
-                double px = x0 + t * dx - x;
-                double py = y0 + t * dy - y;
-                double distSqr = px*px + py*py;
-                if (distSqr < distMin)
-                    distMin = distSqr;
+                double ringDist = Double.MAX_VALUE;
+                if (cx - r >= 0)
+                    ringDist = Math.min(ringDist, x - (gridX0 + (cx - r + 1) * cellSize));
+                if (cx + r < gridWidth)
+                    ringDist = Math.min(ringDist, gridX0 + (cx + r) * cellSize - x);
+                if (cy - r >= 0)
+                    ringDist = Math.min(ringDist, y - (gridY0 + (cy - r + 1) * cellSize));
+                if (cy + r < gridHeight)
+                    ringDist = Math.min(ringDist, gridY0 + (cy + r) * cellSize - y);
+                // Some slack for rounding when mapping points to cells
+                ringDist -= cellSize * 0.001;
+                if (ringDist > 0 && ringDist * ringDist > distMin)
+                    break;
+            }
+
+            int y0 = Math.max(0, cy - r), y1 = Math.min(gridHeight - 1, cy + r);
+            int x0 = Math.max(0, cx - r), x1 = Math.min(gridWidth - 1, cx + r);
+            for (int gy=y0;gy<=y1;gy++)
+            {
+                boolean edgeRow = gy == cy - r || gy == cy + r;
+                int step = edgeRow ? 1 : Math.max(1, 2 * r);
+                for (int gx=edgeRow ? x0 : cx - r;gx<=x1;gx+=step)
+                {
+                    if (gx < x0)
+                        continue;
+                    int c = gy * gridWidth + gx;
+                    for (int j=cellStart[c];j<cellStart[c+1];j++)
+                    {
+                        double distSqr = segmentDistSqr(lineSegments, cellItems[j], x, y);
+                        if (distSqr < distMin)
+                            distMin = distSqr;
+                    }
+                }
             }
         }
         return distMin;
@@ -79,6 +201,8 @@ public class DistanceFieldGenerator
 
     public void render(double[] output, double x0, double y0, double x1, double y1, int width, int height)
     {
+        buildGrid(x0, y0, x1, y1);
+
         int ofs = 0;
         double dx = (x1 - x0) / (double)width;
         for (int y=0;y<height;y++)
@@ -87,7 +211,7 @@ public class DistanceFieldGenerator
             double px = x0;
             for (int x=0;x<width;x++)
             {
-                output[ofs++] = Math.sqrt(distSqr(px, py));
+                output[ofs++] = Math.sqrt(gridDistSqr(px, py));
                 px += dx;
             }
         }
@@ -50,6 +50,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.imageio.ImageIO;
 
@@ -151,6 +157,7 @@ public class Fontc {
 
     private Font font;
     private BMFont bmfont;
+    private ExecutorService executor;
 
     public interface FontResourceResolver {
         public InputStream getResource(String resourceName) throws FileNotFoundException;
@@ -160,6 +167,14 @@ public class Fontc {
 
     }
 
+    /**
+     * Set the executor used to generate glyph bitmaps
+     * @param executor executor, or null to generate them on the calling thread
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
     public InputFontFormat getInputFormat() {
         return inputFormat;
     }
@@ -533,108 +548,64 @@ public class Fontc {
         if (preview) {
             include_glyph_count = Math.min(glyphs.size(), cache_rows * cache_columns);
         }
-        for (int i = 0; i < include_glyph_count; i++) {
-
-            Glyph glyph = glyphs.get(i);
-            if (glyph.width <= 0 || glyph.ascent + glyph.descent <= 0) {
-                continue;
-            }
-
-            // Generate bitmap for each glyph depending on format
-            BufferedImage glyphImage = null;
-            if (fontDesc.getOutputFormat() == FontTextureFormat.TYPE_BITMAP &&
-                inputFormat == InputFontFormat.FORMAT_TRUETYPE) {
-                glyphImage = drawGlyph(glyph, padding, font, blendComposite, faceColor, outlineColor, shadowConvolve);
-            } else if (fontDesc.getOutputFormat() == FontTextureFormat.TYPE_BITMAP &&
-                       inputFormat == InputFontFormat.FORMAT_BMFONT) {
-                glyphImage = drawBMFontGlyph(glyph, imageBMFont);
-            } else if (fontDesc.getOutputFormat() == FontTextureFormat.TYPE_DISTANCE_FIELD &&
-                       inputFormat == InputFontFormat.FORMAT_TRUETYPE) {
-                glyphImage = makeDistanceField(glyph, padding, sdf_spread, sdf_shadow_spread, font, sdf_edge, shadowConvolve);
-            } else {
-                throw new FontFormatException("Invalid font format combination!");
-            }
-
-            if (preview) {
-
-                glyph.image = glyphImage;
+        // Glyphs are rendered and compressed in parallel, and then added to the
+        // glyph data bank in order.
+        final int glyphPadding = padding;
+        final int glyphCellPadding = cell_padding;
+        final float glyphSdfSpread = sdf_spread;
+        final float glyphSdfShadowSpread = sdf_shadow_spread;
+        final Composite glyphBlendComposite = blendComposite;
+        final ConvolveOp glyphShadowConvolve = shadowConvolve;
+        final BufferedImage glyphImageBMFont = imageBMFont;
+        final boolean glyphPreview = preview;
+        List<Future<byte[]>> glyphResults = new ArrayList<Future<byte[]>>(include_glyph_count);
+        try {
+            for (int i = 0; i < include_glyph_count; i++) {
+                final Glyph glyph = glyphs.get(i);
+                if (glyph.width <= 0 || glyph.ascent + glyph.descent <= 0) {
+                    glyphResults.add(null);
+                    continue;
+                }
 
-            } else {
-                BufferedImage paddedGlyphImage = new BufferedImage(glyphImage.getWidth() + cell_padding * 2,
-                                                                    glyphImage.getHeight() + cell_padding * 2, BufferedImage.TYPE_4BYTE_ABGR);
-
-                int clearData = 0;
-                int mask = 0xFFFFFFFF;
-                if (channelCount==1)
-                    mask = 0xFF;
-                else if (channelCount==2)
-                    mask = 0xFFFF;
-                else if (channelCount==3)
-                    mask = 0xFFFFFF;
-
-                int py = 0;
-                // Get raster data from rendered glyph and store in glyph data bank
-                for (int x = 0; x < paddedGlyphImage.getWidth(); ++x)
-                    paddedGlyphImage.setRGB(x, py, clearData);
-                py++;
-                for (int y = 0; y < glyphImage.getHeight(); y++, py++) {
-                    int px = 0;
-                    paddedGlyphImage.setRGB(px++, py, clearData);
-                    for (int x = 0; x < glyphImage.getWidth(); x++, px++) {
-                        int color = glyphImage.getRGB(x, y);
-                        int blue  = (color) & 0xff;
-                        int green = (color >> 8) & 0xff;
-                        int red   = (color >> 16) & 0xff;
-                        int alpha = (color >> 24) & 0xff;
-                        blue = (blue * alpha) / 255;
-                        green = (green * alpha) / 255;
-                        red = (red * alpha) / 255;
-                        color = ((alpha << 24) |
-                                (blue << 16) |
-                                (green << 8) |
-                                (red << 0)) & mask;
-
-                        paddedGlyphImage.setRGB(px, py, color);
+                FutureTask<byte[]> glyphResult = new FutureTask<byte[]>(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        BufferedImage glyphImage = renderGlyph(glyph, glyphPadding, glyphSdfSpread, glyphSdfShadowSpread, glyphBlendComposite,
+                                                               faceColor, outlineColor, glyphShadowConvolve, glyphImageBMFont);
+                        if (glyphPreview) {
+                            glyph.image = glyphImage;
+                            return null;
+                        }
+                        return compressGlyphImage(glyphImage, glyphCellPadding);
                     }
-                    paddedGlyphImage.setRGB(px++, py, clearData);
+                });
+                if (executor != null) {
+                    executor.execute(glyphResult);
+                } else {
+                    glyphResult.run();
                 }
-                for (int x = 0; x < paddedGlyphImage.getWidth(); ++x)
-                    paddedGlyphImage.setRGB(x, 0, clearData);
-
-                Pointer compressedTexture = null;
-                try {
-                    int width = paddedGlyphImage.getWidth();
-                    int height = paddedGlyphImage.getHeight();
-                    int compressionLevel = TexcLibrary.CompressionLevel.CL_BEST;
-                    int compressionType = TexcLibrary.CompressionType.CT_WEBP;
-
-                    int pixelFormat = PixelFormat.L8;
-                    if (channelCount > 3)
-                        pixelFormat = PixelFormat.R8G8B8A8;
-                    else if (channelCount > 1)
-                        pixelFormat = PixelFormat.R8G8B8;
-
-                    ByteBuffer paddedBuffer = toByteArray(paddedGlyphImage, width, height, 4, channelCount);
-
-                    compressedTexture = TexcLibrary.TEXC_CompressWebPBuffer(width, height, channelCount*8, paddedBuffer, width*height*channelCount, pixelFormat, compressionLevel, compressionType);
+                glyphResults.add(glyphResult);
+            }
 
-                    int bufferSize = TexcLibrary.TEXC_GetTotalBufferDataSize(compressedTexture);
-                    ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
-                    TexcLibrary.TEXC_GetBufferData(compressedTexture, buffer, bufferSize);
+            for (int i = 0; i < include_glyph_count; i++) {
+                Future<byte[]> result = glyphResults.get(i);
+                if (result == null) {
+                    continue;
+                }
 
+                byte[] arr = waitForGlyph(result);
+                if (arr != null) {
+                    Glyph glyph = glyphs.get(i);
                     glyph.cache_entry_offset = dataOffset;
-                    dataOffset += bufferSize;
-
-                    byte[] arr = new byte[buffer.limit()];
-                    buffer.get(arr);
-                    glyphDataBank.write(arr);
-
-                    glyph.cache_entry_size = bufferSize;
-
-                } catch(IOException e) {
-                    throw new TextureGeneratorException(String.format("Failed to generate font texture: %s", e.getMessage()));
-                } finally {
-                    TexcLibrary.TEXC_DestroyBuffer(compressedTexture);
+                    dataOffset += arr.length;
+                    glyphDataBank.write(arr, 0, arr.length);
+                    glyph.cache_entry_size = arr.length;
+                }
+            }
+        } finally {
+            for (Future<byte[]> result : glyphResults) {
+                if (result != null) {
+                    result.cancel(false);
                 }
             }
         }
@@ -691,6 +662,119 @@ public class Fontc {
 
     }
 
+    private byte[] waitForGlyph(Future<byte[]> result) throws TextureGeneratorException, FontFormatException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TextureGeneratorException("Interrupted while generating font texture");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TextureGeneratorException) {
+                throw (TextureGeneratorException) cause;
+            } else if (cause instanceof FontFormatException) {
+                throw (FontFormatException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TextureGeneratorException(String.format("Failed to generate font texture: %s", cause.getMessage()));
+        }
+    }
+
+    // Generate bitmap for a glyph depending on format
+    private BufferedImage renderGlyph(Glyph glyph, int padding, float sdf_spread, float sdf_shadow_spread, Composite blendComposite,
+                                      Color faceColor, Color outlineColor, ConvolveOp shadowConvolve, BufferedImage imageBMFont) throws FontFormatException {
+        if (fontDesc.getOutputFormat() == FontTextureFormat.TYPE_BITMAP &&
+            inputFormat == InputFontFormat.FORMAT_TRUETYPE) {
+            return drawGlyph(glyph, padding, font, blendComposite, faceColor, outlineColor, shadowConvolve);
+        } else if (fontDesc.getOutputFormat() == FontTextureFormat.TYPE_BITMAP &&
+                   inputFormat == InputFontFormat.FORMAT_BMFONT) {
+            return drawBMFontGlyph(glyph, imageBMFont);
+        } else if (fontDesc.getOutputFormat() == FontTextureFormat.TYPE_DISTANCE_FIELD &&
+                   inputFormat == InputFontFormat.FORMAT_TRUETYPE) {
+            return makeDistanceField(glyph, padding, sdf_spread, sdf_shadow_spread, font, sdf_edge, shadowConvolve);
+        } else {
+            throw new FontFormatException("Invalid font format combination!");
+        }
+    }
+
+    // Pad the glyph bitmap with cell padding and compress it
+    private byte[] compressGlyphImage(BufferedImage glyphImage, int cell_padding) throws TextureGeneratorException {
+        BufferedImage paddedGlyphImage = new BufferedImage(glyphImage.getWidth() + cell_padding * 2,
+                                                            glyphImage.getHeight() + cell_padding * 2, BufferedImage.TYPE_4BYTE_ABGR);
+
+        int clearData = 0;
+        int mask = 0xFFFFFFFF;
+        if (channelCount==1)
+            mask = 0xFF;
+        else if (channelCount==2)
+            mask = 0xFFFF;
+        else if (channelCount==3)
+            mask = 0xFFFFFF;
+
+        int py = 0;
+        // Get raster data from rendered glyph and store in glyph data bank
+        for (int x = 0; x < paddedGlyphImage.getWidth(); ++x)
+            paddedGlyphImage.setRGB(x, py, clearData);
+        py++;
+        for (int y = 0; y < glyphImage.getHeight(); y++, py++) {
+            int px = 0;
+            paddedGlyphImage.setRGB(px++, py, clearData);
+            for (int x = 0; x < glyphImage.getWidth(); x++, px++) {
+                int color = glyphImage.getRGB(x, y);
+                int blue  = (color) & 0xff;
+                int green = (color >> 8) & 0xff;
+                int red   = (color >> 16) & 0xff;
+                int alpha = (color >> 24) & 0xff;
+                blue = (blue * alpha) / 255;
+                green = (green * alpha) / 255;
+                red = (red * alpha) / 255;
+                color = ((alpha << 24) |
+                        (blue << 16) |
+                        (green << 8) |
+                        (red << 0)) & mask;
+
+                paddedGlyphImage.setRGB(px, py, color);
+            }
+            paddedGlyphImage.setRGB(px++, py, clearData);
+        }
+        for (int x = 0; x < paddedGlyphImage.getWidth(); ++x)
+            paddedGlyphImage.setRGB(x, 0, clearData);
+
+        Pointer compressedTexture = null;
+        try {
+            int width = paddedGlyphImage.getWidth();
+            int height = paddedGlyphImage.getHeight();
+            int compressionLevel = TexcLibrary.CompressionLevel.CL_BEST;
+            int compressionType = TexcLibrary.CompressionType.CT_WEBP;
+
+            int pixelFormat = PixelFormat.L8;
+            if (channelCount > 3)
+                pixelFormat = PixelFormat.R8G8B8A8;
+            else if (channelCount > 1)
+                pixelFormat = PixelFormat.R8G8B8;
+
+            ByteBuffer paddedBuffer = toByteArray(paddedGlyphImage, width, height, 4, channelCount);
+
+            compressedTexture = TexcLibrary.TEXC_CompressWebPBuffer(width, height, channelCount*8, paddedBuffer, width*height*channelCount, pixelFormat, compressionLevel, compressionType);
+
+            int bufferSize = TexcLibrary.TEXC_GetTotalBufferDataSize(compressedTexture);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+            TexcLibrary.TEXC_GetBufferData(compressedTexture, buffer, bufferSize);
+
+            byte[] arr = new byte[buffer.limit()];
+            buffer.get(arr);
+            return arr;
+
+        } catch(IOException e) {
+            throw new TextureGeneratorException(String.format("Failed to generate font texture: %s", e.getMessage()));
+        } finally {
+            TexcLibrary.TEXC_DestroyBuffer(compressedTexture);
+        }
+    }
+
     private BufferedImage drawBMFontGlyph(Glyph glyph, BufferedImage imageBMFontInput) {
         return imageBMFontInput.getSubimage(glyph.x, glyph.y, glyph.width, glyph.ascent + glyph.descent);
     }
@@ -750,6 +834,8 @@ public class Fontc {
 
         BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
 
+        float sdf_outline = fontMapBuilder.getSdfOutline();
+
         // TODO: Split this work into a pre-pass and subsequent face/outline & shadow passes
         for (int v=0;v<height;v++) {
             int ofs = v * width;
@@ -769,8 +855,6 @@ public class Fontc {
                 int outline_channel = (int)(255.0f * distance_to_edge_normalized);
                 outline_channel     = Math.max(0,Math.min(255,outline_channel));
 
-                float sdf_outline = fontMapBuilder.getSdfOutline();
-
                 // This is needed to 'fill' the shadow body since
                 // we have no good way of knowing if the pixel is inside or outside
                 // of the shadow limit
@@ -14,8 +14,10 @@ package com.dynamo.bob.fs;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 
@@ -27,6 +29,12 @@ public abstract class AbstractFileSystem<F extends IFileSystem, R extends IResou
     protected String buildDirectory;
     protected Map<String, R> resources = new HashMap<String, R>();
     protected Vector<IMountPoint> mountPoints;
+    // Position of the first mount point that contains a path, for the mount
+    // points that can list their paths
+    private Map<String, Integer> mountPointIndex = new HashMap<String, Integer>();
+    // Positions of the mount points that can't list their paths, and are asked
+    // for each path
+    private List<Integer> unindexedMountPoints = new ArrayList<Integer>();
 
     @SuppressWarnings("unchecked")
     public AbstractFileSystem() {
@@ -60,12 +68,25 @@ public abstract class AbstractFileSystem<F extends IFileSystem, R extends IResou
     @Override
     public void addMountPoint(IMountPoint mountPoint) throws IOException {
         mountPoint.mount();
+        int position = this.mountPoints.size();
         this.mountPoints.add(mountPoint);
+        Collection<String> paths = mountPoint.getPaths();
+        if (paths != null) {
+            for (String path : paths) {
+                if (!this.mountPointIndex.containsKey(path)) {
+                    this.mountPointIndex.put(path, position);
+                }
+            }
+        } else {
+            this.unindexedMountPoints.add(position);
+        }
     }
 
     @Override
     public void clearMountPoints() {
         this.mountPoints.clear();
+        this.mountPointIndex.clear();
+        this.unindexedMountPoints.clear();
     }
 
     @Override
@@ -75,13 +96,33 @@ public abstract class AbstractFileSystem<F extends IFileSystem, R extends IResou
         }
     }
 
+    @Override
+    public byte[] getCachedSha1(String key, long crc, long size) {
+        // No digest cache by default
+        return null;
+    }
+
+    @Override
+    public void putCachedSha1(String key, long crc, long size, byte[] sha1) {
+    }
+
     protected IResource getFromMountPoints(String path) {
-        for (IMountPoint mountPoint : this.mountPoints) {
-            IResource resource = mountPoint.get(path);
+        // Mount points are searched in the order they were added, so mount points
+        // that can't list their paths are only asked if added before the indexed
+        // mount point that contains the path
+        Integer indexed = this.mountPointIndex.get(path);
+        for (int position : this.unindexedMountPoints) {
+            if (indexed != null && position > indexed) {
+                break;
+            }
+            IResource resource = this.mountPoints.get(position).get(path);
             if (resource != null) {
                 return resource;
             }
         }
+        if (indexed != null) {
+            return this.mountPoints.get(indexed).get(path);
+        }
         return null;
     }
 
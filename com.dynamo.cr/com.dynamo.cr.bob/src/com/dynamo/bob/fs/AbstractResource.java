@@ -14,9 +14,9 @@ package com.dynamo.bob.fs;
 
 import static org.apache.commons.io.FilenameUtils.concat;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.InputStream;
 
 import org.apache.commons.io.FilenameUtils;
 
@@ -43,20 +43,28 @@ public abstract class AbstractResource<F extends IFileSystem> implements IResour
         return newResource.output();
     }
 
+    /**
+     * Open a stream of the content, so that it can be hashed without a copy of it all
+     * in memory. Resources that can read their content as a stream should override this.
+     * @return content stream, or null if the resource is not created
+     * @throws IOException
+     */
+    protected InputStream openInputStream() throws IOException {
+        byte[] content = getContent();
+        return content != null ? new ByteArrayInputStream(content) : null;
+    }
+
     @Override
     public byte[] sha1() throws IOException {
-        byte[] content = getContent();
-        if (content == null) {
+        InputStream is = openInputStream();
+        if (is == null) {
             throw new IllegalArgumentException(String.format("Resource '%s' is not created", path));
         }
-        MessageDigest sha1;
         try {
-            sha1 = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
+            return ResourceUtil.calcSha1(is);
+        } finally {
+            is.close();
         }
-        sha1.update(content);
-        return sha1.digest();
     }
 
     @Override
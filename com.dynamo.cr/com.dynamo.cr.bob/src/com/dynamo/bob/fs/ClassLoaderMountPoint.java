@@ -44,6 +44,11 @@ public class ClassLoaderMountPoint implements IMountPoint {
             }
         }
 
+        @Override
+        protected InputStream openInputStream() throws IOException {
+            return ClassLoaderMountPoint.this.resourceScanner.openInputStream(path);
+        }
+
         @Override
         public void setContent(byte[] content) throws IOException {
             throw new IOException("Zip resources can't be written to.");
@@ -93,6 +98,12 @@ public class ClassLoaderMountPoint implements IMountPoint {
         return null;
     }
 
+    @Override
+    public Collection<String> getPaths() {
+        // Scanning the class path is as slow as asking for each path
+        return null;
+    }
+
     @Override
     public void mount() throws IOException {
     }
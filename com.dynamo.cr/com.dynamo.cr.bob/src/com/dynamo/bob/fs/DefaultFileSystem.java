@@ -12,33 +12,40 @@
 
 package com.dynamo.bob.fs;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
+
+import com.dynamo.bob.util.PathSlotTable;
 
 
 public class DefaultFileSystem extends AbstractFileSystem<DefaultFileSystem, DefaultResource> {
 
-    static class CacheEntry implements Serializable {
-        private static final long serialVersionUID = 1L;
-        long mTime;
-        byte[] sha1;
-    }
+    private static final int CACHE_MAGIC = 0x42444743; // "BDGC"
+    private static final int CACHE_VERSION = 2;
+    private static final int SHA1_SIZE = 20;
+    private static final int STAMP_SIZE = 3 * 8;
+
+    // Prefix of the cache keys of content that isn't a project file
+    private static final String CONTENT_KEY_PREFIX = "content:";
 
-    private Map<String, CacheEntry> cache = new HashMap<String, DefaultFileSystem.CacheEntry>();
+    // Each slot holds a stamp of three longs followed by the sha1 of the content.
+    // For files the stamp is the modification time in nanoseconds, the size and the
+    // file key (inode) hash, so that a file is only hashed again when one of them
+    // changes. For other content, e.g. zip entries, the stamp is the crc, the size
+    // and zero. Accessed concurrently when tasks calculate their signatures.
+    private PathSlotTable cache = newCache();
+
+    private static PathSlotTable newCache() {
+        return new PathSlotTable(CACHE_MAGIC, CACHE_VERSION, STAMP_SIZE + SHA1_SIZE);
+    }
 
     @Override
     public IResource get(String path) {
@@ -52,64 +59,89 @@ public class DefaultFileSystem extends AbstractFileSystem<DefaultFileSystem, Def
         return new DefaultResource(this, path);
     }
 
-    private byte[] calcSha1(DefaultResource resource) throws IOException {
-        byte[] content = resource.getContent();
-        if (content == null) {
-            throw new IllegalArgumentException(String.format("Resource '%s' is not created", resource.getPath()));
+    private byte[] getCacheEntry(String key, long stamp0, long stamp1, long stamp2) {
+        byte[] slot = cache.get(key);
+        if (slot == null) {
+            return null;
         }
-        MessageDigest sha1;
-        try {
-            sha1 = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
+        ByteBuffer buffer = ByteBuffer.wrap(slot);
+        if (buffer.getLong() != stamp0 || buffer.getLong() != stamp1 || buffer.getLong() != stamp2) {
+            return null;
         }
-        sha1.update(content);
-        return sha1.digest();
+        return Arrays.copyOfRange(slot, STAMP_SIZE, slot.length);
+    }
+
+    private void putCacheEntry(String key, long stamp0, long stamp1, long stamp2, byte[] sha1) {
+        ByteBuffer slot = ByteBuffer.allocate(cache.getSlotSize());
+        slot.putLong(stamp0);
+        slot.putLong(stamp1);
+        slot.putLong(stamp2);
+        slot.put(sha1);
+        cache.put(key, slot.array());
     }
 
     byte[] sha1(DefaultResource resource) throws IOException {
-        String absPath = resource.getAbsPath();
-        File file = new File(absPath);
-        CacheEntry e = cache.get(resource.getPath());
-        if (e != null && file.lastModified() == e.mTime) {
-            return e.sha1;
-        } else {
-            e = new CacheEntry();
-            e.mTime = file.lastModified();
-            e.sha1 = calcSha1(resource);
-            cache.put(resource.getPath(), e);
-            return e.sha1;
+        File file = new File(resource.getAbsPath());
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException(String.format("Resource '%s' is not created", resource.getPath()));
+        }
+        long mTime = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        long size = attributes.size();
+        Object fileKey = attributes.fileKey();
+        long fileKeyHash = fileKey != null ? fileKey.hashCode() : 0;
+
+        byte[] sha1 = getCacheEntry(resource.getPath(), mTime, size, fileKeyHash);
+        if (sha1 == null) {
+            // The stamp is read before hashing, so a file changed while it's
+            // hashed is hashed again by the next build
+            sha1 = ResourceUtil.calcSha1(file);
+            putCacheEntry(resource.getPath(), mTime, size, fileKeyHash, sha1);
         }
+        return sha1;
+    }
+
+    @Override
+    public byte[] getCachedSha1(String key, long crc, long size) {
+        return getCacheEntry(CONTENT_KEY_PREFIX + key, crc, size, 0);
+    }
+
+    @Override
+    public void putCachedSha1(String key, long crc, long size, byte[] sha1) {
+        putCacheEntry(CONTENT_KEY_PREFIX + key, crc, size, 0, sha1);
+    }
+
+    private File getCacheFile() {
+        return new File(FilenameUtils.concat(FilenameUtils.concat(this.rootDirectory, this.buildDirectory), "digest_cache"));
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void loadCache() {
-        cache = new HashMap<String, DefaultFileSystem.CacheEntry>();
-        String fileName = FilenameUtils.concat(FilenameUtils.concat(this.rootDirectory, this.buildDirectory), "digest_cache");
-        ObjectInputStream is = null;
+        cache.close();
+        cache = newCache();
+        File file = getCacheFile();
         try {
-            is = new ObjectInputStream(new BufferedInputStream(new FileInputStream(fileName)));
-            cache = (Map<String, CacheEntry>) is.readObject();
-            is.close();
+            // Caches of older versions don't have the stamps needed to validate
+            // the entries, and are replaced when the cache is saved
+            cache.load(file);
         } catch (IOException e) {
-        } catch (ClassNotFoundException e) {
-        } finally {
-            IOUtils.closeQuietly(is);
         }
     }
 
     @Override
     public void saveCache() {
-        String fileName = FilenameUtils.concat(FilenameUtils.concat(this.rootDirectory, this.buildDirectory), "digest_cache");
-        ObjectOutputStream os = null;
         try {
-            os = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
-            os.writeObject(cache);
+            cache.save(getCacheFile());
         } catch (IOException e) {
-        } finally {
-            IOUtils.closeQuietly(os);
         }
     }
 
+    @Override
+    public void close() {
+        super.close();
+        cache.close();
+    }
+
 }
@@ -87,6 +87,25 @@ public interface IFileSystem {
      */
     public void saveCache();
 
+    /**
+     * Get a sha1 from the digest cache, for content that is not a file in the
+     * project, e.g. an entry in a library zip
+     * @param key cache key, unique for the content location
+     * @param crc CRC-32 of the content
+     * @param size size of the content
+     * @return sha1, or null if not cached or cached for another crc or size
+     */
+    public byte[] getCachedSha1(String key, long crc, long size);
+
+    /**
+     * Add a sha1 to the digest cache, see getCachedSha1
+     * @param key cache key, unique for the content location
+     * @param crc CRC-32 of the content
+     * @param size size of the content
+     * @param sha1 sha1 of the content
+     */
+    public void putCachedSha1(String key, long crc, long size, byte[] sha1);
+
     /**
      * Add a mount point to the file system, e.g. a zip archive or Java class loader.
      * @param mountPoint mount point to add
@@ -30,6 +30,13 @@ public interface IMountPoint {
      */
     IResource get(String path);
 
+    /**
+     * Get all paths of the mounted resources, used by the file system to find the
+     * mount point of a path without asking each mount point.
+     * @return paths for which get returns a resource, or null if the mount point can't list its paths
+     */
+    Collection<String> getPaths();
+
     /**
      * Mount the mount point.
      * @throws IOException
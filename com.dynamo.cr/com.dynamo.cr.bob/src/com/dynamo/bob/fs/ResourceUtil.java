@@ -12,8 +12,83 @@
 
 package com.dynamo.bob.fs;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 public class ResourceUtil {
 
+    private static final int HASH_BUFFER_SIZE = 256 * 1024;
+
+    // Buffers used when hashing and reading archive entries, one per thread since
+    // signatures are calculated and resources are read in parallel
+    private static final ThreadLocal<ByteBuffer> hashBuffers = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        }
+    };
+
+    /**
+     * Get the buffer of the calling thread, to stream content through without
+     * allocating a buffer per read. The buffer must not be used after the read.
+     * @return buffer
+     */
+    static byte[] getTransferBuffer() {
+        return hashBuffers.get().array();
+    }
+
+    private static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Calculate the sha1 of a file without reading the whole file into memory
+     * @param file file to hash
+     * @return sha1
+     * @throws IOException
+     */
+    public static byte[] calcSha1(File file) throws IOException {
+        MessageDigest sha1 = newSha1();
+        ByteBuffer buffer = hashBuffers.get();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (true) {
+                buffer.clear();
+                int n = channel.read(buffer);
+                if (n < 0) {
+                    break;
+                }
+                sha1.update(buffer.array(), 0, n);
+            }
+        }
+        return sha1.digest();
+    }
+
+    /**
+     * Calculate the sha1 of the remaining content of a stream. The stream is not closed.
+     * @param is stream to hash
+     * @return sha1
+     * @throws IOException
+     */
+    public static byte[] calcSha1(InputStream is) throws IOException {
+        MessageDigest sha1 = newSha1();
+        byte[] buffer = getTransferBuffer();
+        int n;
+        while ((n = is.read(buffer)) >= 0) {
+            sha1.update(buffer, 0, n);
+        }
+        return sha1.digest();
+    }
+
     /**
      * Change extension of filename
      * @param fileName file-name to change extension for
@@ -17,9 +17,13 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipException;
@@ -38,6 +42,9 @@ public class ZipMountPoint implements IMountPoint {
     Set<String> includeDirs = null;
     String includeBaseDir = "";
     private boolean isProject = true; // is it a Defold project?
+    // Included entries by mounted path, sorted so that a walk only visits the
+    // entries below the walked path. Built when mounted.
+    private TreeMap<String, ZipEntry> index = new TreeMap<String, ZipEntry>();
 
     private class ZipResource extends AbstractResource<IFileSystem> {
         ZipEntry entry;
@@ -51,15 +58,48 @@ public class ZipMountPoint implements IMountPoint {
         public byte[] getContent() throws IOException {
             InputStream is = null;
             try {
-                ByteArrayOutputStream os = new ByteArrayOutputStream((int)this.entry.getSize());
                 is = file.getInputStream(this.entry);
-                IOUtils.copy(is, os);
+                long size = this.entry.getSize();
+                if (size >= 0) {
+                    // Inflate straight into the content, without intermediate copies
+                    byte[] content = new byte[(int)size];
+                    IOUtils.readFully(is, content);
+                    return content;
+                }
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                IOUtils.copyLarge(is, os, ResourceUtil.getTransferBuffer());
                 return os.toByteArray();
             } finally {
                 IOUtils.closeQuietly(is);
             }
         }
 
+        @Override
+        public byte[] sha1() throws IOException {
+            // Entries are hashed while decompressed, and the sha1 is cached by the crc
+            // and size in the zip directory so unchanged entries aren't read again
+            long crc = this.entry.getCrc();
+            long size = this.entry.getSize();
+            boolean cacheable = fileSystem != null && crc != -1 && size != -1;
+            String key = archivePath + "!" + this.entry.getName();
+            if (cacheable) {
+                byte[] sha1 = fileSystem.getCachedSha1(key, crc, size);
+                if (sha1 != null) {
+                    return sha1;
+                }
+            }
+            InputStream is = file.getInputStream(this.entry);
+            try {
+                byte[] sha1 = ResourceUtil.calcSha1(is);
+                if (cacheable) {
+                    fileSystem.putCachedSha1(key, crc, size, sha1);
+                }
+                return sha1;
+            } finally {
+                IOUtils.closeQuietly(is);
+            }
+        }
+
         @Override
         public void setContent(byte[] content) throws IOException {
             throw new IOException("Zip resources can't be written to.");
@@ -105,13 +145,10 @@ public class ZipMountPoint implements IMountPoint {
 
     @Override
     public IResource get(String path) {
-        ZipEntry entry = null;
-        if (this.isProject) {
-            if (this.file != null && includes(path)) {
-                entry = this.file.getEntry(this.includeBaseDir + path);
-            }
-        } else {
-            entry = this.file.getEntry(this.includeBaseDir + path);
+        ZipEntry entry = this.index.get(path);
+        if (entry == null && !path.endsWith("/")) {
+            // Same as ZipFile.getEntry, directories are found without the trailing slash
+            entry = this.index.get(path + "/");
         }
         if (entry != null) {
             return new ZipResource(this.fileSystem, path, entry);
@@ -119,6 +156,38 @@ public class ZipMountPoint implements IMountPoint {
         return null;
     }
 
+    @Override
+    public Collection<String> getPaths() {
+        List<String> paths = new ArrayList<String>(this.index.size());
+        for (String path : this.index.keySet()) {
+            paths.add(path);
+            if (path.endsWith("/")) {
+                paths.add(path.substring(0, path.length() - 1));
+            }
+        }
+        return paths;
+    }
+
+    private void buildIndex() {
+        TreeMap<String, ZipEntry> index = new TreeMap<String, ZipEntry>();
+        Enumeration<? extends ZipEntry> entries = this.file.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String entryPath = entry.getName();
+            if (this.isProject) {
+                if (!entryPath.startsWith(this.includeBaseDir)) {
+                    continue;
+                }
+                entryPath = entryPath.substring(this.includeBaseDir.length());
+                if (!includes(entryPath)) {
+                    continue;
+                }
+            }
+            index.put(entryPath, entry);
+        }
+        this.index = index;
+    }
+
     @Override
     public void mount() throws IOException {
         try {
@@ -128,6 +197,7 @@ public class ZipMountPoint implements IMountPoint {
                 this.includeBaseDir = LibraryUtil.findIncludeBaseDir(this.file);
                 this.includeDirs = LibraryUtil.readIncludeDirsFromArchive(this.includeBaseDir, this.file);
             }
+            buildIndex();
         } catch (ZipException e) {
             throw new IOException(String.format("Failed to mount zip file '%s': %s", this.archivePath, e));
         } catch (ParseException e) {
@@ -147,34 +217,25 @@ public class ZipMountPoint implements IMountPoint {
             }
         });
         this.file = null;
+        this.index = new TreeMap<String, ZipEntry>();
     }
 
     @Override
     public void walk(String path, IWalker walker, Collection<String> results) {
         path = FilenameUtils.normalizeNoEndSeparator(path, true);
-        if (this.file != null) {
-            Enumeration<? extends ZipEntry> entries = this.file.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                String entryPath = entry.getName();
-                if (this.isProject) {
-                    if (entryPath.startsWith(this.includeBaseDir)) {
-                        entryPath = entryPath.substring(this.includeBaseDir.length());
-                        if (includes(entryPath) && entryPath.startsWith(path)) {
-                            if (entry.isDirectory()) {
-                                walker.handleDirectory(entryPath, results);
-                            } else {
-                                walker.handleFile(entryPath, results);
-                            }
-                        }
-                    }
-                } else {
-                    if (entry.isDirectory()) {
-                        walker.handleDirectory(entryPath, results);
-                    } else {
-                        walker.handleFile(entryPath, results);
-                    }
-                }
+        // Entries are stored without a leading slash
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        for (Map.Entry<String, ZipEntry> e : this.index.tailMap(path, true).entrySet()) {
+            String entryPath = e.getKey();
+            if (!entryPath.startsWith(path)) {
+                break;
+            }
+            if (e.getValue().isDirectory()) {
+                walker.handleDirectory(entryPath, results);
+            } else {
+                walker.handleFile(entryPath, results);
             }
         }
     }
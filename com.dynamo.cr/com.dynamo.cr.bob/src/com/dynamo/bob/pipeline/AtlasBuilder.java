@@ -13,6 +13,7 @@
 package com.dynamo.bob.pipeline;
 
 import java.io.IOException;
+import java.util.EnumSet;
 
 import com.dynamo.atlas.proto.AtlasProto.Atlas;
 import com.dynamo.atlas.proto.AtlasProto.AtlasImage;
@@ -22,6 +23,7 @@ import com.dynamo.bob.CompileExceptionError;
 import com.dynamo.bob.Project;
 import com.dynamo.bob.Task;
 import com.dynamo.bob.Task.TaskBuilder;
+import com.dynamo.bob.TexcLibrary.FlipAxis;
 import com.dynamo.bob.fs.IResource;
 import com.dynamo.bob.textureset.TextureSetGenerator.TextureSetResult;
 import com.dynamo.bob.util.TextureUtil;
@@ -35,7 +37,7 @@ public class AtlasBuilder extends Builder<Void>  {
     @Override
     public Task<Void> create(IResource input) throws IOException, CompileExceptionError {
         Atlas.Builder builder = Atlas.newBuilder();
-        ProtoUtil.merge(input, builder);
+        ProtoUtil.merge(project, input, builder);
         Atlas atlas = builder.build();
 
         TaskBuilder<Void> taskBuilder = Task.<Void>newBuilder(this)
@@ -71,7 +73,7 @@ public class AtlasBuilder extends Builder<Void>  {
         TextureImage texture;
         try {
             boolean compress = project.option("texture-compression", "false").equals("true");
-            texture = TextureGenerator.generate(result.image, texProfile, compress);
+            texture = TextureGenerator.generate(result.image, texProfile, compress, EnumSet.of(FlipAxis.FLIP_AXIS_Y), project.getTextureCache());
         } catch (TextureGeneratorException e) {
             throw new CompileExceptionError(task.input(0), -1, e.getMessage(), e);
         }
@@ -18,12 +18,21 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FilenameUtils;
 
 import com.dynamo.atlas.proto.AtlasProto.Atlas;
@@ -35,11 +44,18 @@ import com.dynamo.bob.fs.IResource;
 import com.dynamo.bob.textureset.TextureSetGenerator;
 import com.dynamo.bob.textureset.TextureSetGenerator.AnimDesc;
 import com.dynamo.bob.textureset.TextureSetGenerator.AnimIterator;
+import com.dynamo.bob.textureset.TextureSetGenerator.PreparedImage;
 import com.dynamo.bob.textureset.TextureSetGenerator.TextureSetResult;
 import com.dynamo.tile.proto.Tile.Playback;
 import com.dynamo.tile.proto.Tile.SpriteTrimmingMode;
 
 public class AtlasUtil {
+
+    // Max memory used by the images that are decoded and prepared at the same time, by all atlases
+    // being built. Permits are kilobytes of estimated memory use.
+    private static final int PREPARE_MEMORY_BUDGET = (int) Math.min(Integer.MAX_VALUE, Math.max(1, Runtime.getRuntime().maxMemory() / 4 / 1024));
+    private static final Semaphore PREPARE_MEMORY = new Semaphore(PREPARE_MEMORY_BUDGET);
+
     public static class MappedAnimDesc extends AnimDesc {
         List<String> ids;
 
@@ -162,6 +178,123 @@ public class AtlasUtil {
         return images;
     }
 
+    private static BufferedImage loadImage(IResource resource, ImageCache cache) throws IOException, CompileExceptionError {
+        String key = null;
+        if (cache != null) {
+            key = resource.getPath() + ":" + Hex.encodeHexString(resource.sha1());
+            BufferedImage image = cache.get(key);
+            if (image != null) {
+                return image;
+            }
+        }
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(resource.getContent()));
+        if (image == null) {
+            throw new CompileExceptionError(resource, -1, "Unable to load image " + resource.getPath());
+        }
+        if (cache != null) {
+            cache.put(key, image);
+        }
+        return image;
+    }
+
+    // Estimate the memory needed to decode and prepare an image, from the size in the image header
+    private static long estimatePrepareMemory(IResource resource, int innerPadding, int extrudeBorders) throws IOException {
+        byte[] content = resource.getContent();
+        long width = 0;
+        long height = 0;
+        try (ImageInputStream is = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(is);
+            if (readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(is);
+                    width = reader.getWidth(0);
+                    height = reader.getHeight(0);
+                } catch (IOException e) {
+                    // Reported when the image is decoded
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+        if (width == 0 || height == 0) {
+            return content.length * 4L;
+        }
+        // The decoded image, and the padded and extruded copies
+        int border = 2 * (innerPadding + extrudeBorders);
+        return width * height * 4 + (border > 0 ? 2 * (width + border) * (height + border) * 4 : 0);
+    }
+
+    private static PreparedImage prepareImage(IResource resource, int hullSize, int innerPadding, int extrudeBorders, ImageCache cache) throws IOException, CompileExceptionError {
+        BufferedImage image = loadImage(resource, cache);
+        return TextureSetGenerator.prepareImage(image, hullSize, innerPadding, extrudeBorders);
+    }
+
+    /**
+     * Decode the images, build their hulls and apply inner padding and extruded borders. Images are
+     * prepared concurrently on the executor, if given, with the number of images in flight limited by
+     * their estimated memory use. The memory budget is shared by all concurrent calls.
+     * @param resources image resources
+     * @param hullSizes hull vertex count of each image
+     * @param innerPadding inner padding
+     * @param extrudeBorders extrude borders
+     * @param cache cache of decoded images, or null
+     * @param executor executor to prepare the images on, or null to prepare them on the calling thread
+     * @return prepared images in the same order as the resources
+     */
+    public static List<PreparedImage> prepareImages(List<IResource> resources, List<Integer> hullSizes, final int innerPadding, final int extrudeBorders,
+            final ImageCache cache, ExecutorService executor) throws IOException, CompileExceptionError {
+        List<PreparedImage> images = new ArrayList<PreparedImage>(resources.size());
+        if (executor == null) {
+            for (int i = 0; i < resources.size(); ++i) {
+                images.add(prepareImage(resources.get(i), hullSizes.get(i), innerPadding, extrudeBorders, cache));
+            }
+            return images;
+        }
+
+        List<Future<PreparedImage>> futures = new ArrayList<Future<PreparedImage>>(resources.size());
+        for (int i = 0; i < resources.size(); ++i) {
+            final IResource resource = resources.get(i);
+            final int hullSize = hullSizes.get(i);
+            futures.add(executor.submit(new Callable<PreparedImage>() {
+                @Override
+                public PreparedImage call() throws Exception {
+                    int permits = (int) Math.min(PREPARE_MEMORY_BUDGET, Math.max(1, estimatePrepareMemory(resource, innerPadding, extrudeBorders) / 1024));
+                    PREPARE_MEMORY.acquire(permits);
+                    try {
+                        return prepareImage(resource, hullSize, innerPadding, extrudeBorders, cache);
+                    } finally {
+                        PREPARE_MEMORY.release(permits);
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Future<PreparedImage> future : futures) {
+                images.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompileExceptionError) {
+                throw (CompileExceptionError) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            for (Future<PreparedImage> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return images;
+    }
+
     private interface PathTransformer {
         String transform(String path);
     }
@@ -199,7 +332,7 @@ public class AtlasUtil {
 
     public static TextureSetResult generateTextureSet(final Project project, IResource atlasResource) throws IOException, CompileExceptionError {
         Atlas.Builder builder = Atlas.newBuilder();
-        ProtoUtil.merge(atlasResource, builder);
+        ProtoUtil.merge(project, atlasResource, builder);
         Atlas atlas = builder.build();
 
         List<AtlasImage> atlasImages = collectImages(atlas);
@@ -210,7 +343,8 @@ public class AtlasUtil {
             imageHullSizes.add(spriteTrimModeToInt(image.getSpriteTrimMode()));
         }
         List<IResource> imageResources = toResources(atlasResource, imagePaths);
-        List<BufferedImage> images = AtlasUtil.loadImages(imageResources);
+        int innerPadding = Math.max(0, atlas.getInnerPadding());
+        int extrudeBorders = Math.max(0, atlas.getExtrudeBorders());
         PathTransformer transformer = new PathTransformer() {
             @Override
             public String transform(String path) {
@@ -223,9 +357,14 @@ public class AtlasUtil {
             imagePaths.set(i, transformer.transform(imagePaths.get(i)));
         }
         MappedAnimIterator iterator = new MappedAnimIterator(animDescs, imagePaths);
-        return TextureSetGenerator.generate(images, imageHullSizes, imagePaths, iterator,
+
+        // Images are decoded and prepared in parallel on the project workers, and then laid out in order
+        int threadCount = project.getMaxCpuThreads();
+        ExecutorService executor = threadCount > 1 ? project.getWorkerExecutor() : null;
+        List<PreparedImage> images = prepareImages(imageResources, imageHullSizes, innerPadding, extrudeBorders, project.getImageCache(), executor);
+        return TextureSetGenerator.generatePrepared(images, imagePaths, iterator,
                 Math.max(0, atlas.getMargin()),
-                Math.max(0, atlas.getInnerPadding()),
-                Math.max(0, atlas.getExtrudeBorders()), true, false, null);
+                innerPadding,
+                extrudeBorders, true, false, null, executor, threadCount);
     }
 }
@@ -15,6 +15,7 @@ package com.dynamo.bob.pipeline;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 
 import javax.xml.stream.XMLStreamException;
@@ -26,6 +27,7 @@ import com.dynamo.bob.BuilderParams;
 import com.dynamo.bob.CompileExceptionError;
 import com.dynamo.bob.Task;
 import com.dynamo.bob.fs.IResource;
+import com.dynamo.bob.util.KeyframeReduction;
 
 import com.dynamo.rig.proto.Rig.AnimationSet;
 import com.dynamo.rig.proto.Rig.MeshSet;
@@ -46,6 +48,14 @@ public class ColladaModelBuilder extends Builder<Void>  {
         return taskBuilder.build();
     }
 
+    @Override
+    public void signature(MessageDigest digest) {
+        KeyframeReduction reduction = project.getKeyframeReduction();
+        if (reduction != null) {
+            reduction.signature(digest);
+        }
+    }
+
     @Override
     public void build(Task<Void> task) throws CompileExceptionError, IOException {
         ByteArrayInputStream collada_is = new ByteArrayInputStream(task.input(0).getContent());
@@ -84,7 +94,7 @@ public class ColladaModelBuilder extends Builder<Void>  {
         collada_is.reset();
         AnimationSet.Builder animationSetBuilder = AnimationSet.newBuilder();
         try {
-            ColladaUtil.loadAnimations(collada_is, animationSetBuilder, FilenameUtils.getBaseName(task.input(0).getPath()), new ArrayList<String>());
+            ColladaUtil.loadAnimations(collada_is, animationSetBuilder, FilenameUtils.getBaseName(task.input(0).getPath()), new ArrayList<String>(), project.getKeyframeReduction());
         } catch (XMLStreamException e) {
             throw new CompileExceptionError(task.input(0), e.getLocation().getLineNumber(), "Failed to compile animation: " + e.getLocalizedMessage(), e);
         } catch (LoaderException e) {
@@ -68,6 +68,7 @@ import org.jagatoo.loaders.models.collada.stax.XMLAsset.UpAxis;
 import org.jagatoo.loaders.models.collada.stax.XMLVisualSceneExtra;
 
 import com.dynamo.bob.util.MathUtil;
+import com.dynamo.bob.util.KeyframeReduction;
 import com.dynamo.bob.util.RigUtil;
 
 import com.dynamo.bob.util.MurmurHash;
@@ -287,7 +288,7 @@ public class ColladaUtil {
             Rig.AnimationTrack.Builder animTrackBuilder = Rig.AnimationTrack.newBuilder();
             animTrackBuilder.setBoneIndex(boneIndex);
             RigUtil.PositionBuilder positionBuilder = new RigUtil.PositionBuilder(animTrackBuilder);
-            RigUtil.sampleTrack(track, positionBuilder, new Point3d(0.0, 0.0, 0.0), startTime, duration, sampleRate, spf, true);
+            RigUtil.sampleFloatTrack(track, positionBuilder, new double[] {0.0, 0.0, 0.0}, startTime, duration, sampleRate, spf, true);
             animBuilder.addTracks(animTrackBuilder.build());
         }
     }
@@ -297,7 +298,7 @@ public class ColladaUtil {
             Rig.AnimationTrack.Builder animTrackBuilder = Rig.AnimationTrack.newBuilder();
             animTrackBuilder.setBoneIndex(boneIndex);
             RigUtil.QuatRotationBuilder rotationBuilder = new RigUtil.QuatRotationBuilder(animTrackBuilder);
-            RigUtil.sampleTrack(track, rotationBuilder, new Quat4d(0.0, 0.0, 0.0, 1.0), startTime, duration, sampleRate, spf, true);
+            RigUtil.sampleFloatTrack(track, rotationBuilder, new double[] {0.0, 0.0, 0.0, 1.0}, startTime, duration, sampleRate, spf, true);
             animBuilder.addTracks(animTrackBuilder.build());
         }
     }
@@ -307,12 +308,12 @@ public class ColladaUtil {
             Rig.AnimationTrack.Builder animTrackBuilder = Rig.AnimationTrack.newBuilder();
             animTrackBuilder.setBoneIndex(boneIndex);
             RigUtil.ScaleBuilder scaleBuilder = new RigUtil.ScaleBuilder(animTrackBuilder);
-            RigUtil.sampleTrack(track, scaleBuilder, new Vector3d(1.0, 1.0, 1.0), startTime, duration, sampleRate, spf, true);
+            RigUtil.sampleFloatTrack(track, scaleBuilder, new double[] {1.0, 1.0, 1.0}, startTime, duration, sampleRate, spf, true);
             animBuilder.addTracks(animTrackBuilder.build());
         }
     }
 
-    private static void boneAnimToDDF(XMLCOLLADA collada, Rig.RigAnimation.Builder animBuilder, ArrayList<Bone> boneList, HashMap<Long, Integer> boneRefMap, HashMap<String, ArrayList<XMLAnimation>> boneToAnimations, double duration) throws LoaderException {
+    private static void boneAnimToDDF(XMLCOLLADA collada, Rig.RigAnimation.Builder animBuilder, ArrayList<Bone> boneList, HashMap<Long, Integer> boneRefMap, HashMap<String, ArrayList<XMLAnimation>> boneToAnimations, double duration, KeyframeReduction reduction) throws LoaderException {
 
         // Get scene framerate, start and end times if available
         double sceneStartTime = 0.0;
@@ -397,6 +398,12 @@ public class ColladaUtil {
                 }
             }
         }
+
+        if (reduction != null) {
+            for (Rig.AnimationTrack.Builder trackBuilder : animBuilder.getTracksBuilderList()) {
+                reduction.reduce(trackBuilder);
+            }
+        }
     }
 
     public interface ColladaResourceResolver {
@@ -446,11 +453,19 @@ public class ColladaUtil {
     }
 
     public static void loadAnimations(InputStream is, Rig.AnimationSet.Builder animationSetBuilder, String parentAnimationId, ArrayList<String> animationIds) throws IOException, XMLStreamException, LoaderException {
+        loadAnimations(is, animationSetBuilder, parentAnimationId, animationIds, null);
+    }
+
+    public static void loadAnimations(InputStream is, Rig.AnimationSet.Builder animationSetBuilder, String parentAnimationId, ArrayList<String> animationIds, KeyframeReduction reduction) throws IOException, XMLStreamException, LoaderException {
         XMLCOLLADA collada = loadDAE(is);
-        loadAnimations(collada, animationSetBuilder, parentAnimationId, animationIds);
+        loadAnimations(collada, animationSetBuilder, parentAnimationId, animationIds, reduction);
     }
 
     public static void loadAnimations(XMLCOLLADA collada, Rig.AnimationSet.Builder animationSetBuilder, String parentAnimationId, ArrayList<String> animationIds) throws IOException, XMLStreamException, LoaderException {
+        loadAnimations(collada, animationSetBuilder, parentAnimationId, animationIds, null);
+    }
+
+    public static void loadAnimations(XMLCOLLADA collada, Rig.AnimationSet.Builder animationSetBuilder, String parentAnimationId, ArrayList<String> animationIds, KeyframeReduction reduction) throws IOException, XMLStreamException, LoaderException {
         if (collada.libraryAnimations.size() != 1) {
             return;
         }
@@ -501,7 +516,7 @@ public class ColladaUtil {
 
             // If no clips are provided, add a "Default" clip that is the whole animation as one clip
             Rig.RigAnimation.Builder animBuilder = Rig.RigAnimation.newBuilder();
-            boneAnimToDDF(collada, animBuilder, boneList, boneRefMap, boneToAnimations, totalAnimationLength);
+            boneAnimToDDF(collada, animBuilder, boneList, boneRefMap, boneToAnimations, totalAnimationLength, reduction);
             animBuilder.setId(MurmurHash.hash64(parentAnimationId));
             animationIds.add(parentAnimationId);
             animationSetBuilder.addAnimations(animBuilder.build());
@@ -635,13 +650,15 @@ public class ColladaUtil {
         assetSpaceMtx.mul(assetSpace.rotation, assetScaleMtx);
         bindShapeMatrix.mul(assetSpaceMtx, bindShapeMatrix);
 
-        List<Float> position_list = new ArrayList<Float>(positions.floatArray.count);
-        for (int i = 0; i < positions.floatArray.count / 3; ++i) {
-            Point3f p = new Point3f(positions.floatArray.floats[i*3], positions.floatArray.floats[i*3+1], positions.floatArray.floats[i*3+2]);
+        int positionCount = positions.floatArray.count / 3;
+        float[] position_array = new float[positionCount * 3];
+        Point3f p = new Point3f();
+        for (int i = 0; i < positionCount; ++i) {
+            p.set(positions.floatArray.floats[i*3], positions.floatArray.floats[i*3+1], positions.floatArray.floats[i*3+2]);
             bindShapeMatrix.transform(p);
-            position_list.add(p.getX());
-            position_list.add(p.getY());
-            position_list.add(p.getZ());
+            position_array[i*3] = p.getX();
+            position_array[i*3+1] = p.getY();
+            position_array[i*3+2] = p.getZ();
         }
 
         // Create a normal matrix which is the transposed inverse of
@@ -650,147 +667,130 @@ public class ColladaUtil {
         normalMatrix.invert();
         normalMatrix.transpose();
 
-        List<Float> normal_list = null;
+        float[] normal_array = null;
         if(normals != null) {
-            normal_list = new ArrayList<Float>(normals.floatArray.count);
-            for (int i = 0; i < normals.floatArray.count / 3; ++i) {
-                Vector3f n = new Vector3f(normals.floatArray.floats[i*3], normals.floatArray.floats[i*3+1], normals.floatArray.floats[i*3+2]);
+            int normalCount = normals.floatArray.count / 3;
+            normal_array = new float[normalCount * 3];
+            Vector3f n = new Vector3f();
+            for (int i = 0; i < normalCount; ++i) {
+                n.set(normals.floatArray.floats[i*3], normals.floatArray.floats[i*3+1], normals.floatArray.floats[i*3+2]);
                 normalMatrix.transform(n);
                 if (n.lengthSquared() > 0.0) {
                     n.normalize();
                 }
-                normal_list.add(n.getX());
-                normal_list.add(n.getY());
-                normal_list.add(n.getZ());
+                normal_array[i*3] = n.getX();
+                normal_array[i*3+1] = n.getY();
+                normal_array[i*3+2] = n.getZ();
             }
         }
 
-        List<Float> texcoord_list;
+        float[] texcoord_array;
         if(texcoords == null) {
-            texcoord_list = new ArrayList<Float>(Arrays.asList(0f, 0f));
+            texcoord_array = new float[] { 0f, 0f };
         } else {
-            texcoord_list = new ArrayList<Float>(texcoords.floatArray.count);
+            texcoord_array = new float[(texcoords.floatArray.count + 1) / 2 * 2];
             for (int i = 0; i < texcoords.floatArray.count; i += 2 ) {
-                texcoord_list.add(texcoords.floatArray.floats[i]);
-                texcoord_list.add(texcoords.floatArray.floats[i+1]);
+                texcoord_array[i] = texcoords.floatArray.floats[i];
+                texcoord_array[i+1] = texcoords.floatArray.floats[i+1];
             }
         }
 
-        List<Integer> position_indices_list = new ArrayList<Integer>(mesh.triangles.count*3);
-        List<Integer> normal_indices_list = new ArrayList<Integer>(mesh.triangles.count*3);
-        List<Integer> texcoord_indices_list = new ArrayList<Integer>(mesh.triangles.count*3);
+        int cornerCount = mesh.triangles.count * 3;
+        int[] position_indices = new int[cornerCount];
+        int[] normal_indices = normals != null ? new int[cornerCount] : null;
+        int[] texcoord_indices = new int[cornerCount];
 
         // Sometimes the <p> values can be -1 from Maya exports, we clamp it below to 0 instead.
         // Similar solution as AssImp; https://github.com/assimp/assimp/blob/master/code/ColladaParser.cpp#L2336
         for (int i = 0; i < mesh.triangles.count; ++i) {
 
             for (int j = 0; j < 3; ++j) {
+                int corner = i * 3 + j;
                 int idx = i * stride * 3 + vertex_input.offset;
-                int vert_idx = Math.max(0, mesh.triangles.p[idx + stride * j]);
-                position_indices_list.add(vert_idx);
+                position_indices[corner] = Math.max(0, mesh.triangles.p[idx + stride * j]);
 
                 if (normals != null) {
                     idx = i * stride * 3 + normalOffset;
-                    vert_idx = Math.max(0, mesh.triangles.p[idx + stride * j]);
-                    normal_indices_list.add(vert_idx);
+                    normal_indices[corner] = Math.max(0, mesh.triangles.p[idx + stride * j]);
                 }
 
-                if (texcoords == null) {
-                    texcoord_indices_list.add(0);
-                } else {
+                if (texcoords != null) {
                     idx = i * stride * 3 + texcoord_input.offset;
-                    vert_idx = Math.max(0, mesh.triangles.p[idx + stride * j]);
-                    texcoord_indices_list.add(vert_idx);
+                    texcoord_indices[corner] = Math.max(0, mesh.triangles.p[idx + stride * j]);
                 }
 
             }
 
         }
 
-        class MeshVertexIndex {
-            public int position, texcoord0, normal;
-            public boolean equals(Object o) {
-                MeshVertexIndex m = (MeshVertexIndex) o;
-                return (this.position == m.position && this.texcoord0 == m.texcoord0 && this.normal == m.normal);
-            }
-        }
-
         // Build an optimized list of triangles from indices and instance (make unique) any vertices common attributes (position, normal etc.).
         // We can then use this to quickly build am optimized indexed vertex buffer of any selected vertex elements in run-time without any sorting.
-        boolean mesh_has_normals = normal_indices_list.size() > 0;
-        List<MeshVertexIndex> shared_vertex_indices = new ArrayList<MeshVertexIndex>(mesh.triangles.count*3);
-        List<Integer> mesh_index_list = new ArrayList<Integer>(mesh.triangles.count*3);
-        for (int i = 0; i < mesh.triangles.count*3; ++i) {
-            MeshVertexIndex ci = new MeshVertexIndex();
-            ci.position = position_indices_list.get(i);
-            ci.texcoord0 = texcoord_indices_list.get(i);
-            ci.normal = mesh_has_normals ? normal_indices_list.get(i) : 0;
-            int index = optimize ? shared_vertex_indices.indexOf(ci) : -1;
-            if(index == -1) {
-                // create new vertex as this is not equal to any existing in generated list
-                mesh_index_list.add(shared_vertex_indices.size());
-                shared_vertex_indices.add(ci);
-            } else {
-                // shared vertex, add index to existing vertex in generating list instead of adding new
-                mesh_index_list.add(index);
-            }
-        }
-        List<Rig.MeshVertexIndices> mesh_vertex_indices = new ArrayList<Rig.MeshVertexIndices>(mesh.triangles.count*3);
-        for (int i = 0; i < shared_vertex_indices.size() ; ++i) {
+        int[] mesh_indices = new int[cornerCount];
+        int[] shared_vertex_corners = weldVertices(position_indices, texcoord_indices, normal_indices, optimize, mesh_indices);
+        int vertexCount = shared_vertex_corners.length;
+
+        Rig.Mesh.Builder meshBuilder = Rig.Mesh.newBuilder();
+        for (int i = 0; i < vertexCount; ++i) {
+            int corner = shared_vertex_corners[i];
             Rig.MeshVertexIndices.Builder b = Rig.MeshVertexIndices.newBuilder();
-            MeshVertexIndex ci = shared_vertex_indices.get(i);
-            b.setPosition(ci.position);
-            b.setTexcoord0(ci.texcoord0);
-            b.setNormal(ci.normal);
-            mesh_vertex_indices.add(b.build());
+            b.setPosition(position_indices[corner]);
+            b.setTexcoord0(texcoord_indices[corner]);
+            b.setNormal(normal_indices != null ? normal_indices[corner] : 0);
+            meshBuilder.addVertices(b);
         }
 
         Rig.IndexBufferFormat indices_format;
         ByteBuffer indices_bytes;
-        if(shared_vertex_indices.size() <= 65536)
+        if(vertexCount <= 65536)
         {
             // if we only need 16-bit indices, use this primarily. Less data to upload to GPU and ES2.0 core functionality.
             indices_format = Rig.IndexBufferFormat.INDEXBUFFER_FORMAT_16;
-            indices_bytes = ByteBuffer.allocateDirect(mesh_index_list.size() * 2);
-            indices_bytes.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
-            for (int i = 0; i < mesh_index_list.size();) {
-                indices_bytes.putShort(mesh_index_list.get(i++).shortValue());
+            indices_bytes = ByteBuffer.allocateDirect(cornerCount * 2);
+            indices_bytes.order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < cornerCount; ++i) {
+                indices_bytes.putShort((short) mesh_indices[i]);
             }
         }
         else
         {
             indices_format = Rig.IndexBufferFormat.INDEXBUFFER_FORMAT_32;
-            indices_bytes = ByteBuffer.allocateDirect(mesh_index_list.size() * 4);
-            indices_bytes.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
-            for (int i = 0; i < mesh_index_list.size();) {
-                indices_bytes.putInt(mesh_index_list.get(i++));
+            indices_bytes = ByteBuffer.allocateDirect(cornerCount * 4);
+            indices_bytes.order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < cornerCount; ++i) {
+                indices_bytes.putInt(mesh_indices[i]);
             }
         }
         indices_bytes.rewind();
 
-        List<Integer> bone_indices_list = new ArrayList<Integer>(position_list.size()*4);
-        List<Float> bone_weights_list = new ArrayList<Float>(position_list.size()*4);
-        int max_bone_count = loadVertexWeights(collada, bone_weights_list, bone_indices_list);
+        int max_bone_count = loadVertexWeights(collada, meshBuilder);
 
         // We currently only support one mesh per collada file
         // This result in one dmRigDDF::Mesh, one dmRigDDF::MeshEntry with only one MeshSlot.
         // The MeshSlot will only contain one "mesh attachment" pointing to the Mesh (index: 0),
         // the active index should be 0 to indicate the one and only attachment.
 
-        Rig.Mesh.Builder meshBuilder = Rig.Mesh.newBuilder();
-        meshBuilder.addAllVertices(mesh_vertex_indices);
         meshBuilder.setIndices(ByteString.copyFrom(indices_bytes));
         meshBuilder.setIndicesFormat(indices_format);
         if(normals != null) {
-            meshBuilder.addAllNormals(normal_list);
-            meshBuilder.addAllNormalsIndices(normal_indices_list);
+            for (float v : normal_array) {
+                meshBuilder.addNormals(v);
+            }
+            for (int v : normal_indices) {
+                meshBuilder.addNormalsIndices(v);
+            }
+        }
+        for (float v : position_array) {
+            meshBuilder.addPositions(v);
+        }
+        for (float v : texcoord_array) {
+            meshBuilder.addTexcoord0(v);
+        }
+        for (int v : position_indices) {
+            meshBuilder.addPositionIndices(v);
+        }
+        for (int v : texcoord_indices) {
+            meshBuilder.addTexcoord0Indices(v);
         }
-        meshBuilder.addAllPositions(position_list);
-        meshBuilder.addAllTexcoord0(texcoord_list);
-        meshBuilder.addAllPositionIndices(position_indices_list);
-        meshBuilder.addAllTexcoord0Indices(texcoord_indices_list);
-        meshBuilder.addAllWeights(bone_weights_list);
-        meshBuilder.addAllBoneIndices(bone_indices_list);
 
         MeshSlot.Builder meshSlotBuilder = MeshSlot.newBuilder();
         meshSlotBuilder.addMeshAttachments(0);
@@ -1149,7 +1149,53 @@ public class ColladaUtil {
         return null;
     }
 
-    private static int loadVertexWeights(XMLCOLLADA collada, List<Float> boneWeightsList, List<Integer> boneIndicesList) throws IOException, XMLStreamException, LoaderException {
+    // Welds the triangle corners that share position, texcoord and normal indices into
+    // a single vertex. Vertices are numbered in the order they are first used, and the
+    // vertex of each corner is written to outIndices. Returns the first corner of each vertex.
+    private static int[] weldVertices(int[] positionIndices, int[] texcoordIndices, int[] normalIndices, boolean optimize, int[] outIndices) {
+        int cornerCount = positionIndices.length;
+        int[] vertexCorners = new int[cornerCount];
+        if (!optimize) {
+            for (int i = 0; i < cornerCount; ++i) {
+                vertexCorners[i] = i;
+                outIndices[i] = i;
+            }
+            return vertexCorners;
+        }
+
+        // Open addressing table of vertex indices, kept at most half full
+        int capacity = Integer.highestOneBit(Math.max(1, cornerCount)) << 2;
+        int mask = capacity - 1;
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+
+        int vertexCount = 0;
+        for (int i = 0; i < cornerCount; ++i) {
+            int position = positionIndices[i];
+            int texcoord = texcoordIndices[i];
+            int normal = normalIndices != null ? normalIndices[i] : 0;
+            int hash = position * 73856093 ^ texcoord * 19349663 ^ normal * 83492791;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            int vertex;
+            while ((vertex = table[slot]) != -1) {
+                int corner = vertexCorners[vertex];
+                if (positionIndices[corner] == position && texcoordIndices[corner] == texcoord
+                        && (normalIndices == null || normalIndices[corner] == normal)) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (vertex == -1) {
+                vertex = vertexCount++;
+                vertexCorners[vertex] = i;
+                table[slot] = vertex;
+            }
+            outIndices[i] = vertex;
+        }
+        return Arrays.copyOf(vertexCorners, vertexCount);
+    }
+
+    private static int loadVertexWeights(XMLCOLLADA collada, Rig.Mesh.Builder meshBuilder) throws IOException, XMLStreamException, LoaderException {
 
         XMLSkin skin = null;
         if (!collada.libraryControllers.isEmpty()) {
@@ -1199,9 +1245,9 @@ public class ColladaUtil {
             influenceCount = weights.size();
 
             for (Weight w : weights) {
-                boneIndicesList.add(w.boneIndex);
+                meshBuilder.addBoneIndices(w.boneIndex);
                 maxBoneCount = Math.max(maxBoneCount, w.boneIndex + 1);
-                boneWeightsList.add(w.weight);
+                meshBuilder.addWeights(w.weight);
             }
         }
         return maxBoneCount;
@@ -53,7 +53,7 @@ public class CollectionBuilder extends ProtoBuilder<CollectionDesc.Builder> {
             IResource subResource = project.getResource(sub.getCollection());
             subCollections.add(subResource);
             CollectionDesc.Builder builder = CollectionDesc.newBuilder();
-            ProtoUtil.merge(subResource, builder);
+            ProtoUtil.merge(project, subResource, builder);
             collectSubCollections(builder, subCollections);
         }
     }
@@ -63,7 +63,7 @@ public class CollectionBuilder extends ProtoBuilder<CollectionDesc.Builder> {
         count += builder.getEmbeddedInstancesCount();
         for (CollectionInstanceDesc c : builder.getCollectionInstancesList()) {
             CollectionDesc.Builder b = CollectionDesc.newBuilder();
-            ProtoUtil.merge(project.getResource(c.getCollection()), b);
+            ProtoUtil.merge(project, project.getResource(c.getCollection()), b);
             count += countEmbeddedOutputs(b);
         }
         return count;
@@ -92,7 +92,7 @@ public class CollectionBuilder extends ProtoBuilder<CollectionDesc.Builder> {
         for (CollectionInstanceDesc c : builder.getCollectionInstancesList()) {
             IResource collResource = this.project.getResource(c.getCollection());
             CollectionDesc.Builder subCollBuilder = CollectionDesc.newBuilder();
-            ProtoUtil.merge(collResource, subCollBuilder);
+            ProtoUtil.merge(project, collResource, subCollBuilder);
             embedIndex = buildEmbedded(input, subCollBuilder, task, embedIndex);
         }
 
@@ -106,7 +106,7 @@ public class CollectionBuilder extends ProtoBuilder<CollectionDesc.Builder> {
                 .addInput(input)
                 .addOutput(input.changeExt(params.outExt()));
         CollectionDesc.Builder builder = CollectionDesc.newBuilder();
-        ProtoUtil.merge(input, builder);
+        ProtoUtil.merge(project, input, builder);
         Set<IResource> subCollections = new HashSet<IResource>();
         collectSubCollections(builder, subCollections);
         for (IResource subCollection : subCollections) {
@@ -172,7 +172,7 @@ public class CollectionBuilder extends ProtoBuilder<CollectionDesc.Builder> {
         for (CollectionInstanceDesc collInst : collectionBuilder.getCollectionInstancesList()) {
             IResource collResource = this.project.getResource(collInst.getCollection());
             CollectionDesc.Builder subCollBuilder = CollectionDesc.newBuilder();
-            ProtoUtil.merge(collResource, subCollBuilder);
+            ProtoUtil.merge(project, collResource, subCollBuilder);
             mergeSubCollections(owner, subCollBuilder);
             // Collect child ids
             childIds.clear();
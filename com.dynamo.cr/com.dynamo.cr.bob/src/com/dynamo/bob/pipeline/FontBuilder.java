@@ -34,7 +34,7 @@ public class FontBuilder extends Builder<Void>  {
     @Override
     public Task<Void> create(IResource input) throws IOException, CompileExceptionError {
         FontDesc.Builder fontDescbuilder = FontDesc.newBuilder();
-        ProtoUtil.merge(input, fontDescbuilder);
+        ProtoUtil.merge(project, input, fontDescbuilder);
         FontDesc fontDesc = fontDescbuilder.build();
 
         Task.TaskBuilder<Void> task = Task.<Void>newBuilder(this)
@@ -51,13 +51,14 @@ public class FontBuilder extends Builder<Void>  {
             IOException {
 
         FontDesc.Builder fontDescbuilder = FontDesc.newBuilder();
-        ProtoUtil.merge(task.input(0), fontDescbuilder);
+        ProtoUtil.merge(project, task.input(0), fontDescbuilder);
         FontDesc fontDesc = fontDescbuilder.build();
 
         final IResource inputFontFile = BuilderUtil.checkResource(this.project, task.input(0), "font", fontDesc.getFont());
         BuilderUtil.checkResource(this.project, task.input(0), "material", fontDesc.getMaterial());
 
         Fontc fontc = new Fontc();
+        fontc.setExecutor(this.project.getWorkerExecutor());
         BufferedInputStream fontStream = new BufferedInputStream(new ByteArrayInputStream(inputFontFile.getContent()));
         try {
 
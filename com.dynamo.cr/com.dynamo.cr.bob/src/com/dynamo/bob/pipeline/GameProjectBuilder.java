@@ -27,6 +27,7 @@ import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -89,12 +90,13 @@ import com.dynamo.spine.proto.Spine.SpineModelDesc;
 import com.dynamo.sprite.proto.Sprite.SpriteDesc;
 import com.dynamo.textureset.proto.TextureSetProto.TextureSet;
 import com.dynamo.tile.proto.Tile.TileGrid;
-import com.google.protobuf.DescriptorProtos.FieldOptions;
+import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor.JavaType;
 import com.google.protobuf.GeneratedMessage;
 import com.google.protobuf.Message;
 
-@BuilderParams(name = "GameProjectBuilder", inExts = ".project", outExt = "", createOrder = 1000)
+@BuilderParams(name = "GameProjectBuilder", inExts = ".project", outExt = "", createOrder = 1000, cacheable = false)
 public class GameProjectBuilder extends Builder<Void> {
 
     private static Map<String, Class<? extends GeneratedMessage>> extToMessageClass = new HashMap<String, Class<? extends GeneratedMessage>>();
@@ -181,7 +183,7 @@ public class GameProjectBuilder extends Builder<Void> {
             if (!texProfilesInput.exists()) {
                 throw new CompileExceptionError(input, -1, "Could not find supplied texture_profiles file: " + textureProfilesPath);
             }
-            ProtoUtil.merge(texProfilesInput, texProfilesBuilder);
+            ProtoUtil.merge(project, texProfilesInput, texProfilesBuilder);
 
             // If Bob is building for a specific platform, we need to
             // filter out any platform entries not relevant to the target platform.
@@ -228,9 +230,12 @@ public class GameProjectBuilder extends Builder<Void> {
         return builder.build();
     }
 
-    private void createArchive(Collection<String> resources, RandomAccessFile archiveIndex, RandomAccessFile archiveData, ManifestBuilder manifestBuilder, List<String> excludedResources, Path resourcePackDirectory) throws IOException, CompileExceptionError {
+    private ArchiveBuilder createArchive(Collection<String> resources, RandomAccessFile archiveIndex, RandomAccessFile archiveData, ManifestBuilder manifestBuilder, List<String> excludedResources, Path resourcePackDirectory, File incrementalArchiveData) throws IOException, CompileExceptionError {
         String root = FilenameUtils.concat(project.getRootDirectory(), project.getBuildDirectory());
-        ArchiveBuilder archiveBuilder = new ArchiveBuilder(root, manifestBuilder);
+        ArchiveBuilder archiveBuilder = new ArchiveBuilder(root, manifestBuilder, project.getMaxCpuThreads());
+        if (incrementalArchiveData != null) {
+            archiveBuilder.setIncremental(incrementalArchiveData, new File(incrementalArchiveData.getAbsolutePath() + ".entries"));
+        }
         boolean doCompress = project.getProjectProperties().getBooleanValue("project", "compress_archive", true);
         HashMap<String, EnumSet<Project.OutputFlags>> outputs = project.getOutputs();
 
@@ -251,101 +256,103 @@ public class GameProjectBuilder extends Builder<Void> {
                 project.getPublisher().AddEntry(fhandle.getName(), fhandle);
             }
         }
+        return archiveBuilder;
     }
 
-    private static void findResources(Project project, Message node, Collection<String> resources) throws CompileExceptionError {
-        List<FieldDescriptor> fields = node.getDescriptorForType().getFields();
+    // Fields of each message type that are resources, or messages that can contain resources, in declaration order
+    private static Map<Descriptor, List<FieldDescriptor>> resourceFields = new HashMap<Descriptor, List<FieldDescriptor>>();
+
+    private static List<FieldDescriptor> getResourceFields(Descriptor descriptor, Set<Descriptor> visiting) {
+        List<FieldDescriptor> fields = resourceFields.get(descriptor);
+        if (fields != null) {
+            return fields;
+        }
+        visiting.add(descriptor);
+        fields = new ArrayList<FieldDescriptor>();
+        FieldDescriptor resourceDesc = DdfExtensions.resource.getDescriptor();
+        for (FieldDescriptor fieldDescriptor : descriptor.getFields()) {
+            if (fieldDescriptor.getJavaType() == JavaType.MESSAGE) {
+                // Recursive message types are assumed to contain resources
+                Descriptor messageType = fieldDescriptor.getMessageType();
+                if (visiting.contains(messageType) || !getResourceFields(messageType, visiting).isEmpty()) {
+                    fields.add(fieldDescriptor);
+                }
+            } else if (fieldDescriptor.getJavaType() == JavaType.STRING) {
+                boolean isResource = (Boolean) fieldDescriptor.getOptions().getField(resourceDesc);
+                if (isResource) {
+                    fields.add(fieldDescriptor);
+                }
+            }
+        }
+        visiting.remove(descriptor);
+        resourceFields.put(descriptor, fields);
+        return fields;
+    }
 
-        for (FieldDescriptor fieldDescriptor : fields) {
-            FieldOptions options = fieldDescriptor.getOptions();
-            FieldDescriptor resourceDesc = DdfExtensions.resource.getDescriptor();
-            boolean isResource = (Boolean) options.getField(resourceDesc);
+    private static List<FieldDescriptor> getResourceFields(Descriptor descriptor) {
+        synchronized (resourceFields) {
+            return getResourceFields(descriptor, new HashSet<Descriptor>());
+        }
+    }
+
+    private static void findResourceReferences(Message node, List<String> references) {
+        for (FieldDescriptor fieldDescriptor : getResourceFields(node.getDescriptorForType())) {
             Object value = node.getField(fieldDescriptor);
             if (value instanceof Message) {
-                findResources(project, (Message) value, resources);
+                findResourceReferences((Message) value, references);
             } else if (value instanceof List) {
                 @SuppressWarnings("unchecked")
                 List<Object> list = (List<Object>) value;
                 for (Object v : list) {
                     if (v instanceof Message) {
-                        findResources(project, (Message) v, resources);
-                    } else if (isResource && v instanceof String) {
-                        findResources(project, project.getResource((String) v), resources);
+                        findResourceReferences((Message) v, references);
+                    } else if (v instanceof String) {
+                        references.add((String) v);
                     }
                 }
-            } else if (isResource && value instanceof String) {
-                findResources(project, project.getResource((String) value), resources);
+            } else if (value instanceof String) {
+                references.add((String) value);
             }
         }
     }
 
-    /*  Adds unique resources to list 'resources'. Each resource should once occur
-        once in the list regardless if the resource appears in several collections
-        or collectionproxies.
+    /*  Returns the paths of the resources referenced by the output of a resource, in the order
+        they appear in the message. A resource is visited once for every collectionproxy that
+        includes it, so the output is only parsed the first time and the references are cached.
     */
-    private static void findResources(Project project, IResource resource, Collection<String> resources) throws CompileExceptionError {
-        if (resource.getPath().equals("") || resources.contains(resource.output().getAbsPath())) {
-            return;
+    private static List<String> getResourceReferences(IResource resource, Map<String, List<String>> referenceCache) throws CompileExceptionError {
+        String absPath = resource.output().getAbsPath();
+        List<String> references = referenceCache.get(absPath);
+        if (references != null) {
+            return references;
         }
 
-        resources.add(resource.output().getAbsPath());
-
+        references = Collections.emptyList();
         int i = resource.getPath().lastIndexOf(".");
-        if (i == -1) {
-            return;
-        }
-        String ext = resource.getPath().substring(i);
-
-        if (leafResourceTypes.contains(ext)) {
-            return;
-        }
-
-        Class<? extends GeneratedMessage> klass = extToMessageClass.get(ext);
-        if (klass != null) {
-            GeneratedMessage.Builder<?> builder;
+        String ext = i != -1 ? resource.getPath().substring(i) : null;
+        if (ext != null && !leafResourceTypes.contains(ext)) {
+            Class<? extends GeneratedMessage> klass = extToMessageClass.get(ext);
+            if (klass == null) {
+                throw new CompileExceptionError(resource, -1, "No mapping for " + ext);
+            }
             try {
                 Method newBuilder = klass.getDeclaredMethod("newBuilder");
-                builder = (GeneratedMessage.Builder<?>) newBuilder.invoke(null);
+                GeneratedMessage.Builder<?> builder = (GeneratedMessage.Builder<?>) newBuilder.invoke(null);
                 final byte[] content = resource.output().getContent();
                 if(content == null) {
                     throw new CompileExceptionError(resource, 0, "Unable to find resource " + resource.getPath());
                 }
                 builder.mergeFrom(content);
-                Object message = builder.build();
-                findResources(project, (Message) message, resources);
+                references = new ArrayList<String>();
+                findResourceReferences((Message) builder.build(), references);
             } catch(CompileExceptionError e) {
                 throw e;
             } catch(Exception e) {
                 throw new RuntimeException(e);
             }
-        } else {
-            throw new CompileExceptionError(resource, -1, "No mapping for " + ext);
-        }
-    }
-
-    private static void buildResourceGraph(Project project, Message node, ResourceNode parentNode, Collection<String> visitedNodes) throws CompileExceptionError {
-        List<FieldDescriptor> fields = node.getDescriptorForType().getFields();
-        for (FieldDescriptor fieldDescriptor : fields) {
-            FieldOptions options = fieldDescriptor.getOptions();
-            FieldDescriptor resourceDesc = DdfExtensions.resource.getDescriptor();
-            boolean isResource = (Boolean) options.getField(resourceDesc);
-            Object value = node.getField(fieldDescriptor);
-            if (value instanceof Message) {
-                buildResourceGraph(project, (Message) value, parentNode, visitedNodes);
-            } else if (value instanceof List) {
-                @SuppressWarnings("unchecked")
-                List<Object> list = (List<Object>) value;
-                for (Object v : list) {
-                    if (v instanceof Message) {
-                        buildResourceGraph(project, (Message) v, parentNode, visitedNodes);
-                    } else if (isResource && v instanceof String) {
-                        buildResourceGraph(project, project.getResource((String) v), parentNode, visitedNodes);
-                    }
-                }
-            } else if (isResource && value instanceof String) {
-                buildResourceGraph(project, project.getResource((String) value), parentNode, visitedNodes);
-            }
         }
+        referenceCache.put(absPath, references);
+        return references;
     }
 
     /*  Build a graph of resources. The graph is later used when writing archive to disk
@@ -353,8 +360,10 @@ public class GameProjectBuilder extends Builder<Void> {
         excluded with liveupdate. Since liveupdate works on collectionproxies a resource
         will appear as a single node per collectionproxy, but can still have a other nodes
         in other collections/collectionproxies.
+        The resources of the graph are also added to 'resources', where each resource
+        only occurs once regardless if it appears in several collections or collectionproxies.
     */
-    private static void buildResourceGraph(Project project, IResource resource, ResourceNode parentNode, Collection<String> visitedNodes) throws CompileExceptionError {
+    private static void buildResourceGraph(Project project, IResource resource, ResourceNode parentNode, Collection<String> visitedNodes, Collection<String> resources, Map<String, List<String>> referenceCache) throws CompileExceptionError {
         if (resource.getPath().equals("") || visitedNodes.contains(resource.output().getAbsPath())) {
             return;
         }
@@ -364,39 +373,12 @@ public class GameProjectBuilder extends Builder<Void> {
         }
 
         visitedNodes.add(resource.output().getAbsPath());
+        resources.add(resource.output().getAbsPath());
         ResourceNode currentNode = new ResourceNode(resource.getPath(), resource.output().getAbsPath());
         parentNode.addChild(currentNode);
 
-        int i = resource.getPath().lastIndexOf(".");
-        if (i == -1) {
-            return;
-        }
-        String ext = resource.getPath().substring(i);
-
-        if (leafResourceTypes.contains(ext)) {
-            return;
-        }
-
-        Class<? extends GeneratedMessage> klass = extToMessageClass.get(ext);
-        if (klass != null) {
-            GeneratedMessage.Builder<?> builder;
-            try {
-                Method newBuilder = klass.getDeclaredMethod("newBuilder");
-                builder = (GeneratedMessage.Builder<?>) newBuilder.invoke(null);
-                final byte[] content = resource.output().getContent();
-                if(content == null) {
-                    throw new CompileExceptionError(resource, 0, "Unable to find resource " + resource.getPath());
-                }
-                builder.mergeFrom(content);
-                Object message = builder.build();
-                buildResourceGraph(project, (Message) message, currentNode, visitedNodes);
-            } catch(CompileExceptionError e) {
-                throw e;
-            } catch(Exception e) {
-                throw new RuntimeException(e);
-            }
-        } else {
-            throw new CompileExceptionError(resource, -1, "No mapping for " + ext);
+        for (String path : getResourceReferences(resource, referenceCache)) {
+            buildResourceGraph(project, project.getResource(path), currentNode, visitedNodes, resources, referenceCache);
         }
     }
 
@@ -412,6 +394,9 @@ public class GameProjectBuilder extends Builder<Void> {
 
         } else {
 
+            // Outputs are parsed once, even if they are visited from several roots or collectionproxies
+            Map<String, List<String>> referenceCache = new HashMap<String, List<String>>();
+
             // Root nodes to follow (default values from engine.cpp)
             for (String[] tuples : new String[][] { {"bootstrap", "main_collection", "/logic/main.collectionc"},
                                                     {"bootstrap", "render", "/builtins/render/default.renderc"},
@@ -422,8 +407,7 @@ public class GameProjectBuilder extends Builder<Void> {
                 String path = project.getProjectProperties().getStringValue(tuples[0], tuples[1], tuples[2]);
                 HashSet<String> visitedNodes = new HashSet<String>();
                 if (path != null) {
-                    findResources(project, project.getResource(path), resources);
-                    buildResourceGraph(project, project.getResource(path), rootNode, visitedNodes);
+                    buildResourceGraph(project, project.getResource(path), rootNode, visitedNodes, resources, referenceCache);
                 }
             }
 
@@ -564,7 +548,12 @@ public class GameProjectBuilder extends Builder<Void> {
                 File archiveDataHandle = File.createTempFile("defold.data_", ".arcd");
                 RandomAccessFile archiveData = createRandomAccessFile(archiveDataHandle);
                 Path resourcePackDirectory = Files.createTempDirectory("defold.resourcepack_");
-                createArchive(resources, archiveIndex, archiveData, manifestBuilder, excludedResources, resourcePackDirectory);
+                // Unchanged entries are copied from the game.arcd of the previous build
+                File incrementalArchiveData = null;
+                if (project.option("archive-incremental", "false").equals("true")) {
+                    incrementalArchiveData = new File(task.getOutputs().get(2).getAbsPath());
+                }
+                ArchiveBuilder archiveBuilder = createArchive(resources, archiveIndex, archiveData, manifestBuilder, excludedResources, resourcePackDirectory, incrementalArchiveData);
 
                 // Create manifest
                 byte[] manifestFile = manifestBuilder.buildManifest();
@@ -577,6 +566,9 @@ public class GameProjectBuilder extends Builder<Void> {
                 // game.arcd
                 archiveDataInputStream = new FileInputStream(archiveDataHandle);
                 task.getOutputs().get(2).setContent(archiveDataInputStream);
+                if (incrementalArchiveData != null) {
+                    archiveBuilder.writeEntries();
+                }
 
                 // game.dmanifest
                 task.getOutputs().get(3).setContent(manifestFile);
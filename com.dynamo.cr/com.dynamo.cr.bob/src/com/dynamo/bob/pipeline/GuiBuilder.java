@@ -14,7 +14,7 @@ package com.dynamo.bob.pipeline;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -52,7 +52,6 @@ import com.dynamo.gui.proto.Gui.SceneDesc.LayerDesc;
 import com.dynamo.gui.proto.Gui.SceneDesc.LayoutDesc;
 import com.dynamo.gui.proto.Gui.SceneDesc.TextureDesc;
 import com.google.protobuf.Descriptors.FieldDescriptor;
-import com.google.protobuf.TextFormat;
 
 
 @ProtoParams(messageClass = SceneDesc.class)
@@ -62,7 +61,7 @@ public class GuiBuilder extends ProtoBuilder<SceneDesc.Builder> {
     @Override
     public Task<Void> create(IResource input) throws IOException, CompileExceptionError {
         SceneDesc.Builder builder = SceneDesc.newBuilder();
-        ProtoUtil.merge(input, builder);
+        ProtoUtil.merge(project, input, builder);
 
         TaskBuilder<Void> taskBuilder = Task.<Void>newBuilder(this)
                 .setName(params.name())
@@ -575,7 +574,7 @@ public class GuiBuilder extends ProtoBuilder<SceneDesc.Builder> {
                     // Need to parse the spine JSON
                     com.dynamo.spine.proto.Spine.SpineSceneDesc.Builder spineSceneBuilder = com.dynamo.spine.proto.Spine.SpineSceneDesc.newBuilder();
                     IResource spineSceneRes = builder.project.getResource(spineScenePath);
-                    TextFormat.merge(new InputStreamReader(new ByteArrayInputStream(spineSceneRes.getContent()), "ASCII"), spineSceneBuilder);
+                    ProtoUtil.merge(builder.project, spineSceneRes, spineSceneBuilder, StandardCharsets.US_ASCII);
 
                     IResource jsonRes = builder.project.getResource(spineSceneBuilder.getSpineJson());
                     try {
@@ -670,9 +669,12 @@ public class GuiBuilder extends ProtoBuilder<SceneDesc.Builder> {
             SceneDesc.Builder sceneBuilder = resourceCache.get(resourcePath);
             if(sceneBuilder == null) {
                 IResource templateSceneResource = this.project.getResource(resourcePath);
-                InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(templateSceneResource.getContent()), "ASCII");
                 sceneBuilder = SceneDesc.newBuilder();
-                TextFormat.merge(reader, sceneBuilder);
+                try {
+                    ProtoUtil.merge(this.project, templateSceneResource, sceneBuilder, StandardCharsets.US_ASCII);
+                } catch (CompileExceptionError e) {
+                    throw new IOException(e.getMessage(), e);
+                }
                 resourceCache.put(resourcePath, sceneBuilder);
             }
             return sceneBuilder.clone();
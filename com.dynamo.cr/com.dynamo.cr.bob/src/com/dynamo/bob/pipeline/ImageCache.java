@@ -0,0 +1,132 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of decoded images, shared by the atlases of a project that reference
+ * the same image files. Images are keyed by resource path and content sha1, so
+ * an entry is never stale. Cached images are shared and must not be modified.
+ * The least recently used entries are evicted when the total size of the
+ * decoded pixels exceeds the max size.
+ */
+public class ImageCache {
+
+    public static final long DEFAULT_MAX_SIZE = Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8);
+
+    private static class Entry {
+        BufferedImage image;
+        long size;
+
+        Entry(BufferedImage image, long size) {
+            this.image = image;
+            this.size = size;
+        }
+    }
+
+    private final long maxSize;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+    private long size = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public ImageCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize max total size, in bytes, of the decoded images
+     */
+    public ImageCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the size of the pixels of a decoded image, as counted by the cache
+     * @param image image
+     * @return size in bytes
+     */
+    public static long getImageSize(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    /**
+     * Get a cached image
+     * @param key cache key
+     * @return image or null if not cached
+     */
+    public synchronized BufferedImage get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            ++misses;
+            return null;
+        }
+        ++hits;
+        return entry.image;
+    }
+
+    /**
+     * Add an image to the cache
+     * @param key cache key
+     * @param image decoded image
+     */
+    public synchronized void put(String key, BufferedImage image) {
+        long size = getImageSize(image);
+        if (size > maxSize) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(image, size));
+        if (previous != null) {
+            this.size -= previous.size;
+        }
+        this.size += size;
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (this.size > maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            this.size -= eldest.size;
+            ++evictions;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
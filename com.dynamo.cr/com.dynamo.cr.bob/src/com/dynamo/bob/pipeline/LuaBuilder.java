@@ -87,7 +87,77 @@ public abstract class LuaBuilder extends Builder<Void> {
         return string.getBytes();
     }
 
+    static String getChunkName(Task<Void> task) {
+        // Doing a bit of custom set up here as the path is required.
+        //
+        // NOTE: The -f option for bytecode is a small custom modification to bcsave.lua in LuaJIT which allows us to supply the
+        //       correct chunk name (the original original source file) already here.
+        //
+        // See implementation of luaO_chunkid and why a prefix '=' is used; it is to pass through the filename without modifications.
+        //
+        // We will also limit the chunkname (the identifying part of a script/source chunk) to 59 chars.
+        // Lua has a maximum length of chunknames, by default defined to 60 chars.
+        //
+        // If a script error occurs in runtime we want Lua to report the end of the filepath
+        // associated with the chunk, since this is where the filename is visible.
+        //
+        String chunkName = task.input(0).getPath();
+        if (chunkName.length() >= 59) {
+            chunkName = chunkName.substring(chunkName.length() - 59);
+        }
+        chunkName = "=" + chunkName;
+        return chunkName;
+    }
+
+    // Error output of "luajit -b" is "luajit: <file>:<line>: <message>"
+    static CompileExceptionError parseLuaJITError(Task<Void> task, String output) {
+        // first delimiter is the executable name "luajit:"
+        int execSep = output.indexOf(':');
+        if (execSep > 0) {
+            // then comes the filename and the line like this:
+            // "file.lua:30: <error message>"
+            int lineBegin = output.indexOf(':', execSep + 1);
+            if (lineBegin > 0) {
+                int lineEnd = output.indexOf(':', lineBegin + 1);
+                if (lineEnd > 0) {
+                    try {
+                        return new CompileExceptionError(task.input(0),
+                                Integer.parseInt(output.substring(lineBegin + 1, lineEnd)),
+                                output.substring(lineEnd + 2));
+                    } catch (NumberFormatException e) {
+                        // fall through
+                    }
+                }
+            }
+        }
+        // Since parsing out the actual error failed, as a backup just
+        // spit out whatever luajit said.
+        return new CompileExceptionError(task.input(0), 1, output);
+    }
+
+    /**
+     * Compile a script to bytecode. The script is compiled by a pool of long running
+     * LuaJIT processes shared by all tasks, one per task thread at most, see
+     * {@link LuaJITCompiler}. If the pool can't be used, LuaJIT is run once for the
+     * script instead.
+     */
     public byte[] constructBytecode(Task<Void> task, String luajitExe, byte[] byteString) throws IOException, CompileExceptionError {
+        LuaJITCompiler compiler = LuaJITCompiler.get(luajitExe, project.getMaxCpuThreads());
+        if (compiler != null) {
+            try {
+                LuaJITCompiler.Result result = compiler.compile(getChunkName(task), byteString);
+                if (result.getError() != null) {
+                    throw parseLuaJITError(task, result.getError());
+                }
+                return result.getBytecode();
+            } catch (IOException e) {
+                Logger.getLogger(LuaBuilder.class.getCanonicalName()).log(Level.WARNING, String.format("%s compile server failed, falling back to one process per script", luajitExe), e);
+            }
+        }
+        return constructBytecodeProcess(task, luajitExe, byteString);
+    }
+
+    private byte[] constructBytecodeProcess(Task<Void> task, String luajitExe, byte[] byteString) throws IOException, CompileExceptionError {
 
         java.io.FileOutputStream fo = null;
         RandomAccessFile rdr = null;
@@ -104,24 +174,7 @@ public abstract class LuaBuilder extends Builder<Void> {
             fo.write(byteString);
             fo.close();
 
-            // Doing a bit of custom set up here as the path is required.
-            //
-            // NOTE: The -f option for bytecode is a small custom modification to bcsave.lua in LuaJIT which allows us to supply the
-            //       correct chunk name (the original original source file) already here.
-            //
-            // See implementation of luaO_chunkid and why a prefix '=' is used; it is to pass through the filename without modifications.
-            //
-            // We will also limit the chunkname (the identifying part of a script/source chunk) to 59 chars.
-            // Lua has a maximum length of chunknames, by default defined to 60 chars.
-            //
-            // If a script error occurs in runtime we want Lua to report the end of the filepath
-            // associated with the chunk, since this is where the filename is visible.
-            //
-            String chunkName = task.input(0).getPath();
-            if (chunkName.length() >= 59) {
-                chunkName = chunkName.substring(chunkName.length() - 59);
-            }
-            chunkName = "=" + chunkName;
+            String chunkName = getChunkName(task);
             ProcessBuilder pb = new ProcessBuilder(new String[] { Bob.getExe(Platform.getHostPlatform(), luajitExe), "-bgf", chunkName, inputFile.getAbsolutePath(), outputFile.getAbsolutePath() }).redirectErrorStream(true);
 
             java.util.Map<String, String> env = pb.environment();
@@ -141,26 +194,8 @@ public abstract class LuaBuilder extends Builder<Void> {
 
                 String cmdOutput = new String(buf);
                 if (ret != 0) {
-                    // first delimiter is the executable name "luajit:"
-                    int execSep = cmdOutput.indexOf(':');
-                    if (execSep > 0) {
-                        // then comes the filename and the line like this:
-                        // "file.lua:30: <error message>"
-                        int lineBegin = cmdOutput.indexOf(':', execSep + 1);
-                        if (lineBegin > 0) {
-                            int lineEnd = cmdOutput.indexOf(':', lineBegin + 1);
-                            if (lineEnd > 0) {
-                                throw new CompileExceptionError(task.input(0),
-                                        Integer.parseInt(cmdOutput.substring(
-                                                lineBegin + 1, lineEnd)),
-                                        cmdOutput.substring(lineEnd + 2));
-                            }
-                        }
-                    }
-                    // Since parsing out the actual error failed, as a backup just
-                    // spit out whatever luajit said.
                     inputFile.delete();
-                    throw new CompileExceptionError(task.input(0), 1, cmdOutput);
+                    throw parseLuaJITError(task, cmdOutput);
                 }
             } catch (InterruptedException e) {
                 Logger.getLogger(LuaBuilder.class.getCanonicalName()).log(Level.SEVERE, "Unexpected interruption", e);
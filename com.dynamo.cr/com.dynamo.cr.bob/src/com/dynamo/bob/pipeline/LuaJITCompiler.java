@@ -0,0 +1,302 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+
+import com.dynamo.bob.Bob;
+import com.dynamo.bob.Platform;
+
+/**
+ * Long running LuaJIT processes that compile Lua source to bytecode. Scripts are
+ * sent in batches over stdin and the results are read back from stdout, see
+ * luajit_compiler.lua for the protocol. There is one compiler per LuaJIT
+ * executable, with a pool of processes that are started on demand, so that
+ * scripts compiled by concurrent tasks don't wait for each other. A compiler
+ * that fails is not restarted, and callers are expected to fall back to running
+ * LuaJIT once per script.
+ */
+public class LuaJITCompiler {
+
+    /**
+     * Result of compiling a single script
+     */
+    public static class Result {
+        private final byte[] bytecode;
+        private final String error;
+
+        Result(byte[] bytecode, String error) {
+            this.bytecode = bytecode;
+            this.error = error;
+        }
+
+        /**
+         * @return bytecode, or null if the script failed to compile
+         */
+        public byte[] getBytecode() {
+            return bytecode;
+        }
+
+        /**
+         * @return error message in the same format as "luajit -b", or null if the script compiled
+         */
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * A single LuaJIT process, used by one caller at a time
+     */
+    private static class Worker {
+        private final Process process;
+        private final OutputStream input;
+        private final DataInputStream output;
+
+        Worker(List<String> command) throws IOException {
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+            process = pb.start();
+            input = new BufferedOutputStream(process.getOutputStream());
+            output = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+
+        void destroy() {
+            process.destroy();
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(32);
+            int c;
+            while ((c = output.read()) != '\n') {
+                if (c == -1) {
+                    throw new EOFException("LuaJIT compiler process exited");
+                }
+                line.write(c);
+            }
+            return line.toString("UTF-8");
+        }
+
+        private void writeBatch(List<String> chunkNames, List<byte[]> sources) throws IOException {
+            input.write(String.format("%d\n", sources.size()).getBytes("UTF-8"));
+            for (int i = 0; i < sources.size(); ++i) {
+                byte[] chunkName = chunkNames.get(i).getBytes("UTF-8");
+                byte[] source = sources.get(i);
+                input.write(String.format("%d %d\n", chunkName.length, source.length).getBytes("UTF-8"));
+                input.write(chunkName);
+                input.write(source);
+            }
+            input.flush();
+        }
+
+        private Result readResult() throws IOException {
+            String header = readLine();
+            int separator = header.indexOf(' ');
+            if (separator < 0) {
+                throw new IOException(String.format("Unexpected response from LuaJIT compiler: '%s'", header));
+            }
+            String status = header.substring(0, separator);
+            byte[] payload = new byte[Integer.parseInt(header.substring(separator + 1))];
+            output.readFully(payload);
+            if (status.equals("ok")) {
+                return new Result(payload, null);
+            } else if (status.equals("error")) {
+                return new Result(null, new String(payload, "UTF-8"));
+            }
+            throw new IOException(String.format("Unexpected response from LuaJIT compiler: '%s'", header));
+        }
+
+        List<Result> compile(List<String> chunkNames, List<byte[]> sources) throws IOException {
+            writeBatch(chunkNames, sources);
+            List<Result> results = new ArrayList<Result>(sources.size());
+            for (int i = 0; i < sources.size(); ++i) {
+                results.add(readResult());
+            }
+            return results;
+        }
+    }
+
+    private static final Map<String, LuaJITCompiler> compilers = new HashMap<String, LuaJITCompiler>();
+    private static File scriptFile;
+
+    private final List<String> command;
+    // All running processes, and the ones not used by a caller
+    private final List<Worker> workers = new ArrayList<Worker>();
+    private final List<Worker> idle = new ArrayList<Worker>();
+    private int maxProcesses = 1;
+    private boolean failed = false;
+    private boolean shutdownHookAdded = false;
+
+    LuaJITCompiler(List<String> command) {
+        this.command = command;
+    }
+
+    /**
+     * Get the compiler for a LuaJIT executable
+     * @param luajitExe name of the executable, e.g. "luajit-64"
+     * @param maxProcesses max number of LuaJIT processes to run at the same time, typically
+     *        the number of tasks run concurrently
+     * @return compiler, or null if the compiler has failed before
+     * @throws IOException
+     */
+    public static LuaJITCompiler get(String luajitExe, int maxProcesses) throws IOException {
+        synchronized (compilers) {
+            LuaJITCompiler compiler = compilers.get(luajitExe);
+            if (compiler == null) {
+                String exe = Bob.getExe(Platform.getHostPlatform(), luajitExe);
+                compiler = new LuaJITCompiler(Arrays.asList(exe, getScriptFile().getAbsolutePath()));
+                compilers.put(luajitExe, compiler);
+            }
+            compiler.setMaxProcesses(maxProcesses);
+            return compiler.hasFailed() ? null : compiler;
+        }
+    }
+
+    static File getScriptFile() throws IOException {
+        synchronized (compilers) {
+            if (scriptFile == null) {
+                File file = File.createTempFile("luajit_compiler", ".lua");
+                file.deleteOnExit();
+                FileUtils.copyURLToFile(LuaJITCompiler.class.getResource("luajit_compiler.lua"), file);
+                scriptFile = file;
+            }
+            return scriptFile;
+        }
+    }
+
+    public synchronized boolean hasFailed() {
+        return failed;
+    }
+
+    /**
+     * Set the max number of LuaJIT processes. Processes running above the new max
+     * are stopped, once they are done with their current batch.
+     * @param maxProcesses max number of processes, at least one
+     */
+    public synchronized void setMaxProcesses(int maxProcesses) {
+        this.maxProcesses = Math.max(1, maxProcesses);
+        while (workers.size() > this.maxProcesses && !idle.isEmpty()) {
+            Worker worker = idle.remove(idle.size() - 1);
+            workers.remove(worker);
+            worker.destroy();
+        }
+        notifyAll();
+    }
+
+    synchronized int getProcessCount() {
+        return workers.size();
+    }
+
+    // Take an idle process, start a new one if below the max, or wait for one to be released
+    private synchronized Worker acquire() throws IOException {
+        while (true) {
+            if (failed) {
+                throw new IOException("LuaJIT compiler process has failed");
+            }
+            if (!idle.isEmpty()) {
+                return idle.remove(idle.size() - 1);
+            }
+            if (workers.size() < maxProcesses) {
+                if (!shutdownHookAdded) {
+                    Runtime.getRuntime().addShutdownHook(new Thread() {
+                        @Override
+                        public void run() {
+                            LuaJITCompiler.this.stop();
+                        }
+                    });
+                    shutdownHookAdded = true;
+                }
+                Worker worker = new Worker(command);
+                workers.add(worker);
+                return worker;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a LuaJIT compiler process");
+            }
+        }
+    }
+
+    private synchronized void release(Worker worker) {
+        if (!workers.contains(worker)) {
+            // Stopped while in use
+            worker.destroy();
+        } else if (workers.size() > maxProcesses) {
+            workers.remove(worker);
+            worker.destroy();
+        } else {
+            idle.add(worker);
+        }
+        notifyAll();
+    }
+
+    private synchronized void fail(Worker worker) {
+        failed = true;
+        worker.destroy();
+        stop();
+    }
+
+    /**
+     * Stop the LuaJIT processes. They are started again on the next compile.
+     */
+    public synchronized void stop() {
+        for (Worker worker : idle) {
+            worker.destroy();
+        }
+        idle.clear();
+        workers.clear();
+        notifyAll();
+    }
+
+    /**
+     * Compile a batch of scripts in one round trip to a LuaJIT process. Batches
+     * compiled concurrently run on separate processes, up to the max number of processes.
+     * @param chunkNames chunk names, as passed to "luajit -bgf"
+     * @param sources Lua source of each script
+     * @return results in the same order as the sources
+     * @throws IOException if the LuaJIT process failed, in which case the compiler can't be used again
+     */
+    public List<Result> compile(List<String> chunkNames, List<byte[]> sources) throws IOException {
+        Worker worker = acquire();
+        List<Result> results;
+        try {
+            results = worker.compile(chunkNames, sources);
+        } catch (IOException | RuntimeException e) {
+            fail(worker);
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        release(worker);
+        return results;
+    }
+
+    public Result compile(String chunkName, byte[] source) throws IOException {
+        return compile(Arrays.asList(chunkName), Arrays.asList(source)).get(0);
+    }
+}
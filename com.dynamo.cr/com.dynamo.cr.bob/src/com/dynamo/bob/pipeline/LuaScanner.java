@@ -13,7 +13,6 @@
 package com.dynamo.bob.pipeline;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -26,38 +25,15 @@ import com.dynamo.bob.pipeline.LuaScanner.Property.Status;
 import com.dynamo.bob.util.MurmurHash;
 import com.dynamo.gameobject.proto.GameObject.PropertyType;
 
+/**
+ * Scans Lua source for require calls and go.property declarations. The source
+ * is tokenized in a single pass by a lexer that skips comments and strings, so
+ * the time is linear in the size of the source. Only the tokens needed to find
+ * the calls are distinguished.
+ */
 public class LuaScanner {
 
-    private static Pattern multiLineCommentPattern = Pattern.compile("--\\[\\[.*?--\\]\\]",
-            Pattern.DOTALL | Pattern.MULTILINE);
-
-    private static String comment = "\\s*?(-{2,}.*?)?$";
-    private static String identifier = "[_\\p{L}][_\\p{L}0-9]*";
-    private static String beforeRequire = ".*?";
-    private static String afterRequire = "\\s*(,{0,1}|\\." + identifier + ",{0,1})" + comment;
-    
-    
-    private static Pattern requirePattern1 = Pattern.compile(beforeRequire + "require\\s*?\"(.*?)\"" + afterRequire,
-             Pattern.DOTALL | Pattern.MULTILINE);
-
-    private static Pattern requirePattern2 = Pattern.compile(beforeRequire + "require\\s*?\\(\\s*?\"(.*?)\"\\s*?\\)" + afterRequire,
-             Pattern.DOTALL | Pattern.MULTILINE);
-
-    private static Pattern requirePattern3 = Pattern.compile(beforeRequire + "require\\s*?'(.*?)'" + afterRequire,
-             Pattern.DOTALL | Pattern.MULTILINE);
-
-    /**
-     * Note: we need four different patterns here to match the same beginning and ending character for
-     * a string (eg " or '). We can't match on [\"']. If we do we'd have a false positive for the
-     * following line:
-     * 
-     * local s = 'require "should_not_match"'
-     */
-    private static Pattern requirePattern4 = Pattern.compile(beforeRequire + "require\\s*?\\(\\s*?'(.*?)'\\s*?\\)" + afterRequire,
-             Pattern.DOTALL | Pattern.MULTILINE);
-
-    private static Pattern propertyDeclPattern = Pattern.compile("go.property\\s*?\\((.*?)\\);?(\\s*?--.*?)?$");
-    private static Pattern propertyArgsPattern = Pattern.compile("[\"'](.*?)[\"']\\s*,(.*)");
+    private static Pattern propertyArgsPattern = Pattern.compile("[\"'](.*?)[\"']\\s*,(.*)", Pattern.DOTALL);
 
     // http://docs.python.org/dev/library/re.html#simulating-scanf
     private static Pattern numPattern = Pattern.compile("[-+]?(\\d+(\\.\\d*)?|\\.\\d+)([eE][-+]?\\d+)?");
@@ -71,60 +47,364 @@ public class LuaScanner {
     private static Pattern[] patterns = new Pattern[] { numPattern, hashPattern, urlPattern,
             vec3Pattern, vec4Pattern, quatPattern, boolPattern, resourcePattern};
 
+    private static final int TOKEN_EOF = 0;
+    private static final int TOKEN_NAME = 1;
+    private static final int TOKEN_STRING = 2;
+    private static final int TOKEN_NUMBER = 3;
+    private static final int TOKEN_OTHER = 4;
 
-    private static String stripSingleLineComments(String str) {
-        str = str.replace("\r", "");
-        StringBuffer sb = new StringBuffer();
-        String[] lines = str.split("\n");
-        for (String line : lines) {
-            String lineTrimmed = line.trim();
-            // Strip single line comments but preserve "pure" multi-line comments
-            // Note that ---[[ is a single line comment
-            // You can enable a block in Lua by adding a hyphen, e.g.
-            /*
-             ---[[
-             The block is enabled
-             --]]
-             */
-            if (!lineTrimmed.startsWith("--") || lineTrimmed.startsWith("--[[") || lineTrimmed.startsWith("--]]")) {
-                sb.append(line);
+    /**
+     * Lua lexer. Comments are skipped, and optionally recorded so that they can
+     * be stripped. Operators other than "..", "..." and "::" are returned as
+     * single characters, since only ".", ":", "(", ")" and ";" are of interest.
+     */
+    private static class Lexer {
+        private final String source;
+        private final int length;
+        private final List<int[]> comments;
+
+        private int pos = 0;
+        private int line = 0; // 0-based line number at pos
+
+        int type;
+        int start;
+        int end;
+        int startLine;
+        int endLine;
+        // Content of a string token, without quotes or brackets
+        int valueStart;
+        int valueEnd;
+
+        Lexer(String source, List<int[]> comments) {
+            this.source = source;
+            this.length = source.length();
+            this.comments = comments;
+            // A first line starting with # is skipped by Lua, e.g. #!/usr/bin/lua
+            if (length > 0 && source.charAt(0) == '#') {
+                skipLine();
+                addComment(0, pos);
             }
-            sb.append("\n");
         }
-        return sb.toString();
+
+        int getPos() {
+            return pos;
+        }
+
+        int getLine() {
+            return line;
+        }
+
+        /**
+         * Continue from a position returned by getPos, the token at the position is read by the next call to next
+         */
+        void reset(int pos, int line) {
+            this.pos = pos;
+            this.line = line;
+        }
+
+        boolean is(char c) {
+            return type == TOKEN_OTHER && end - start == 1 && source.charAt(start) == c;
+        }
+
+        boolean isName(String name) {
+            return type == TOKEN_NAME && end - start == name.length() && source.startsWith(name, start);
+        }
+
+        String getValue() {
+            return source.substring(valueStart, valueEnd);
+        }
+
+        private void addComment(int start, int end) {
+            // Comments may be read again after a reset
+            if (comments != null && (comments.isEmpty() || comments.get(comments.size() - 1)[1] <= start)) {
+                comments.add(new int[] { start, end });
+            }
+        }
+
+        private void skipLine() {
+            while (pos < length && source.charAt(pos) != '\n') {
+                ++pos;
+            }
+        }
+
+        // Level of a long bracket at pos, e.g. 0 for [[ and 2 for [==[, or -1 if not a long bracket
+        private int longBracketLevel() {
+            int p = pos + 1;
+            while (p < length && source.charAt(p) == '=') {
+                ++p;
+            }
+            if (p < length && source.charAt(p) == '[') {
+                return p - pos - 1;
+            }
+            return -1;
+        }
+
+        // Skip a long bracket of a level, pos is at the opening bracket. Returns the start of the closing bracket.
+        private int skipLongBracket(int level) {
+            pos += level + 2;
+            while (pos < length) {
+                char c = source.charAt(pos);
+                if (c == ']') {
+                    int p = pos + 1;
+                    while (p < length && source.charAt(p) == '=') {
+                        ++p;
+                    }
+                    if (p < length && source.charAt(p) == ']' && p - pos - 1 == level) {
+                        int close = pos;
+                        pos = p + 1;
+                        return close;
+                    }
+                } else if (c == '\n') {
+                    ++line;
+                }
+                ++pos;
+            }
+            return length;
+        }
+
+        private void skipWhitespaceAndComments() {
+            while (pos < length) {
+                char c = source.charAt(pos);
+                if (c == '\n') {
+                    ++line;
+                    ++pos;
+                } else if (Character.isWhitespace(c)) {
+                    ++pos;
+                } else if (c == '-' && pos + 1 < length && source.charAt(pos + 1) == '-') {
+                    int commentStart = pos;
+                    pos += 2;
+                    int level = pos < length && source.charAt(pos) == '[' ? longBracketLevel() : -1;
+                    if (level >= 0) {
+                        skipLongBracket(level);
+                    } else {
+                        skipLine();
+                    }
+                    addComment(commentStart, pos);
+                } else {
+                    break;
+                }
+            }
+        }
+
+        private void readShortString(char quote) {
+            ++pos;
+            valueStart = pos;
+            while (pos < length) {
+                char c = source.charAt(pos);
+                if (c == quote) {
+                    valueEnd = pos;
+                    ++pos;
+                    return;
+                } else if (c == '\\' && pos + 1 < length) {
+                    if (source.charAt(pos + 1) == '\n') {
+                        ++line;
+                    }
+                    pos += 2;
+                } else if (c == '\n') {
+                    // Unfinished string, ended at the line so that the rest of the source is scanned
+                    break;
+                } else {
+                    ++pos;
+                }
+            }
+            valueEnd = pos;
+        }
+
+        private void readNumber() {
+            boolean hex = source.startsWith("0x", pos) || source.startsWith("0X", pos);
+            ++pos;
+            while (pos < length) {
+                char c = source.charAt(pos);
+                char prev = source.charAt(pos - 1);
+                if (Character.isLetterOrDigit(c) || c == '.' || c == '_') {
+                    ++pos;
+                } else if ((c == '+' || c == '-') && (hex ? prev == 'p' || prev == 'P' : prev == 'e' || prev == 'E')) {
+                    ++pos;
+                } else {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Read the next token
+         */
+        void next() {
+            skipWhitespaceAndComments();
+            start = pos;
+            startLine = line;
+            if (pos >= length) {
+                type = TOKEN_EOF;
+            } else {
+                char c = source.charAt(pos);
+                if (c == '_' || Character.isLetter(c)) {
+                    type = TOKEN_NAME;
+                    ++pos;
+                    while (pos < length && (source.charAt(pos) == '_' || Character.isLetterOrDigit(source.charAt(pos)))) {
+                        ++pos;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    type = TOKEN_STRING;
+                    readShortString(c);
+                } else if (c == '[' && longBracketLevel() >= 0) {
+                    type = TOKEN_STRING;
+                    int level = longBracketLevel();
+                    valueStart = pos + level + 2;
+                    valueEnd = skipLongBracket(level);
+                } else if (Character.isDigit(c) || (c == '.' && pos + 1 < length && Character.isDigit(source.charAt(pos + 1)))) {
+                    type = TOKEN_NUMBER;
+                    readNumber();
+                } else {
+                    type = TOKEN_OTHER;
+                    if (source.startsWith("...", pos)) {
+                        pos += 3;
+                    } else if (source.startsWith("..", pos) || source.startsWith("::", pos)) {
+                        pos += 2;
+                    } else {
+                        ++pos;
+                    }
+                }
+            }
+            end = pos;
+            endLine = line;
+        }
     }
 
-    private static String stripComments(String str) {
-        str = stripSingleLineComments(str);
-        Matcher matcher = multiLineCommentPattern.matcher(str);
-
-        StringBuffer sb = new StringBuffer();
-        while (matcher.find()) {
-            // Replace comment with n lines in order to preserve line indices
-            int n = matcher.group().split("\n").length;
-            StringBuffer lines = new StringBuffer(n);
-            for (int i = 0; i < n-1; ++i) lines.append('\n');
-            matcher.appendReplacement(sb, lines.toString());
+    /**
+     * A go.property(...) call, on lines of its own
+     */
+    private static class PropertyDeclaration {
+        int start;
+        int end; // including a trailing semicolon
+        int argsStart;
+        int argsEnd;
+        int line;
+        int endLine;
+    }
+
+    /**
+     * Find the property declarations in the source
+     * @param source Lua source
+     * @param comments list to add the comments of the source to, or null
+     * @return declarations in the order of the source
+     */
+    private static List<PropertyDeclaration> findPropertyDeclarations(String source, List<int[]> comments) {
+        List<PropertyDeclaration> declarations = new ArrayList<PropertyDeclaration>();
+        Lexer lexer = new Lexer(source, comments);
+        int prevEndLine = -1;
+        lexer.next();
+        while (lexer.type != TOKEN_EOF) {
+            if (lexer.isName("go") && lexer.startLine > prevEndLine) {
+                PropertyDeclaration declaration = readPropertyDeclaration(lexer);
+                if (declaration != null) {
+                    declarations.add(declaration);
+                    prevEndLine = declaration.endLine;
+                    lexer.next();
+                    continue;
+                }
+            }
+            prevEndLine = lexer.endLine;
+            lexer.next();
         }
-        matcher.appendTail(sb);
-        return sb.toString();
+        return declarations;
     }
 
-    public static List<String> scan(String str) {
-        String strStripped = stripComments(str);
-        List<Pattern> requirePatterns = Arrays.asList(requirePattern1, requirePattern2, requirePattern3, requirePattern4);
+    // The lexer is at "go". If a declaration is read the next token read is the one
+    // after the declaration, otherwise the one after "go".
+    private static PropertyDeclaration readPropertyDeclaration(Lexer lexer) {
+        int resetPos = lexer.getPos();
+        int resetLine = lexer.getLine();
+        PropertyDeclaration declaration = new PropertyDeclaration();
+        declaration.start = lexer.start;
+        declaration.line = lexer.startLine;
+
+        lexer.next();
+        if (lexer.is('.')) {
+            lexer.next();
+            if (lexer.isName("property")) {
+                lexer.next();
+                if (lexer.is('(')) {
+                    declaration.argsStart = lexer.end;
+                    int depth = 1;
+                    while (depth > 0) {
+                        lexer.next();
+                        if (lexer.type == TOKEN_EOF) {
+                            break;
+                        } else if (lexer.is('(')) {
+                            ++depth;
+                        } else if (lexer.is(')')) {
+                            --depth;
+                        }
+                    }
+                    if (depth == 0) {
+                        declaration.argsEnd = lexer.start;
+                        declaration.end = lexer.end;
+                        declaration.endLine = lexer.endLine;
+                        int pos = lexer.getPos();
+                        int line = lexer.getLine();
+                        lexer.next();
+                        if (lexer.is(';')) {
+                            declaration.end = lexer.end;
+                            declaration.endLine = lexer.endLine;
+                            pos = lexer.getPos();
+                            line = lexer.getLine();
+                            lexer.next();
+                        }
+                        // Nothing may follow on the same line
+                        if (lexer.type == TOKEN_EOF || lexer.startLine > declaration.endLine) {
+                            lexer.reset(pos, line);
+                            return declaration;
+                        }
+                    }
+                }
+            }
+        }
+        // Not a declaration, continue with the token after "go"
+        lexer.reset(resetPos, resetLine);
+        return null;
+    }
 
+    /**
+     * Find the modules required by the source, i.e. the string arguments of
+     * calls to require
+     * @param str Lua source
+     * @return modules in the order of the source
+     */
+    public static List<String> scan(String str) {
         ArrayList<String> modules = new ArrayList<String>();
-        String[] lines = strStripped.split("\n");
-        for (String line : lines) {
-            line = line.trim();
-            // NOTE: At some point we should have a proper lua parser
-            for(Pattern requirePattern : requirePatterns) {
-                Matcher propMatcher = requirePattern.matcher(line);
-                if (propMatcher.matches()) {
-                    modules.add(propMatcher.group(1));
+        Lexer lexer = new Lexer(str, null);
+        boolean afterAccessor = false;
+        lexer.next();
+        while (lexer.type != TOKEN_EOF) {
+            // Not a global require if called as a.require or a:require
+            if (lexer.isName("require") && !afterAccessor) {
+                int resetPos = lexer.getPos();
+                int resetLine = lexer.getLine();
+                String module = null;
+                lexer.next();
+                if (lexer.type == TOKEN_STRING) {
+                    module = lexer.getValue();
+                } else if (lexer.is('(')) {
+                    lexer.next();
+                    if (lexer.type == TOKEN_STRING) {
+                        String value = lexer.getValue();
+                        lexer.next();
+                        if (lexer.is(')')) {
+                            module = value;
+                        }
+                    }
                 }
+                if (module != null) {
+                    modules.add(module);
+                } else {
+                    lexer.reset(resetPos, resetLine);
+                }
+                afterAccessor = false;
+                lexer.next();
+                continue;
             }
+            afterAccessor = lexer.is('.') || lexer.is(':');
+            lexer.next();
         }
         return modules;
     }
@@ -154,51 +434,75 @@ public class LuaScanner {
         }
     }
 
+    /**
+     * Strip the comments and property declarations from the source. Both are
+     * replaced so that the lines of the remaining source are unchanged.
+     * @param str Lua source
+     * @return stripped source
+     */
     public static String stripProperties(String str) {
-        str = stripComments(str);
         str = str.replace("\r", "");
-        StringBuffer sb = new StringBuffer();
-        String[] lines = str.split("\n");
-        for (String line : lines) {
-            Matcher propDeclMatcher = propertyDeclPattern.matcher(line.trim());
-            if (!propDeclMatcher.matches()) {
-                sb.append(line);
+        List<int[]> comments = new ArrayList<int[]>();
+        List<PropertyDeclaration> declarations = findPropertyDeclarations(str, comments);
+
+        StringBuilder sb = new StringBuilder(str.length());
+        int pos = 0;
+        int c = 0;
+        int d = 0;
+        while (c < comments.size() || d < declarations.size()) {
+            int[] comment = c < comments.size() ? comments.get(c) : null;
+            PropertyDeclaration declaration = d < declarations.size() ? declarations.get(d) : null;
+            if (declaration == null || (comment != null && comment[0] < declaration.start)) {
+                sb.append(str, pos, comment[0]);
+                // Keep the newlines of the comment, or separate the tokens around it
+                int lines = 0;
+                for (int i = comment[0]; i < comment[1]; ++i) {
+                    if (str.charAt(i) == '\n') {
+                        sb.append('\n');
+                        ++lines;
+                    }
+                }
+                if (lines == 0 && comment[1] < str.length() && str.charAt(comment[1]) != '\n') {
+                    sb.append(' ');
+                }
+                pos = comment[1];
+                ++c;
             } else {
-                for (int i = 0; i < line.length(); ++i) {
-                    sb.append(" ");
+                sb.append(str, pos, declaration.start);
+                for (int i = declaration.start; i < declaration.end; ++i) {
+                    sb.append(str.charAt(i) == '\n' ? '\n' : ' ');
                 }
+                pos = declaration.end;
+                ++d;
             }
-            sb.append("\n");
         }
+        sb.append(str, pos, str.length());
         return sb.toString();
     }
 
+    /**
+     * Find the property declarations of the source, i.e. the go.property calls
+     * on lines of their own
+     * @param str Lua source
+     * @return properties in the order of the source
+     */
     public static List<Property> scanProperties(String str) {
-        String strStripped = stripComments(str);
-
         List<Property> properties = new ArrayList<Property>();
-        String[] lines = strStripped.split("\n");
-        int l = 0; // 0-based line number
-        for (String line : lines) {
-            line = line.trim();
-            Matcher propDeclMatcher = propertyDeclPattern.matcher(line);
-            if (propDeclMatcher.matches()) {
-                Property property = new Property(l);
-                Matcher propArgsMatcher = propertyArgsPattern.matcher(propDeclMatcher.group(1).trim());
-                if (!propArgsMatcher.matches()) {
-                    property.status = Status.INVALID_ARGS;
+        for (PropertyDeclaration declaration : findPropertyDeclarations(str, null)) {
+            Property property = new Property(declaration.line);
+            Matcher propArgsMatcher = propertyArgsPattern.matcher(str.substring(declaration.argsStart, declaration.argsEnd).trim());
+            if (!propArgsMatcher.matches()) {
+                property.status = Status.INVALID_ARGS;
+            } else {
+                property.name = propArgsMatcher.group(1).trim();
+                property.rawValue = propArgsMatcher.group(2).trim();
+                if (parseProperty(property.rawValue, property)) {
+                    property.status = Status.OK;
                 } else {
-                    property.name = propArgsMatcher.group(1).trim();
-                    property.rawValue = propArgsMatcher.group(2).trim();
-                    if (parseProperty(property.rawValue, property)) {
-                        property.status = Status.OK;
-                    } else {
-                        property.status = Status.INVALID_VALUE;
-                    }
+                    property.status = Status.INVALID_VALUE;
                 }
-                properties.add(property);
             }
-            ++l;
+            properties.add(property);
         }
         return properties;
     }
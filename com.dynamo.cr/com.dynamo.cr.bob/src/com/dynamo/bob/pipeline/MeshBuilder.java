@@ -34,7 +34,7 @@ public class MeshBuilder extends Builder<Void> {
     @Override
     public Task<Void> create(IResource input) throws IOException, CompileExceptionError {
         MeshDesc.Builder meshDescBuilder = MeshDesc.newBuilder();
-        ProtoUtil.merge(input, meshDescBuilder);
+        ProtoUtil.merge(project, input, meshDescBuilder);
 
         Task.TaskBuilder<Void> taskBuilder = Task.<Void>newBuilder(this)
             .setName(params.name())
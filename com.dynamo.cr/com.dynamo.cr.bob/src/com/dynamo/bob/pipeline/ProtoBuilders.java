@@ -127,7 +127,7 @@ public class ProtoBuilders {
             if (messageBuilder.hasCollisionShape() && !messageBuilder.getCollisionShape().isEmpty() && !(messageBuilder.getCollisionShape().endsWith(".tilegrid") || messageBuilder.getCollisionShape().endsWith(".tilemap"))) {
                 IResource shapeResource = project.getResource(messageBuilder.getCollisionShape().substring(1));
                 ConvexShape.Builder cb = ConvexShape.newBuilder();
-                ProtoUtil.merge(shapeResource, cb);
+                ProtoUtil.merge(project, shapeResource, cb);
                 CollisionShape.Builder eb = CollisionShape.newBuilder().mergeFrom(messageBuilder.getEmbeddedCollisionShape());
                 ValidateShapeTypes(eb.getShapesList(), shapeResource);
                 Shape.Builder sb = Shape.newBuilder()
@@ -0,0 +1,123 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.protobuf.Message;
+
+/**
+ * Cache of messages parsed from text format resources, shared by the builders
+ * of a project. Messages are immutable and keyed by message type, resource path
+ * and content sha1, so an entry is never stale. The least recently used entries
+ * are evicted when the total size of the parsed text exceeds the max size.
+ */
+public class ProtoCache {
+
+    public static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+
+    private static class Entry {
+        Message message;
+        long size;
+
+        Entry(Message message, long size) {
+            this.message = message;
+            this.size = size;
+        }
+    }
+
+    private final long maxSize;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+    private long size = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public ProtoCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize max total size, in bytes, of the text the cached messages were parsed from
+     */
+    public ProtoCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get a cached message
+     * @param key cache key
+     * @return message or null if not cached
+     */
+    public synchronized Message get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            ++misses;
+            return null;
+        }
+        ++hits;
+        return entry.message;
+    }
+
+    /**
+     * Add a message to the cache
+     * @param key cache key
+     * @param message parsed message
+     * @param size size of the text the message was parsed from
+     */
+    public synchronized void put(String key, Message message, long size) {
+        if (size > maxSize) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(message, size));
+        if (previous != null) {
+            this.size -= previous.size;
+        }
+        this.size += size;
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (this.size > maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            this.size -= eldest.size;
+            ++evictions;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -13,19 +13,24 @@
 package com.dynamo.bob.pipeline;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.codec.binary.Hex;
+
 import com.dynamo.bob.CompileExceptionError;
+import com.dynamo.bob.Project;
 import com.dynamo.bob.fs.IResource;
+import com.google.protobuf.Message;
 import com.google.protobuf.Message.Builder;
 import com.google.protobuf.TextFormat;
 
 public class ProtoUtil {
 
-    public static void merge(IResource input, Builder builder) throws IOException, CompileExceptionError {
+    private static void merge(IResource input, byte[] content, Charset charset, Builder builder) throws CompileExceptionError {
         try {
-            TextFormat.merge(new String(input.getContent()), builder);
+            TextFormat.merge(new String(content, charset), builder);
         } catch (TextFormat.ParseException e) {
             // 1:7: String missing ending quote.
             Pattern pattern = Pattern.compile("(\\d+):(\\d+): (.*)");
@@ -37,4 +42,38 @@ public class ProtoUtil {
             }
         }
     }
+
+    public static void merge(IResource input, Builder builder) throws IOException, CompileExceptionError {
+        merge(input, input.getContent(), Charset.defaultCharset(), builder);
+    }
+
+    /**
+     * Merge a text format resource into a builder. The parsed message is
+     * shared through the proto cache of the project, so each version of a
+     * resource is only parsed once per message type.
+     * @param project project owning the cache
+     * @param input text format resource
+     * @param builder builder to merge into
+     */
+    public static void merge(Project project, IResource input, Builder builder) throws IOException, CompileExceptionError {
+        merge(project, input, builder, Charset.defaultCharset());
+    }
+
+    /**
+     * Same as merge, for a resource in a specific charset
+     * @param charset charset of the resource
+     */
+    public static void merge(Project project, IResource input, Builder builder, Charset charset) throws IOException, CompileExceptionError {
+        ProtoCache cache = project.getProtoCache();
+        String key = builder.getDescriptorForType().getFullName() + ":" + charset.name() + ":" + input.getPath() + ":" + new String(Hex.encodeHex(input.sha1()));
+        Message message = cache.get(key);
+        if (message == null) {
+            byte[] content = input.getContent();
+            Builder parsed = builder.getDefaultInstanceForType().newBuilderForType();
+            merge(input, content, charset, parsed);
+            message = parsed.buildPartial();
+            cache.put(key, message, content.length);
+        }
+        builder.mergeFrom(message);
+    }
 }
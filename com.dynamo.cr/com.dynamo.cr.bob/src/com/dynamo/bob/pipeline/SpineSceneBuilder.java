@@ -18,18 +18,20 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.vecmath.Point2d;
-import javax.vecmath.Point3d;
-import javax.vecmath.Quat4d;
 import javax.vecmath.Vector2d;
-import javax.vecmath.Vector3d;
 
 import com.dynamo.bob.Builder;
 import com.dynamo.bob.BuilderParams;
@@ -38,6 +40,7 @@ import com.dynamo.bob.ProtoParams;
 import com.dynamo.bob.Task;
 import com.dynamo.bob.fs.IResource;
 import com.dynamo.bob.textureset.TextureSetGenerator.UVTransform;
+import com.dynamo.bob.util.KeyframeReduction;
 import com.dynamo.bob.util.MathUtil;
 import com.dynamo.bob.util.MurmurHash;
 import com.dynamo.bob.util.SpineSceneUtil;
@@ -76,7 +79,7 @@ public class SpineSceneBuilder extends Builder<Void> {
                 .addOutput(input.changeExt(params.outExt()));
 
         SpineSceneDesc.Builder builder = SpineSceneDesc.newBuilder();
-        ProtoUtil.merge(input, builder);
+        ProtoUtil.merge(project, input, builder);
         BuilderUtil.checkResource(this.project, input, "spine_json", builder.getSpineJson());
         BuilderUtil.checkResource(this.project, input, "atlas", builder.getAtlas());
 
@@ -232,19 +235,72 @@ public class SpineSceneBuilder extends Builder<Void> {
         switch (track.property) {
         case POSITION:
             RigUtil.PositionBuilder posBuilder = new RigUtil.PositionBuilder(animTrackBuilder);
-            RigUtil.sampleTrack(track, posBuilder, new Point3d(0.0, 0.0, 0.0), 0.0, duration, sampleRate, spf, true);
+            RigUtil.sampleFloatTrack(track, posBuilder, new double[] {0.0, 0.0, 0.0}, 0.0, duration, sampleRate, spf, true);
             break;
         case ROTATION:
             RigUtil.RotationBuilder rotBuilder = new RigUtil.RotationBuilder(animTrackBuilder);
-            RigUtil.sampleTrack(track, rotBuilder, new Quat4d(0.0, 0.0, 0.0, 1.0), 0.0, duration, sampleRate, spf, true);
+            RigUtil.sampleFloatTrack(track, rotBuilder, new double[] {0.0, 0.0, 0.0, 1.0}, 0.0, duration, sampleRate, spf, true);
             break;
         case SCALE:
             RigUtil.ScaleBuilder scaleBuilder = new RigUtil.ScaleBuilder(animTrackBuilder);
-            RigUtil.sampleTrack(track, scaleBuilder, new Vector3d(1.0, 1.0, 1.0), 0.0, duration, sampleRate, spf, true);
+            RigUtil.sampleFloatTrack(track, scaleBuilder, new double[] {1.0, 1.0, 1.0}, 0.0, duration, sampleRate, spf, true);
             break;
         }
     }
 
+    private static void bonesAnimationToDDF(List<List<RigUtil.AnimationTrack>> boneTracks, List<AnimationTrack.Builder> builders, final double duration, final double sampleRate, final double spf,
+            final KeyframeReduction reduction, ExecutorService executor) throws IOException {
+        if (executor == null) {
+            for (int i = 0; i < builders.size(); ++i) {
+                for (RigUtil.AnimationTrack track : boneTracks.get(i)) {
+                    boneAnimationToDDF(track, builders.get(i), duration, sampleRate, spf);
+                }
+                if (reduction != null) {
+                    reduction.reduce(builders.get(i));
+                }
+            }
+            return;
+        }
+
+        // The tracks of each bone are sampled into their own builder, independently of the other bones
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(builders.size());
+        for (int i = 0; i < builders.size(); ++i) {
+            final List<RigUtil.AnimationTrack> tracks = boneTracks.get(i);
+            final AnimationTrack.Builder builder = builders.get(i);
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (RigUtil.AnimationTrack track : tracks) {
+                        boneAnimationToDDF(track, builder, duration, sampleRate, spf);
+                    }
+                    if (reduction != null) {
+                        reduction.reduce(builder);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
     private static void ikAnimationToDDF(RigUtil.IKAnimationTrack track, IKAnimationTrack.Builder iKanimTrackBuilder, double duration, double sampleRate, double spf) {
         RigUtil.IKMixBuilder mixBuilder = new RigUtil.IKMixBuilder(iKanimTrackBuilder);
         RigUtil.sampleTrack(track, mixBuilder, track.ik.mix, 0.0, duration, sampleRate, spf, false);
@@ -278,7 +334,7 @@ public class SpineSceneBuilder extends Builder<Void> {
         }
     }
 
-    private static void animationToDDF(SpineSceneUtil scene, String id, RigUtil.Animation animation, AnimationSet.Builder animSetBuilder, double sampleRate) {
+    private static void animationToDDF(SpineSceneUtil scene, String id, RigUtil.Animation animation, AnimationSet.Builder animSetBuilder, double sampleRate, KeyframeReduction reduction, ExecutorService executor) throws IOException {
         RigAnimation.Builder animBuilder = RigAnimation.newBuilder();
         animBuilder.setId(MurmurHash.hash64(id));
         animBuilder.setDuration((float)animation.duration);
@@ -286,18 +342,24 @@ public class SpineSceneBuilder extends Builder<Void> {
         double spf = 1.0 / sampleRate;
         if (!animation.tracks.isEmpty()) {
             List<AnimationTrack.Builder> builders = new ArrayList<AnimationTrack.Builder>();
+            List<List<RigUtil.AnimationTrack>> boneTracks = new ArrayList<List<RigUtil.AnimationTrack>>();
             AnimationTrack.Builder animTrackBuilder = AnimationTrack.newBuilder();
+            List<RigUtil.AnimationTrack> tracks = new ArrayList<RigUtil.AnimationTrack>();
             RigUtil.AnimationTrack firstTrack = animation.tracks.get(0);
             animTrackBuilder.setBoneIndex(firstTrack.bone.index);
             for (RigUtil.AnimationTrack track : animation.tracks) {
                 if (animTrackBuilder.getBoneIndex() != track.bone.index) {
                     builders.add(animTrackBuilder);
+                    boneTracks.add(tracks);
                     animTrackBuilder = AnimationTrack.newBuilder();
                     animTrackBuilder.setBoneIndex(track.bone.index);
+                    tracks = new ArrayList<RigUtil.AnimationTrack>();
                 }
-                boneAnimationToDDF(track, animTrackBuilder, animation.duration, sampleRate, spf);
+                tracks.add(track);
             }
             builders.add(animTrackBuilder);
+            boneTracks.add(tracks);
+            bonesAnimationToDDF(boneTracks, builders, animation.duration, sampleRate, spf, reduction, executor);
             // Compiled anim tracks must be in bone order
             Collections.sort(builders, new Comparator<AnimationTrack.Builder>() {
                 @Override
@@ -365,12 +427,20 @@ public class SpineSceneBuilder extends Builder<Void> {
         public String name;
     }
 
+    @Override
+    public void signature(MessageDigest digest) {
+        KeyframeReduction reduction = project.getKeyframeReduction();
+        if (reduction != null) {
+            reduction.signature(digest);
+        }
+    }
+
     @Override
     public void build(Task<Void> task) throws CompileExceptionError,
             IOException {
 
         SpineSceneDesc.Builder builder = SpineSceneDesc.newBuilder();
-        ProtoUtil.merge(task.input(0), builder);
+        ProtoUtil.merge(project, task.input(0), builder);
 
         // Load previously created atlas textureset
         TextureSet.Builder resultBuilder = TextureSet.newBuilder();
@@ -424,8 +494,10 @@ public class SpineSceneBuilder extends Builder<Void> {
 
             // AnimationSet
             AnimationSet.Builder animSetBuilder = AnimationSet.newBuilder();
+            // Bones are sampled in parallel on the project workers
+            ExecutorService executor = project.getMaxCpuThreads() > 1 && scene.bones.size() > 1 ? project.getWorkerExecutor() : null;
             for (Map.Entry<String, RigUtil.Animation> entry : scene.animations.entrySet()) {
-                animationToDDF(scene, entry.getKey(), entry.getValue(), animSetBuilder, builder.getSampleRate());
+                animationToDDF(scene, entry.getKey(), entry.getValue(), animSetBuilder, builder.getSampleRate(), project.getKeyframeReduction(), executor);
             }
             out = new ByteArrayOutputStream(64 * 1024);
             animSetBuilder.build().writeTo(out);
@@ -0,0 +1,184 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.dynamo.bob.cache.ArtifactCache;
+import com.dynamo.graphics.proto.Graphics.TextureImage;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Cache of texture alternatives generated by TextureGenerator, shared by the
+ * builders of a project. An entry is keyed by the hash of the source pixels and
+ * all settings the alternative is generated with, so an entry is never stale.
+ * The least recently used entries are evicted when the total size of the
+ * texture data exceeds the max size. If an artifact cache is given, entries are
+ * also stored there and reused by later builds.
+ */
+public class TextureCache {
+
+    public static final long DEFAULT_MAX_SIZE = 256 * 1024 * 1024;
+
+    private static final String ARTIFACT_PATH = "texture_image";
+
+    private static class Entry {
+        TextureImage.Image image;
+        long size;
+
+        Entry(TextureImage.Image image, long size) {
+            this.image = image;
+            this.size = size;
+        }
+    }
+
+    private final long maxSize;
+    private final ArtifactCache artifactCache;
+    private final String version;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+    private long size = 0;
+    private long hits = 0;
+    private long artifactCacheHits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public TextureCache() {
+        this(DEFAULT_MAX_SIZE, null, null);
+    }
+
+    /**
+     * @param maxSize max total size, in bytes, of the cached texture data
+     * @param artifactCache cache to also store entries in, or null
+     * @param version version of the texture pipeline, part of the artifact cache key
+     */
+    public TextureCache(long maxSize, ArtifactCache artifactCache, String version) {
+        this.maxSize = maxSize;
+        this.artifactCache = artifactCache;
+        this.version = version;
+    }
+
+    private String getArtifactCacheKey(String key) {
+        return ArtifactCache.createKey(version, key.getBytes(), Arrays.asList(ARTIFACT_PATH));
+    }
+
+    /**
+     * Get a cached texture alternative
+     * @param key cache key
+     * @return image or null if not cached
+     */
+    public TextureImage.Image get(String key) {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                ++hits;
+                return entry.image;
+            }
+        }
+
+        if (artifactCache != null) {
+            List<ArtifactCache.Artifact> artifacts = artifactCache.get(getArtifactCacheKey(key));
+            if (artifacts != null && artifacts.size() == 1) {
+                try {
+                    TextureImage.Image image = TextureImage.Image.parseFrom(artifacts.get(0).getContent());
+                    putEntry(key, image);
+                    synchronized (this) {
+                        ++artifactCacheHits;
+                    }
+                    return image;
+                } catch (InvalidProtocolBufferException e) {
+                    // Treated as a miss, and replaced by the next put
+                }
+            }
+        }
+
+        synchronized (this) {
+            ++misses;
+        }
+        return null;
+    }
+
+    /**
+     * Add a texture alternative to the cache
+     * @param key cache key
+     * @param image generated image
+     */
+    public void put(String key, TextureImage.Image image) {
+        putEntry(key, image);
+        if (artifactCache != null) {
+            try {
+                artifactCache.put(getArtifactCacheKey(key), Arrays.asList(new ArtifactCache.Artifact(ARTIFACT_PATH, 0, image.toByteArray())));
+            } catch (IOException e) {
+                Logger.getLogger(TextureCache.class.getName()).log(Level.WARNING, "Failed to store texture in artifact cache", e);
+            }
+        }
+    }
+
+    private synchronized void putEntry(String key, TextureImage.Image image) {
+        long size = image.getData().size();
+        if (size > maxSize) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(image, size));
+        if (previous != null) {
+            this.size -= previous.size;
+        }
+        this.size += size;
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (this.size > maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            this.size -= eldest.size;
+            ++evictions;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups that were found in the artifact cache, but not in memory
+     */
+    public synchronized long getArtifactCacheHits() {
+        return artifactCacheHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -15,6 +15,7 @@ package com.dynamo.bob.pipeline;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.Raster;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
@@ -22,6 +23,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -29,6 +32,8 @@ import java.util.EnumSet;
 
 import javax.imageio.ImageIO;
 
+import org.apache.commons.codec.binary.Hex;
+
 import com.dynamo.bob.TexcLibrary;
 import com.dynamo.bob.TexcLibrary.ColorSpace;
 import com.dynamo.bob.TexcLibrary.DitherType;
@@ -150,33 +155,63 @@ public class TextureGenerator {
         return targetFormat;
     }
 
-    private static TextureImage.Image generateFromColorAndFormat(BufferedImage image, ColorModel colorModel, TextureFormat textureFormat, TextureFormatAlternative.CompressionLevel compressionLevel, TextureImage.CompressionType compressionType, boolean generateMipMaps, int maxTextureSize, boolean compress, boolean premulAlpha, EnumSet<FlipAxis> flipAxis) throws TextureGeneratorException, IOException {
-
+    // Read the pixels of an ABGR image as RGBA bytes. getDataElements returns the samples of a pixel
+    // in band order, which is RGBA for TYPE_4BYTE_ABGR, so whole scan lines are copied at a time.
+    private static ByteBuffer readPixels(BufferedImage image) {
         int width = image.getWidth();
         int height = image.getHeight();
-        int componentCount = colorModel.getNumComponents();
-        Integer pixelFormat = PixelFormat.R8G8B8A8;
-        int texcCompressionLevel;
-        int texcCompressionType;
-
-        int dataSize = width * height * 4;
-        ByteBuffer buffer = ByteBuffer.allocateDirect(dataSize);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(width * height * 4);
+        Raster raster = image.getRaster();
 
         // On Linux we run out of memory while trying to load a 4K texture.
         // We split the pixel read out into blocks with 512 scan lines per block.
+        byte[] rasterData = new byte[Math.min(height, 512) * width * 4];
         for (int y = 0; y < height; y+=512) {
 
             int count = Math.min(height - y, 512);
 
-            int[] rasterData = new int[count*width*4];
-            image.getRaster().getPixels(0, y, width, count, rasterData);
-            for (int i = 0; i < rasterData.length; ++i) {
-                buffer.put((byte) (rasterData[i] & 0xff));
-            }
+            raster.getDataElements(0, y, width, count, rasterData);
+            buffer.put(rasterData, 0, count * width * 4);
         }
 
         buffer.flip();
-        Pointer texture = TexcLibrary.TEXC_Create(width, height, PixelFormat.R8G8B8A8, ColorSpace.SRGB, buffer);
+        return buffer;
+    }
+
+    private static String getPixelHash(ByteBuffer pixels, int width, int height) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        digest.update(pixels.duplicate());
+        return String.format("%s:%dx%d", Hex.encodeHexString(digest.digest()), width, height);
+    }
+
+    private static String getCacheKey(String pixelHash, TextureFormat textureFormat, TextureFormatAlternative.CompressionLevel compressionLevel, TextureImage.CompressionType compressionType, boolean generateMipMaps, int maxTextureSize, boolean compress, boolean premulAlpha, EnumSet<FlipAxis> flipAxis) {
+        return String.format("%s:%s:%s:%s:%b:%d:%b:%b:%s", pixelHash, textureFormat, compressionLevel, compressionType, generateMipMaps, maxTextureSize, compress, premulAlpha, flipAxis);
+    }
+
+    // Generate an alternative, or reuse an identical alternative generated earlier
+    private static TextureImage.Image generateFromColorAndFormat(TextureCache cache, String pixelHash, ByteBuffer pixels, int width, int height, TextureFormat textureFormat, TextureFormatAlternative.CompressionLevel compressionLevel, TextureImage.CompressionType compressionType, boolean generateMipMaps, int maxTextureSize, boolean compress, boolean premulAlpha, EnumSet<FlipAxis> flipAxis) throws TextureGeneratorException, IOException {
+        String key = getCacheKey(pixelHash, textureFormat, compressionLevel, compressionType, generateMipMaps, maxTextureSize, compress, premulAlpha, flipAxis);
+        TextureImage.Image image = cache.get(key);
+        if (image == null) {
+            image = generateFromColorAndFormat(pixels, width, height, textureFormat, compressionLevel, compressionType, generateMipMaps, maxTextureSize, compress, premulAlpha, flipAxis);
+            cache.put(key, image);
+        }
+        return image;
+    }
+
+    private static TextureImage.Image generateFromColorAndFormat(ByteBuffer pixels, int width, int height, TextureFormat textureFormat, TextureFormatAlternative.CompressionLevel compressionLevel, TextureImage.CompressionType compressionType, boolean generateMipMaps, int maxTextureSize, boolean compress, boolean premulAlpha, EnumSet<FlipAxis> flipAxis) throws TextureGeneratorException, IOException {
+
+        Integer pixelFormat = PixelFormat.R8G8B8A8;
+        int texcCompressionLevel;
+        int texcCompressionType;
+
+        // Texc copies the pixels, so the same buffer is used for all alternatives
+        Pointer texture = TexcLibrary.TEXC_Create(width, height, PixelFormat.R8G8B8A8, ColorSpace.SRGB, pixels);
 
         // convert from protobuf specified compressionlevel to texc int
         texcCompressionLevel = compressionLevelLUT.get(compressionLevel);
@@ -205,8 +240,8 @@ public class TextureGenerator {
 
         try {
 
-            int newWidth  = image.getWidth();
-            int newHeight = image.getHeight();
+            int newWidth  = width;
+            int newHeight = height;
 
             newWidth = TextureUtil.closestPOT(newWidth);
             newHeight = TextureUtil.closestPOT(newHeight);
@@ -266,8 +301,8 @@ public class TextureGenerator {
             }
 
             int bufferSize = TexcLibrary.TEXC_GetTotalDataSize(texture);
-            buffer = ByteBuffer.allocateDirect(bufferSize);
-            dataSize = TexcLibrary.TEXC_GetData(texture, buffer, bufferSize);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+            int dataSize = TexcLibrary.TEXC_GetData(texture, buffer, bufferSize);
             buffer.limit(dataSize);
 
             TextureImage.Image.Builder raw = TextureImage.Image.newBuilder().setWidth(newWidth).setHeight(newHeight)
@@ -344,8 +379,27 @@ public class TextureGenerator {
         return generate(origImage, texProfile, compress, EnumSet.of(FlipAxis.FLIP_AXIS_Y));
     }
 
-    // Main TextureGenerator.generate method that has all required arguments and the expected BufferedImage type for origImage.
     public static TextureImage generate(BufferedImage origImage, TextureProfile texProfile, boolean compress, EnumSet<FlipAxis> flipAxis) throws TextureGeneratorException, IOException {
+        return generate(origImage, texProfile, compress, flipAxis, null);
+    }
+
+    public static TextureImage generate(InputStream inputStream, TextureProfile texProfile, boolean compress, EnumSet<FlipAxis> flipAxis, TextureCache cache) throws TextureGeneratorException, IOException {
+        BufferedImage origImage = ImageIO.read(inputStream);
+        inputStream.close();
+        if (origImage == null) {
+            throw new TextureGeneratorException("Unknown texture format.");
+        }
+        return generate(origImage, texProfile, compress, flipAxis, cache);
+    }
+
+    // Main TextureGenerator.generate method that has all required arguments and the expected BufferedImage type for origImage.
+    // Alternatives are looked up in the cache, if given, before being generated. Identical alternatives requested by
+    // several platform profiles are only generated once.
+    public static TextureImage generate(BufferedImage origImage, TextureProfile texProfile, boolean compress, EnumSet<FlipAxis> flipAxis, TextureCache cache) throws TextureGeneratorException, IOException {
+        if (cache == null) {
+            cache = new TextureCache();
+        }
+
         // Convert image into readable format
         // Always convert to ABGR since the texc lib demands that for resizing etc
         BufferedImage image;
@@ -355,6 +409,11 @@ public class TextureGenerator {
             image = origImage;
         }
 
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ByteBuffer pixels = readPixels(image);
+        String pixelHash = getPixelHash(pixels, width, height);
+
         // Setup texture format and settings
         ColorModel colorModel = origImage.getColorModel();
         int componentCount = colorModel.getNumComponents();
@@ -375,7 +434,7 @@ public class TextureGenerator {
                     textureFormat = pickOptimalFormat(componentCount, textureFormat);
 
                     try {
-                        TextureImage.Image raw = generateFromColorAndFormat(image, colorModel, textureFormat, compressionLevel, compressionType, platformProfile.getMipmaps(), platformProfile.getMaxTextureSize(), compress, platformProfile.getPremultiplyAlpha(), flipAxis);
+                        TextureImage.Image raw = generateFromColorAndFormat(cache, pixelHash, pixels, width, height, textureFormat, compressionLevel, compressionType, platformProfile.getMipmaps(), platformProfile.getMaxTextureSize(), compress, platformProfile.getPremultiplyAlpha(), flipAxis);
                         textureBuilder.addAlternatives(raw);
                     } catch (TextureGeneratorException e) {
                         throw e;
@@ -395,7 +454,7 @@ public class TextureGenerator {
 
             // Guess texture format based on number color components of input image
             TextureFormat textureFormat = pickOptimalFormat(componentCount, TextureFormat.TEXTURE_FORMAT_RGBA);
-            TextureImage.Image raw = generateFromColorAndFormat(image, colorModel, textureFormat, TextureFormatAlternative.CompressionLevel.NORMAL, TextureImage.CompressionType.COMPRESSION_TYPE_DEFAULT, true, 0, false, true, flipAxis);
+            TextureImage.Image raw = generateFromColorAndFormat(cache, pixelHash, pixels, width, height, textureFormat, TextureFormatAlternative.CompressionLevel.NORMAL, TextureImage.CompressionType.COMPRESSION_TYPE_DEFAULT, true, 0, false, true, flipAxis);
             textureBuilder.addAlternatives(raw);
             textureBuilder.setCount(1);
 
@@ -0,0 +1,81 @@
+-- Copyright 2020 The Defold Foundation
+-- Licensed under the Defold License version 1.0 (the "License"); you may not use
+-- this file except in compliance with the License.
+--
+-- You may obtain a copy of the License, together with FAQs at
+-- https://www.defold.com/license
+--
+-- Unless required by applicable law or agreed to in writing, software distributed
+-- under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+-- CONDITIONS OF ANY KIND, either express or implied. See the License for the
+-- specific language governing permissions and limitations under the License.
+
+-- Compiles Lua source to bytecode for LuaJITCompiler.java, the same way as
+-- "luajit -bgf <chunkname> <input> <output>.raw".
+--
+-- A batch is read from stdin as:
+--   <count>\n
+--   <chunkname length> <source length>\n<chunkname><source>   (count times)
+-- and the results are written to stdout, in the same order, as:
+--   ok <bytecode length>\n<bytecode>
+--   error <message length>\n<message>
+-- The whole batch is read before any result is written, so that neither side
+-- blocks on a full pipe. The process exits when stdin is closed.
+
+if jit.os == "Windows" then
+    local ffi = require("ffi")
+    ffi.cdef[[int _setmode(int fd, int mode);]]
+    local O_BINARY = 0x8000
+    ffi.C._setmode(0, O_BINARY)
+    ffi.C._setmode(1, O_BINARY)
+end
+
+local stdin = io.stdin
+local stdout = io.stdout
+stdout:setvbuf("full")
+
+local function read_exact(n)
+    if n == 0 then
+        return ""
+    end
+    local data = stdin:read(n)
+    if data == nil or #data ~= n then
+        os.exit(1)
+    end
+    return data
+end
+
+while true do
+    local line = stdin:read("*l")
+    if line == nil then
+        break
+    end
+    local count = tonumber(line)
+    if count == nil then
+        os.exit(1)
+    end
+
+    local results = {}
+    for i = 1, count do
+        local header = stdin:read("*l")
+        local name_length, source_length = (header or ""):match("^(%d+) (%d+)$")
+        if name_length == nil then
+            os.exit(1)
+        end
+        local name = read_exact(tonumber(name_length))
+        local source = read_exact(tonumber(source_length))
+        local f, err = loadstring(source, name)
+        if f then
+            results[i] = { "ok", string.dump(f) }
+        else
+            -- Same format as the error reported by bcsave.lua
+            results[i] = { "error", "luajit: " .. err .. "\n" }
+        end
+    end
+
+    for i = 1, count do
+        local status, payload = results[i][1], results[i][2]
+        stdout:write(status, " ", #payload, "\n", payload)
+    end
+    stdout:flush()
+end
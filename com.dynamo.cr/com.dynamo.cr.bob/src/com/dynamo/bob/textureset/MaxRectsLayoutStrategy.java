@@ -13,7 +13,14 @@
 package com.dynamo.bob.textureset;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.dynamo.bob.textureset.TextureSetLayout.Layout;
 import com.dynamo.bob.textureset.TextureSetLayout.Rect;
@@ -35,11 +42,16 @@ public class MaxRectsLayoutStrategy implements TextureSetLayoutStrategy {
         public int paddingY;
         public boolean rotation;
         public boolean square;
+        // Runs the heuristics of the page size search. If null, a pool of threadCount
+        // threads is created for the layout, or the rects are packed on the calling thread.
+        public ExecutorService executor;
+        public int threadCount = 1;
     }
 
     private Settings settings;
-    private MaxRects maxRects = new MaxRects();
     private FreeRectChoiceHeuristic[] methods = FreeRectChoiceHeuristic.values();
+    // Runs the heuristics of the page size search, null when packing on a single thread
+    private ExecutorService executor;
 
     public MaxRectsLayoutStrategy(Settings settings) {
         this.settings = settings;
@@ -56,10 +68,26 @@ public class MaxRectsLayoutStrategy implements TextureSetLayoutStrategy {
         }
 
         ArrayList<Page> pages = new ArrayList<Page>();
-        while (srcNodes.size() > 0) {
-            Page result = packPage(srcNodes);
-            pages.add(result);
-            srcNodes = result.remainingRects;
+        ExecutorService ownExecutor = null;
+        if (settings.threadCount > 1 && srcNodes.size() > 1) {
+            if (settings.executor != null) {
+                executor = settings.executor;
+            } else {
+                ownExecutor = Executors.newFixedThreadPool(settings.threadCount);
+                executor = ownExecutor;
+            }
+        }
+        try {
+            while (srcNodes.size() > 0) {
+                Page result = packPage(srcNodes);
+                pages.add(result);
+                srcNodes = result.remainingRects;
+            }
+        } finally {
+            executor = null;
+            if (ownExecutor != null) {
+                ownExecutor.shutdownNow();
+            }
         }
 
         // Repackage into layouts.
@@ -110,47 +138,56 @@ public class MaxRectsLayoutStrategy implements TextureSetLayoutStrategy {
 
         // Find the minimal page size that fits all rects.
         Page bestResult = null;
-        if (settings.square) {
-            int minSize = Math.max(minWidth, minHeight);
-            int maxSize = Math.min(settings.maxPageWidth, settings.maxPageHeight);
-            BinarySearch sizeSearch = new BinarySearch(minSize, maxSize);
-            int size = sizeSearch.reset();
-            while (size != -1) {
-                Page result = packAtSize(true, size, size, inputRects);
-                bestResult = getBest(bestResult, result);
-                size = sizeSearch.next(result == null);
-            }
+        PackResults results = new PackResults(inputRects);
+        try {
+            if (settings.square) {
+                int minSize = Math.max(minWidth, minHeight);
+                int maxSize = Math.min(settings.maxPageWidth, settings.maxPageHeight);
+                BinarySearch sizeSearch = new BinarySearch(minSize, maxSize);
+                int size = sizeSearch.reset();
+                while (size != -1) {
+                    results.speculate(sizeSearch.peek(true), sizeSearch.peek(true));
+                    results.speculate(sizeSearch.peek(false), sizeSearch.peek(false));
+                    Page result = results.get(true, size, size);
+                    bestResult = getBest(bestResult, result);
+                    size = sizeSearch.next(result == null);
+                }
 
-            // Rects don't fit on one page. Fill a whole page and return.
-            if (bestResult == null) {
-                bestResult = packAtSize(false, maxSize, maxSize, inputRects);
-            }
+                // Rects don't fit on one page. Fill a whole page and return.
+                if (bestResult == null) {
+                    bestResult = results.get(false, maxSize, maxSize);
+                }
 
-             bestResult.width = Math.max(bestResult.width, bestResult.height);
-             bestResult.height = Math.max(bestResult.width, bestResult.height);
-        } else {
-            BinarySearch widthSearch = new BinarySearch(minWidth, settings.maxPageWidth);
-            BinarySearch heightSearch = new BinarySearch(minHeight, settings.maxPageHeight);
-            int width = widthSearch.reset();
-            int height = heightSearch.reset();
-            while (true) {
-                Page bestWidthResult = null;
-                while (width != -1) {
-                    Page result = packAtSize(true, width, height, inputRects);
-                    bestWidthResult = getBest(bestWidthResult, result);
-                    width = widthSearch.next(result == null);
+                 bestResult.width = Math.max(bestResult.width, bestResult.height);
+                 bestResult.height = Math.max(bestResult.width, bestResult.height);
+            } else {
+                BinarySearch widthSearch = new BinarySearch(minWidth, settings.maxPageWidth);
+                BinarySearch heightSearch = new BinarySearch(minHeight, settings.maxPageHeight);
+                int width = widthSearch.reset();
+                int height = heightSearch.reset();
+                while (true) {
+                    Page bestWidthResult = null;
+                    while (width != -1) {
+                        results.speculate(widthSearch.peek(true), height);
+                        results.speculate(widthSearch.peek(false), height);
+                        Page result = results.get(true, width, height);
+                        bestWidthResult = getBest(bestWidthResult, result);
+                        width = widthSearch.next(result == null);
+                    }
+                    bestResult = getBest(bestResult, bestWidthResult);
+                    height = heightSearch.next(bestWidthResult == null);
+                    if (height == -1) {
+                        break;
+                    }
+                    width = widthSearch.reset();
                 }
-                bestResult = getBest(bestResult, bestWidthResult);
-                height = heightSearch.next(bestWidthResult == null);
-                if (height == -1) {
-                    break;
+                // Rects don't fit on one page. Fill a whole page and return.
+                if (bestResult == null) {
+                    bestResult = results.get(false, settings.maxPageWidth, settings.maxPageHeight);
                 }
-                width = widthSearch.reset();
-            }
-            // Rects don't fit on one page. Fill a whole page and return.
-            if (bestResult == null) {
-                bestResult = packAtSize(false, settings.maxPageWidth, settings.maxPageHeight, inputRects);
             }
+        } finally {
+            results.cancel();
         }
         return bestResult;
     }
@@ -161,30 +198,108 @@ public class MaxRectsLayoutStrategy implements TextureSetLayoutStrategy {
     private Page packAtSize(boolean fully, int width, int height, ArrayList<RectNode> inputRects) {
         Page bestResult = null;
         for (int i = 0, n = methods.length; i < n; i++) {
-            maxRects.init(width, height);
-            Page result;
-
-            ArrayList<RectNode> remaining = new ArrayList<RectNode>();
-            for (int ii = 0, nn = inputRects.size(); ii < nn; ii++) {
-                RectNode rect = inputRects.get(ii);
-                if (maxRects.insert(rect, methods[i]) == null) {
-                    while (ii < nn) {
-                        remaining.add(inputRects.get(ii++));
-                    }
+            bestResult = getBest(bestResult, packWithMethod(fully, width, height, inputRects, methods[i]));
+        }
+        return bestResult;
+    }
+
+    /** Packs the rects with a single heuristic on a packer of its own, so that heuristics can run concurrently.
+     * @return the result, or null if it is not considered (see packAtSize)
+     **/
+    private Page packWithMethod(boolean fully, int width, int height, ArrayList<RectNode> inputRects, FreeRectChoiceHeuristic method) {
+        MaxRects maxRects = new MaxRects();
+        maxRects.init(width, height);
+        Page result;
+
+        ArrayList<RectNode> remaining = new ArrayList<RectNode>();
+        for (int ii = 0, nn = inputRects.size(); ii < nn; ii++) {
+            RectNode rect = inputRects.get(ii);
+            if (maxRects.insert(rect, method) == null) {
+                while (ii < nn) {
+                    remaining.add(inputRects.get(ii++));
                 }
             }
-            result = maxRects.getResult();
-            result.remainingRects = remaining;
+        }
+        result = maxRects.getResult();
+        result.remainingRects = remaining;
 
-            if (fully && result.remainingRects.size() > 0) {
-                continue;
+        if (fully && result.remainingRects.size() > 0) {
+            return null;
+        }
+        if (result.outputRects.size() == 0) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Results of packing one page at the candidate sizes of the page size search. With an executor,
+     * every size and heuristic is packed as a task of its own, and the results of a size are combined
+     * in heuristic order, so the chosen layout is the same as when packing sequentially. Sizes that the
+     * binary search may visit next can be queued ahead of time, and unused results are cancelled.
+     */
+    private class PackResults {
+        private final ArrayList<RectNode> inputRects;
+        private final Map<String, List<Future<Page>>> pending = new HashMap<String, List<Future<Page>>>();
+
+        PackResults(ArrayList<RectNode> inputRects) {
+            this.inputRects = inputRects;
+        }
+
+        private List<Future<Page>> submit(final boolean fully, final int width, final int height) {
+            String key = String.format("%b:%d:%d", fully, width, height);
+            List<Future<Page>> futures = pending.get(key);
+            if (futures == null) {
+                futures = new ArrayList<Future<Page>>(methods.length);
+                for (final FreeRectChoiceHeuristic method : methods) {
+                    futures.add(executor.submit(new Callable<Page>() {
+                        @Override
+                        public Page call() {
+                            return packWithMethod(fully, width, height, inputRects, method);
+                        }
+                    }));
+                }
+                pending.put(key, futures);
             }
-            if (result.outputRects.size() == 0) {
-                continue;
+            return futures;
+        }
+
+        /** Queue a size the search may visit next. Only done when there are more threads than heuristics. */
+        void speculate(int width, int height) {
+            if (executor != null && settings.threadCount > methods.length && width != -1 && height != -1) {
+                submit(true, width, height);
             }
-            bestResult = getBest(bestResult, result);
         }
-        return bestResult;
+
+        Page get(boolean fully, int width, int height) {
+            if (executor == null) {
+                return packAtSize(fully, width, height, inputRects);
+            }
+            Page bestResult = null;
+            for (Future<Page> future : submit(fully, width, height)) {
+                try {
+                    bestResult = getBest(bestResult, future.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+            return bestResult;
+        }
+
+        void cancel() {
+            for (List<Future<Page>> futures : pending.values()) {
+                for (Future<Page> future : futures) {
+                    future.cancel(false);
+                }
+            }
+            pending.clear();
+        }
     }
 
     private Page getBest (Page result1, Page result2) {
@@ -216,6 +331,14 @@ public class MaxRectsLayoutStrategy implements TextureSetLayoutStrategy {
             return 1 << current;
         }
 
+        /** @return the size that next(result) would return, without advancing the search */
+        public int peek (boolean result) {
+            if (low >= high) return -1;
+            int l = result ? current + 1 : low;
+            int h = result ? high : current - 1;
+            return 1 << ((l + h) >>> 1);
+        }
+
         public int next (boolean result) {
             if (low >= high) return -1;
             if (result)
@@ -302,7 +425,7 @@ public class MaxRectsLayoutStrategy implements TextureSetLayoutStrategy {
                 }
             }
 
-            pruneFreeList();
+            pruneFreeList(numRectanglesToProcess);
 
             RectNode bestNode = new RectNode(rect);
             bestNode.score1 = newNode.score1;
@@ -376,7 +499,7 @@ public class MaxRectsLayoutStrategy implements TextureSetLayoutStrategy {
                 }
             }
 
-            pruneFreeList();
+            pruneFreeList(numRectanglesToProcess);
 
             usedRectangles.add(node);
         }
@@ -669,7 +792,11 @@ public class MaxRectsLayoutStrategy implements TextureSetLayoutStrategy {
             return true;
         }
 
-        private void pruneFreeList () {
+        /** @param firstNew index of the first rectangle added by the last split. The rectangles before it were
+         *           pruned already and none of them contains another, so only pairs with a new rectangle are tested.
+         *           The rectangles are removed in the same order as when testing every pair.
+         **/
+        private void pruneFreeList (int firstNew) {
             /*
              * /// Would be nice to do something like this, to avoid a Theta(n^2) loop through each pair. /// But unfortunately it
              * doesn't quite cut it, since we also want to detect containment. /// Perhaps there's another way to do this faster than
@@ -684,9 +811,12 @@ public class MaxRectsLayoutStrategy implements TextureSetLayoutStrategy {
 
             // / Go through each pair and remove any rectangle that is redundant.
             for (int i = 0; i < freeRectangles.size(); i++)
-                for (int j = i + 1; j < freeRectangles.size(); ++j) {
+                for (int j = Math.max(i + 1, firstNew); j < freeRectangles.size(); ++j) {
                     if (isContainedIn(freeRectangles.get(i).rect, freeRectangles.get(j).rect)) {
                         freeRectangles.remove(i);
+                        if (i < firstNew) {
+                            --firstNew;
+                        }
                         --i;
                         break;
                     }
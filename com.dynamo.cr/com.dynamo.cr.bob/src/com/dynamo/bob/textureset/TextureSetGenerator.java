@@ -45,6 +45,10 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 // For debugging image output
@@ -299,6 +303,20 @@ public class TextureSetGenerator {
                                                 AnimIterator iterator,
                                                int margin, int innerPadding, int extrudeBorders,
                                                boolean rotate, boolean useTileGrid, Grid gridSize) {
+        return calculateLayout(images, imageHulls, use_geometries, iterator, margin, innerPadding, extrudeBorders,
+                               rotate, useTileGrid, gridSize, null, 1);
+    }
+
+    /**
+     * Same as calculateLayout, with the packed layout run on an executor
+     * @param executor executor to run the layout heuristics on, or null to run them on the calling thread
+     * @param threadCount number of threads of the executor
+     */
+    public static TextureSetResult calculateLayout(List<Rect> images, List<SpriteGeometry> imageHulls, int use_geometries,
+                                                AnimIterator iterator,
+                                               int margin, int innerPadding, int extrudeBorders,
+                                               boolean rotate, boolean useTileGrid, Grid gridSize,
+                                               ExecutorService executor, int threadCount) {
 
         int totalSizeIncrease = 2 * (innerPadding + extrudeBorders);
 
@@ -315,7 +333,7 @@ public class TextureSetGenerator {
         if (useTileGrid) {
             layout = TextureSetLayout.gridLayout(margin, resizedImages, gridSize);
         } else {
-            layout = TextureSetLayout.packedLayout(margin, resizedImages, rotate);
+            layout = TextureSetLayout.packedLayout(margin, resizedImages, rotate, executor, threadCount);
         }
 
         layout.getRectangles().sort(Comparator.comparing(o -> o.index));
@@ -383,39 +401,114 @@ public class TextureSetGenerator {
     public static TextureSetResult generate(List<BufferedImage> images, List<Integer> imageHullSizes, List<String> paths, AnimIterator iterator,
             int margin, int innerPadding, int extrudeBorders, boolean rotate, boolean useTileGrid, Grid gridSize) {
 
-        List<Rect> imageRects = rectanglesFromImages(images, paths);
+        List<PreparedImage> preparedImages = new ArrayList<PreparedImage>(images.size());
+        for (int i = 0; i < images.size(); ++i) {
+            preparedImages.add(prepareImage(images.get(i), imageHullSizes.get(i), innerPadding, extrudeBorders));
+        }
+        return generatePrepared(preparedImages, paths, iterator, margin, innerPadding, extrudeBorders, rotate, useTileGrid, gridSize, null, 1);
+    }
 
+    /**
+     * An image with its hull, and padding and extruded borders applied, ready to be laid out.
+     */
+    public static class PreparedImage {
+        // Size of the original image
+        public final int width;
+        public final int height;
+        public final int hullSize;
+        public final SpriteGeometry hull;
+        public final BufferedImage image;
+
+        public PreparedImage(int width, int height, int hullSize, SpriteGeometry hull, BufferedImage image) {
+            this.width = width;
+            this.height = height;
+            this.hullSize = hullSize;
+            this.hull = hull;
+            this.image = image;
+        }
+    }
+
+    /**
+     * Build the hull of an image and apply inner padding and extruded borders. This only depends
+     * on the image itself, so images can be prepared concurrently. The image is not modified.
+     */
+    public static PreparedImage prepareImage(BufferedImage image, int hullSize, int innerPadding, int extrudeBorders) {
         // if all sizes are 0, we still need to generate hull (or rect) data
         // since it will still be part of the new code path if there is another atlas with trimming enabled
-        List<SpriteGeometry> imageHulls = new ArrayList<SpriteGeometry>();
+        SpriteGeometry hull = buildConvexHull(image, hullSize);
+        BufferedImage prepared = image;
+        if (innerPadding > 0) {
+            prepared = TextureUtil.createPaddedImage(prepared, innerPadding, paddingColour);
+        }
+        if (extrudeBorders > 0) {
+            prepared = TextureUtil.extrudeBorders(prepared, extrudeBorders);
+        }
+        return new PreparedImage(image.getWidth(), image.getHeight(), hullSize, hull, prepared);
+    }
+
+    private static <T> T waitFor(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Same as generate, for images that are already prepared
+     * @param executor executor to lay out and rotate images on, or null to do it on the calling thread
+     * @param threadCount number of threads of the executor
+     */
+    public static TextureSetResult generatePrepared(List<PreparedImage> images, List<String> paths, AnimIterator iterator,
+            int margin, int innerPadding, int extrudeBorders, boolean rotate, boolean useTileGrid, Grid gridSize,
+            ExecutorService executor, int threadCount) {
+
+        List<Rect> imageRects = new ArrayList<Rect>(images.size());
+        List<SpriteGeometry> imageHulls = new ArrayList<SpriteGeometry>(images.size());
         int use_geometries = 0;
         for (int i = 0; i < images.size(); ++i) {
-            BufferedImage image = images.get(i);
-            use_geometries |= imageHullSizes.get(i) > 0 ? 1 : 0;
-            imageHulls.add(buildConvexHull(image, imageHullSizes.get(i)));
+            PreparedImage image = images.get(i);
+            imageRects.add(new Rect(paths.get(i), i, image.width, image.height));
+            imageHulls.add(image.hull);
+            use_geometries |= image.hullSize > 0 ? 1 : 0;
         }
 
         // The layout step will expand the rect, and possibly rotate them
         TextureSetResult result = calculateLayout(imageRects, imageHulls, use_geometries, iterator,
-                                                        margin, innerPadding, extrudeBorders, rotate, useTileGrid, gridSize);
+                                                        margin, innerPadding, extrudeBorders, rotate, useTileGrid, gridSize,
+                                                        executor, threadCount);
 
+        List<Rect> rects = result.layoutResult.layout.getRectangles();
+        List<BufferedImage> layoutImages = new ArrayList<BufferedImage>(images.size());
+        List<Future<BufferedImage>> rotatedImages = new ArrayList<Future<BufferedImage>>(images.size());
         for (int i = 0; i < images.size(); ++i) {
-            BufferedImage image = images.get(i);
-            Rect rect = result.layoutResult.layout.getRectangles().get(i);
-
-            if (innerPadding > 0) {
-                image = TextureUtil.createPaddedImage(image, innerPadding, paddingColour);
-            }
-            if (extrudeBorders > 0) {
-                image = TextureUtil.extrudeBorders(image, extrudeBorders);
+            final BufferedImage image = images.get(i).image;
+            layoutImages.add(image);
+            if (rects.get(i).rotated && executor != null) {
+                rotatedImages.add(executor.submit(new Callable<BufferedImage>() {
+                    @Override
+                    public BufferedImage call() {
+                        return rotateImage(image);
+                    }
+                }));
+            } else {
+                rotatedImages.add(null);
             }
-            if (rect.rotated) {
-                image = rotateImage(image);
+        }
+        for (int i = 0; i < images.size(); ++i) {
+            if (rects.get(i).rotated) {
+                Future<BufferedImage> rotated = rotatedImages.get(i);
+                layoutImages.set(i, rotated != null ? waitFor(rotated) : rotateImage(layoutImages.get(i)));
             }
-            images.set(i, image);
         }
 
-        result.image = composite(images, result.layoutResult.layout);
+        result.image = composite(layoutImages, result.layoutResult.layout);
 
         // try {
         //     File outputfile = new File(String.format("image%d.png", debugImageCount));
@@ -464,17 +557,6 @@ public class TextureSetGenerator {
         return images;
     }
 
-    private static List<Rect> rectanglesFromImages(List<BufferedImage> images, List<String> paths) {
-        List<Rect> rectangles = new ArrayList<Rect>(images.size());
-        int index = 0;
-        for (BufferedImage image : images) {
-            String path = paths.get(index);
-            rectangles.add(new Rect(path, index, image.getWidth(), image.getHeight()));
-            index++;
-        }
-        return rectangles;
-    }
-
     private static BufferedImage composite(List<BufferedImage> images, Layout layout) {
         BufferedImage image = new BufferedImage(layout.getWidth(), layout.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
         Graphics2D g = image.createGraphics();
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Atlas layout algorithm(s)
@@ -108,11 +109,19 @@ public class TextureSetLayout {
     }
 
     public static Layout packedLayout(int margin, List<Rect> rectangles, boolean rotate) {
+        return packedLayout(margin, rectangles, rotate, null, 1);
+    }
+
+    /**
+     * @param executor executor to run the layout heuristics on, or null to run them on the calling thread
+     * @param threadCount number of threads of the executor
+     */
+    public static Layout packedLayout(int margin, List<Rect> rectangles, boolean rotate, ExecutorService executor, int threadCount) {
         if (rectangles.size() == 0) {
             return new Layout(1, 1, new ArrayList<TextureSetLayout.Rect>());
         }
 
-        return createMaxRectsLayout(margin, rectangles, rotate);
+        return createMaxRectsLayout(margin, rectangles, rotate, executor, threadCount);
     }
 
     private static int getExponentNextOrMatchingPowerOfTwo(int value) {
@@ -158,13 +167,19 @@ public class TextureSetLayout {
         return layout;
     }
 
+    public static Layout createMaxRectsLayout(int margin, List<Rect> rectangles, boolean rotate) {
+        return createMaxRectsLayout(margin, rectangles, rotate, null, 1);
+    }
+
     /**
      * @param margin
      * @param rectangles
      * @param rotate
+     * @param executor
+     * @param threadCount
      * @return
      */
-    public static Layout createMaxRectsLayout(int margin, List<Rect> rectangles, boolean rotate) {
+    public static Layout createMaxRectsLayout(int margin, List<Rect> rectangles, boolean rotate, ExecutorService executor, int threadCount) {
         // Sort by area first, then longest side
         Collections.sort(rectangles, new Comparator<Rect>() {
             @Override
@@ -202,6 +217,8 @@ public class TextureSetLayout {
         settings.paddingY = margin;
         settings.rotation = rotate;
         settings.square = false;
+        settings.executor = executor;
+        settings.threadCount = threadCount;
 
         MaxRectsLayoutStrategy strategy = new MaxRectsLayoutStrategy(settings);
         List<Layout> layouts = strategy.createLayout(rectangles);
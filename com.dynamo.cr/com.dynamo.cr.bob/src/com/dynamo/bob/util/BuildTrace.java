@@ -0,0 +1,287 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+/**
+ * Records the time spent in the phases of a build and in each task, and exports
+ * them as Chrome trace events (chrome://tracing, Perfetto) and as a summary per
+ * builder. Events are only recorded while a build is traced, see the
+ * "build-trace" option, and recording is cheap enough to be used on full builds.
+ */
+public class BuildTrace {
+
+    public static final String STATUS_UP_TO_DATE = "up-to-date";
+    public static final String STATUS_CACHED = "cached";
+    public static final String STATUS_BUILT = "built";
+    public static final String STATUS_FAILED = "failed";
+
+    private static final String CATEGORY_PHASE = "phase";
+    private static final String CATEGORY_TASK = "task";
+    private static final String CATEGORY_STEP = "step";
+
+    private static class Event {
+        final String name;
+        final String category;
+        final long start;
+        final long duration;
+        final long threadId;
+        final String threadName;
+        // Only set for tasks
+        String builder;
+        String status;
+        long inputBytes;
+        int outputCount;
+
+        Event(String name, String category, long start, long end) {
+            Thread thread = Thread.currentThread();
+            this.name = name;
+            this.category = category;
+            this.start = start;
+            this.duration = end - start;
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+        }
+    }
+
+    /**
+     * Totals of the tasks of one builder
+     */
+    public static class BuilderSummary {
+        public final String builder;
+        public int taskCount;
+        public int builtCount;
+        public int cachedCount;
+        public int upToDateCount;
+        public int failedCount;
+        public long totalTime;
+        public long maxTime;
+        public long inputBytes;
+
+        BuilderSummary(String builder) {
+            this.builder = builder;
+        }
+    }
+
+    private final long origin = System.nanoTime();
+    private final List<Event> events = new ArrayList<Event>(4096);
+
+    /**
+     * @return current time, to pass as the start, or end, when the event is added
+     */
+    public long begin() {
+        return System.nanoTime();
+    }
+
+    private synchronized void add(Event event) {
+        events.add(event);
+    }
+
+    /**
+     * Add a build phase, e.g. creating tasks or bundling, that ends now
+     * @param name phase name
+     * @param start start time from begin()
+     */
+    public void addPhase(String name, long start) {
+        add(new Event(name, CATEGORY_PHASE, start, System.nanoTime()));
+    }
+
+    /**
+     * Add a step of the task running on the current thread, e.g. the signature calculation, that ends now
+     * @param name step name
+     * @param start start time from begin()
+     */
+    public void addStep(String name, long start) {
+        add(new Event(name, CATEGORY_STEP, start, System.nanoTime()));
+    }
+
+    /**
+     * Add a task
+     * @param name task name, usually the path of the first input
+     * @param builder name of the builder
+     * @param start start time from begin()
+     * @param end end time from begin()
+     * @param status one of the STATUS constants
+     * @param inputBytes total size of the inputs
+     * @param outputCount number of outputs
+     */
+    public void addTask(String name, String builder, long start, long end, String status, long inputBytes, int outputCount) {
+        Event event = new Event(name, CATEGORY_TASK, start, end);
+        event.builder = builder;
+        event.status = status;
+        event.inputBytes = inputBytes;
+        event.outputCount = outputCount;
+        add(event);
+    }
+
+    private synchronized List<Event> getEvents() {
+        return new ArrayList<Event>(events);
+    }
+
+    /**
+     * Get the totals per builder, in order of decreasing total time
+     * @return summary of each builder
+     */
+    public List<BuilderSummary> getSummary() {
+        Map<String, BuilderSummary> summaries = new HashMap<String, BuilderSummary>();
+        for (Event event : getEvents()) {
+            if (event.builder == null) {
+                continue;
+            }
+            BuilderSummary summary = summaries.get(event.builder);
+            if (summary == null) {
+                summary = new BuilderSummary(event.builder);
+                summaries.put(event.builder, summary);
+            }
+            ++summary.taskCount;
+            if (STATUS_BUILT.equals(event.status)) {
+                ++summary.builtCount;
+            } else if (STATUS_CACHED.equals(event.status)) {
+                ++summary.cachedCount;
+            } else if (STATUS_UP_TO_DATE.equals(event.status)) {
+                ++summary.upToDateCount;
+            } else {
+                ++summary.failedCount;
+            }
+            summary.totalTime += event.duration;
+            summary.maxTime = Math.max(summary.maxTime, event.duration);
+            summary.inputBytes += event.inputBytes;
+        }
+
+        List<BuilderSummary> result = new ArrayList<BuilderSummary>(summaries.values());
+        Collections.sort(result, new Comparator<BuilderSummary>() {
+            @Override
+            public int compare(BuilderSummary a, BuilderSummary b) {
+                return Long.compare(b.totalTime, a.totalTime);
+            }
+        });
+        return result;
+    }
+
+    // Chrome trace timestamps are in microseconds
+    private static double toMicros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    /**
+     * Write the events in the Chrome trace event format, with the builder summary as metadata
+     * @param writer output
+     */
+    public void writeChromeTrace(Writer writer) throws IOException {
+        List<Event> events = getEvents();
+        JsonGenerator generator = new JsonFactory().createJsonGenerator(writer);
+        generator.writeStartObject();
+        generator.writeStringField("displayTimeUnit", "ms");
+
+        generator.writeFieldName("traceEvents");
+        generator.writeStartArray();
+        Map<Long, String> threads = new LinkedHashMap<Long, String>();
+        for (Event event : events) {
+            threads.put(event.threadId, event.threadName);
+        }
+        for (Map.Entry<Long, String> thread : threads.entrySet()) {
+            generator.writeStartObject();
+            generator.writeStringField("name", "thread_name");
+            generator.writeStringField("ph", "M");
+            generator.writeNumberField("pid", 1);
+            generator.writeNumberField("tid", thread.getKey());
+            generator.writeFieldName("args");
+            generator.writeStartObject();
+            generator.writeStringField("name", thread.getValue());
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        for (Event event : events) {
+            generator.writeStartObject();
+            generator.writeStringField("name", event.name);
+            generator.writeStringField("cat", event.builder != null ? CATEGORY_TASK + "," + event.builder : event.category);
+            generator.writeStringField("ph", "X");
+            generator.writeNumberField("ts", toMicros(event.start - origin));
+            generator.writeNumberField("dur", toMicros(event.duration));
+            generator.writeNumberField("pid", 1);
+            generator.writeNumberField("tid", event.threadId);
+            if (event.builder != null) {
+                generator.writeFieldName("args");
+                generator.writeStartObject();
+                generator.writeStringField("builder", event.builder);
+                generator.writeStringField("status", event.status);
+                generator.writeNumberField("inputBytes", event.inputBytes);
+                generator.writeNumberField("outputs", event.outputCount);
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeFieldName("otherData");
+        generator.writeStartObject();
+        generator.writeFieldName("builders");
+        generator.writeStartArray();
+        for (BuilderSummary summary : getSummary()) {
+            generator.writeStartObject();
+            generator.writeStringField("builder", summary.builder);
+            generator.writeNumberField("tasks", summary.taskCount);
+            generator.writeNumberField("built", summary.builtCount);
+            generator.writeNumberField("cached", summary.cachedCount);
+            generator.writeNumberField("upToDate", summary.upToDateCount);
+            generator.writeNumberField("failed", summary.failedCount);
+            generator.writeNumberField("totalMs", toMillis(summary.totalTime));
+            generator.writeNumberField("maxMs", toMillis(summary.maxTime));
+            generator.writeNumberField("inputBytes", summary.inputBytes);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    /**
+     * Write the phases and the builder summary as a text table
+     * @param writer output
+     */
+    public void writeSummary(Writer writer) throws IOException {
+        writer.write(String.format("%-32s %12s%n", "Phase", "Time (ms)"));
+        for (Event event : getEvents()) {
+            if (event.category.equals(CATEGORY_PHASE)) {
+                writer.write(String.format("%-32s %12.1f%n", event.name, toMillis(event.duration)));
+            }
+        }
+        writer.write(String.format("%n%-32s %7s %7s %7s %9s %7s %12s %10s %14s%n",
+                "Builder", "Tasks", "Built", "Cached", "UpToDate", "Failed", "Total (ms)", "Max (ms)", "Input bytes"));
+        for (BuilderSummary summary : getSummary()) {
+            writer.write(String.format("%-32s %7d %7d %7d %9d %7d %12.1f %10.1f %14d%n",
+                    summary.builder, summary.taskCount, summary.builtCount, summary.cachedCount, summary.upToDateCount,
+                    summary.failedCount, toMillis(summary.totalTime), toMillis(summary.maxTime), summary.inputBytes));
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,221 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.util;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.vecmath.Quat4d;
+
+import com.dynamo.rig.proto.Rig.AnimationTrack;
+
+/**
+ * Error bounded keyframe reduction of sampled bone tracks. The positions,
+ * rotations and scale of a track are reduced separately, by keeping every
+ * n:th sample for the largest stride n where interpolating between the kept
+ * samples, the same way as the engine does, reproduces all original samples
+ * within the tolerance of the channel. A constant channel is reduced to two
+ * samples. The stride is stored in the track, so the engine still samples a
+ * channel in constant time.
+ */
+public class KeyframeReduction {
+
+    /**
+     * Tolerance used for channels without a tolerance, only reducing
+     * channels that are constant or linear
+     */
+    public static final double MIN_TOLERANCE = 0.00001;
+
+    // Strides tried after the full length of the channel, largest first
+    private static final int[] STRIDES = new int[] {64, 32, 16, 8, 4, 3, 2};
+
+    private interface ChannelError {
+        /**
+         * Get the error when sample i of the channel is reconstructed by
+         * interpolating between two reduced samples
+         * @return error in the unit of the tolerance
+         */
+        double get(float[] data, int i, float[] reduced, int a, int b, double t);
+    }
+
+    private static final ChannelError VECTOR_ERROR = new ChannelError() {
+        @Override
+        public double get(float[] data, int i, float[] reduced, int a, int b, double t) {
+            double sum = 0.0;
+            for (int c = 0; c < 3; ++c) {
+                double v = reduced[a * 3 + c] + (reduced[b * 3 + c] - reduced[a * 3 + c]) * t;
+                double d = v - data[i * 3 + c];
+                sum += d * d;
+            }
+            return Math.sqrt(sum);
+        }
+    };
+
+    private static final ChannelError ROTATION_ERROR = new ChannelError() {
+        @Override
+        public double get(float[] data, int i, float[] reduced, int a, int b, double t) {
+            Quat4d q = new Quat4d();
+            q.interpolate(new Quat4d(reduced[a * 4], reduced[a * 4 + 1], reduced[a * 4 + 2], reduced[a * 4 + 3]),
+                    new Quat4d(reduced[b * 4], reduced[b * 4 + 1], reduced[b * 4 + 2], reduced[b * 4 + 3]), t);
+            Quat4d o = new Quat4d(data[i * 4], data[i * 4 + 1], data[i * 4 + 2], data[i * 4 + 3]);
+            double dot = Math.abs(q.x * o.x + q.y * o.y + q.z * o.z + q.w * o.w) / Math.sqrt(q.x * q.x + q.y * q.y + q.z * q.z + q.w * q.w) / Math.sqrt(o.x * o.x + o.y * o.y + o.z * o.z + o.w * o.w);
+            return Math.toDegrees(2.0 * Math.acos(Math.min(1.0, dot)));
+        }
+    };
+
+    private final double positionTolerance;
+    private final double rotationTolerance;
+    private final double scaleTolerance;
+    private long inputSize = 0;
+    private long outputSize = 0;
+
+    /**
+     * @param positionTolerance max distance between a reduced and original position
+     * @param rotationTolerance max angle, in degrees, between a reduced and original rotation
+     * @param scaleTolerance max distance between a reduced and original scale
+     */
+    public KeyframeReduction(double positionTolerance, double rotationTolerance, double scaleTolerance) {
+        this.positionTolerance = Math.max(MIN_TOLERANCE, positionTolerance);
+        this.rotationTolerance = Math.max(MIN_TOLERANCE, rotationTolerance);
+        this.scaleTolerance = Math.max(MIN_TOLERANCE, scaleTolerance);
+    }
+
+    /**
+     * Reduce a sampled channel
+     * @param data samples, followed by a duplicate of the last sample
+     * @param components number of components per sample
+     * @param tolerance max error
+     * @param error error of a reconstructed sample
+     * @param strideOut set to the stride of the reduced samples
+     * @return reduced samples, followed by a duplicate of the last sample, or null if the channel can't be reduced
+     */
+    private static float[] reduceChannel(float[] data, int components, double tolerance, ChannelError error, int[] strideOut) {
+        int last = data.length / components - 2;
+        if (last < 2) {
+            return null;
+        }
+        List<Integer> strides = new ArrayList<Integer>();
+        strides.add(last);
+        for (int stride : STRIDES) {
+            if (stride < last) {
+                strides.add(stride);
+            }
+        }
+        for (int stride : strides) {
+            int count = (last + stride - 1) / stride;
+            float[] reduced = new float[(count + 2) * components];
+            for (int m = 0; m <= count; ++m) {
+                System.arraycopy(data, Math.min(m * stride, last) * components, reduced, m * components, components);
+            }
+            System.arraycopy(reduced, count * components, reduced, (count + 1) * components, components);
+
+            boolean valid = true;
+            for (int i = 0; i <= last && valid; ++i) {
+                int m = i / stride;
+                double t = (i - m * stride) / (double) stride;
+                valid = error.get(data, i, reduced, m, m + 1, t) <= tolerance;
+            }
+            if (valid) {
+                strideOut[0] = stride;
+                return reduced;
+            }
+        }
+        return null;
+    }
+
+    private static float[] toArray(List<Float> list) {
+        float[] array = new float[list.size()];
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static List<Float> toList(float[] array) {
+        List<Float> list = new ArrayList<Float>(array.length);
+        for (float f : array) {
+            list.add(f);
+        }
+        return list;
+    }
+
+    /**
+     * Reduce the positions, rotations and scale of a track, sampled by
+     * RigUtil.sampleTrack, and set the stride of each reduced channel
+     * @param track track to reduce
+     */
+    public void reduce(AnimationTrack.Builder track) {
+        int[] stride = new int[1];
+        long before = 0;
+        long after = 0;
+
+        float[] positions = toArray(track.getPositionsList());
+        float[] reduced = reduceChannel(positions, 3, positionTolerance, VECTOR_ERROR, stride);
+        before += positions.length;
+        if (reduced != null) {
+            track.clearPositions().addAllPositions(toList(reduced)).setPositionStride(stride[0]);
+            after += reduced.length;
+        } else {
+            after += positions.length;
+        }
+
+        float[] rotations = toArray(track.getRotationsList());
+        reduced = reduceChannel(rotations, 4, rotationTolerance, ROTATION_ERROR, stride);
+        before += rotations.length;
+        if (reduced != null) {
+            track.clearRotations().addAllRotations(toList(reduced)).setRotationStride(stride[0]);
+            after += reduced.length;
+        } else {
+            after += rotations.length;
+        }
+
+        float[] scale = toArray(track.getScaleList());
+        reduced = reduceChannel(scale, 3, scaleTolerance, VECTOR_ERROR, stride);
+        before += scale.length;
+        if (reduced != null) {
+            track.clearScale().addAllScale(toList(reduced)).setScaleStride(stride[0]);
+            after += reduced.length;
+        } else {
+            after += scale.length;
+        }
+
+        synchronized (this) {
+            inputSize += before * 4;
+            outputSize += after * 4;
+        }
+    }
+
+    /**
+     * Add the tolerances to the signature of a task
+     * @param digest message digest to update
+     */
+    public void signature(MessageDigest digest) {
+        digest.update(String.format("keyframe-reduction %s %s %s", positionTolerance, rotationTolerance, scaleTolerance).getBytes());
+    }
+
+    /**
+     * @return size in bytes of the sample data of the reduced tracks, before reduction
+     */
+    public synchronized long getInputSize() {
+        return inputSize;
+    }
+
+    /**
+     * @return size in bytes of the sample data of the reduced tracks, after reduction
+     */
+    public synchronized long getOutputSize() {
+        return outputSize;
+    }
+}
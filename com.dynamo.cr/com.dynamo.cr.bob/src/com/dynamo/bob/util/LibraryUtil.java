@@ -13,10 +13,13 @@
 package com.dynamo.bob.util;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.MessageDigest;
@@ -32,12 +35,15 @@ import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
 
 import com.dynamo.bob.LibraryException;
 
@@ -111,6 +117,45 @@ public class LibraryUtil {
         return libraries;
     }
 
+    /** Write a library archive to a file, validating the archive while it is
+     * written rather than reading the file again afterwards. The entries are
+     * inflated and checked against their CRCs as they are read from the input,
+     * and only the central directory is read back from the file.
+     *
+     * @param input stream of the archive, read to the end but not closed
+     * @param file file to write the archive to
+     * @throws ZipException if the input is not a valid zip archive
+     * @throws IOException if the input could not be read or the file not written
+     */
+    public static void writeArchive(InputStream input, File file) throws IOException {
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file))) {
+            // Everything read from the input is written to the file, including
+            // the central directory which is not read by the zip stream
+            InputStream tee = new TeeInputStream(input, output);
+            byte[] buffer = new byte[64 * 1024];
+            ZipInputStream zip = new ZipInputStream(tee);
+            while (true) {
+                try {
+                    if (zip.getNextEntry() == null) {
+                        break;
+                    }
+                } catch (ZipException e) {
+                    // Not all valid archives can have their entry headers read as a
+                    // stream, e.g. stored entries with data descriptors, so these are
+                    // only validated by the central directory below
+                    break;
+                }
+                // Throws if the entry data doesn't match its CRC or size
+                while (zip.read(buffer) >= 0) {
+                }
+            }
+            while (tee.read(buffer) >= 0) {
+            }
+        }
+        ZipFile zip = new ZipFile(file);
+        zip.close();
+    }
+
     /** Find base directory path inside a zip archive from where all include dirs should be based.
     * Effectively searches for the first game.project since all include dirs are relative to this.
     *
@@ -0,0 +1,433 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent map from paths to fixed size binary slots, e.g. sha1 signatures.
+ *
+ * File layout (big endian):
+ * <pre>
+ *   int     magic
+ *   int     version
+ *   int     flags          FLAG_CLEAN when the file was completely written
+ *   int     slot size
+ *   int     table count
+ *   int     log count
+ *   table   table count * (int length, utf-8 path)
+ *   slots   table count * slot size, in table order
+ *   log     log count * (int length, utf-8 path, slot)
+ * </pre>
+ *
+ * Files are memory mapped on load and slots are only read when requested.
+ * The mapping is released when the table is closed or the file is rewritten.
+ * When saving back to the same file, changed slots of known paths are written
+ * in place and new paths are appended to the log. The file is rewritten with all
+ * paths in the table once the log grows larger than the table.
+ *
+ * Slots can be read and written from multiple threads. Loading and saving can not.
+ */
+public class PathSlotTable {
+
+    private static final int HEADER_SIZE = 24;
+    private static final int FLAGS_OFFSET = 8;
+    private static final int LOG_COUNT_OFFSET = 20;
+    private static final int FLAG_CLEAN = 1;
+    private static final int MIN_COMPACT_LOG_COUNT = 1024;
+
+    private final int magic;
+    private final int version;
+    private final int slotSize;
+
+    // Loaded data, memory mapped or wrapped, and slot offsets into it
+    private ByteBuffer data;
+    private Map<String, Integer> dataOffsets = new HashMap<String, Integer>();
+    // Mapping of the file the data was loaded from, released before the file is truncated
+    private MappedByteBuffer mapping;
+
+    // Slots changed since load, and the subset not yet saved
+    private Map<String, byte[]> changed = new ConcurrentHashMap<String, byte[]>();
+    private Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    // State of the file the table was loaded from or last saved to
+    private File file;
+    private Map<String, Long> fileOffsets = new HashMap<String, Long>();
+    private int tableCount;
+    private int logCount;
+    private long fileEnd;
+
+    /**
+     * Create an empty table
+     * @param magic identifies the kind of data stored
+     * @param version version of the data stored, files with other versions are not loaded
+     * @param slotSize size in bytes of each slot
+     */
+    public PathSlotTable(int magic, int version, int slotSize) {
+        this.magic = magic;
+        this.version = version;
+        this.slotSize = slotSize;
+    }
+
+    /**
+     * Get slot size
+     * @return slot size in bytes
+     */
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    /**
+     * Get slot for path
+     * @param path path to get slot for
+     * @return copy of the slot or null if no mapping exists
+     */
+    public byte[] get(String path) {
+        byte[] slot = changed.get(path);
+        if (slot != null) {
+            return slot;
+        }
+        Integer offset = dataOffsets.get(path);
+        if (offset == null) {
+            return null;
+        }
+        slot = new byte[slotSize];
+        ByteBuffer view = data.duplicate();
+        view.position(offset);
+        view.get(slot);
+        return slot;
+    }
+
+    /**
+     * Set slot for path
+     * @param path path to set slot for
+     * @param slot slot data, must be exactly slot size bytes
+     */
+    public void put(String path, byte[] slot) {
+        if (slot.length != slotSize) {
+            throw new IllegalArgumentException(String.format("Slot for '%s' is %d bytes, expected %d", path, slot.length, slotSize));
+        }
+        changed.put(path, slot);
+        dirty.add(path);
+    }
+
+    /**
+     * Get all paths in the table
+     * @return set of paths
+     */
+    public Set<String> getPaths() {
+        Set<String> paths = new HashSet<String>(dataOffsets.keySet());
+        paths.addAll(changed.keySet());
+        return paths;
+    }
+
+    /**
+     * Check if the data starts with the header of a table file
+     * @param data data to check
+     * @param magic expected magic
+     * @return true if the data is a table file with the magic
+     */
+    public static boolean hasHeader(byte[] data, int magic) {
+        return data != null && data.length >= HEADER_SIZE && ByteBuffer.wrap(data).getInt(0) == magic;
+    }
+
+    /**
+     * Load table from file. The file is memory mapped and kept for incremental saves,
+     * until the table is closed.
+     * @param file file to load
+     * @return true if the file was loaded, false if it is missing, of another version or corrupt
+     * @throws IOException
+     */
+    public boolean load(File file) throws IOException {
+        clear();
+        if (!file.isFile()) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (!parse(mapping)) {
+            clear();
+            return false;
+        }
+        this.file = file;
+        return true;
+    }
+
+    /**
+     * Load table from data in memory
+     * @param content table file data
+     * @return true if the data was loaded, false if it is of another version or corrupt
+     */
+    public boolean load(byte[] content) {
+        clear();
+        if (content == null || !parse(ByteBuffer.wrap(content))) {
+            clear();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Release the memory mapping of the file the table was loaded from, so that the
+     * file can be truncated or deleted. The slots are read into memory first, so the
+     * table can still be used.
+     */
+    public void close() {
+        if (mapping == null) {
+            return;
+        }
+        for (String path : dataOffsets.keySet()) {
+            if (!changed.containsKey(path)) {
+                changed.put(path, get(path));
+            }
+        }
+        data = null;
+        dataOffsets = new HashMap<String, Integer>();
+        releaseMapping();
+    }
+
+    private void releaseMapping() {
+        MappedByteBuffer buffer = mapping;
+        mapping = null;
+        MappedBufferUtil.unmap(buffer);
+    }
+
+    private void clear() {
+        data = null;
+        releaseMapping();
+        dataOffsets = new HashMap<String, Integer>();
+        changed.clear();
+        dirty.clear();
+        file = null;
+        fileOffsets = new HashMap<String, Long>();
+        tableCount = 0;
+        logCount = 0;
+        fileEnd = 0;
+    }
+
+    private static String readPath(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean parse(ByteBuffer buffer) {
+        try {
+            if (buffer.remaining() < HEADER_SIZE
+                    || buffer.getInt() != magic
+                    || buffer.getInt() != version
+                    || buffer.getInt() != FLAG_CLEAN
+                    || buffer.getInt() != slotSize) {
+                return false;
+            }
+            int count = buffer.getInt();
+            int logs = buffer.getInt();
+            if (count < 0 || logs < 0) {
+                return false;
+            }
+            List<String> paths = new ArrayList<String>(count);
+            for (int i = 0; i < count; ++i) {
+                paths.add(readPath(buffer));
+            }
+            int slots = buffer.position();
+            if ((long) count * slotSize > buffer.remaining()) {
+                return false;
+            }
+            for (int i = 0; i < count; ++i) {
+                int offset = slots + i * slotSize;
+                dataOffsets.put(paths.get(i), offset);
+                fileOffsets.put(paths.get(i), (long) offset);
+            }
+            buffer.position(slots + count * slotSize);
+            for (int i = 0; i < logs; ++i) {
+                String path = readPath(buffer);
+                int offset = buffer.position();
+                buffer.position(offset + slotSize);
+                dataOffsets.put(path, offset);
+                fileOffsets.put(path, (long) offset);
+            }
+            data = buffer;
+            tableCount = count;
+            logCount = logs;
+            fileEnd = buffer.position();
+            return true;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Serialize the complete table
+     * @return table file data
+     * @throws IOException
+     */
+    public byte[] toByteArray() throws IOException {
+        Map<String, byte[]> slots = new HashMap<String, byte[]>();
+        List<String> paths = new ArrayList<String>(getPaths());
+        for (String path : paths) {
+            slots.put(path, get(path));
+        }
+        return write(paths, slots, FLAG_CLEAN, null);
+    }
+
+    private byte[] write(List<String> paths, Map<String, byte[]> slots, int flags, Map<String, Long> offsets) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(HEADER_SIZE + paths.size() * (slotSize + 64));
+        DataOutputStream os = new DataOutputStream(bos);
+        os.writeInt(magic);
+        os.writeInt(version);
+        os.writeInt(flags);
+        os.writeInt(slotSize);
+        os.writeInt(paths.size());
+        os.writeInt(0);
+        for (String path : paths) {
+            byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+            os.writeInt(bytes.length);
+            os.write(bytes);
+        }
+        for (String path : paths) {
+            if (offsets != null) {
+                offsets.put(path, (long) os.size());
+            }
+            os.write(slots.get(path));
+        }
+        os.close();
+        return bos.toByteArray();
+    }
+
+    private static void writeInt(FileChannel channel, long position, int value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.putInt(value);
+        buffer.flip();
+        channel.write(buffer, position);
+    }
+
+    /**
+     * Save table to file. If the table was loaded from, or last saved to, the same file
+     * only the slots changed since then are written.
+     * @param target file to save to
+     * @throws IOException
+     */
+    public void save(File target) throws IOException {
+        boolean incremental = target.equals(file) && target.isFile() && target.length() >= fileEnd;
+        if (incremental && dirty.isEmpty()) {
+            return;
+        }
+
+        List<String> appended = new ArrayList<String>();
+        for (String path : dirty) {
+            if (!fileOffsets.containsKey(path)) {
+                appended.add(path);
+            }
+        }
+        if (logCount + appended.size() > Math.max(tableCount, MIN_COMPACT_LOG_COUNT)) {
+            incremental = false;
+        }
+
+        if (target.getParentFile() != null) {
+            target.getParentFile().mkdirs();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+            FileChannel channel = raf.getChannel();
+            if (incremental) {
+                saveIncremental(channel, appended);
+            } else {
+                saveComplete(channel);
+            }
+            writeInt(channel, FLAGS_OFFSET, FLAG_CLEAN);
+        }
+        file = target;
+    }
+
+    private void saveIncremental(FileChannel channel, List<String> appended) throws IOException {
+        writeInt(channel, FLAGS_OFFSET, 0);
+
+        List<String> written = new ArrayList<String>(dirty);
+        for (String path : written) {
+            Long offset = fileOffsets.get(path);
+            if (offset != null) {
+                channel.write(ByteBuffer.wrap(changed.get(path)), offset);
+            }
+        }
+
+        if (!appended.isEmpty()) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(appended.size() * (slotSize + 64));
+            DataOutputStream os = new DataOutputStream(bos);
+            for (String path : appended) {
+                byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+                os.writeInt(bytes.length);
+                os.write(bytes);
+                fileOffsets.put(path, fileEnd + os.size());
+                os.write(changed.get(path));
+            }
+            os.close();
+            byte[] log = bos.toByteArray();
+            channel.write(ByteBuffer.wrap(log), fileEnd);
+            fileEnd += log.length;
+            logCount += appended.size();
+            writeInt(channel, LOG_COUNT_OFFSET, logCount);
+        }
+        dirty.removeAll(written);
+    }
+
+    private void saveComplete(FileChannel channel) throws IOException {
+        // Read all slots before the file is overwritten since it might be the one mapped
+        List<String> paths = new ArrayList<String>(getPaths());
+        Map<String, byte[]> slots = new HashMap<String, byte[]>();
+        for (String path : paths) {
+            slots.put(path, get(path));
+        }
+        // The mapped data no longer matches the offsets, keep all slots in memory instead
+        data = null;
+        dataOffsets = new HashMap<String, Integer>();
+        changed.putAll(slots);
+        releaseMapping();
+
+        Map<String, Long> offsets = new HashMap<String, Long>();
+        byte[] content = write(paths, slots, 0, offsets);
+        channel.write(ByteBuffer.wrap(content), 0);
+        try {
+            channel.truncate(content.length);
+        } catch (IOException e) {
+            // Trailing data is ignored when loading. Truncation fails if the file is still
+            // mapped on Windows, which happens when the JVM can't unmap it.
+        }
+
+        dirty.clear();
+        fileOffsets = offsets;
+        tableCount = paths.size();
+        logCount = 0;
+        fileEnd = content.length;
+    }
+}
@@ -14,7 +14,6 @@ package com.dynamo.bob.util;
 
 import java.util.Map;
 import java.util.HashMap;
-import java.util.List;
 
 import java.io.File;
 import java.io.InputStream;
@@ -24,9 +23,14 @@ import java.io.BufferedWriter;
 
 import com.dynamo.bob.Bob;
 import com.dynamo.bob.util.BobProjectProperties;
+import com.dynamo.bob.util.KeyframeReduction;
 import com.dynamo.bob.Project;
 import com.dynamo.bob.archive.ArchiveReader;
 import com.dynamo.bob.archive.ArchiveEntry;
+import com.dynamo.bob.cache.ArtifactCache;
+import com.dynamo.bob.pipeline.ImageCache;
+import com.dynamo.bob.pipeline.ProtoCache;
+import com.dynamo.bob.pipeline.TextureCache;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
@@ -128,31 +132,32 @@ public class ReportGenerator {
 
         ArchiveReader ar = new ArchiveReader(archiveIndex, archiveData, manifest);
 
-        ar.read();
-
-        List<ArchiveEntry> archiveEntries = ar.getEntries();
-        for (int i = 0; i < archiveEntries.size(); i++) {
-            ArchiveEntry archiveEntry = archiveEntries.get(i);
-            long compressedSize = archiveEntry.compressedSize != -1 ? archiveEntry.compressedSize : archiveEntry.size;
-            boolean encrypted = (archiveEntry.flags & ArchiveEntry.FLAG_ENCRYPTED) == ArchiveEntry.FLAG_ENCRYPTED;
-
-            if (this.resources.containsKey(archiveEntry.fileName)) {
-                ResourceEntry resEntry = this.resources.get(archiveEntry.fileName);
-                resEntry.compressedSize = compressedSize;
-                resEntry.size = archiveEntry.size;
-                resEntry.encrypted = encrypted;
-            } else {
-                ResourceEntry resEntry = new ResourceEntry(archiveEntry.fileName,
-                        archiveEntry.size,
-                        compressedSize,
-                        encrypted);
+        try {
+            ar.read();
+
+            // Entries are decoded one at a time from the memory mapped index
+            for (ArchiveEntry archiveEntry : ar) {
+                long compressedSize = archiveEntry.compressedSize != -1 ? archiveEntry.compressedSize : archiveEntry.size;
+                boolean encrypted = (archiveEntry.flags & ArchiveEntry.FLAG_ENCRYPTED) == ArchiveEntry.FLAG_ENCRYPTED;
+
+                if (this.resources.containsKey(archiveEntry.fileName)) {
+                    ResourceEntry resEntry = this.resources.get(archiveEntry.fileName);
+                    resEntry.compressedSize = compressedSize;
+                    resEntry.size = archiveEntry.size;
+                    resEntry.encrypted = encrypted;
+                } else {
+                    ResourceEntry resEntry = new ResourceEntry(archiveEntry.fileName,
+                            archiveEntry.size,
+                            compressedSize,
+                            encrypted);
+
+                    this.resources.put(archiveEntry.fileName, resEntry);
+                }
 
-                this.resources.put(archiveEntry.fileName, resEntry);
             }
-
+        } finally {
+            ar.close();
         }
-
-        ar.close();
     }
 
     /**
@@ -206,6 +211,90 @@ public class ReportGenerator {
             }
             generator.writeEndObject();
 
+            // Parsed text format resources shared between builders
+            ProtoCache protoCache = project.getProtoCache();
+            generator.writeFieldName("proto_cache");
+            generator.writeStartObject();
+            generator.writeFieldName("hits");
+            generator.writeNumber(protoCache.getHits());
+            generator.writeFieldName("misses");
+            generator.writeNumber(protoCache.getMisses());
+            generator.writeFieldName("evictions");
+            generator.writeNumber(protoCache.getEvictions());
+            generator.writeFieldName("entries");
+            generator.writeNumber(protoCache.getEntryCount());
+            generator.writeFieldName("size");
+            generator.writeNumber(protoCache.getSize());
+            generator.writeEndObject();
+
+            // Decoded images shared between atlases
+            ImageCache imageCache = project.getImageCache();
+            generator.writeFieldName("image_cache");
+            generator.writeStartObject();
+            generator.writeFieldName("hits");
+            generator.writeNumber(imageCache.getHits());
+            generator.writeFieldName("misses");
+            generator.writeNumber(imageCache.getMisses());
+            generator.writeFieldName("evictions");
+            generator.writeNumber(imageCache.getEvictions());
+            generator.writeFieldName("entries");
+            generator.writeNumber(imageCache.getEntryCount());
+            generator.writeFieldName("size");
+            generator.writeNumber(imageCache.getSize());
+            generator.writeEndObject();
+
+            // Texture alternatives shared between builders
+            TextureCache textureCache = project.getTextureCache();
+            generator.writeFieldName("texture_cache");
+            generator.writeStartObject();
+            generator.writeFieldName("hits");
+            generator.writeNumber(textureCache.getHits());
+            generator.writeFieldName("artifact_cache_hits");
+            generator.writeNumber(textureCache.getArtifactCacheHits());
+            generator.writeFieldName("misses");
+            generator.writeNumber(textureCache.getMisses());
+            generator.writeFieldName("evictions");
+            generator.writeNumber(textureCache.getEvictions());
+            generator.writeFieldName("entries");
+            generator.writeNumber(textureCache.getEntryCount());
+            generator.writeFieldName("size");
+            generator.writeNumber(textureCache.getSize());
+            generator.writeEndObject();
+
+            // Sample data of the rig animations built with keyframe reduction
+            KeyframeReduction keyframeReduction = project.getKeyframeReduction();
+            if (keyframeReduction != null) {
+                generator.writeFieldName("keyframe_reduction");
+                generator.writeStartObject();
+                generator.writeFieldName("input_size");
+                generator.writeNumber(keyframeReduction.getInputSize());
+                generator.writeFieldName("output_size");
+                generator.writeNumber(keyframeReduction.getOutputSize());
+                generator.writeFieldName("saved_size");
+                generator.writeNumber(keyframeReduction.getInputSize() - keyframeReduction.getOutputSize());
+                generator.writeEndObject();
+            }
+
+            // Task outputs restored from or stored in the artifact cache
+            ArtifactCache artifactCache = project.getArtifactCache();
+            if (artifactCache != null) {
+                generator.writeFieldName("artifact_cache");
+                generator.writeStartObject();
+                generator.writeFieldName("hits");
+                generator.writeNumber(artifactCache.getHits());
+                generator.writeFieldName("misses");
+                generator.writeNumber(artifactCache.getMisses());
+                generator.writeFieldName("puts");
+                generator.writeNumber(artifactCache.getPuts());
+                generator.writeFieldName("evictions");
+                generator.writeNumber(artifactCache.getEvictions());
+                generator.writeFieldName("entries");
+                generator.writeNumber(artifactCache.getEntryCount());
+                generator.writeFieldName("size");
+                generator.writeNumber(artifactCache.getSize());
+                generator.writeEndObject();
+            }
+
             // Resources
             generator.writeFieldName("resources");
             generator.writeStartArray();
@@ -12,10 +12,12 @@
 
 package com.dynamo.bob.util;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.RandomAccess;
 
 import javax.vecmath.AxisAngle4d;
 import javax.vecmath.Matrix4d;
@@ -317,6 +319,92 @@ public class RigUtil {
         T interpolate(double t, T a, T b);
     }
 
+    /**
+     * Property builder that samples into a float buffer, instead of allocating
+     * objects for every sample, see sampleFloatTrack. Values are passed as
+     * arrays of getComponentCount() doubles.
+     */
+    public interface FloatPropertyBuilder<Key extends RigUtil.AnimationKey> {
+        int getComponentCount();
+        void toValue(Key key, double[] out);
+        void interpolate(double t, double[] a, double[] b, double[] out);
+        /**
+         * Add sampled values to the track
+         * @param samples buffer of samples
+         * @param count number of floats in the buffer to add
+         */
+        void addSamples(float[] samples, int count);
+    }
+
+    /**
+     * List view of a float buffer, to add the buffer to a protobuf builder in one call
+     */
+    private static class FloatArrayList extends AbstractList<Float> implements RandomAccess {
+        private final float[] data;
+        private final int count;
+
+        FloatArrayList(float[] data, int count) {
+            this.data = data;
+            this.count = count;
+        }
+
+        @Override
+        public Float get(int index) {
+            return data[index];
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+    // Same arithmetic as Tuple3d.interpolate, so that both sampling paths give identical output
+    private static void lerp(double t, double[] a, double[] b, double[] out) {
+        for (int i = 0; i < out.length; ++i) {
+            out[i] = (1 - t) * a[i] + t * b[i];
+        }
+    }
+
+    // Same arithmetic as the Quat4d(x, y, z, w) constructor
+    private static void toQuat(double x, double y, double z, double w, double[] out) {
+        double mag = 1.0 / Math.sqrt(x * x + y * y + z * z + w * w);
+        out[0] = x * mag;
+        out[1] = y * mag;
+        out[2] = z * mag;
+        out[3] = w * mag;
+    }
+
+    // Same arithmetic as Quat4d.interpolate(q1, q2, alpha), without modifying a
+    private static void slerp(double t, double[] a, double[] b, double[] out) {
+        double ax = a[0];
+        double ay = a[1];
+        double az = a[2];
+        double aw = a[3];
+        double dot = b[0] * ax + b[1] * ay + b[2] * az + b[3] * aw;
+        if (dot < 0) {
+            ax = -ax;
+            ay = -ay;
+            az = -az;
+            aw = -aw;
+            dot = -dot;
+        }
+        double s1, s2;
+        if ((1.0 - dot) > 1.0e-12) {
+            double om = Math.acos(dot);
+            double sinom = Math.sin(om);
+            s1 = Math.sin((1.0 - t) * om) / sinom;
+            s2 = Math.sin(t * om) / sinom;
+        } else {
+            s1 = 1.0 - t;
+            s2 = t;
+        }
+        out[3] = s1 * aw + s2 * b[3];
+        out[0] = s1 * ax + s2 * b[0];
+        out[1] = s1 * ay + s2 * b[1];
+        out[2] = s1 * az + s2 * b[2];
+    }
+
     public static abstract class AbstractPropertyBuilder<T> implements PropertyBuilder<T, RigUtil.AnimationKey> {
         protected com.dynamo.rig.proto.Rig.AnimationTrack.Builder builder;
 
@@ -341,7 +429,7 @@ public class RigUtil {
         }
     }
 
-    public static class PositionBuilder extends AbstractPropertyBuilder<Point3d> {
+    public static class PositionBuilder extends AbstractPropertyBuilder<Point3d> implements FloatPropertyBuilder<RigUtil.AnimationKey> {
         public PositionBuilder(com.dynamo.rig.proto.Rig.AnimationTrack.Builder builder) {
             super(builder);
         }
@@ -382,6 +470,29 @@ public class RigUtil {
             out.interpolate(b, t);
             return out;
         }
+
+        @Override
+        public int getComponentCount() {
+            return 3;
+        }
+
+        @Override
+        public void toValue(RigUtil.AnimationKey key, double[] out) {
+            float[] v = key.value;
+            out[0] = v[0];
+            out[1] = v[1];
+            out[2] = v.length == 3 ? v[2] : 0.0;
+        }
+
+        @Override
+        public void interpolate(double t, double[] a, double[] b, double[] out) {
+            lerp(t, a, b, out);
+        }
+
+        @Override
+        public void addSamples(float[] samples, int count) {
+            builder.addAllPositions(new FloatArrayList(samples, count));
+        }
     }
 
     public static Quat4d toQuat(double angle) {
@@ -391,7 +502,7 @@ public class RigUtil {
         return new Quat4d(0.0, 0.0, s, c);
     }
 
-    public static class RotationBuilder extends AbstractPropertyBuilder<Quat4d> {
+    public static class RotationBuilder extends AbstractPropertyBuilder<Quat4d> implements FloatPropertyBuilder<RigUtil.AnimationKey> {
         public RotationBuilder(com.dynamo.rig.proto.Rig.AnimationTrack.Builder builder) {
             super(builder);
         }
@@ -428,9 +539,30 @@ public class RigUtil {
             out.interpolate(a, b, t);
             return out;
         }
+
+        @Override
+        public int getComponentCount() {
+            return 4;
+        }
+
+        @Override
+        public void toValue(RigUtil.AnimationKey key, double[] out) {
+            double halfRad = 0.5 * key.value[0] * Math.PI / 180.0;
+            toQuat(0.0, 0.0, Math.sin(halfRad), Math.cos(halfRad), out);
+        }
+
+        @Override
+        public void interpolate(double t, double[] a, double[] b, double[] out) {
+            slerp(t, a, b, out);
+        }
+
+        @Override
+        public void addSamples(float[] samples, int count) {
+            builder.addAllRotations(new FloatArrayList(samples, count));
+        }
     }
 
-    public static class QuatRotationBuilder extends AbstractPropertyBuilder<Quat4d> {
+    public static class QuatRotationBuilder extends AbstractPropertyBuilder<Quat4d> implements FloatPropertyBuilder<RigUtil.AnimationKey> {
         public QuatRotationBuilder(com.dynamo.rig.proto.Rig.AnimationTrack.Builder builder) {
             super(builder);
         }
@@ -467,9 +599,30 @@ public class RigUtil {
             out.interpolate(a, b, t);
             return out;
         }
+
+        @Override
+        public int getComponentCount() {
+            return 4;
+        }
+
+        @Override
+        public void toValue(RigUtil.AnimationKey key, double[] out) {
+            float[] v = key.value;
+            toQuat(v[0], v[1], v[2], v[3], out);
+        }
+
+        @Override
+        public void interpolate(double t, double[] a, double[] b, double[] out) {
+            slerp(t, a, b, out);
+        }
+
+        @Override
+        public void addSamples(float[] samples, int count) {
+            builder.addAllRotations(new FloatArrayList(samples, count));
+        }
     }
 
-    public static class ScaleBuilder extends AbstractPropertyBuilder<Vector3d> {
+    public static class ScaleBuilder extends AbstractPropertyBuilder<Vector3d> implements FloatPropertyBuilder<RigUtil.AnimationKey> {
         public ScaleBuilder(com.dynamo.rig.proto.Rig.AnimationTrack.Builder builder) {
             super(builder);
         }
@@ -505,6 +658,29 @@ public class RigUtil {
             out.interpolate(b, t);
             return out;
         }
+
+        @Override
+        public int getComponentCount() {
+            return 3;
+        }
+
+        @Override
+        public void toValue(RigUtil.AnimationKey key, double[] out) {
+            float[] v = key.value;
+            out[0] = v[0];
+            out[1] = v[1];
+            out[2] = v[2];
+        }
+
+        @Override
+        public void interpolate(double t, double[] a, double[] b, double[] out) {
+            lerp(t, a, b, out);
+        }
+
+        @Override
+        public void addSamples(float[] samples, int count) {
+            builder.addAllScale(new FloatArrayList(samples, count));
+        }
     }
 
     public static class IKMixBuilder extends AbstractIKPropertyBuilder<Float> {
@@ -768,4 +944,82 @@ public class RigUtil {
         // Create duplicate of last keyframe
         propertyBuilder.duplicateLast();
     }
+
+    /**
+     * Sample a track into a float buffer, which is added to the track builder
+     * when done. Gives the same samples as sampleTrack, but without allocating
+     * objects for every sample.
+     */
+    public static <Key extends RigUtil.AnimationKey> void sampleFloatTrack(RigUtil.AbstractAnimationTrack<Key> track, RigUtil.FloatPropertyBuilder<Key> propertyBuilder, double[] defaultValue, double startTime, double duration, double sampleRate, double spf, boolean interpolate) {
+        if (track.keys.isEmpty()) {
+            return;
+        }
+
+        // Same sampling as sampleTrack, with one extra frame for t == duration and a duplicate of the last frame
+        int components = propertyBuilder.getComponentCount();
+        int sampleCount = (int)Math.ceil(duration * sampleRate) + 1;
+        float[] samples = new float[(sampleCount + 1) * components];
+        int offset = 0;
+        double[] value = new double[components];
+        double[] keyValue = new double[components];
+        double[] nextValue = new double[components];
+        double[] endValue = new double[components];
+        double halfSample = spf / 2.0;
+        int keyIndex = 0;
+        int keyCount = track.keys.size();
+        Key key = null;
+        Key next = track.keys.get(keyIndex);
+        boolean valuesValid = false;
+        propertyBuilder.toValue(track.keys.get(keyCount-1), endValue);
+        int startI = (int)(startTime*sampleRate);
+        for (int i = startI; i < startI+sampleCount; ++i) {
+            double cursor = i * spf;
+            // Skip passed keys. Also handles corner case where the cursor is sufficiently close to the very first key frame.
+            while ((next != null && next.t <= cursor) || (key == null && Math.abs(next.t - cursor) < EPSILON)) {
+                key = next;
+                ++keyIndex;
+                if (keyIndex < keyCount) {
+                    next = track.keys.get(keyIndex);
+                } else {
+                    next = null;
+                }
+                valuesValid = false;
+            }
+            double[] sample;
+            if (key != null) {
+                if (next != null) {
+                    if (!valuesValid) {
+                        propertyBuilder.toValue(key, keyValue);
+                        propertyBuilder.toValue(next, nextValue);
+                        valuesValid = true;
+                    }
+                    if (key.stepped || !interpolate) {
+                        // Sample next instead of key if the cursor is past the key change point
+                        double keyChangePoint = next.t - halfSample;
+                        sample = cursor > keyChangePoint ? nextValue : keyValue;
+                    } else {
+                        double t = (cursor - key.t) / (next.t - key.t);
+                        if (key.curve != null && key.curve.interpolation == CurveIntepolation.BEZIER) {
+                            t = evalCurve(key.curve, t);
+                        }
+                        propertyBuilder.interpolate(t, keyValue, nextValue, value);
+                        sample = value;
+                    }
+                } else {
+                    // Last key reached, use its value for remaining samples
+                    sample = endValue;
+                }
+            } else {
+                // No valid key yet, use default value
+                sample = defaultValue;
+            }
+            for (int c = 0; c < components; ++c) {
+                samples[offset++] = (float)sample[c];
+            }
+        }
+
+        // Create duplicate of last keyframe
+        System.arraycopy(samples, offset - components, samples, offset, components);
+        propertyBuilder.addSamples(samples, samples.length);
+    }
 }
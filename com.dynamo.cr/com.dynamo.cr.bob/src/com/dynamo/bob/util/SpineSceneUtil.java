@@ -14,14 +14,15 @@ package com.dynamo.bob.util;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 
 import javax.vecmath.Point2d;
@@ -30,8 +31,12 @@ import javax.vecmath.Point3d;
 import org.apache.commons.lang3.ArrayUtils;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
-import org.codehaus.jackson.map.JsonMappingException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.ObjectCodec;
+import org.codehaus.jackson.io.NumberInput;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.util.TokenBuffer;
 
 import com.dynamo.bob.textureset.TextureSetGenerator.UVTransform;
 import com.dynamo.bob.util.RigUtil.Bone;
@@ -159,9 +164,8 @@ public class SpineSceneUtil {
     }
 
     private static void loadTransform(JsonNode node, Transform t) {
-        t.position.set(JsonUtil.get(node, "x", 0.0), JsonUtil.get(node, "y", 0.0), 0.0);
-        t.setZAngleDeg(JsonUtil.get(node, "rotation", 0.0));
-        t.scale.set(JsonUtil.get(node, "scaleX", 1.0), JsonUtil.get(node, "scaleY", 1.0), 1.0);
+        loadTransform(JsonUtil.get(node, "x", 0.0), JsonUtil.get(node, "y", 0.0), JsonUtil.get(node, "rotation", 0.0),
+                JsonUtil.get(node, "scaleX", 1.0), JsonUtil.get(node, "scaleY", 1.0), t);
     }
 
     private void loadBone(JsonNode boneNode) throws LoadException {
@@ -222,22 +226,338 @@ public class SpineSceneUtil {
         this.nameToIKs.put(ik.name, ik);
     }
 
-    private void loadRegion(JsonNode attNode, MeshAttachment mesh, Bone bone) {
+    private static void loadTransform(double x, double y, double rotation, double scaleX, double scaleY, Transform t) {
+        t.position.set(x, y, 0.0);
+        t.setZAngleDeg(rotation);
+        t.scale.set(scaleX, scaleY, 1.0);
+    }
+
+    /**
+     * Attachment fields, collected while reading since they can come in any order.
+     */
+    private static class AttachmentData {
+        String name = null;
+        String type = "region";
+        double x = 0.0;
+        double y = 0.0;
+        double rotation = 0.0;
+        double scaleX = 1.0;
+        double scaleY = 1.0;
+        double width = 0.0;
+        double height = 0.0;
+        String color = "ffffffff";
+        double[] vertices = null;
+        double[] uvs = null;
+        int[] triangles = null;
+    }
+
+    /**
+     * Skin attachment as read from the skins, mesh is null for unsupported attachment types.
+     */
+    private static class SkinAttachment {
+        BaseSlot slot;
+        String name;
+        MeshAttachment mesh;
+    }
+
+    private static class SkinData {
+        String name = "";
+        // null when the skin has no attachments node
+        List<SkinAttachment> attachments = null;
+    }
+
+    /**
+     * Fields of an animation key, collected while reading. One instance is reused for all keys.
+     */
+    private static class KeyData {
+        double time;
+        boolean hasX;
+        double x;
+        boolean hasY;
+        double y;
+        double angle;
+        boolean hasMix;
+        double mix;
+        boolean hasBendPositive;
+        boolean bendPositive;
+        String name;
+        String color;
+        boolean hasInt;
+        int intPayload;
+        boolean hasFloat;
+        double floatPayload;
+        String stringPayload;
+        AnimationCurve curve;
+        boolean stepped;
+        boolean hasCurveNumber;
+        double curveNumber;
+        boolean hasC2;
+        double c2;
+        boolean hasC3;
+        double c3;
+        boolean hasC4;
+        double c4;
+
+        void reset() {
+            time = 0.0;
+            hasX = hasY = hasMix = hasBendPositive = hasInt = hasFloat = false;
+            angle = 0.0;
+            name = color = stringPayload = null;
+            curve = null;
+            stepped = hasCurveNumber = hasC2 = hasC3 = hasC4 = false;
+        }
+
+        void applyCurve(AnimationKey key) {
+            if (curve != null) {
+                key.curve = curve;
+            } else if (hasCurveNumber) {
+                AnimationCurve curve = new AnimationCurve();
+                curve.x0 = (float)curveNumber;
+                curve.y0 = hasC2 ? (float)c2 : 0.0f;
+                curve.x1 = hasC3 ? (float)c3 : 0.0f;
+                curve.y1 = hasC4 ? (float)c4 : 1.0f;
+                key.curve = curve;
+            } else if (stepped) {
+                key.stepped = true;
+            }
+        }
+    }
+
+    private static class IKTrackRef {
+        IKAnimationTrack track;
+        String ik;
+    }
+
+    private static class EventKeyRef {
+        EventKey key;
+        String event;
+        boolean hasInt;
+        boolean hasFloat;
+        boolean hasString;
+    }
+
+    // Animations might be read before the IKs and events they refer to, these are resolved when the whole file has been read
+    private List<IKTrackRef> ikTrackRefs = new ArrayList<IKTrackRef>();
+    private List<EventKeyRef> eventKeyRefs = new ArrayList<EventKeyRef>();
+
+    private static void expect(JsonParser parser, JsonToken token, String name) throws LoadException {
+        if (parser.getCurrentToken() != token) {
+            throw new LoadException(String.format("Unexpected %s in '%s', expected %s.", parser.getCurrentToken(), name, token));
+        }
+    }
+
+    // The read functions below convert values the same way as the JsonNode as* functions
+    private static double readDouble(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+        case VALUE_NUMBER_INT:
+        case VALUE_NUMBER_FLOAT:
+            return parser.getDoubleValue();
+        case VALUE_STRING:
+            return NumberInput.parseAsDouble(parser.getText(), 0.0);
+        case VALUE_TRUE:
+            return 1.0;
+        default:
+            parser.skipChildren();
+            return 0.0;
+        }
+    }
+
+    private static int readInt(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+        case VALUE_NUMBER_INT:
+        case VALUE_NUMBER_FLOAT:
+            return parser.getIntValue();
+        case VALUE_STRING:
+            return NumberInput.parseAsInt(parser.getText(), 0);
+        case VALUE_TRUE:
+            return 1;
+        default:
+            parser.skipChildren();
+            return 0;
+        }
+    }
+
+    private static boolean readBoolean(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+        case VALUE_TRUE:
+            return true;
+        case VALUE_NUMBER_INT:
+            return parser.getIntValue() != 0;
+        case VALUE_STRING:
+            return parser.getText().trim().equals("true");
+        default:
+            parser.skipChildren();
+            return false;
+        }
+    }
+
+    // Returns null for null values and objects/arrays
+    private static String readText(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken().isScalarValue() && parser.getCurrentToken() != JsonToken.VALUE_NULL) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static double[] readDoubleArray(JsonParser parser, String name) throws IOException, LoadException {
+        expect(parser, JsonToken.START_ARRAY, name);
+        double[] values = new double[64];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = readDouble(parser);
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    private static int[] readIntArray(JsonParser parser, String name) throws IOException, LoadException {
+        expect(parser, JsonToken.START_ARRAY, name);
+        int[] values = new int[64];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = readInt(parser);
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    private static void readKey(JsonParser parser, KeyData key) throws IOException, LoadException {
+        expect(parser, JsonToken.START_OBJECT, "key");
+        key.reset();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals("time")) {
+                key.time = readDouble(parser);
+            } else if (field.equals("x")) {
+                key.hasX = true;
+                key.x = readDouble(parser);
+            } else if (field.equals("y")) {
+                key.hasY = true;
+                key.y = readDouble(parser);
+            } else if (field.equals("angle")) {
+                key.angle = readDouble(parser);
+            } else if (field.equals("mix")) {
+                key.hasMix = true;
+                key.mix = readDouble(parser);
+            } else if (field.equals("bendPositive")) {
+                key.hasBendPositive = true;
+                key.bendPositive = readBoolean(parser);
+            } else if (field.equals("name")) {
+                key.name = readText(parser);
+            } else if (field.equals("color")) {
+                key.color = readText(parser);
+            } else if (field.equals("int")) {
+                key.hasInt = true;
+                key.intPayload = readInt(parser);
+            } else if (field.equals("float")) {
+                key.hasFloat = true;
+                key.floatPayload = readDouble(parser);
+            } else if (field.equals("string")) {
+                key.stringPayload = readText(parser);
+            } else if (field.equals("curve")) {
+                key.curve = null;
+                key.hasCurveNumber = key.stepped = false;
+                JsonToken token = parser.getCurrentToken();
+                if (token == JsonToken.START_ARRAY) {
+                    float[] values = new float[4];
+                    int i = 0;
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        double value = readDouble(parser);
+                        if (i < values.length) {
+                            values[i++] = (float)value;
+                        }
+                    }
+                    AnimationCurve curve = new AnimationCurve();
+                    curve.x0 = values[0];
+                    curve.y0 = values[1];
+                    curve.x1 = values[2];
+                    curve.y1 = values[3];
+                    key.curve = curve;
+                } else if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                    key.hasCurveNumber = true;
+                    key.curveNumber = parser.getDoubleValue();
+                } else if (token == JsonToken.VALUE_STRING) {
+                    key.stepped = parser.getText().equals("stepped");
+                } else {
+                    parser.skipChildren();
+                }
+            } else if (field.equals("c2")) {
+                key.hasC2 = true;
+                key.c2 = readDouble(parser);
+            } else if (field.equals("c3")) {
+                key.hasC3 = true;
+                key.c3 = readDouble(parser);
+            } else if (field.equals("c4")) {
+                key.hasC4 = true;
+                key.c4 = readDouble(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static AttachmentData readAttachment(JsonParser parser, String attName) throws IOException, LoadException {
+        expect(parser, JsonToken.START_OBJECT, attName);
+        AttachmentData att = new AttachmentData();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals("name")) {
+                att.name = readText(parser);
+            } else if (field.equals("type")) {
+                String type = readText(parser);
+                att.type = type != null ? type : "region";
+            } else if (field.equals("x")) {
+                att.x = readDouble(parser);
+            } else if (field.equals("y")) {
+                att.y = readDouble(parser);
+            } else if (field.equals("rotation")) {
+                att.rotation = readDouble(parser);
+            } else if (field.equals("scaleX")) {
+                att.scaleX = readDouble(parser);
+            } else if (field.equals("scaleY")) {
+                att.scaleY = readDouble(parser);
+            } else if (field.equals("width")) {
+                att.width = readDouble(parser);
+            } else if (field.equals("height")) {
+                att.height = readDouble(parser);
+            } else if (field.equals("color")) {
+                String color = readText(parser);
+                att.color = color != null ? color : "ffffffff";
+            } else if (field.equals("vertices")) {
+                att.vertices = readDoubleArray(parser, "vertices");
+            } else if (field.equals("uvs")) {
+                att.uvs = readDoubleArray(parser, "uvs");
+            } else if (field.equals("triangles")) {
+                att.triangles = readIntArray(parser, "triangles");
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return att;
+    }
+
+    private void loadRegion(AttachmentData att, MeshAttachment mesh, Bone bone) {
         Transform world = new Transform(bone.worldT);
         Transform local = new Transform();
-        loadTransform(attNode, local);
+        loadTransform(att.x, att.y, att.rotation, att.scaleX, att.scaleY, local);
         world.mul(local);
         int vertexCount = 4;
         mesh.vertices = new float[vertexCount * 5];
         mesh.boneIndices = new int[vertexCount * 4];
         mesh.boneWeights = new float[vertexCount * 4];
-        double width = JsonUtil.get(attNode, "width", 0.0);
-        double height = JsonUtil.get(attNode, "height", 0.0);
+        double width = att.width;
+        double height = att.height;
         double[] boundary = new double[] {-0.5, 0.5};
         double[] uv_boundary = new double[] {0.0, 1.0};
 
-        String hex = JsonUtil.get(attNode, "color", "ffffffff");
-        JsonUtil.hexToRGBA(hex, mesh.color);
+        JsonUtil.hexToRGBA(att.color, mesh.color);
 
         int i = 0;
         for (int xi = 0; xi < 2; ++xi) {
@@ -260,19 +580,14 @@ public class SpineSceneUtil {
         };
     }
 
-    private void loadMesh(JsonNode attNode, MeshAttachment mesh, Bone bone, boolean skinned) throws LoadException {
-        String hex = JsonUtil.get(attNode, "color", "ffffffff");
-        JsonUtil.hexToRGBA(hex, mesh.color);
+    private void loadMesh(AttachmentData att, MeshAttachment mesh, Bone bone, boolean skinned) throws LoadException {
+        JsonUtil.hexToRGBA(att.color, mesh.color);
 
-        Iterator<JsonNode> vertexIt = attNode.get("vertices").getElements();
-        Iterator<JsonNode> uvIt = attNode.get("uvs").getElements();
-        int vertexCount = 0;
-        while (uvIt.hasNext()) {
-            uvIt.next();
-            uvIt.next();
-            ++vertexCount;
-        }
-        uvIt = attNode.get("uvs").getElements();
+        double[] vertices = att.vertices;
+        double[] uvs = att.uvs;
+        int vertexCount = uvs.length / 2;
+        int vertexIndex = 0;
+        int uvIndex = 0;
         mesh.vertices = new float[vertexCount * 5];
         mesh.boneIndices = new int[vertexCount * 4];
         mesh.boneWeights = new float[vertexCount * 4];
@@ -282,13 +597,13 @@ public class SpineSceneUtil {
             int boneOffset = i*4;
             weights.setSize(0);
             if (skinned) {
-                int boneCount = vertexIt.next().asInt();
+                int boneCount = (int)vertices[vertexIndex++];
                 p.set(0.0, 0.0, 0.0);
                 for (int bi = 0; bi < boneCount; ++bi) {
-                    int boneIndex = vertexIt.next().asInt();
-                    double x = vertexIt.next().asDouble();
-                    double y = vertexIt.next().asDouble();
-                    double weight = vertexIt.next().asDouble();
+                    int boneIndex = (int)vertices[vertexIndex++];
+                    double x = vertices[vertexIndex++];
+                    double y = vertices[vertexIndex++];
+                    double weight = vertices[vertexIndex++];
                     if (weight > 0.0) {
                         weights.add(new Weight(new Point3d(x, y, 0.0), boneIndex, (float)weight));
                     }
@@ -318,8 +633,8 @@ public class SpineSceneUtil {
                     mesh.boneWeights[boneOffset+bi] = w.weight / totalWeight;
                 }
             } else {
-                double x = vertexIt.next().asDouble();
-                double y = vertexIt.next().asDouble();
+                double x = vertices[vertexIndex++];
+                double y = vertices[vertexIndex++];
                 p.set(x, y, 0.0);
                 bone.worldT.apply(p);
                 mesh.boneIndices[boneOffset] = bone.index;
@@ -329,118 +644,254 @@ public class SpineSceneUtil {
             mesh.vertices[vi++] = (float)p.x;
             mesh.vertices[vi++] = (float)p.y;
             mesh.vertices[vi++] = (float)p.z;
-            mesh.vertices[vi++] = (float)uvIt.next().asDouble();
-            mesh.vertices[vi++] = (float)uvIt.next().asDouble();
-        }
-        Iterator<JsonNode> triangleIt = attNode.get("triangles").getElements();
-        List<Integer> triangles = new ArrayList<Integer>(vertexCount);
-        while (triangleIt.hasNext()) {
-            for (int i = 0; i < 3; ++i) {
-                triangles.add(triangleIt.next().asInt());
+            mesh.vertices[vi++] = (float)uvs[uvIndex++];
+            mesh.vertices[vi++] = (float)uvs[uvIndex++];
+        }
+        mesh.triangles = att.triangles;
+    }
+
+    private MeshAttachment loadAttachment(JsonParser parser, String attName, Bone bone) throws IOException, LoadException {
+        AttachmentData att = readAttachment(parser, attName);
+
+        String path = att.name != null ? att.name : attName;
+
+        if (bone == null) {
+            throw new LoadException(String.format("No bone mapped to attachment '%s'.", attName));
+        }
+
+        MeshAttachment mesh = new MeshAttachment();
+        mesh.path = path;
+
+        if (att.type.equals("region")) {
+            loadRegion(att, mesh, bone);
+        } else if (att.type.equals("mesh")) {
+            // For each vertex either an x,y pair or, for a weighted mesh, first
+            // the number of bones which influence the vertex, then for that
+            // many bones: bone index, bind position X, bind position Y, weight.
+            // A mesh is weighted if the number of vertices > number of UVs.
+            // http://esotericsoftware.com/spine-json-format
+            if (att.vertices.length > att.uvs.length) {
+                loadMesh(att, mesh, bone, true);
+            } else {
+                loadMesh(att, mesh, bone, false);
+            }
+        } else if (att.type.equals("skinnedmesh") || att.type.equals("weightedmesh")) {
+            loadMesh(att, mesh, bone, true);
+        } else {
+            // Silently ignore unsupported types
+            mesh = null;
+        }
+        return mesh;
+    }
+
+    private void loadSkinAttachments(JsonParser parser, SkinData skin) throws IOException, LoadException {
+        expect(parser, JsonToken.START_OBJECT, "skins");
+        skin.attachments = new ArrayList<SkinAttachment>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String slotName = parser.getCurrentName();
+            parser.nextToken();
+            expect(parser, JsonToken.START_OBJECT, slotName);
+            BaseSlot slot = getBaseSlot(slotName);
+            if (slot == null) {
+                throw new LoadException(String.format("The slot '%s' of a skin does not exist.", slotName));
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                SkinAttachment att = new SkinAttachment();
+                att.slot = slot;
+                att.name = parser.getCurrentName();
+                parser.nextToken();
+                att.mesh = loadAttachment(parser, att.name, slot.bone);
+                skin.attachments.add(att);
+            }
+        }
+    }
+
+    private List<SkinData> readSkins(JsonParser parser) throws IOException, LoadException {
+        List<SkinData> skins = new ArrayList<SkinData>();
+        if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+            // Since Spine 3.8 the skins node will be an array of dict, instead of
+            // a dict with skin name as a key, and skin content as value.
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                expect(parser, JsonToken.START_OBJECT, "skins");
+                SkinData skin = new SkinData();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if (field.equals("name")) {
+                        String name = readText(parser);
+                        skin.name = name != null ? name : "";
+                    } else if (field.equals("attachments")) {
+                        loadSkinAttachments(parser, skin);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                skins.add(skin);
+            }
+        } else {
+            // Spine version below 3.8
+            expect(parser, JsonToken.START_OBJECT, "skins");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                SkinData skin = new SkinData();
+                skin.name = parser.getCurrentName();
+                parser.nextToken();
+                loadSkinAttachments(parser, skin);
+                skins.add(skin);
             }
         }
-        mesh.triangles = ArrayUtils.toPrimitive(triangles.toArray(new Integer[triangles.size()]));
+        return skins;
     }
 
-    private void loadTrack(JsonNode propNode, AnimationTrack track) {
+    private List<SkinSlot> createSkin(SkinData skin, UVTransformProvider uvTransformProvider) throws LoadException {
+        Map<String, SkinSlot> skinSlotsLut = new HashMap<String, SkinSlot>();
+        List<SkinSlot> skinSlots = new ArrayList<SkinSlot>();
+
+        if (this.defaultSkin == null) {
+            // This is the default skin, create list of SkinSlots from BaseSlotss
+            for (BaseSlot baseSlot : this.baseSlots) {
+                SkinSlot skinSlot = new SkinSlot(baseSlot);
+                skinSlotsLut.put(baseSlot.name, skinSlot);
+                skinSlots.add(skinSlot);
+            }
+        } else {
+            // Copy default skin
+            for (SkinSlot defaultSlot : this.defaultSkin) {
+                SkinSlot skinSlot = new SkinSlot(defaultSlot);
+                skinSlotsLut.put(defaultSlot.baseSlot.name, skinSlot);
+                skinSlots.add(skinSlot);
+            }
+        }
+
+        if (skin.attachments == null) {
+            return skinSlots;
+        }
+        for (SkinAttachment att : skin.attachments) {
+            MeshAttachment mesh = att.mesh;
+            if (mesh != null) {
+                SkinSlot slot = skinSlotsLut.get(att.slot.name);
+                transformUvs(mesh, uvTransformProvider);
+
+                int attachmentMeshIndex = this.attachments.size();
+                mesh.index = attachmentMeshIndex;
+                this.attachments.add(mesh);
+
+                // Figure out to what attachment point this mesh is attached
+                int attachmentPointIndex = slot.baseSlot.attachmentsLut.get(att.name);
+                slot.meshAttachments.set(attachmentPointIndex, attachmentMeshIndex);
+            }
+        }
+        return skinSlots;
+    }
+
+    private void loadSkins(JsonParser parser, UVTransformProvider uvTransformProvider) throws IOException, LoadException {
+        List<SkinData> skins = readSkins(parser);
+
+        // Gather all available attachment points in all slots.
+        // We do this by looping over all the different skins and their slots.
+        for (SkinData skin : skins) {
+            if (skin.attachments == null) {
+                continue;
+            }
+            for (SkinAttachment att : skin.attachments) {
+                BaseSlot slot = att.slot;
+                if (!slot.attachmentsLut.containsKey(att.name)) {
+                    slot.attachmentsLut.put(att.name, slot.attachments.size());
+                    slot.attachments.add(att.name);
+                }
+            }
+        }
+
+        // Apply default attachments based on original slot JSON list
+        for (int i = 0; i < this.baseSlots.size(); i++) {
+            BaseSlot baseSlot = this.baseSlots.get(i);
+            if (baseSlot.defaultAttachmentString != null && !baseSlot.defaultAttachmentString.isEmpty()) {
+                Integer attachmentIndex = baseSlot.attachmentsLut.get(baseSlot.defaultAttachmentString);
+                if (attachmentIndex == null) {
+                    throw new LoadException(String.format("The attachment '%s' of slot '%s' does not exist.", baseSlot.defaultAttachmentString, baseSlot.name));
+                }
+                baseSlot.activeAttachment = attachmentIndex;
+            }
+        }
+
+        // Load default skin first since other skins will be based on this.
+        SkinData defaultSkinData = null;
+        for (SkinData skin : skins) {
+            if (skin.name.equals("default")) {
+                defaultSkinData = skin;
+                break;
+            }
+        }
+        if (defaultSkinData == null || defaultSkinData.attachments == null) {
+            throw new LoadException("No default skin found!");
+        }
+        this.defaultSkin = createSkin(defaultSkinData, uvTransformProvider);
+
+        for (SkinData skin : skins) {
+            if (!skin.name.equals("default")) {
+                this.skins.put(skin.name, createSkin(skin, uvTransformProvider));
+            }
+        }
+    }
+
+    private void loadTrack(JsonParser parser, AnimationTrack track, KeyData keyData) throws IOException, LoadException {
+        expect(parser, JsonToken.START_ARRAY, "bones");
         // This value is used to counter how the key values for rotations are interpreted in spine:
         // * All values are modulated into the interval 0 <= x < 360
         // * If keys k0 and k1 have a difference > 180, the second key is adjusted with +/- 360 to lessen the difference to < 180
         // ** E.g. k0 = 0, k1 = 270 are interpolated as k0 = 0, k1 = -90
         Float prevAngles = null;
-        Iterator<JsonNode> keyIt = propNode.getElements();
-        while (keyIt.hasNext()) {
-            JsonNode keyNode =  keyIt.next();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            readKey(parser, keyData);
             AnimationKey key = new AnimationKey();
-            key.t = JsonUtil.get(keyNode, "time", (Double)0.0);
+            key.t = keyData.time;
             switch (track.property) {
             case POSITION:
-                key.value = new float[] {JsonUtil.get(keyNode, "x", 0.0f), JsonUtil.get(keyNode, "y", 0.0f), 0.0f};
+                key.value = new float[] {keyData.hasX ? (float)keyData.x : 0.0f, keyData.hasY ? (float)keyData.y : 0.0f, 0.0f};
                 break;
             case ROTATION:
                 // See the comment above why this is done for rotations
-                float angles = JsonUtil.get(keyNode, "angle", 0.0f);
+                float angles = (float)keyData.angle;
                 angles = angles % 360.0f;
                 prevAngles = angles;
                 key.value = new float[] {angles};
                 break;
             case SCALE:
-                key.value = new float[] {JsonUtil.get(keyNode, "x", 1.0f), JsonUtil.get(keyNode, "y", 1.0f), 1.0f};
+                key.value = new float[] {keyData.hasX ? (float)keyData.x : 1.0f, keyData.hasY ? (float)keyData.y : 1.0f, 1.0f};
                 break;
             }
-            if (keyNode.has("curve")) {
-                JsonNode curveNode = keyNode.get("curve");
-                if (curveNode.isArray()) {
-                    AnimationCurve curve = new AnimationCurve();
-                    Iterator<JsonNode> curveIt = curveNode.getElements();
-                    curve.x0 = (float)curveIt.next().asDouble();
-                    curve.y0 = (float)curveIt.next().asDouble();
-                    curve.x1 = (float)curveIt.next().asDouble();
-                    curve.y1 = (float)curveIt.next().asDouble();
-                    key.curve = curve;
-                } else if (curveNode.isNumber()) {
-                    AnimationCurve curve = new AnimationCurve();
-                    curve.x0 = JsonUtil.get(keyNode, "curve", 0.0f);
-                    curve.y0 = JsonUtil.get(keyNode, "c2", 0.0f);
-                    curve.x1 = JsonUtil.get(keyNode, "c3", 0.0f);
-                    curve.y1 = JsonUtil.get(keyNode, "c4", 1.0f);
-                    key.curve = curve;
-                } else if (curveNode.isTextual() && curveNode.asText().equals("stepped")) {
-                    key.stepped = true;
-                }
-            }
+            keyData.applyCurve(key);
             track.keys.add(key);
         }
     }
 
-    private void loadIKTrack(JsonNode propNode, IKAnimationTrack track) {
-        Iterator<JsonNode> keyIt = propNode.getElements();
-        while (keyIt.hasNext()) {
-            JsonNode keyNode =  keyIt.next();
+    private void loadIKTrack(JsonParser parser, IKAnimationTrack track, KeyData keyData) throws IOException, LoadException {
+        expect(parser, JsonToken.START_ARRAY, "ik");
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            readKey(parser, keyData);
             IKAnimationKey key = new IKAnimationKey();
-            key.t = JsonUtil.get(keyNode, "time", (Double)0.0);
-            key.mix = (float)JsonUtil.get(keyNode, "mix", 1.0f);
-            key.positive = JsonUtil.get(keyNode, "bendPositive", true);
-            if (keyNode.has("curve")) {
-                JsonNode curveNode = keyNode.get("curve");
-                if (curveNode.isArray()) {
-                    AnimationCurve curve = new AnimationCurve();
-                    Iterator<JsonNode> curveIt = curveNode.getElements();
-                    curve.x0 = (float)curveIt.next().asDouble();
-                    curve.y0 = (float)curveIt.next().asDouble();
-                    curve.x1 = (float)curveIt.next().asDouble();
-                    curve.y1 = (float)curveIt.next().asDouble();
-                    key.curve = curve;
-                } else if (curveNode.isNumber()) {
-                    AnimationCurve curve = new AnimationCurve();
-                    curve.x0 = JsonUtil.get(keyNode, "curve", 0.0f);
-                    curve.y0 = JsonUtil.get(keyNode, "c2", 0.0f);
-                    curve.x1 = JsonUtil.get(keyNode, "c3", 0.0f);
-                    curve.y1 = JsonUtil.get(keyNode, "c4", 1.0f);
-                    key.curve = curve;
-                } else if (curveNode.isTextual() && curveNode.asText().equals("stepped")) {
-                    key.stepped = true;
-                }
-            }
+            key.t = keyData.time;
+            key.mix = keyData.hasMix ? (float)keyData.mix : 1.0f;
+            key.positive = keyData.hasBendPositive ? keyData.bendPositive : true;
+            keyData.applyCurve(key);
             track.keys.add(key);
         }
     }
 
-    private void loadSlotTrack(JsonNode propNode, SlotAnimationTrack track) {
-        Iterator<JsonNode> keyIt = propNode.getElements();
-        while (keyIt.hasNext()) {
-            JsonNode keyNode =  keyIt.next();
+    private void loadSlotTrack(JsonParser parser, SlotAnimationTrack track, KeyData keyData) throws IOException, LoadException {
+        expect(parser, JsonToken.START_ARRAY, "slots");
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            readKey(parser, keyData);
             SlotAnimationKey key = new SlotAnimationKey();
-            key.t = JsonUtil.get(keyNode, "time", (Double)0.0);
+            key.t = keyData.time;
             switch (track.property) {
             case COLOR:
                 // Hex to RGBA
-                String hex = JsonUtil.get(keyNode, "color", "ffffffff");
+                String hex = keyData.color != null ? keyData.color : "ffffffff";
                 JsonUtil.hexToRGBA(hex, key.value);
                 break;
             case ATTACHMENT:
                 BaseSlot baseSlot = baseSlots.get(track.slot);
-                String attachmentPointName = JsonUtil.get(keyNode, "name", null);
+                String attachmentPointName = keyData.name;
                 if (attachmentPointName != null) {
                     Integer attachmentPointIndex = baseSlot.attachmentsLut.get(attachmentPointName);
                     if (attachmentPointIndex == null) {
@@ -458,167 +909,213 @@ public class SpineSceneUtil {
                 // Handled separately, stored in separate JSON node
                 break;
             }
-            if (keyNode.has("curve")) {
-                JsonNode curveNode = keyNode.get("curve");
-                if (curveNode.isArray()) {
-                    AnimationCurve curve = new AnimationCurve();
-                    Iterator<JsonNode> curveIt = curveNode.getElements();
-                    curve.x0 = (float)curveIt.next().asDouble();
-                    curve.y0 = (float)curveIt.next().asDouble();
-                    curve.x1 = (float)curveIt.next().asDouble();
-                    curve.y1 = (float)curveIt.next().asDouble();
-                    key.curve = curve;
-                } else if (curveNode.isNumber()) {
-                    AnimationCurve curve = new AnimationCurve();
-                    curve.x0 = JsonUtil.get(keyNode, "curve", 0.0f);
-                    curve.y0 = JsonUtil.get(keyNode, "c2", 0.0f);
-                    curve.x1 = JsonUtil.get(keyNode, "c3", 0.0f);
-                    curve.y1 = JsonUtil.get(keyNode, "c4", 1.0f);
-                    key.curve = curve;
-                } else if (curveNode.isTextual() && curveNode.asText().equals("stepped")) {
-                    key.stepped = true;
+            keyData.applyCurve(key);
+            track.keys.add(key);
+        }
+    }
+
+    private void loadBoneTracks(JsonParser parser, Animation animation, KeyData keyData) throws IOException, LoadException {
+        expect(parser, JsonToken.START_OBJECT, "bones");
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String boneName = parser.getCurrentName();
+            parser.nextToken();
+            expect(parser, JsonToken.START_OBJECT, boneName);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String propName = parser.getCurrentName();
+                parser.nextToken();
+                Property prop = spineToProperty(propName);
+                if (prop == null) {
+                    parser.skipChildren();
+                    continue;
                 }
+                AnimationTrack track = new AnimationTrack();
+                track.bone = getBone(boneName);
+                track.property = prop;
+                loadTrack(parser, track, keyData);
+                animation.tracks.add(track);
             }
-            track.keys.add(key);
         }
     }
 
-    private void loadAnimation(JsonNode animNode, Animation animation) {
-        JsonNode bonesNode = animNode.get("bones");
-        if (bonesNode != null) {
-            Iterator<Map.Entry<String, JsonNode>> animBoneIt = bonesNode.getFields();
-            while (animBoneIt.hasNext()) {
-                Map.Entry<String, JsonNode> boneEntry = animBoneIt.next();
-                String boneName = boneEntry.getKey();
-                JsonNode boneNode = boneEntry.getValue();
-                Iterator<Map.Entry<String, JsonNode>> propIt = boneNode.getFields();
-                while (propIt.hasNext()) {
-                    Map.Entry<String, JsonNode> propEntry = propIt.next();
-                    String propName = propEntry.getKey();
-                    Property prop = spineToProperty(propName);
-                    if (prop == null) {
-                        continue;
-                    }
-                    JsonNode propNode = propEntry.getValue();
-                    AnimationTrack track = new AnimationTrack();
-                    track.bone = getBone(boneName);
-                    track.property = prop;
-                    loadTrack(propNode, track);
-                    animation.tracks.add(track);
+    private void loadIKTracks(JsonParser parser, Animation animation, KeyData keyData) throws IOException, LoadException {
+        expect(parser, JsonToken.START_OBJECT, "ik");
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            IKTrackRef ref = new IKTrackRef();
+            ref.ik = parser.getCurrentName();
+            ref.track = new IKAnimationTrack();
+            parser.nextToken();
+            loadIKTrack(parser, ref.track, keyData);
+            animation.iKTracks.add(ref.track);
+            ikTrackRefs.add(ref);
+        }
+    }
+
+    private void loadSlotTracks(JsonParser parser, Animation animation, KeyData keyData) throws IOException, LoadException {
+        expect(parser, JsonToken.START_OBJECT, "slots");
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String slotName = parser.getCurrentName();
+            parser.nextToken();
+            expect(parser, JsonToken.START_OBJECT, slotName);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String propName = parser.getCurrentName();
+                parser.nextToken();
+                SlotAnimationTrack.Property prop = spineToSlotProperty(propName);
+                if (prop == null) {
+                    parser.skipChildren();
+                    continue;
                 }
+                BaseSlot slot = getBaseSlot(slotName);
+                if (slot == null) {
+                    throw new LoadException(String.format("The slot '%s' of animation '%s' does not exist.", slotName, animation.name));
+                }
+                SlotAnimationTrack track = new SlotAnimationTrack();
+                track.slot = slot.index;
+                track.property = prop;
+                loadSlotTrack(parser, track, keyData);
+                animation.slotTracks.add(track);
             }
         }
+    }
 
-        JsonNode iKsNode = animNode.get("ik");
-        if (iKsNode != null) {
-            Iterator<Map.Entry<String, JsonNode>> animIkIt = iKsNode.getFields();
-            while (animIkIt.hasNext()) {
-                Map.Entry<String, JsonNode> iKEntry = animIkIt.next();
-                String iKName = iKEntry.getKey();
-                JsonNode iKNode = iKEntry.getValue();
-                IKAnimationTrack track = new IKAnimationTrack();
-                track.ik = getIK(iKName);
-                loadIKTrack(iKNode, track);
-                animation.iKTracks.add(track);
+    private Map<String, List<EventKey>> loadEventKeys(JsonParser parser, KeyData keyData) throws IOException, LoadException {
+        expect(parser, JsonToken.START_ARRAY, "events");
+        Map<String, List<EventKey>> tracks = new HashMap<String, List<EventKey>>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            readKey(parser, keyData);
+            String eventId = keyData.name;
+            List<EventKey> keys = tracks.get(eventId);
+            if (keys == null) {
+                keys = new ArrayList<EventKey>();
+                tracks.put(eventId, keys);
             }
+            // Payloads not set by the key are taken from the event when it's resolved
+            EventKeyRef ref = new EventKeyRef();
+            ref.key = new EventKey();
+            ref.event = eventId;
+            ref.key.t = keyData.time;
+            ref.hasInt = keyData.hasInt;
+            ref.key.intPayload = keyData.intPayload;
+            ref.hasFloat = keyData.hasFloat;
+            ref.key.floatPayload = (float)keyData.floatPayload;
+            ref.hasString = keyData.stringPayload != null;
+            ref.key.stringPayload = keyData.stringPayload;
+            keys.add(ref.key);
+            eventKeyRefs.add(ref);
         }
+        return tracks;
+    }
 
-        JsonNode slotsNode = animNode.get("slots");
-        if (slotsNode != null) {
-            Iterator<Map.Entry<String, JsonNode>> animSlotIt = slotsNode.getFields();
-            while (animSlotIt.hasNext()) {
-                Map.Entry<String, JsonNode> slotEntry = animSlotIt.next();
-                String slotName = slotEntry.getKey();
-                JsonNode slotNode = slotEntry.getValue();
-                Iterator<Map.Entry<String, JsonNode>> propIt = slotNode.getFields();
-                while (propIt.hasNext()) {
-                    Map.Entry<String, JsonNode> propEntry = propIt.next();
-                    String propName = propEntry.getKey();
-                    SlotAnimationTrack.Property prop = spineToSlotProperty(propName);
-                    if (prop == null) {
-                        continue;
+    private double loadDrawOrderTracks(JsonParser parser, List<SlotAnimationTrack> drawOrderTracks) throws IOException, LoadException {
+        expect(parser, JsonToken.START_ARRAY, "drawOrder");
+        double duration = 0.0f;
+        Map<String, SlotAnimationTrack> slotTracks = new HashMap<String, SlotAnimationTrack>();
+        // The offsets of an entry are collected first, since they might come before its time
+        List<String> offsetSlots = new ArrayList<String>();
+        List<Integer> offsets = new ArrayList<Integer>();
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            expect(parser, JsonToken.START_OBJECT, "drawOrder");
+            double t = 0.0f;
+            offsetSlots.clear();
+            offsets.clear();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals("time")) {
+                    t = (float)readDouble(parser);
+                } else if (field.equals("offsets")) {
+                    expect(parser, JsonToken.START_ARRAY, "offsets");
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        expect(parser, JsonToken.START_OBJECT, "offsets");
+                        String slotName = null;
+                        int offset = 0;
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String offsetField = parser.getCurrentName();
+                            parser.nextToken();
+                            if (offsetField.equals("slot")) {
+                                slotName = readText(parser);
+                            } else if (offsetField.equals("offset")) {
+                                offset = readInt(parser);
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                        offsetSlots.add(slotName);
+                        offsets.add(offset);
                     }
-                    JsonNode propNode = propEntry.getValue();
-                    SlotAnimationTrack track = new SlotAnimationTrack();
-                    BaseSlot slot = getBaseSlot(slotName);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            duration = Math.max(duration, t);
+            for (int i = 0; i < offsetSlots.size(); ++i) {
+                String slotName = offsetSlots.get(i);
+                SlotAnimationTrack track = slotTracks.get(slotName);
+                if (track == null) {
+                    BaseSlot slot = baseSlotsLut.get(slotName);
+                    if (slot == null) {
+                        throw new LoadException(String.format("The slot '%s' of a draw order key does not exist.", slotName));
+                    }
+                    track = new SlotAnimationTrack();
+                    track.property = SlotAnimationTrack.Property.DRAW_ORDER;
                     track.slot = slot.index;
-                    track.property = prop;
-                    loadSlotTrack(propNode, track);
-                    animation.slotTracks.add(track);
+                    slotTracks.put(slotName, track);
+                    drawOrderTracks.add(track);
                 }
+                SlotAnimationKey key = new SlotAnimationKey();
+                key.orderOffset = offsets.get(i);
+                key.t = t;
+                track.keys.add(key);
             }
-        }
-        JsonNode eventsNode = animNode.get("events");
-        if (eventsNode != null) {
-            Iterator<JsonNode> keyIt = eventsNode.getElements();
-            Map<String, List<EventKey>> tracks = new HashMap<String, List<EventKey>>();
-            while (keyIt.hasNext()) {
-                JsonNode keyNode = keyIt.next();
-                String eventId = keyNode.get("name").asText();
-                List<EventKey> keys = tracks.get(eventId);
-                if (keys == null) {
-                    keys = new ArrayList<EventKey>();
-                    tracks.put(eventId, keys);
+            // Add default keys for all slots who were previously offset:ed but not explicitly changed in offset this key
+            for (Map.Entry<String, SlotAnimationTrack> entry : slotTracks.entrySet()) {
+                SlotAnimationTrack track = entry.getValue();
+                SlotAnimationKey key = track.keys.get(track.keys.size() - 1);
+                if (key.t != t) {
+                    key = new SlotAnimationKey();
+                    key.orderOffset = slotSignalUnchanged;
+                    key.t = t;
+                    track.keys.add(key);
                 }
-                Event event = getEvent(eventId);
-                EventKey key = new EventKey();
-                key.t = JsonUtil.get(keyNode, "time", (Double)0.0);
-                key.intPayload = JsonUtil.get(keyNode, "int", event.intPayload);
-                key.floatPayload = JsonUtil.get(keyNode, "float", event.floatPayload);
-                key.stringPayload = JsonUtil.get(keyNode, "string", event.stringPayload);
-                keys.add(key);
             }
-            for (Map.Entry<String, List<EventKey>> entry : tracks.entrySet()) {
+        }
+        return duration;
+    }
+
+    private void loadAnimation(JsonParser parser, Animation animation) throws IOException, LoadException {
+        expect(parser, JsonToken.START_OBJECT, animation.name);
+        KeyData keyData = new KeyData();
+        // The tracks are added in the same order regardless of the order of the nodes
+        List<SlotAnimationTrack> drawOrderTracks = new ArrayList<SlotAnimationTrack>();
+        Map<String, List<EventKey>> eventKeys = null;
+        double duration = 0.0f;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals("bones")) {
+                loadBoneTracks(parser, animation, keyData);
+            } else if (field.equals("ik")) {
+                loadIKTracks(parser, animation, keyData);
+            } else if (field.equals("slots")) {
+                loadSlotTracks(parser, animation, keyData);
+            } else if (field.equals("events")) {
+                eventKeys = loadEventKeys(parser, keyData);
+            } else if (field.equals("drawOrder")) {
+                duration = loadDrawOrderTracks(parser, drawOrderTracks);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (eventKeys != null) {
+            for (Map.Entry<String, List<EventKey>> entry : eventKeys.entrySet()) {
                 EventTrack track = new EventTrack();
                 track.name = entry.getKey();
                 track.keys = entry.getValue();
                 animation.eventTracks.add(track);
             }
         }
-        double duration = 0.0f;
-        JsonNode drawOrderNode = animNode.get("drawOrder");
-        if (drawOrderNode != null) {
-            Iterator<JsonNode> animDrawOrderIt = drawOrderNode.getElements();
-            Map<String, SlotAnimationTrack> slotTracks = new HashMap<String, SlotAnimationTrack>();
-
-            while (animDrawOrderIt.hasNext()) {
-                JsonNode drawOrderEntry = animDrawOrderIt.next();
-                double t = JsonUtil.get(drawOrderEntry, "time", 0.0f);
-                duration = Math.max(duration, t);
-                JsonNode offsetsNode = drawOrderEntry.get("offsets");
-                if (offsetsNode != null) {
-                    Iterator<JsonNode> offsetIt = offsetsNode.getElements();
-                    while (offsetIt.hasNext()) {
-                        JsonNode offsetNode = offsetIt.next();
-                        String slotName = JsonUtil.get(offsetNode, "slot", (String)null);
-                        SlotAnimationTrack track = slotTracks.get(slotName);
-                        if (track == null) {
-                            track = new SlotAnimationTrack();
-                            track.property = SlotAnimationTrack.Property.DRAW_ORDER;
-                            BaseSlot slot = baseSlotsLut.get(slotName);
-                            track.slot = slot.index;
-                            slotTracks.put(slotName, track);
-                            animation.slotTracks.add(track);
-                        }
-                        SlotAnimationKey key = new SlotAnimationKey();
-                        key.orderOffset = JsonUtil.get(offsetNode, "offset", 0);
-                        key.t = t;
-                        track.keys.add(key);
-                    }
-                }
-                // Add default keys for all slots who were previously offset:ed but not explicitly changed in offset this key
-                for (Map.Entry<String, SlotAnimationTrack> entry : slotTracks.entrySet()) {
-                    SlotAnimationTrack track = entry.getValue();
-                    SlotAnimationKey key = track.keys.get(track.keys.size() - 1);
-                    if (key.t != t) {
-                        key = new SlotAnimationKey();
-                        key.orderOffset = slotSignalUnchanged;
-                        key.t = t;
-                        track.keys.add(key);
-                    }
-                }
-            }
-        }
+        animation.slotTracks.addAll(drawOrderTracks);
+
         for (AnimationTrack track : animation.tracks) {
             for (AnimationKey key : track.keys) {
                 duration = Math.max(duration, key.t);
@@ -642,313 +1139,187 @@ public class SpineSceneUtil {
         animation.duration = duration;
     }
 
-    private void loadAnimations(JsonNode animationsNode) {
-        Iterator<Map.Entry<String, JsonNode>> animationIt = animationsNode.getFields();
-        while (animationIt.hasNext()) {
-            Map.Entry<String, JsonNode> entry = animationIt.next();
-            String animName = entry.getKey();
-            JsonNode animNode = entry.getValue();
+    private void loadAnimations(JsonParser parser) throws IOException, LoadException {
+        expect(parser, JsonToken.START_OBJECT, "animations");
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
             Animation animation = new Animation();
-            animation.name = animName;
-            loadAnimation(animNode, animation);
-            this.animations.put(animName, animation);
+            animation.name = parser.getCurrentName();
+            parser.nextToken();
+            loadAnimation(parser, animation);
+            this.animations.put(animation.name, animation);
         }
     }
 
-    private static long getIteratorSize(Iterator<?> iterator) {
-        long size = 0;
-        while (iterator.hasNext()) {
-            size += 1;
-            iterator.next();
+    private void resolveReferences() throws LoadException {
+        for (IKTrackRef ref : ikTrackRefs) {
+            ref.track.ik = getIK(ref.ik);
         }
-
-        return size;
-    }
-
-    private static List<SkinSlot> loadSkin(SpineSceneUtil scene, String skinName, JsonNode skinNode, UVTransformProvider uvTransformProvider) throws LoadException {
-        Iterator<Map.Entry<String, JsonNode>> skinSlotIt = skinNode.getFields();
-
-        Map<String, SkinSlot> skinSlotsLut = new HashMap<String, SkinSlot>();
-        List<SkinSlot> skinSlots = new ArrayList<SkinSlot>();
-
-        List<SkinSlot> defaultSkin = scene.getDefaultSkin();
-        if (defaultSkin == null) {
-            // This is the default skin, create list of SkinSlots from BaseSlotss
-            for (BaseSlot baseSlot : scene.baseSlots) {
-                SkinSlot skinSlot = new SkinSlot(baseSlot);
-                skinSlotsLut.put(baseSlot.name, skinSlot);
-                skinSlots.add(skinSlot);
+        for (EventKeyRef ref : eventKeyRefs) {
+            Event event = getEvent(ref.event);
+            if (event == null) {
+                throw new LoadException(String.format("The event '%s' does not exist.", ref.event));
             }
-        } else {
-            // Copy default skin
-            for (SkinSlot defaultSlot : defaultSkin) {
-                SkinSlot skinSlot = new SkinSlot(defaultSlot);
-                skinSlotsLut.put(defaultSlot.baseSlot.name, skinSlot);
-                skinSlots.add(skinSlot);
+            if (!ref.hasInt) {
+                ref.key.intPayload = event.intPayload;
             }
-        }
-
-        while (skinSlotIt.hasNext()) {
-            Map.Entry<String, JsonNode> slotEntry = skinSlotIt.next();
-            String slotName = slotEntry.getKey();
-            SkinSlot slot = skinSlotsLut.get(slotName);
-            JsonNode slotNode = slotEntry.getValue();
-
-            Iterator<Map.Entry<String, JsonNode>> attIt = slotNode.getFields();
-            while (attIt.hasNext()) {
-                Map.Entry<String, JsonNode> attEntry = attIt.next();
-                String attName = attEntry.getKey();
-                JsonNode attNode = attEntry.getValue();
-
-                String path = attName;
-                if (attNode.has("name")) {
-                    path = attNode.get("name").asText();
-                }
-
-                Bone bone = slot.baseSlot.bone;
-                if (bone == null) {
-                    throw new LoadException(String.format("No bone mapped to attachment '%s'.", attName));
-                }
-
-                String type = JsonUtil.get(attNode, "type", "region");
-                MeshAttachment mesh = new MeshAttachment();
-                mesh.path = path;
-
-                if (type.equals("region")) {
-                    scene.loadRegion(attNode, mesh, bone);
-                } else if (type.equals("mesh")) {
-                    // For each vertex either an x,y pair or, for a weighted mesh, first
-                    // the number of bones which influence the vertex, then for that
-                    // many bones: bone index, bind position X, bind position Y, weight.
-                    // A mesh is weighted if the number of vertices > number of UVs.
-                    // http://esotericsoftware.com/spine-json-format
-                    long verticesSize = getIteratorSize(attNode.get("vertices").getElements());
-                    long uvSize = getIteratorSize(attNode.get("uvs").getElements());
-                    if (verticesSize > uvSize) {
-                        scene.loadMesh(attNode, mesh, bone, true);
-                    } else {
-                        scene.loadMesh(attNode, mesh, bone, false);
-                    }
-                } else if (type.equals("skinnedmesh") || type.equals("weightedmesh")) {
-                    scene.loadMesh(attNode, mesh, bone, true);
-                } else {
-                    mesh = null;
-                }
-
-                // Silently ignore unsupported types
-                if (mesh != null) {
-                    transformUvs(mesh, uvTransformProvider);
-
-                    // Check if mesh already has been found
-                    int attachmentMeshIndex = scene.attachments.size();
-                    mesh.index = attachmentMeshIndex;
-                    scene.attachments.add(mesh);
-
-                    // Figure out to what attachment point this mesh is attached
-                    int attachmentPointIndex = slot.baseSlot.attachmentsLut.get(attName);
-                    slot.meshAttachments.set(attachmentPointIndex, attachmentMeshIndex);
-                }
+            if (!ref.hasFloat) {
+                ref.key.floatPayload = event.floatPayload;
+            }
+            if (!ref.hasString) {
+                ref.key.stringPayload = event.stringPayload;
             }
         }
-
-        return skinSlots;
+        ikTrackRefs.clear();
+        eventKeyRefs.clear();
     }
 
-    private static void getAllAttachments(JsonNode skinJsonNode, SpineSceneUtil scene) throws LoadException {
-
-        Iterator<Map.Entry<String, JsonNode>> skinIt = skinJsonNode.getFields();
-
-        // Loop over all skin entries from JSON
-        while (skinIt.hasNext()) {
-            Map.Entry<String, JsonNode> entry = skinIt.next();
-            JsonNode skinNode = entry.getValue();
-
-            // Loop over all slots in the skin
-            Iterator<Map.Entry<String, JsonNode>> skinSlotIt = skinNode.getFields();
-            while (skinSlotIt.hasNext()) {
-                Map.Entry<String, JsonNode> slotEntry = skinSlotIt.next();
-                String slotName = slotEntry.getKey();
-                JsonNode slotNode = slotEntry.getValue();
-
-                // Get corresponding BaseSlot
-                BaseSlot slot = scene.getBaseSlot(slotName);
+    private void loadSlots(JsonParser parser) throws IOException, LoadException {
+        expect(parser, JsonToken.START_ARRAY, "slots");
+        int slotIndex = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            JsonNode slotNode = parser.readValueAsTree();
+            String attachment = JsonUtil.get(slotNode, "attachment", (String)null);
+            String boneName = slotNode.get("bone").asText();
+            String slotName = JsonUtil.get(slotNode, "name", (String)null);
+            Bone bone = getBone(boneName);
+            if (bone == null) {
+                throw new LoadException(String.format("The bone '%s' of attachment '%s' does not exist.", boneName, attachment));
+            }
 
-                // Collect all attachments this skin can attach to this slot
-                Iterator<Map.Entry<String, JsonNode>> attIt = slotNode.getFields();
-                while (attIt.hasNext()) {
-                    Map.Entry<String, JsonNode> attEntry = attIt.next();
-                    String attName = attEntry.getKey();
+            BaseSlot slot = new BaseSlot(slotName, slotIndex, bone, attachment);
+            JsonUtil.hexToRGBA(JsonUtil.get(slotNode,  "color",  "ffffffff"), slot.color);
+            this.baseSlots.add(slot);
+            this.baseSlotsLut.put(slotName, slot);
 
-                    if (!slot.attachmentsLut.containsKey(attName)) {
-                        slot.attachmentsLut.put(attName, slot.attachments.size());
-                        slot.attachments.add(attName);
-                    }
-                }
-            }
+            ++slotIndex;
         }
+        this.slotCount = slotIndex;
+    }
 
-        // Apply default attachments based on original slot JSON list
-        for (int i = 0; i < scene.baseSlots.size(); i++) {
-            BaseSlot baseSlot = scene.baseSlots.get(i);
-            if (baseSlot.defaultAttachmentString != null && !baseSlot.defaultAttachmentString.isEmpty()) {
-                baseSlot.activeAttachment = baseSlot.attachmentsLut.get(baseSlot.defaultAttachmentString);
-            }
+    private void loadEvents(JsonParser parser) throws IOException, LoadException {
+        expect(parser, JsonToken.START_OBJECT, "events");
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            Event event = new Event();
+            event.name = parser.getCurrentName();
+            parser.nextToken();
+            JsonNode eventNode = parser.readValueAsTree();
+            event.stringPayload = JsonUtil.get(eventNode, "string", "");
+            event.intPayload = JsonUtil.get(eventNode, "int", 0);
+            event.floatPayload = JsonUtil.get(eventNode, "float", 0.0f);
+            this.events.put(event.name, event);
         }
     }
 
-    private static JsonNode findDefaultSkin(String[] spineVersionParts, JsonNode skinsNode) {
-        // Since Spine 3.8 the skins node will be an array of dict, instead of
-        // a dict with skin name as a key, and skin content as value.
-
-        JsonNode defaultNode = null;
-        if (spineVersionParts != null &&
-            Integer.parseInt(spineVersionParts[0]) >= 3 &&
-            Integer.parseInt(spineVersionParts[1]) >= 8) {
-            // Spine version 3.8 and above
-            Iterator<JsonNode> skinIt = skinsNode.getElements();
-            while (skinIt.hasNext()) {
-                JsonNode skinNode = skinIt.next();
-                String skinName = JsonUtil.get(skinNode, "name", "");
-                if (skinName.equals("default")) {
-                    defaultNode = skinNode.get("attachments");
-                    break;
-                }
-            }
-        } else {
-            // Spine version below 3.8
-            defaultNode = JsonUtil.get(skinsNode, "default");
+    // Sections that refer to other sections, which need to be loaded first
+    private static boolean canLoadSection(String name, Set<String> loaded) {
+        if (name.equals("ik") || name.equals("slots")) {
+            return loaded.contains("bones");
+        } else if (name.equals("skins")) {
+            return loaded.contains("bones") && loaded.contains("slots");
+        } else if (name.equals("animations")) {
+            return loaded.contains("bones") && loaded.contains("slots") && loaded.contains("skins");
         }
-
-        return defaultNode;
+        return true;
     }
 
-    public static SpineSceneUtil loadJson(InputStream is, UVTransformProvider uvTransformProvider) throws LoadException {
-        SpineSceneUtil scene = new SpineSceneUtil();
-        ObjectMapper m = new ObjectMapper();
-        try {
-            JsonNode node = m.readValue(new InputStreamReader(is, "UTF-8"), JsonNode.class);
-            Iterator<JsonNode> boneIt = node.get("bones").getElements();
-            while (boneIt.hasNext()) {
-                JsonNode boneNode = boneIt.next();
-                scene.loadBone(boneNode);
-            }
-            JsonNode ikNode = node.get("ik");
-            if (ikNode != null) {
-                Iterator<JsonNode> ikIt = ikNode.getElements();
-                while (ikIt.hasNext()) {
-                    scene.loadIK(ikIt.next());
-                }
+    private void loadSection(String name, JsonParser parser, UVTransformProvider uvTransformProvider) throws IOException, LoadException {
+        if (name.equals("bones")) {
+            expect(parser, JsonToken.START_ARRAY, "bones");
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                loadBone(parser.readValueAsTree());
             }
-            if (!node.has("slots")) {
-                return scene;
+        } else if (name.equals("ik")) {
+            expect(parser, JsonToken.START_ARRAY, "ik");
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                loadIK(parser.readValueAsTree());
             }
-            Iterator<JsonNode> slotIt = node.get("slots").getElements();
-            int slotIndex = 0;
-            int slotCount = 0;
-            while (slotIt.hasNext()) {
-                JsonNode slotNode = slotIt.next();
-                String attachment = JsonUtil.get(slotNode, "attachment", (String)null);
-                String boneName = slotNode.get("bone").asText();
-                String slotName = JsonUtil.get(slotNode, "name", (String)null);
-                Bone bone = scene.getBone(boneName);
-                if (bone == null) {
-                    throw new LoadException(String.format("The bone '%s' of attachment '%s' does not exist.", boneName, attachment));
-                }
+        } else if (name.equals("slots")) {
+            loadSlots(parser);
+        } else if (name.equals("events")) {
+            loadEvents(parser);
+        } else if (name.equals("skins")) {
+            loadSkins(parser, uvTransformProvider);
+        } else if (name.equals("animations")) {
+            loadAnimations(parser);
+        }
+    }
 
-                BaseSlot slot = new BaseSlot(slotName, slotIndex, bone, attachment);
-                JsonUtil.hexToRGBA(JsonUtil.get(slotNode,  "color",  "ffffffff"), slot.color);
-                scene.baseSlots.add(slot);
-                scene.baseSlotsLut.put(slotName, slot);
+    private static final String[] SECTIONS = new String[] {"bones", "ik", "slots", "events", "skins", "animations"};
 
-                ++slotIndex;
-                ++slotCount;
-            }
-            scene.slotCount = slotCount;
-
-            // Gather all available attachment points in all slots.
-            // We do this by looping over all the different skins and their slots.
-            getAllAttachments(node.get("skins"), scene);
-
-            if (node.has("events")) {
-                Iterator<Map.Entry<String, JsonNode>> eventIt = node.get("events").getFields();
-                while (eventIt.hasNext()) {
-                    Map.Entry<String, JsonNode> eventEntry = eventIt.next();
-                    Event event = new Event();
-                    event.name = eventEntry.getKey();
-                    JsonNode eventNode = eventEntry.getValue();
-                    event.stringPayload = JsonUtil.get(eventNode, "string", "");
-                    event.intPayload = JsonUtil.get(eventNode, "int", 0);
-                    event.floatPayload = JsonUtil.get(eventNode, "float", 0.0f);
-                    scene.events.put(event.name, event);
-                }
+    /**
+     * Loads the scene while reading the json tokens, without building a tree of the whole file.
+     * Sections are loaded in the order of the file, except when they come before a section they refer to,
+     * e.g. animations before skins. Such sections are buffered and loaded when the whole file has been read.
+     */
+    private void load(JsonParser parser, ObjectCodec codec, UVTransformProvider uvTransformProvider) throws IOException, LoadException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new LoadException("The spine scene is not a json object.");
+        }
+        String spineVersion = null;
+        Set<String> loaded = new HashSet<String>();
+        Map<String, TokenBuffer> deferred = new HashMap<String, TokenBuffer>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if (name.equals("skeleton")) {
+                JsonNode skeleton = parser.readValueAsTree();
+                spineVersion = JsonUtil.get(skeleton, "spine", (String) null);
+            } else if (!ArrayUtils.contains(SECTIONS, name)) {
+                parser.skipChildren();
+            } else if (canLoadSection(name, loaded)) {
+                loadSection(name, parser, uvTransformProvider);
+                loaded.add(name);
+            } else {
+                TokenBuffer buffer = new TokenBuffer(codec);
+                buffer.copyCurrentStructure(parser);
+                deferred.put(name, buffer);
             }
-            if (!node.has("skins")) {
-                return scene;
+        }
+        for (String name : SECTIONS) {
+            TokenBuffer buffer = deferred.get(name);
+            if (buffer != null && canLoadSection(name, loaded)) {
+                JsonParser bufferParser = buffer.asParser(codec);
+                bufferParser.nextToken();
+                loadSection(name, bufferParser, uvTransformProvider);
+                loaded.add(name);
             }
+        }
 
-            JsonNode skeleton = node.get("skeleton");
-            scene.spineVersion = (skeleton != null) ? JsonUtil.get(skeleton, "spine", (String) null) : null;
+        // Without slots, only bones and IKs are loaded
+        if (!loaded.contains("slots")) {
+            this.events.clear();
+            return;
+        }
+        if (!loaded.contains("skins")) {
+            return;
+        }
 
-            // If Spine version is 3 and above it uses a different scaling model than 2.x.
-            if (scene.spineVersion != null) {
-                scene.spineVersionParts = scene.spineVersion.split("\\.");
-                if (scene.spineVersionParts != null && Integer.parseInt(scene.spineVersionParts[0]) >= 3) {
-                    scene.localBoneScaling = false;
-                }
-            }
+        this.spineVersion = spineVersion;
 
-            // Load default skin first since other skins will be based on this.
-            JsonNode defaultSkinNode = findDefaultSkin(scene.spineVersionParts, node.get("skins"));
-            if (defaultSkinNode == null) {
-                throw new LoadException("No default skin found!");
+        // If Spine version is 3 and above it uses a different scaling model than 2.x.
+        if (this.spineVersion != null) {
+            this.spineVersionParts = this.spineVersion.split("\\.");
+            if (this.spineVersionParts != null && Integer.parseInt(this.spineVersionParts[0]) >= 3) {
+                this.localBoneScaling = false;
             }
-            scene.defaultSkin = loadSkin(scene, "default", defaultSkinNode, uvTransformProvider);
+        }
 
-            // Since Spine 3.8 the skins node will be an array of dict, instead of
-            // a dict with skin name as a key, and skin content as value.
-            if (scene.spineVersionParts != null &&
-                Integer.parseInt(scene.spineVersionParts[0]) >= 3 &&
-                Integer.parseInt(scene.spineVersionParts[1]) >= 8) {
-
-                Iterator<JsonNode> skinIt = node.get("skins").getElements();
-                while (skinIt.hasNext()) {
-                    JsonNode skinNode = skinIt.next();
-                    String skinName = JsonUtil.get(skinNode, "name", "");
-                    JsonNode attachments = skinNode.get("attachments");
-
-                    if (!skinName.equals("default"))
-                    {
-                        List<SkinSlot> skin = loadSkin(scene, skinName, attachments, uvTransformProvider);
-                        scene.skins.put(skinName, skin);
-                    }
-                }
-            } else {
-                // Spine version below 3.8
-                Iterator<Map.Entry<String, JsonNode>> skinIt = node.get("skins").getFields();
-                while (skinIt.hasNext()) {
-                    Map.Entry<String, JsonNode> entry = skinIt.next();
-                    String skinName = entry.getKey();
-                    JsonNode skinNode = entry.getValue();
-                    if (!skinName.equals("default"))
-                    {
-                        List<SkinSlot> skin = loadSkin(scene, skinName, skinNode, uvTransformProvider);
-                        scene.skins.put(skinName, skin);
-                    }
-                }
-            }
+        resolveReferences();
+    }
 
-            if (!node.has("animations")) {
-                return scene;
+    public static SpineSceneUtil loadJson(InputStream is, UVTransformProvider uvTransformProvider) throws LoadException {
+        SpineSceneUtil scene = new SpineSceneUtil();
+        ObjectMapper m = new ObjectMapper();
+        try {
+            JsonParser parser = m.getJsonFactory().createJsonParser(is);
+            try {
+                scene.load(parser, m, uvTransformProvider);
+            } finally {
+                parser.close();
             }
-            scene.loadAnimations(node.get("animations"));
-
             return scene;
         } catch (JsonParseException e) {
             throw new LoadException(e.getMessage());
-        } catch (JsonMappingException e) {
-            throw new LoadException(e.getMessage());
-        } catch (UnsupportedEncodingException e) {
-            throw new LoadException(e.getMessage());
         } catch (IOException e) {
             throw new LoadException(e.getMessage());
         }
@@ -1,10 +1,10 @@
 // Copyright 2020 The Defold Foundation
 // Licensed under the Defold License version 1.0 (the "License"); you may not use
 // this file except in compliance with the License.
-// 
+//
 // You may obtain a copy of the License, together with FAQs at
 // https://www.defold.com/license
-// 
+//
 // Unless required by applicable law or agreed to in writing, software distributed
 // under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
 // CONDITIONS OF ANY KIND, either express or implied. See the License for the
@@ -12,9 +12,28 @@
 
 package com.dynamo.crypt;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * XTEA in CTR mode, compatible with dmCrypt::Encrypt/Decrypt. The 64 bit block
+ * counter starts at zero and the key stream is the encrypted counter in big
+ * endian byte order. Encryption and decryption are the same operation.
+ */
 public class Crypt {
 
     private final static int NUM_ROUNDS = 32;
+    private final static int DELTA = 0x9e3779b9;
+    private final static int BLOCK_SIZE = 8;
+
+    // Smallest range of bytes processed by a single fork join task
+    private final static int PARALLEL_THRESHOLD = 256 * 1024;
+    private final static int STREAM_BUFFER_SIZE = 64 * 1024;
 
     private static int[] toIntArray(byte[] data, int n) {
         int[] result = new int[n >> 2];
@@ -24,48 +43,175 @@ public class Crypt {
         return result;
     }
 
-    private static byte[] toByteArray(int[] data) {
-        int n = data.length << 2;
-        byte[] result = new byte[n];
+    // The (sum + key word) terms only depend on the key, so they are computed once
+    private static int[] toRoundKeys(byte[] key) {
+        int[] intKey = toIntArray(key, 16);
+        int[] roundKeys = new int[NUM_ROUNDS * 2];
+        int sum = 0;
+        for (int i = 0; i < NUM_ROUNDS; i++) {
+            roundKeys[i * 2] = sum + intKey[sum & 3];
+            sum += DELTA;
+            roundKeys[i * 2 + 1] = sum + intKey[(sum >>> 11) & 3];
+        }
+        return roundKeys;
+    }
 
-        for (int i = 0; i < n; ++i) {
-            result[i] = (byte) (data[i >>> 2] >>> ((3 - (i & 3)) << 3));
+    private static long encrypt(long v, int[] roundKeys) {
+        int v0 = (int) (v >>> 32);
+        int v1 = (int) v;
+        for (int i = 0; i < NUM_ROUNDS * 2; i += 2) {
+            v0 += (((v1 << 4) ^ (v1 >>> 5)) + v1) ^ roundKeys[i];
+            v1 += (((v0 << 4) ^ (v0 >>> 5)) + v0) ^ roundKeys[i + 1];
         }
-        return result;
+        return ((long) v0 << 32) | (v1 & 0xffffffffL);
     }
 
-    private static int[] encrypt(int[] v, int[] key) {
-        int sum = 0;
-        int delta = 0x9e3779b9;
-        int v0 = v[0];
-        int v1 = v[1];
-        for (int i = 0; i < NUM_ROUNDS; i++) {
-            v0 += (((v1 << 4) ^ (v1 >>> 5)) + v1) ^ (sum + key[sum & 3]);
-            sum += delta;
-            v1 += (((v0 << 4) ^ (v0 >>> 5)) + v0) ^ (sum + key[(sum >>> 11) & 3]);
+    // XOR the key stream into the bytes [start, end) of the buffer, where start is at
+    // byte offset 'offset' of the stream. Uses absolute access only, so disjoint ranges
+    // of the same buffer can be processed concurrently.
+    private static void xorKeyStream(ByteBuffer data, int start, int end, int[] roundKeys, long offset) {
+        ByteBuffer buffer = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        buffer.clear();
+        long counter = offset >>> 3;
+        int i = start;
+
+        int skip = (int) (offset & (BLOCK_SIZE - 1));
+        if (skip != 0) {
+            long encCounter = encrypt(counter++, roundKeys);
+            for (int j = skip; j < BLOCK_SIZE && i < end; ++j, ++i) {
+                buffer.put(i, (byte) (buffer.get(i) ^ (encCounter >>> ((7 - j) << 3))));
+            }
+        }
+
+        int blockEnd = i + ((end - i) & ~(BLOCK_SIZE - 1));
+        for (; i < blockEnd; i += BLOCK_SIZE) {
+            buffer.putLong(i, buffer.getLong(i) ^ encrypt(counter++, roundKeys));
+        }
+
+        if (i < end) {
+            long encCounter = encrypt(counter, roundKeys);
+            for (int j = 0; i < end; ++j, ++i) {
+                buffer.put(i, (byte) (buffer.get(i) ^ (encCounter >>> ((7 - j) << 3))));
+            }
         }
-        return new int[] { v0, v1 };
     }
 
-    public static byte[] encryptCTR(byte[] data, byte[] key) {
-        byte[] result = new byte[data.length];
-        int[] counter = new int[2];
-        byte[] enc_counter = new byte[8];
-        int[] int_key = toIntArray(key, 16);
-
-        for (int i = 0; i < data.length; i++) {
-            if (i % 8 == 0) {
-                enc_counter = toByteArray(encrypt(counter, int_key));
-                // TODO: Include overflow for supporting more than 2^31 bytes of data.
-                //       i.e. handling incrementing counter[0] as well.
-                counter[1]++;
+    @SuppressWarnings("serial")
+    private static class CTRTask extends RecursiveAction {
+        private final ByteBuffer data;
+        private final int start;
+        private final int end;
+        private final int[] roundKeys;
+        private final long offset;
+
+        CTRTask(ByteBuffer data, int start, int end, int[] roundKeys, long offset) {
+            this.data = data;
+            this.start = start;
+            this.end = end;
+            this.roundKeys = roundKeys;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                xorKeyStream(data, start, end, roundKeys, offset);
+                return;
             }
-            result[i] = (byte) ((data[i] ^ enc_counter[i % 8]) & 0xff);
+            // Split on a counter boundary so that no block is encrypted twice
+            int mid = start + (end - start) / 2;
+            mid -= (int) ((offset + mid - start) & (BLOCK_SIZE - 1));
+            invokeAll(new CTRTask(data, start, mid, roundKeys, offset),
+                      new CTRTask(data, mid, end, roundKeys, offset + (mid - start)));
         }
+    }
+
+    /**
+     * Encrypt data into a new array
+     * @param data data to encrypt
+     * @param key key, at most 16 bytes
+     * @return encrypted data
+     */
+    public static byte[] encryptCTR(byte[] data, byte[] key) {
+        byte[] result = data.clone();
+        encryptCTRInPlace(result, key);
         return result;
     }
 
     public static byte[] decryptCTR(byte[] data, byte[] key) {
         return encryptCTR(data, key);
     }
+
+    /**
+     * Encrypt data in place
+     * @param data data to encrypt
+     * @param key key, at most 16 bytes
+     */
+    public static void encryptCTRInPlace(byte[] data, byte[] key) {
+        encryptCTR(ByteBuffer.wrap(data), key, 0);
+    }
+
+    /**
+     * Encrypt the remaining bytes of a buffer in place. The position and limit of
+     * the buffer are left unchanged.
+     * @param data data to encrypt
+     * @param key key, at most 16 bytes
+     * @param offset offset of the buffer position in the encrypted stream, used to
+     * encrypt a stream in chunks
+     */
+    public static void encryptCTR(ByteBuffer data, byte[] key, long offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative stream offset: " + offset);
+        }
+        xorKeyStream(data, data.position(), data.limit(), toRoundKeys(key), offset);
+    }
+
+    /**
+     * Encrypt the remaining bytes of a buffer in place, split across the tasks of a
+     * fork join pool. The position and limit of the buffer are left unchanged.
+     * @param data data to encrypt
+     * @param key key, at most 16 bytes
+     * @param offset offset of the buffer position in the encrypted stream
+     * @param pool pool to run on
+     */
+    public static void encryptCTRParallel(ByteBuffer data, byte[] key, long offset, ForkJoinPool pool) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative stream offset: " + offset);
+        }
+        pool.invoke(new CTRTask(data, data.position(), data.limit(), toRoundKeys(key), offset));
+    }
+
+    public static void encryptCTRParallel(byte[] data, byte[] key, ForkJoinPool pool) {
+        encryptCTRParallel(ByteBuffer.wrap(data), key, 0, pool);
+    }
+
+    /**
+     * Encrypt a stream
+     * @param input stream to read plain data from
+     * @param output channel to write encrypted data to
+     * @param key key, at most 16 bytes
+     * @return number of bytes written
+     * @throws IOException
+     */
+    public static long encryptCTR(InputStream input, WritableByteChannel output, byte[] key) throws IOException {
+        int[] roundKeys = toRoundKeys(key);
+        byte[] chunk = new byte[STREAM_BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        long offset = 0;
+        int n;
+        while ((n = input.read(chunk)) != -1) {
+            xorKeyStream(buffer, 0, n, roundKeys, offset);
+            buffer.limit(n);
+            buffer.position(0);
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+            offset += n;
+        }
+        return offset;
+    }
+
+    public static long decryptCTR(InputStream input, WritableByteChannel output, byte[] key) throws IOException {
+        return encryptCTR(input, output, key);
+    }
 }
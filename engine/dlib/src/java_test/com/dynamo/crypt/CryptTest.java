@@ -0,0 +1,107 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+//
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+//
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.crypt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class CryptTest {
+
+    private static final byte[] KEY = "12345678abcdefgh".getBytes();
+
+    private static byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    // Same as the dmCrypt.SameAsLibMCrypt test in test_crypt.cpp
+    @Test
+    public void testSameAsEngine() throws Exception {
+        byte[] expected = new byte[] { (byte) 0x81, (byte) 0xb4, (byte) 0xa1, (byte) 0x04, (byte) 0x2d, (byte) 0xac, (byte) 0xe5, (byte) 0xcb, (byte) 0x77,
+                                       (byte) 0x89, (byte) 0xec, (byte) 0x11, (byte) 0x61, (byte) 0xc3, (byte) 0xdc, (byte) 0xfa, (byte) 0xb9, (byte) 0xa3, (byte) 0x25 };
+        byte[] data = "ABCDEFGH12345678XYZ".getBytes();
+        assertArrayEquals(expected, Crypt.encryptCTR(data, KEY));
+        assertArrayEquals(data, Crypt.decryptCTR(expected, KEY));
+    }
+
+    @Test
+    public void testInPlaceAndChunks() throws Exception {
+        for (int size = 0; size < 1025; size += 17) {
+            byte[] data = randomData(size);
+            byte[] expected = Crypt.encryptCTR(data, KEY);
+
+            byte[] inPlace = data.clone();
+            Crypt.encryptCTRInPlace(inPlace, KEY);
+            assertArrayEquals(expected, inPlace);
+
+            // Chunks that do not start on a block boundary
+            ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+            buffer.put(data);
+            for (int offset = 0; offset < size; offset += 13) {
+                buffer.limit(Math.min(size, offset + 13));
+                buffer.position(offset);
+                Crypt.encryptCTR(buffer, KEY, offset);
+            }
+            buffer.clear();
+            byte[] chunked = new byte[size];
+            buffer.get(chunked);
+            assertArrayEquals(expected, chunked);
+        }
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        byte[] data = randomData(200 * 1024 + 3);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long size = Crypt.encryptCTR(new ByteArrayInputStream(data), Channels.newChannel(output), KEY);
+        assertEquals(data.length, size);
+        assertArrayEquals(Crypt.encryptCTR(data, KEY), output.toByteArray());
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            byte[] data = randomData(3 * 1024 * 1024 + 5);
+            byte[] parallel = data.clone();
+            Crypt.encryptCTRParallel(parallel, KEY, pool);
+            assertArrayEquals(Crypt.encryptCTR(data, KEY), parallel);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // The block counter is 64 bits wide, the block after 2^32 - 1 carries into the high word.
+    // Expected values are from the engine implementation.
+    @Test
+    public void testCounterOverflow() throws Exception {
+        byte[] block = new byte[] { (byte) 0x07, (byte) 0x26, (byte) 0x45, (byte) 0x64, (byte) 0x83, (byte) 0xa2, (byte) 0xc1, (byte) 0xe0 };
+        byte[] expected = new byte[] { (byte) 0x96, (byte) 0x94, (byte) 0x2d, (byte) 0x9a, (byte) 0x33, (byte) 0xeb, (byte) 0xab, (byte) 0x12,
+                                       (byte) 0xd0, (byte) 0xaa, (byte) 0x3d, (byte) 0x63, (byte) 0x3d, (byte) 0xfe, (byte) 0x8e, (byte) 0x37 };
+        byte[] data = new byte[16];
+        System.arraycopy(block, 0, data, 0, 8);
+        System.arraycopy(block, 0, data, 8, 8);
+        Crypt.encryptCTR(ByteBuffer.wrap(data), KEY, ((1L << 32) - 1) * 8);
+        assertArrayEquals(expected, data);
+    }
+}
@@ -435,6 +435,15 @@ namespace dmRig
         return slerp(frac, Quat(data[i+0], data[i+1], data[i+2], data[i+3]), Quat(data[i+0+4], data[i+1+4], data[i+2+4], data[i+3+4]));
     }
 
+    // Stored sample and fraction of a track channel, where only every stride:th sample is stored
+    static inline uint32_t StrideSample(float sample_time, uint32_t stride, float* frac)
+    {
+        float f = stride > 1 ? sample_time / stride : sample_time;
+        uint32_t sample = (uint32_t)f;
+        *frac = f - sample;
+        return sample;
+    }
+
     static float CursorToTime(float cursor, float duration, bool backwards, bool once_pingpong)
     {
         float t = cursor;
@@ -519,7 +528,8 @@ namespace dmRig
         float duration = GetCursorDuration(player, animation);
         float t = CursorToTime(player->m_Cursor, duration, player->m_Backwards, player->m_Playback == dmRig::PLAYBACK_ONCE_PINGPONG);
 
-        float fraction = t * animation->m_SampleRate;
+        float sample_time = t * animation->m_SampleRate;
+        float fraction = sample_time;
         uint32_t sample = (uint32_t)fraction;
         uint32_t rounded_sample = (uint32_t)(fraction + 0.5f);
         fraction -= sample;
@@ -534,17 +544,21 @@ namespace dmRig
             }
             uint32_t pose_index = track_idx_to_pose[bone_index];
             dmTransform::Transform& transform = pose[pose_index];
+            float frac;
             if (track->m_Positions.m_Count > 0)
             {
-                transform.SetTranslation(lerp(blend_weight, transform.GetTranslation(), SampleVec3(sample, fraction, track->m_Positions.m_Data)));
+                uint32_t s = StrideSample(sample_time, track->m_PositionStride, &frac);
+                transform.SetTranslation(lerp(blend_weight, transform.GetTranslation(), SampleVec3(s, frac, track->m_Positions.m_Data)));
             }
             if (track->m_Rotations.m_Count > 0)
             {
-                transform.SetRotation(slerp(blend_weight, transform.GetRotation(), SampleQuat(sample, fraction, track->m_Rotations.m_Data)));
+                uint32_t s = StrideSample(sample_time, track->m_RotationStride, &frac);
+                transform.SetRotation(slerp(blend_weight, transform.GetRotation(), SampleQuat(s, frac, track->m_Rotations.m_Data)));
             }
             if (track->m_Scale.m_Count > 0)
             {
-                transform.SetScale(lerp(blend_weight, transform.GetScale(), SampleVec3(sample, fraction, track->m_Scale.m_Data)));
+                uint32_t s = StrideSample(sample_time, track->m_ScaleStride, &frac);
+                transform.SetScale(lerp(blend_weight, transform.GetScale(), SampleVec3(s, frac, track->m_Scale.m_Data)));
             }
         }
 
@@ -469,6 +469,13 @@ void SetUpSimpleRig(dmArray<dmRig::RigBone>& bind_pose, dmRigDDF::Skeleton* skel
             Animation 10 (id: "slot_attachments")
 
                 Animate the slot attachment for slot 0, to attachment 1.
+
+        ------------------------------------
+
+            Animation 11 (id: "strided")
+
+                Translation and scale on bone 0, where only every 2:nd position
+                sample and every 4:th scale sample is stored.
         */
 
         uint32_t bone_count = 6;
@@ -553,7 +560,7 @@ void SetUpSimpleRig(dmArray<dmRig::RigBone>& bind_pose, dmRigDDF::Skeleton* skel
         dmRig::CreateBindPose(*skeleton, bind_pose);
 
         // Bone animations
-        uint32_t animation_count = 11;
+        uint32_t animation_count = 12;
         animation_set->m_Animations.m_Data = new dmRigDDF::RigAnimation[animation_count];
         animation_set->m_Animations.m_Count = animation_count;
         dmRigDDF::RigAnimation& anim0 = animation_set->m_Animations.m_Data[0];
@@ -567,6 +574,7 @@ void SetUpSimpleRig(dmArray<dmRig::RigBone>& bind_pose, dmRigDDF::Skeleton* skel
         dmRigDDF::RigAnimation& anim8 = animation_set->m_Animations.m_Data[8];
         dmRigDDF::RigAnimation& anim9 = animation_set->m_Animations.m_Data[9];
         dmRigDDF::RigAnimation& anim10 = animation_set->m_Animations.m_Data[10];
+        dmRigDDF::RigAnimation& anim11 = animation_set->m_Animations.m_Data[11];
         anim0.m_Id = dmHashString64("valid");
         anim0.m_Duration            = 3.0f;
         anim0.m_SampleRate          = 1.0f;
@@ -633,11 +641,17 @@ void SetUpSimpleRig(dmArray<dmRig::RigBone>& bind_pose, dmRigDDF::Skeleton* skel
         anim10.m_EventTracks.m_Count = 0;
         anim10.m_Tracks.m_Count      = 0;
         anim10.m_IkTracks.m_Count    = 0;
+        anim11.m_Id = dmHashString64("strided");
+        anim11.m_Duration            = 4.0f;
+        anim11.m_SampleRate          = 1.0f;
+        anim11.m_EventTracks.m_Count = 0;
+        anim11.m_MeshTracks.m_Count  = 0;
+        anim11.m_IkTracks.m_Count    = 0;
 
         // Animation 0: "valid"
         {
             uint32_t track_count = 2;
-            anim0.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count];
+            anim0.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count]();
             anim0.m_Tracks.m_Count = track_count;
             dmRigDDF::AnimationTrack& anim_track0 = anim0.m_Tracks.m_Data[0];
             dmRigDDF::AnimationTrack& anim_track1 = anim0.m_Tracks.m_Data[1];
@@ -692,7 +706,7 @@ void SetUpSimpleRig(dmArray<dmRig::RigBone>& bind_pose, dmRigDDF::Skeleton* skel
         // Animation 2: "scaling"
         {
             uint32_t track_count = 3; // 2x rotation, 1x scale
-            anim2.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count];
+            anim2.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count]();
             anim2.m_Tracks.m_Count = track_count;
             dmRigDDF::AnimationTrack& anim_track_b0_rot   = anim2.m_Tracks.m_Data[0];
             dmRigDDF::AnimationTrack& anim_track_b0_scale = anim2.m_Tracks.m_Data[1];
@@ -739,7 +753,7 @@ void SetUpSimpleRig(dmArray<dmRig::RigBone>& bind_pose, dmRigDDF::Skeleton* skel
         // Animation 3: "invalid_bones"
         {
             uint32_t track_count = 1;
-            anim3.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count];
+            anim3.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count]();
             anim3.m_Tracks.m_Count = track_count;
             dmRigDDF::AnimationTrack& anim_track0 = anim3.m_Tracks.m_Data[0];
 
@@ -759,7 +773,7 @@ void SetUpSimpleRig(dmArray<dmRig::RigBone>& bind_pose, dmRigDDF::Skeleton* skel
         // Animation 4: "rot_blend1"
         {
             uint32_t track_count = 1;
-            anim4.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count];
+            anim4.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count]();
             anim4.m_Tracks.m_Count = track_count;
             dmRigDDF::AnimationTrack& anim_track0 = anim4.m_Tracks.m_Data[0];
 
@@ -778,7 +792,7 @@ void SetUpSimpleRig(dmArray<dmRig::RigBone>& bind_pose, dmRigDDF::Skeleton* skel
         // Animation 5: "rot_blend2"
         {
             uint32_t track_count = 1;
-            anim5.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count];
+            anim5.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count]();
             anim5.m_Tracks.m_Count = track_count;
             dmRigDDF::AnimationTrack& anim_track0 = anim5.m_Tracks.m_Data[0];
 
@@ -799,7 +813,7 @@ void SetUpSimpleRig(dmArray<dmRig::RigBone>& bind_pose, dmRigDDF::Skeleton* skel
             uint32_t track_count = 2;
             uint32_t samples = 2;
 
-            anim6.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count];
+            anim6.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count]();
             anim6.m_Tracks.m_Count = track_count;
             dmRigDDF::AnimationTrack& anim_track0 = anim6.m_Tracks.m_Data[0];
             dmRigDDF::AnimationTrack& anim_track1 = anim6.m_Tracks.m_Data[1];
@@ -949,6 +963,45 @@ void SetUpSimpleRig(dmArray<dmRig::RigBone>& bind_pose, dmRigDDF::Skeleton* skel
             anim_track.m_MeshAttachment.m_Data[1] = 1;
         }
 
+        // Animation 11: "strided"
+        {
+            uint32_t track_count = 1;
+            anim11.m_Tracks.m_Data = new dmRigDDF::AnimationTrack[track_count]();
+            anim11.m_Tracks.m_Count = track_count;
+            dmRigDDF::AnimationTrack& anim_track0 = anim11.m_Tracks.m_Data[0];
+
+            anim_track0.m_BoneIndex         = 5;
+            anim_track0.m_Rotations.m_Count = 0;
+            anim_track0.m_PositionStride    = 2;
+            anim_track0.m_RotationStride    = 1;
+            anim_track0.m_ScaleStride       = 4;
+
+            // Samples 0, 2 and 4
+            uint32_t position_samples = 3;
+            anim_track0.m_Positions.m_Data = new float[position_samples*3];
+            anim_track0.m_Positions.m_Count = position_samples*3;
+            anim_track0.m_Positions.m_Data[0] = 0.0f;
+            anim_track0.m_Positions.m_Data[1] = 0.0f;
+            anim_track0.m_Positions.m_Data[2] = 0.0f;
+            anim_track0.m_Positions.m_Data[3] = 10.0f;
+            anim_track0.m_Positions.m_Data[4] = 0.0f;
+            anim_track0.m_Positions.m_Data[5] = 0.0f;
+            anim_track0.m_Positions.m_Data[6] = 10.0f;
+            anim_track0.m_Positions.m_Data[7] = 20.0f;
+            anim_track0.m_Positions.m_Data[8] = 0.0f;
+
+            // Samples 0 and 4
+            uint32_t scale_samples = 2;
+            anim_track0.m_Scale.m_Data = new float[scale_samples*3];
+            anim_track0.m_Scale.m_Count = scale_samples*3;
+            anim_track0.m_Scale.m_Data[0] = 1.0f;
+            anim_track0.m_Scale.m_Data[1] = 1.0f;
+            anim_track0.m_Scale.m_Data[2] = 1.0f;
+            anim_track0.m_Scale.m_Data[3] = 3.0f;
+            anim_track0.m_Scale.m_Data[4] = 3.0f;
+            anim_track0.m_Scale.m_Data[5] = 3.0f;
+        }
+
         // Meshes / skins
         mesh_set->m_SlotCount = 3;
         mesh_set->m_MeshEntries.m_Data = new dmRigDDF::MeshEntry[4];
@@ -2380,6 +2433,28 @@ TEST_F(RigInstanceTest, BoneTranslationRotation)
     ASSERT_VEC4(Quat::rotationZ((float)M_PI / 2.0f), pose[0].GetRotation());
 }
 
+TEST_F(RigInstanceTest, StridedSamples)
+{
+    ASSERT_EQ(dmRig::RESULT_OK, dmRig::Update(m_Context, 1.0f));
+    ASSERT_EQ(dmRig::RESULT_OK, dmRig::PlayAnimation(m_Instance, dmHashString64("strided"), dmRig::PLAYBACK_LOOP_FORWARD, 0.0f, 0.0f, 1.0f));
+    dmArray<dmTransform::Transform>& pose = *dmRig::GetPose(m_Instance);
+
+    // Between the stored samples 0 and 2 for position, and 0 and 4 for scale
+    ASSERT_EQ(dmRig::RESULT_OK, dmRig::Update(m_Context, 1.0f));
+    ASSERT_VEC3(Vector3(5.0f, 0.0f, 0.0f), pose[0].GetTranslation());
+    ASSERT_VEC3(Vector3(1.5f), pose[0].GetScale());
+
+    // At the stored position sample 2
+    ASSERT_EQ(dmRig::RESULT_OK, dmRig::Update(m_Context, 1.0f));
+    ASSERT_VEC3(Vector3(10.0f, 0.0f, 0.0f), pose[0].GetTranslation());
+    ASSERT_VEC3(Vector3(2.0f), pose[0].GetScale());
+
+    // Between the stored position samples 2 and 4
+    ASSERT_EQ(dmRig::RESULT_OK, dmRig::Update(m_Context, 1.0f));
+    ASSERT_VEC3(Vector3(10.0f, 10.0f, 0.0f), pose[0].GetTranslation());
+    ASSERT_VEC3(Vector3(2.5f), pose[0].GetScale());
+}
+
 // DEF-3121 - Starting new animation from inside a "animation completed callback" would previously
 // use the wrong animation for one frame.
 // In the test we register a "completion callback", play one animation forward once, then play another